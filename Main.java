@@ -15,27 +15,154 @@ import checker.SemanticChecker;
 import parser.PascalLexer;
 import parser.PascalParser;
 import ast.AST;
+import ast.ConstantFolder;
+import ast.DeadCodeEliminator;
+import ast.Inliner;
+import ast.RangeAnalysis;
 import codegen.CodegenVisitor;
+import codegen.InstructionSelector;
+import codegen.PeepholeOptimizer;
+import codegen.StrengthReduction;
+import ir.IrBuilder;
+import ir.IrProgram;
+import ir.LoopInvariantMotion;
+import ir.ValueNumbering;
+import interpreter.Fuel;
 import interpreter.Interpreter;
+import interpreter.Trace;
+import bytecode.BytecodeCompiler;
+import bytecode.Chunk;
+import bytecode.VM;
 
 // Classe principal para compilação Pascal -> MIPS
 public class Main {
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.err.println("Usage: java Main [-i|-c] <pascal_file>");
+            System.err.println("Usage: java Main [-i|-b|-c] <pascal_file> [--steps N] [--timeout MS] [--trace SPEC] [-O] [--dump-ir] [--dump-bytecode] [--no-peephole] [--no-strength-reduction] [--no-licm] [--no-cse] [--no-dce] [--no-inline] [--peephole-stats] [--reg-args] [--bounds-check]");
             System.err.println("  -i: Interpret Pascal code");
+            System.err.println("  -b: Run on the bytecode VM (cached in out/<name>.pbc)");
             System.err.println("  -c: Compile to MIPS and run");
+            System.err.println("  --steps N:    stop -i/-b after N loop iterations and calls (default " + Fuel.DEFAULT_STEPS + ", 0 = unlimited)");
+            System.err.println("  --timeout MS: stop -i/-b after MS milliseconds of execution");
+            System.err.println("  --trace SPEC: -i trace, off|info|debug[:category,...] (default debug)");
+            System.err.println("                categories: run, memory, decl, assign, call, io");
+            System.err.println("  -O:           -c through the three-address IR with register allocation");
+            System.err.println("  --dump-ir:    with -O, also write the IR to out/<name>.ir");
+            System.err.println("  --dump-bytecode: with -b, also write the bytecode listing to out/<name>.dis");
+            System.err.println("  --no-peephole:    -c without the peephole pass over the generated MIPS");
+            System.err.println("  --no-strength-reduction: -c keeps mul/div/mod by constants as emitted");
+            System.err.println("  --no-licm:    with -O, keeps loop-invariant code inside the loops");
+            System.err.println("  --no-cse:     -c evaluates repeated subexpressions every time");
+            System.err.println("  --no-dce:     -c keeps uncalled routines, constant branches and stores never read");
+            System.err.println("  --no-inline:  -c keeps every call to small leaf routines");
+            System.err.println("  --peephole-stats: -c prints the instructions removed by each peephole rule");
+            System.err.println("  --reg-args:   -c passes the first arguments of every routine in $a0-$a3/$f12/$f14");
+            System.err.println("  --bounds-check: -c checks array indices that range analysis cannot prove in bounds");
             return;
         }
         
         String mode = args[0];
         String filename = args[1];
         
-        if (!mode.equals("-i") && !mode.equals("-c")) {
-            System.err.println("Invalid mode. Use -i for interpretation or -c for compilation.");
+        // Orçamento de execução (-i e -b)
+        long steps = Fuel.DEFAULT_STEPS;
+        long timeoutMillis = 0;
+        Trace trace = Trace.full();
+        // Backend MIPS via representação intermediária (-c)
+        boolean optimize = false;
+        boolean dumpIr = false;
+        boolean dumpBytecode = false;
+        boolean peephole = true;
+        boolean peepholeStats = false;
+        boolean strengthReduction = true;
+        boolean loopInvariantMotion = true;
+        boolean commonSubexpressions = true;
+        boolean deadCode = true;
+        boolean inlining = true;
+        boolean registerArguments = false;
+        boolean boundsCheck = false;
+        for (int i = 2; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("-O")) {
+                optimize = true;
+            } else if (option.equals("--dump-ir")) {
+                dumpIr = true;
+            } else if (option.equals("--dump-bytecode")) {
+                dumpBytecode = true;
+            } else if (option.equals("--no-peephole")) {
+                peephole = false;
+            } else if (option.equals("--no-strength-reduction")) {
+                strengthReduction = false;
+            } else if (option.equals("--no-licm")) {
+                loopInvariantMotion = false;
+            } else if (option.equals("--no-cse")) {
+                commonSubexpressions = false;
+            } else if (option.equals("--no-dce")) {
+                deadCode = false;
+            } else if (option.equals("--no-inline")) {
+                inlining = false;
+            } else if (option.equals("--bounds-check")) {
+                boundsCheck = true;
+            } else if (option.equals("--reg-args")) {
+                registerArguments = true;
+            } else if (option.equals("--peephole-stats")) {
+                peepholeStats = true;
+            } else if (option.equals("--trace") && i + 1 < args.length) {
+                try {
+                    trace = Trace.parse(args[++i]);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Invalid value for --trace: " + e.getMessage());
+                    return;
+                }
+            } else if ((option.equals("--steps") || option.equals("--timeout")) && i + 1 < args.length) {
+                long value;
+                try {
+                    value = Long.parseLong(args[++i]);
+                } catch (NumberFormatException e) {
+                    value = -1;
+                }
+                if (value < 0) {
+                    System.err.println("Invalid value for " + option + ": " + args[i]);
+                    return;
+                }
+                if (option.equals("--steps")) {
+                    steps = value == 0 ? Long.MAX_VALUE : value;
+                } else {
+                    timeoutMillis = value;
+                }
+            } else {
+                System.err.println("Unknown option: " + option);
+                return;
+            }
+        }
+        
+        if (!mode.equals("-i") && !mode.equals("-b") && !mode.equals("-c")) {
+            System.err.println("Invalid mode. Use -i for interpretation, -b for the bytecode VM or -c for compilation.");
             return;
         }
         try {
+            // Bytecode em cache do mesmo fonte (caminho e conteúdo) dispensa toda a análise
+            String sourceKey = null;
+            if (mode.equals("-b")) {
+                Path cachePath = outputPath(filename, ".pbc");
+                sourceKey = Chunk.sourceKey(Paths.get(filename));
+                if (Files.exists(cachePath)) {
+                    Chunk cached = null;
+                    try {
+                        cached = Chunk.load(cachePath, sourceKey);
+                    } catch (IOException e) {
+                        // Cache de outra versão do formato ou de outro fonte: recompila
+                    }
+                    if (cached != null) {
+                        if (dumpBytecode) {
+                            Files.writeString(outputPath(filename, ".dis"), cached.disassemble());
+                        }
+                        runBytecode(cached, new Fuel(steps, timeoutMillis));
+                        return;
+                    }
+                }
+            }
+            
             // Cria o input stream a partir do arquivo
             CharStream input = CharStreams.fromFileName(filename);
             
@@ -64,18 +191,109 @@ public class Main {
                 System.exit(1);
             }
             
+            // === DOBRAMENTO DE CONSTANTES (comum a todos os backends) ===
+            new ConstantFolder().fold(ast);
+            
             if (mode.equals("-i")) {
                 // === INTERPRETAÇÃO DO CÓDIGO ===
-                Interpreter interpreter = new Interpreter(true); // Enable debug mode
+                Interpreter interpreter = new Interpreter(trace);
+                interpreter.setFuel(new Fuel(steps, timeoutMillis));
                 interpreter.interpret(ast);
                 System.out.println("Program executed successfully!");
+            } else if (mode.equals("-b")) {
+                // === COMPILAÇÃO PARA BYTECODE E EXECUÇÃO NA VM ===
+                BytecodeCompiler compiler = new BytecodeCompiler(checker.getStrTable());
+                Chunk chunk = compiler.compile(ast);
+                createOutputDir();
+                chunk.save(outputPath(filename, ".pbc"), sourceKey);
+                if (dumpBytecode) {
+                    Files.writeString(outputPath(filename, ".dis"), chunk.disassemble());
+                }
+                runBytecode(chunk, new Fuel(steps, timeoutMillis));
             } else {
-                // === GERAÇÃO DE CÓDIGO MIPS ===
-                CodegenVisitor codegen = new CodegenVisitor();
-                String mipsCode = codegen.generate(ast, checker.getSymbolTable(), checker.getStrTable());
+                // Otimizador peephole compartilhado pelos dois backends MIPS
+                PeepholeOptimizer optimizer = peephole ? PeepholeOptimizer.standard() : null;
+                StrengthReduction reduction = strengthReduction ? new StrengthReduction() : null;
+                ValueNumbering numbering = null;
+                LoopInvariantMotion motion = null;
+                // Expansão de rotinas pequenas; as que ficam sem chamadas saem com o código morto
+                Inliner inliner = null;
+                if (inlining) {
+                    inliner = new Inliner();
+                    inliner.inline(ast);
+                    if (inliner.getExpanded() > 0) {
+                        // Argumentos literais substituídos nos corpos podem dobrar
+                        new ConstantFolder().fold(ast);
+                    }
+                }
+                // Código morto: rotinas não chamadas, desvios constantes e stores sem leitura
+                DeadCodeEliminator eliminator = null;
+                if (deadCode) {
+                    eliminator = new DeadCodeEliminator();
+                    eliminator.eliminate(ast);
+                }
+                // Verificação de limites, sem os acessos provados seguros
+                RangeAnalysis ranges = null;
+                if (boundsCheck) {
+                    ranges = new RangeAnalysis();
+                    ranges.analyze(ast);
+                }
+                String mipsCode;
+                if (optimize) {
+                    // === GERAÇÃO DE CÓDIGO MIPS VIA CÓDIGO DE TRÊS ENDEREÇOS ===
+                    IrBuilder builder = new IrBuilder(checker.getStrTable());
+                    builder.setBoundsCheck(ranges);
+                    IrProgram program = builder.build(ast);
+                    if (commonSubexpressions) {
+                        numbering = new ValueNumbering();
+                        numbering.run(program);
+                    }
+                    if (loopInvariantMotion) {
+                        motion = new LoopInvariantMotion();
+                        motion.run(program);
+                    }
+                    if (dumpIr) {
+                        createOutputDir();
+                        Files.writeString(outputPath(filename, ".ir"), program.toString());
+                    }
+                    InstructionSelector selector = new InstructionSelector();
+                    selector.setPeephole(optimizer);
+                    selector.setStrengthReduction(reduction);
+                    mipsCode = selector.generate(program);
+                } else {
+                    // === GERAÇÃO DE CÓDIGO MIPS ===
+                    CodegenVisitor codegen = new CodegenVisitor();
+                    codegen.setPeephole(optimizer);
+                    codegen.setStrengthReduction(reduction);
+                    codegen.setRegisterArguments(registerArguments);
+                    codegen.setBoundsCheck(ranges);
+                    codegen.setCommonSubexpressions(commonSubexpressions);
+                    mipsCode = codegen.generate(ast, checker.getSymbolTable(), checker.getStrTable());
+                }
                 
                 // === SALVA O CÓDIGO MIPS EM ARQUIVO ===
                 saveToFile(filename, mipsCode);
+                if (peepholeStats && inliner != null) {
+                    System.out.print(inliner.report());
+                }
+                if (peepholeStats && eliminator != null) {
+                    System.out.print(eliminator.report());
+                }
+                if (peepholeStats && ranges != null) {
+                    System.out.print(ranges.report());
+                }
+                if (peepholeStats && numbering != null) {
+                    System.out.print(numbering.report());
+                }
+                if (peepholeStats && motion != null) {
+                    System.out.print(motion.report());
+                }
+                if (peepholeStats && reduction != null) {
+                    System.out.print(reduction.report());
+                }
+                if (peepholeStats && optimizer != null) {
+                    System.out.print(optimizer.report());
+                }
                 
                 System.out.println("MIPS code generated successfully!");
             }
@@ -92,32 +310,53 @@ public class Main {
         }
     }
     
+    /**
+     * Executa um programa já compilado para bytecode
+     */
+    private static void runBytecode(Chunk chunk, Fuel fuel) {
+        VM vm = new VM(chunk, System.in, fuel);
+        vm.run();
+        System.out.println("Program executed successfully!");
+    }
+    
     /**
      * Salva o código MIPS gerado em um arquivo .asm na pasta out/
      */
     private static void saveToFile(String inputFilename, String mipsCode) throws IOException {
-        // Cria a pasta out se não existir
+        createOutputDir();
+        
+        // Cria o nome do arquivo de saída
+        Path outputPath = outputPath(inputFilename, ".asm");
+        
+        // Escreve o código MIPS no arquivo
+        try (FileWriter writer = new FileWriter(outputPath.toFile())) {
+            writer.write(mipsCode);
+        }
+        
+        System.out.println("Output saved to: " + outputPath);
+    }
+    
+    /**
+     * Cria a pasta out se não existir
+     */
+    private static void createOutputDir() throws IOException {
         Path outDir = Paths.get("out");
         if (!Files.exists(outDir)) {
             Files.createDirectories(outDir);
         }
-        
+    }
+    
+    /**
+     * Caminho out/<nome sem extensão><extensão> para um arquivo de entrada
+     */
+    private static Path outputPath(String inputFilename, String extension) {
         // Extrai o nome do arquivo sem extensão
         String baseName = new File(inputFilename).getName();
         int dotIndex = baseName.lastIndexOf('.');
         if (dotIndex > 0) {
             baseName = baseName.substring(0, dotIndex);
         }
-        
-        // Cria o nome do arquivo de saída
-        String outputFilename = "out/" + baseName + ".asm";
-        
-        // Escreve o código MIPS no arquivo
-        try (FileWriter writer = new FileWriter(outputFilename)) {
-            writer.write(mipsCode);
-        }
-        
-        System.out.println("Output saved to: " + outputFilename);
+        return Paths.get("out", baseName + extension);
     }
 }
 
@@ -18,6 +18,11 @@ public class AST {
     public final Type type;
     private final List<AST> children;
 
+    // Endereço resolvido pelo interpretador: profundidade léxica e slot no frame
+    // (em chamadas, 'slot' guarda o índice da rotina chamada). -1 se não resolvido.
+    public int depth = -1;
+    public int slot = -1;
+
     // Construtor completo privado
     private AST(NodeKind kind, int intData, float floatData, String stringData, Type type) {
         this.kind = kind;
@@ -43,6 +48,11 @@ public class AST {
         this(kind, 0, 0.0f, stringData, type);
     }
 
+    // Cria o nó com um dado inteiro e uma string
+    public AST(NodeKind kind, int intData, String stringData, Type type) {
+        this(kind, intData, 0.0f, stringData, type);
+    }
+
     // Cria o nó só com tipo
     public AST(NodeKind kind, Type type) {
         this(kind, 0, 0.0f, null, type);
@@ -63,6 +73,26 @@ public class AST {
         return null;
     }
 
+    // Substitui o filho no índice passado (usado por passes que reescrevem a árvore)
+    public void setChild(int idx, AST child) {
+        this.children.set(idx, child);
+    }
+
+    // Remove o filho no índice passado (usado por passes que reescrevem a árvore)
+    public void removeChild(int idx) {
+        this.children.remove(idx);
+    }
+
+    // Cópia profunda da subárvore, ainda sem endereço resolvido (usada por
+    // passes que duplicam código)
+    public AST copy() {
+        AST copy = new AST(kind, intData, floatData, stringData, type);
+        for (AST child : children) {
+            copy.children.add(child.copy());
+        }
+        return copy;
+    }
+
     // Retorna o número de filhos
     public int getChildCount() {
         return this.children.size();
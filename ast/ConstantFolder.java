@@ -0,0 +1,474 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import typing.Type;
+
+/**
+ * Dobramento de constantes sobre a AST, executado uma vez depois da análise
+ * semântica e antes de qualquer backend (interpretador, VM e MIPS).
+ *
+ * - Usos de constantes declaradas (const N = 10) viram o literal.
+ * - Subárvores só com literais são avaliadas, com a mesma semântica do
+ *   interpretador: aritmética inteira com overflow de Java, reais em float,
+ *   divisões por zero ficam para a execução.
+ * - Identidades algébricas: x+0, x-0, x*1, x div 1, x*0 (se x não tem
+ *   efeitos), e também and/or com true/false.
+ */
+public class ConstantFolder {
+
+    // Símbolo visível: literal de uma constante, ou declaração de rotina;
+    // variáveis e parâmetros só escondem nomes externos (ambos null)
+    private static class Symbol {
+        final AST literal;
+        final AST routine;
+
+        Symbol(AST literal, AST routine) {
+            this.literal = literal;
+            this.routine = routine;
+        }
+    }
+
+    private static final Symbol HIDDEN = new Symbol(null, null);
+
+    // Pilha de escopos (nomes normalizados em minúsculas)
+    private final List<Map<String, Symbol>> scopes = new ArrayList<>();
+
+    /**
+     * Dobra o programa no lugar
+     */
+    public void fold(AST programNode) {
+        if (programNode.kind != NodeKind.PROGRAM_NODE) {
+            throw new RuntimeException("Root node must be a PROGRAM_NODE");
+        }
+        openScope();
+        if (programNode.getChildCount() > 0) {
+            foldBlock(programNode.getChild(0));
+        }
+        closeScope();
+    }
+
+    // ==================== Escopos ====================
+
+    private void openScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    private void closeScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private void declare(String name, Symbol symbol) {
+        scopes.get(scopes.size() - 1).put(name.toLowerCase(), symbol);
+    }
+
+    private Symbol lookup(String name) {
+        String key = name.toLowerCase();
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Symbol symbol = scopes.get(i).get(key);
+            if (symbol != null) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+
+    // ==================== Declarações ====================
+
+    private void foldBlock(AST blockNode) {
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+            switch (child.kind) {
+                case CONST_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        foldConstDeclaration(child.getChild(j));
+                    }
+                }
+                case VAR_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST varList = child.getChild(j);
+                        for (int k = 0; k < varList.getChildCount(); k++) {
+                            declare(varList.getChild(k).stringData, HIDDEN);
+                        }
+                    }
+                }
+                case PROC_DECL_NODE, FUNC_DECL_NODE -> {
+                    // Declara antes do corpo para permitir recursão
+                    declare(child.stringData, new Symbol(null, child));
+                    foldRoutine(child);
+                }
+                default -> blockNode.setChild(i, foldNode(child));
+            }
+        }
+    }
+
+    private void foldConstDeclaration(AST constDeclNode) {
+        if (constDeclNode.kind != NodeKind.CONST_DECL_NODE) {
+            return;
+        }
+        AST value = constDeclNode.getChildCount() > 0 ? foldExpr(constDeclNode.getChild(0)) : null;
+        if (value != null) {
+            constDeclNode.setChild(0, value);
+        }
+        declare(constDeclNode.stringData, isScalarLiteral(value) ? new Symbol(value, null) : HIDDEN);
+    }
+
+    private void foldRoutine(AST declNode) {
+        openScope();
+        // Dentro de uma função, o nome dela é a variável de resultado
+        if (declNode.kind == NodeKind.FUNC_DECL_NODE) {
+            declare(declNode.stringData, new Symbol(null, declNode));
+        }
+        for (int i = 0; i < declNode.getChildCount(); i++) {
+            AST child = declNode.getChild(i);
+            if (child.kind == NodeKind.PARAM_LIST_NODE) {
+                for (AST param : parameters(child)) {
+                    declare(param.stringData, HIDDEN);
+                }
+            } else if (child.kind == NodeKind.BLOCK_NODE) {
+                foldBlock(child);
+            }
+        }
+        closeScope();
+    }
+
+    /**
+     * PARAM_NODEs de uma rotina, na ordem: PARAM_LIST_NODE -> seção -> PARAM_NODE
+     */
+    static List<AST> parameters(AST paramListNode) {
+        List<AST> params = new ArrayList<>();
+        for (int i = 0; i < paramListNode.getChildCount(); i++) {
+            AST child = paramListNode.getChild(i);
+            if (child.kind == NodeKind.PARAM_LIST_NODE) {
+                params.addAll(parameters(child));
+            } else if (child.kind == NodeKind.PARAM_NODE) {
+                params.add(child);
+            }
+        }
+        return params;
+    }
+
+    // ==================== Statements ====================
+
+    /**
+     * Dobra statements e expressões, retornando o nó que substitui o original
+     */
+    private AST foldNode(AST node) {
+        switch (node.kind) {
+            case ASSIGN_NODE -> {
+                foldTarget(node.getChild(0));
+                for (int i = 1; i < node.getChildCount(); i++) {
+                    node.setChild(i, foldExpr(node.getChild(i)));
+                }
+                return node;
+            }
+            case PROC_CALL_NODE, FUNC_CALL_NODE -> {
+                foldCall(node);
+                return node;
+            }
+            default -> {
+                if (isExpression(node)) {
+                    return foldExpr(node);
+                }
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    node.setChild(i, foldNode(node.getChild(i)));
+                }
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Alvo de atribuição, read ou parâmetro VAR: só o índice é dobrado
+     */
+    private void foldTarget(AST target) {
+        if (target != null && target.kind != NodeKind.VAR_USE_NODE) {
+            for (int i = 0; i < target.getChildCount(); i++) {
+                target.setChild(i, foldExpr(target.getChild(i)));
+            }
+        }
+    }
+
+    private void foldCall(AST callNode) {
+        AST args = callNode.getChildCount() > 0 ? callNode.getChild(0) : null;
+        if (args == null) {
+            return;
+        }
+        String name = callNode.stringData.toLowerCase();
+        boolean reads = callNode.kind == NodeKind.PROC_CALL_NODE && (name.equals("read") || name.equals("readln"));
+
+        // Parâmetros VAR da rotina chamada recebem o endereço do argumento
+        List<AST> params = new ArrayList<>();
+        Symbol symbol = lookup(name);
+        if (symbol != null && symbol.routine != null) {
+            for (int i = 0; i < symbol.routine.getChildCount(); i++) {
+                if (symbol.routine.getChild(i).kind == NodeKind.PARAM_LIST_NODE) {
+                    params = parameters(symbol.routine.getChild(i));
+                }
+            }
+        }
+
+        for (int i = 0; i < args.getChildCount(); i++) {
+            boolean byReference = reads || (i < params.size() && params.get(i).intData == 1);
+            if (byReference) {
+                foldTarget(args.getChild(i));
+            } else {
+                args.setChild(i, foldExpr(args.getChild(i)));
+            }
+        }
+    }
+
+    // ==================== Expressões ====================
+
+    private static boolean isExpression(AST node) {
+        return switch (node.kind) {
+            case PLUS_NODE, MINUS_NODE, TIMES_NODE, DIVIDE_NODE, DIV_NODE, MOD_NODE,
+                 AND_NODE, OR_NODE, NOT_NODE, EQ_NODE, NEQ_NODE, LT_NODE, GT_NODE, LE_NODE, GE_NODE,
+                 INT_VAL_NODE, REAL_VAL_NODE, CHAR_VAL_NODE, STR_VAL_NODE, BOOL_VAL_NODE,
+                 VAR_USE_NODE, ARRAY_ACCESS_NODE, I2R_NODE, C2S_NODE, PAREN_EXPR_NODE -> true;
+            default -> false;
+        };
+    }
+
+    private AST foldExpr(AST node) {
+        switch (node.kind) {
+            case VAR_USE_NODE -> {
+                Symbol symbol = lookup(node.stringData);
+                if (symbol != null && symbol.literal != null) {
+                    return copyLiteral(symbol.literal);
+                }
+                return node;
+            }
+            case FUNC_CALL_NODE -> {
+                foldCall(node);
+                return node;
+            }
+            default -> {
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    node.setChild(i, foldExpr(node.getChild(i)));
+                }
+            }
+        }
+
+        AST result = evaluate(node);
+        if (result == null) {
+            result = simplify(node);
+        }
+        return result != null ? result : node;
+    }
+
+    /**
+     * Avalia um operador cujos operandos são todos literais, ou retorna null
+     */
+    private static AST evaluate(AST node) {
+        AST left = node.getChild(0);
+        AST right = node.getChild(1);
+        switch (node.kind) {
+            case PAREN_EXPR_NODE -> {
+                return isScalarLiteral(left) ? left : null;
+            }
+            case I2R_NODE -> {
+                return left != null && left.kind == NodeKind.INT_VAL_NODE
+                       ? new AST(NodeKind.REAL_VAL_NODE, (float) left.intData, Type.REAL) : null;
+            }
+            case NOT_NODE -> {
+                return left != null && left.kind == NodeKind.BOOL_VAL_NODE ? bool(left.intData == 0) : null;
+            }
+            default -> { }
+        }
+        if (left == null || right == null || !isScalarLiteral(left) || !isScalarLiteral(right) ||
+            left.kind != right.kind) {
+            return null;
+        }
+
+        if (left.kind == NodeKind.REAL_VAL_NODE) {
+            float a = left.floatData;
+            float b = right.floatData;
+            return switch (node.kind) {
+                case PLUS_NODE -> real(a + b);
+                case MINUS_NODE -> real(a - b);
+                case TIMES_NODE -> real(a * b);
+                case DIVIDE_NODE -> Math.abs(b) < 1e-10 ? null : real(a / b);
+                case EQ_NODE -> bool(Float.compare(a, b) == 0);
+                case NEQ_NODE -> bool(Float.compare(a, b) != 0);
+                case LT_NODE -> bool(Float.compare(a, b) < 0);
+                case GT_NODE -> bool(Float.compare(a, b) > 0);
+                case LE_NODE -> bool(Float.compare(a, b) <= 0);
+                case GE_NODE -> bool(Float.compare(a, b) >= 0);
+                default -> null;
+            };
+        }
+
+        // Inteiros, booleanos e chars comparam pelo valor inteiro
+        int a = intValue(left);
+        int b = intValue(right);
+        AST comparison = switch (node.kind) {
+            case EQ_NODE -> bool(a == b);
+            case NEQ_NODE -> bool(a != b);
+            case LT_NODE -> bool(a < b);
+            case GT_NODE -> bool(a > b);
+            case LE_NODE -> bool(a <= b);
+            case GE_NODE -> bool(a >= b);
+            default -> null;
+        };
+        if (comparison != null) {
+            return comparison;
+        }
+        if (left.kind == NodeKind.BOOL_VAL_NODE) {
+            return switch (node.kind) {
+                case AND_NODE -> bool(a != 0 && b != 0);
+                case OR_NODE -> bool(a != 0 || b != 0);
+                default -> null;
+            };
+        }
+        if (left.kind == NodeKind.INT_VAL_NODE) {
+            return switch (node.kind) {
+                case PLUS_NODE -> integer(a + b);
+                case MINUS_NODE -> integer(a - b);
+                case TIMES_NODE -> integer(a * b);
+                case DIV_NODE -> b == 0 ? null : integer(a / b);
+                case MOD_NODE -> b == 0 ? null : integer(a % b);
+                default -> null;
+            };
+        }
+        return null;
+    }
+
+    /**
+     * Identidades algébricas com um operando literal, ou null
+     */
+    private AST simplify(AST node) {
+        if (node.getChildCount() != 2) {
+            return null;
+        }
+        AST left = node.getChild(0);
+        AST right = node.getChild(1);
+        switch (node.kind) {
+            case PLUS_NODE -> {
+                if (isInt(right, 0)) return keep(left, node);
+                if (isInt(left, 0)) return keep(right, node);
+            }
+            case MINUS_NODE -> {
+                if (isInt(right, 0)) return keep(left, node);
+            }
+            case TIMES_NODE -> {
+                if (isInt(right, 1) || isReal(right, 1.0f)) return keep(left, node);
+                if (isInt(left, 1) || isReal(left, 1.0f)) return keep(right, node);
+                // 0.0 * x não é 0.0 para x infinito ou NaN: só inteiros
+                if (isInt(right, 0) && isPure(left)) return right;
+                if (isInt(left, 0) && isPure(right)) return left;
+            }
+            case DIV_NODE -> {
+                if (isInt(right, 1)) return keep(left, node);
+            }
+            case DIVIDE_NODE -> {
+                if (isReal(right, 1.0f)) return keep(left, node);
+            }
+            case AND_NODE -> {
+                if (isBool(right, true)) return keep(left, node);
+                if (isBool(left, true)) return keep(right, node);
+                if (isBool(right, false) && isPure(left)) return right;
+                if (isBool(left, false) && isPure(right)) return left;
+            }
+            case OR_NODE -> {
+                if (isBool(right, false)) return keep(left, node);
+                if (isBool(left, false)) return keep(right, node);
+                if (isBool(right, true) && isPure(left)) return right;
+                if (isBool(left, true) && isPure(right)) return left;
+            }
+            default -> { }
+        }
+        return null;
+    }
+
+    /**
+     * O operando restante substitui o nó se tiver o mesmo tipo
+     */
+    private static AST keep(AST operand, AST node) {
+        return operand.type == node.type ? operand : null;
+    }
+
+    /**
+     * Sem chamadas nem operações que podem falhar: pode ser descartada
+     */
+    private boolean isPure(AST node) {
+        switch (node.kind) {
+            case INT_VAL_NODE, REAL_VAL_NODE, CHAR_VAL_NODE, BOOL_VAL_NODE -> {
+                return true;
+            }
+            case VAR_USE_NODE -> {
+                // Nome de função sem argumentos é uma chamada
+                Symbol symbol = lookup(node.stringData);
+                return symbol == null || symbol.routine == null;
+            }
+            case PLUS_NODE, MINUS_NODE, TIMES_NODE, AND_NODE, OR_NODE, NOT_NODE,
+                 EQ_NODE, NEQ_NODE, LT_NODE, GT_NODE, LE_NODE, GE_NODE, I2R_NODE, PAREN_EXPR_NODE -> {
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    if (!isPure(node.getChild(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    // ==================== Literais ====================
+
+    private static boolean isScalarLiteral(AST node) {
+        return node != null && (node.kind == NodeKind.INT_VAL_NODE || node.kind == NodeKind.REAL_VAL_NODE ||
+                                node.kind == NodeKind.BOOL_VAL_NODE || node.kind == NodeKind.CHAR_VAL_NODE);
+    }
+
+    private static boolean isInt(AST node, int value) {
+        return node.kind == NodeKind.INT_VAL_NODE && node.intData == value;
+    }
+
+    private static boolean isReal(AST node, float value) {
+        return node.kind == NodeKind.REAL_VAL_NODE && node.floatData == value;
+    }
+
+    private static boolean isBool(AST node, boolean value) {
+        return node.kind == NodeKind.BOOL_VAL_NODE && (node.intData != 0) == value;
+    }
+
+    private static int intValue(AST literal) {
+        if (literal.kind == NodeKind.CHAR_VAL_NODE) {
+            String text = literal.stringData;
+            if (text != null && text.length() >= 3 && text.startsWith("'") && text.endsWith("'")) {
+                text = text.substring(1, text.length() - 1);
+            }
+            return text != null && !text.isEmpty() ? text.charAt(0) : 0;
+        }
+        return literal.intData;
+    }
+
+    private static AST integer(int value) {
+        return new AST(NodeKind.INT_VAL_NODE, value, Type.INTEGER);
+    }
+
+    private static AST real(float value) {
+        return new AST(NodeKind.REAL_VAL_NODE, value, Type.REAL);
+    }
+
+    private static AST bool(boolean value) {
+        return new AST(NodeKind.BOOL_VAL_NODE, value ? 1 : 0, Type.BOOLEAN);
+    }
+
+    /**
+     * Cada uso de uma constante recebe seu próprio nó
+     */
+    private static AST copyLiteral(AST literal) {
+        return switch (literal.kind) {
+            case REAL_VAL_NODE -> new AST(literal.kind, literal.floatData, literal.type);
+            case CHAR_VAL_NODE -> new AST(literal.kind, literal.stringData, literal.type);
+            default -> new AST(literal.kind, literal.intData, literal.type);
+        };
+    }
+}
@@ -0,0 +1,363 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import typing.Type;
+
+/**
+ * Eliminação de código morto sobre a AST já dobrada, antes dos backends
+ * MIPS. Três reescritas, nesta ordem:
+ *
+ * - Desvios mortos: if com condição constante vira o ramo escolhido, e
+ *   while false desaparece.
+ * - Rotinas inalcançáveis: o grafo de chamadas é percorrido a partir do
+ *   corpo do programa, e as declarações de procedimentos e funções que
+ *   nunca são chamadas saem da árvore (com as rotinas aninhadas nelas).
+ * - Stores mortos: atribuições a variáveis escalares que nunca são lidas
+ *   somem, desde que a expressão não tenha chamadas nem possa falhar.
+ *   Remover uma atribuição pode deixar outra variável sem leituras, então
+ *   o passo se repete.
+ *
+ * Os nomes são resolvidos pelos escopos léxicos, como na análise
+ * semântica: uma rotina aninhada pode esconder outra de mesmo nome.
+ */
+public class DeadCodeEliminator {
+
+    private enum Kind {
+        VARIABLE,    // variável ou parâmetro por valor
+        REFERENCE,   // parâmetro VAR: escrever nele escreve no chamador
+        RESULT,      // nome da função dentro dela mesma
+        ROUTINE,
+        OTHER        // constantes
+    }
+
+    private static class Symbol {
+        final Kind kind;
+        final AST routine;   // declaração, para ROUTINE e RESULT
+        int reads;
+
+        Symbol(Kind kind, AST routine) {
+            this.kind = kind;
+            this.routine = routine;
+        }
+    }
+
+    private static final Symbol CONSTANT = new Symbol(Kind.OTHER, null);
+
+    // Pilha de escopos (nomes normalizados em minúsculas)
+    private final List<Map<String, Symbol>> scopes = new ArrayList<>();
+
+    // Símbolo de cada uso de nome (variáveis, arrays, chamadas)
+    private final Map<AST, Symbol> bindings = new IdentityHashMap<>();
+
+    // Rotinas chamadas por cada rotina; a chave null é o programa principal
+    private final Map<AST, List<AST>> callees = new IdentityHashMap<>();
+
+    private int routines = 0;
+    private int branches = 0;
+    private int stores = 0;
+
+    /**
+     * Reescreve o programa no lugar
+     */
+    public void eliminate(AST programNode) {
+        if (programNode.kind != NodeKind.PROGRAM_NODE) {
+            throw new RuntimeException("Root node must be a PROGRAM_NODE");
+        }
+        if (programNode.getChildCount() == 0) {
+            return;
+        }
+        AST block = programNode.getChild(0);
+        removeDeadBranches(block);
+
+        openScope();
+        bindBlock(block, null);
+        closeScope();
+
+        Set<AST> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<AST> work = new ArrayList<>(callees.getOrDefault(null, List.of()));
+        while (!work.isEmpty()) {
+            AST routine = work.remove(work.size() - 1);
+            if (reachable.add(routine)) {
+                work.addAll(callees.getOrDefault(routine, List.of()));
+            }
+        }
+        removeUnreachable(block, reachable);
+
+        boolean changed = true;
+        while (changed) {
+            for (Symbol symbol : bindings.values()) {
+                symbol.reads = 0;
+            }
+            countReads(block, false);
+            changed = removeDeadStores(block);
+        }
+    }
+
+    public String report() {
+        return String.format("Dead code: %d routines, %d branches, %d stores removed%n", routines, branches, stores);
+    }
+
+    // ==================== Desvios mortos ====================
+
+    /**
+     * Substitui os if/while de condição constante nos filhos do nó
+     */
+    private void removeDeadBranches(AST node) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            AST child = node.getChild(i);
+            removeDeadBranches(child);
+            Boolean condition = child.kind == NodeKind.IF_NODE || child.kind == NodeKind.WHILE_NODE
+                                ? constantCondition(child.getChild(0)) : null;
+            if (condition == null) {
+                continue;
+            }
+            if (child.kind == NodeKind.IF_NODE) {
+                AST taken = condition ? child.getChild(1) : child.getChild(2);
+                node.setChild(i, taken != null ? taken : empty());
+                branches++;
+            } else if (!condition) {
+                node.setChild(i, empty());
+                branches++;
+            }
+        }
+    }
+
+    private static Boolean constantCondition(AST node) {
+        while (node.kind == NodeKind.PAREN_EXPR_NODE) {
+            node = node.getChild(0);
+        }
+        return node.kind == NodeKind.BOOL_VAL_NODE ? node.intData != 0 : null;
+    }
+
+    private static AST empty() {
+        return new AST(NodeKind.EMPTY_STMT_NODE, Type.NO_TYPE);
+    }
+
+    // ==================== Resolução de nomes ====================
+
+    private void openScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    private void closeScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private void declare(String name, Symbol symbol) {
+        scopes.get(scopes.size() - 1).put(name.toLowerCase(), symbol);
+    }
+
+    private Symbol lookup(String name) {
+        String key = name.toLowerCase();
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Symbol symbol = scopes.get(i).get(key);
+            if (symbol != null) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Declara os nomes do bloco e liga os usos; routine é a rotina dona
+     * (null no programa principal)
+     */
+    private void bindBlock(AST blockNode, AST routine) {
+        callees.computeIfAbsent(routine, r -> new ArrayList<>());
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+            switch (child.kind) {
+                case CONST_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        if (child.getChild(j).stringData != null) {
+                            declare(child.getChild(j).stringData, CONSTANT);
+                        }
+                    }
+                }
+                case VAR_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST varList = child.getChild(j);
+                        for (int k = 0; k < varList.getChildCount(); k++) {
+                            declare(varList.getChild(k).stringData, new Symbol(Kind.VARIABLE, null));
+                        }
+                    }
+                }
+                case PROC_DECL_NODE, FUNC_DECL_NODE -> {
+                    // Declara antes do corpo para permitir recursão
+                    declare(child.stringData, new Symbol(Kind.ROUTINE, child));
+                    bindRoutine(child);
+                }
+                default -> bindUses(child, routine);
+            }
+        }
+    }
+
+    private void bindRoutine(AST declNode) {
+        openScope();
+        if (declNode.kind == NodeKind.FUNC_DECL_NODE) {
+            declare(declNode.stringData, new Symbol(Kind.RESULT, declNode));
+        }
+        for (int i = 0; i < declNode.getChildCount(); i++) {
+            AST child = declNode.getChild(i);
+            if (child.kind == NodeKind.PARAM_LIST_NODE) {
+                for (AST param : ConstantFolder.parameters(child)) {
+                    declare(param.stringData, new Symbol(param.intData == 1 ? Kind.REFERENCE : Kind.VARIABLE, null));
+                }
+            } else if (child.kind == NodeKind.BLOCK_NODE) {
+                bindBlock(child, declNode);
+            }
+        }
+        closeScope();
+    }
+
+    private void bindUses(AST node, AST routine) {
+        switch (node.kind) {
+            case VAR_USE_NODE, ARRAY_ACCESS_NODE, FUNC_CALL_NODE, PROC_CALL_NODE -> {
+                Symbol symbol = lookup(node.stringData);
+                if (symbol != null) {
+                    bindings.put(node, symbol);
+                    // Funções sem parâmetros também aparecem como VAR_USE_NODE
+                    if (symbol.kind == Kind.ROUTINE) {
+                        callees.get(routine).add(symbol.routine);
+                    }
+                }
+            }
+            default -> { }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            bindUses(node.getChild(i), routine);
+        }
+    }
+
+    // ==================== Rotinas inalcançáveis ====================
+
+    private void removeUnreachable(AST blockNode, Set<AST> reachable) {
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+            if (child.kind != NodeKind.PROC_DECL_NODE && child.kind != NodeKind.FUNC_DECL_NODE) {
+                continue;
+            }
+            if (!reachable.contains(child)) {
+                routines += countRoutines(child);
+                blockNode.removeChild(i--);
+                continue;
+            }
+            for (int j = 0; j < child.getChildCount(); j++) {
+                if (child.getChild(j).kind == NodeKind.BLOCK_NODE) {
+                    removeUnreachable(child.getChild(j), reachable);
+                }
+            }
+        }
+    }
+
+    /**
+     * A rotina e as aninhadas nela
+     */
+    private static int countRoutines(AST node) {
+        int count = node.kind == NodeKind.PROC_DECL_NODE || node.kind == NodeKind.FUNC_DECL_NODE ? 1 : 0;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            count += countRoutines(node.getChild(i));
+        }
+        return count;
+    }
+
+    // ==================== Stores mortos ====================
+
+    /**
+     * Conta as leituras de cada símbolo; o alvo de uma atribuição e os
+     * argumentos de read são escritas
+     */
+    private void countReads(AST node, boolean written) {
+        Symbol symbol = bindings.get(node);
+        if (symbol != null && !written) {
+            symbol.reads++;
+        }
+        boolean reads = node.kind == NodeKind.PROC_CALL_NODE &&
+                        (node.stringData.equalsIgnoreCase("read") || node.stringData.equalsIgnoreCase("readln"));
+        for (int i = 0; i < node.getChildCount(); i++) {
+            AST child = node.getChild(i);
+            if (reads) {
+                // Lista de argumentos
+                for (int j = 0; j < child.getChildCount(); j++) {
+                    AST arg = child.getChild(j);
+                    countReads(arg, arg.kind == NodeKind.VAR_USE_NODE);
+                }
+            } else {
+                boolean target = node.kind == NodeKind.ASSIGN_NODE && i == 0;
+                countReads(child, target && child.kind == NodeKind.VAR_USE_NODE);
+            }
+        }
+    }
+
+    /**
+     * Troca por statements vazios as atribuições a variáveis sem leituras;
+     * retorna true se alguma foi removida
+     */
+    private boolean removeDeadStores(AST node) {
+        boolean removed = false;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            AST child = node.getChild(i);
+            if (child.kind == NodeKind.ASSIGN_NODE && isDeadStore(child)) {
+                node.setChild(i, empty());
+                stores++;
+                removed = true;
+            } else if (child.kind != NodeKind.ASSIGN_NODE) {
+                removed |= removeDeadStores(child);
+            }
+        }
+        return removed;
+    }
+
+    private boolean isDeadStore(AST assignNode) {
+        AST target = assignNode.getChild(0);
+        if (target == null || target.kind != NodeKind.VAR_USE_NODE) {
+            return false;
+        }
+        Symbol symbol = bindings.get(target);
+        if (symbol == null || symbol.kind != Kind.VARIABLE || symbol.reads > 0) {
+            return false;
+        }
+        for (int i = 1; i < assignNode.getChildCount(); i++) {
+            if (hasEffects(assignNode.getChild(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A expressão chama rotinas ou pode falhar em tempo de execução
+     * (divisão inteira por variável, índice fora dos limites)
+     */
+    private boolean hasEffects(AST node) {
+        switch (node.kind) {
+            case FUNC_CALL_NODE, ARRAY_ACCESS_NODE -> {
+                return true;
+            }
+            case DIV_NODE, MOD_NODE -> {
+                AST divisor = node.getChild(1);
+                if (divisor.kind != NodeKind.INT_VAL_NODE || divisor.intData == 0) {
+                    return true;
+                }
+            }
+            default -> { }
+        }
+        Symbol symbol = bindings.get(node);
+        if (symbol != null && (symbol.kind == Kind.ROUTINE || symbol.kind == Kind.RESULT)) {
+            return true;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (hasEffects(node.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
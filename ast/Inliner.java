@@ -0,0 +1,825 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import typing.Conv;
+import typing.Type;
+
+/**
+ * Expansão em linha de rotinas pequenas sobre a AST já dobrada, antes dos
+ * backends MIPS. A chamada é trocada por um bloco com o corpo da rotina:
+ *
+ *     p(a + 1, x)        begin
+ *                          _p1_n := a + 1;       (parâmetro por valor)
+ *                          ... corpo, com x no lugar do parâmetro VAR ...
+ *                        end
+ *
+ * Parâmetros por valor, locais e o resultado das funções viram variáveis
+ * novas do chamador, com nomes iniciados por '_' (que não são
+ * identificadores Pascal); parâmetros VAR são trocados pelo próprio
+ * argumento, o que preserva o aliasing. Um parâmetro por valor que não é
+ * escrito recebe direto um literal, ou uma variável que a rotina não altera.
+ *
+ * Só rotinas folha são expandidas: sem chamadas, sem rotinas aninhadas,
+ * constantes ou arrays locais, com parâmetros escalares. O corpo pode ter
+ * até SIZE_LIMIT nós, ou HOT_SIZE_LIMIT se a chamada está dentro de um
+ * while ou é a única do programa (e a rotina não tem laços, que ficariam
+ * com variáveis globais no lugar das locais). As rotinas são tratadas antes de quem as
+ * chama, então uma rotina que só chamava folhas vira folha.
+ *
+ * Chamadas de função dentro de expressões são calculadas antes do
+ * statement, numa variável de resultado. Por isso só funções puras (sem
+ * E/S, sem parâmetros VAR, escrevendo só as próprias variáveis) são
+ * expandidas, e só em statements em que todas as chamadas são expandidas e
+ * nenhuma está sob and/or (avaliação em curto-circuito) ou numa condição
+ * de while.
+ */
+public class Inliner {
+
+    static final int SIZE_LIMIT = 24;
+    static final int HOT_SIZE_LIMIT = 64;
+
+    private enum Kind {
+        VARIABLE,    // variável ou parâmetro por valor
+        REFERENCE,   // parâmetro VAR
+        RESULT,      // nome da função dentro dela mesma
+        ROUTINE,
+        OTHER        // constantes
+    }
+
+    private static class Symbol {
+        final Kind kind;
+        Callee callee;   // rotinas que podem ser expandidas
+
+        Symbol(Kind kind) {
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Rotina folha que pode ser expandida, com o que a expansão precisa
+     * saber do corpo
+     */
+    private static class Callee {
+        final AST declaration;
+        final List<AST> params;
+        final List<AST> locals = new ArrayList<>();
+        AST body;
+        int size;
+        boolean pure;
+        // Nomes livres (minúsculas) e o símbolo a que se referem na rotina
+        final Map<String, Symbol> freeNames = new HashMap<>();
+        // Parâmetros por valor e locais escritos (minúsculas)
+        final Set<String> written = new HashSet<>();
+        // Escreve variáveis de fora (globais, parâmetros VAR, arrays)
+        boolean writesOutside;
+        // Locais e resultado que podem ser lidos antes de escritos
+        final Set<String> needsInit = new HashSet<>();
+        // Tem while: o custo da chamada já se dilui no laço
+        boolean loops;
+
+        Callee(AST declaration, List<AST> params) {
+            this.declaration = declaration;
+            this.params = params;
+        }
+
+        boolean isFunction() {
+            return declaration.kind == NodeKind.FUNC_DECL_NODE;
+        }
+    }
+
+    // Pilha de escopos (nomes normalizados em minúsculas)
+    private final List<Map<String, Symbol>> scopes = new ArrayList<>();
+
+    // Chamadas de cada nome de rotina no programa inteiro
+    private final Map<String, Integer> callCounts = new HashMap<>();
+
+    // Declarações criadas para o bloco sendo transformado
+    private List<AST> pendingDeclarations;
+
+    private int expanded = 0;
+    private final Set<AST> inlinedRoutines = new HashSet<>();
+
+    /**
+     * Reescreve o programa no lugar
+     */
+    public void inline(AST programNode) {
+        if (programNode.kind != NodeKind.PROGRAM_NODE) {
+            throw new RuntimeException("Root node must be a PROGRAM_NODE");
+        }
+        if (programNode.getChildCount() == 0) {
+            return;
+        }
+        countCalls(programNode);
+        openScope();
+        walkBlock(programNode.getChild(0));
+        closeScope();
+    }
+
+    public int getExpanded() {
+        return expanded;
+    }
+
+    public String report() {
+        return String.format("Inlining: %d calls expanded from %d routines%n", expanded, inlinedRoutines.size());
+    }
+
+    private void countCalls(AST node) {
+        if (node.kind == NodeKind.FUNC_CALL_NODE ||
+            (node.kind == NodeKind.PROC_CALL_NODE && !isBuiltinProcedure(node.stringData))) {
+            callCounts.merge(node.stringData.toLowerCase(), 1, Integer::sum);
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            countCalls(node.getChild(i));
+        }
+    }
+
+    private static boolean isBuiltinProcedure(String name) {
+        return name.equalsIgnoreCase("writeln") || name.equalsIgnoreCase("write") ||
+               name.equalsIgnoreCase("read") || name.equalsIgnoreCase("readln");
+    }
+
+    private static boolean isRead(AST node) {
+        return node.kind == NodeKind.PROC_CALL_NODE &&
+               (node.stringData.equalsIgnoreCase("read") || node.stringData.equalsIgnoreCase("readln"));
+    }
+
+    // ==================== Escopos ====================
+
+    private void openScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    private void closeScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private void declare(String name, Symbol symbol) {
+        scopes.get(scopes.size() - 1).put(name.toLowerCase(), symbol);
+    }
+
+    private Symbol lookup(String name) {
+        String key = name.toLowerCase();
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Symbol symbol = scopes.get(i).get(key);
+            if (symbol != null) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+
+    // ==================== Declarações ====================
+
+    private void walkBlock(AST blockNode) {
+        List<AST> saved = pendingDeclarations;
+        pendingDeclarations = new ArrayList<>();
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+            switch (child.kind) {
+                case CONST_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        if (child.getChild(j).stringData != null) {
+                            declare(child.getChild(j).stringData, new Symbol(Kind.OTHER));
+                        }
+                    }
+                }
+                case VAR_SECTION_NODE -> {
+                    for (AST var : variables(child)) {
+                        declare(var.stringData, new Symbol(Kind.VARIABLE));
+                    }
+                }
+                case PROC_DECL_NODE, FUNC_DECL_NODE -> {
+                    // Declara antes do corpo para permitir recursão
+                    Symbol symbol = new Symbol(Kind.ROUTINE);
+                    declare(child.stringData, symbol);
+                    walkRoutine(child, symbol);
+                }
+                case COMPOUND_STMT_NODE -> blockNode.setChild(i, statement(child, 0));
+                default -> { }
+            }
+        }
+        declareVariables(blockNode, pendingDeclarations);
+        pendingDeclarations = saved;
+    }
+
+    private void walkRoutine(AST declNode, Symbol symbol) {
+        openScope();
+        if (declNode.kind == NodeKind.FUNC_DECL_NODE) {
+            declare(declNode.stringData, new Symbol(Kind.RESULT));
+        }
+        List<AST> params = new ArrayList<>();
+        AST block = null;
+        for (int i = 0; i < declNode.getChildCount(); i++) {
+            AST child = declNode.getChild(i);
+            if (child.kind == NodeKind.PARAM_LIST_NODE) {
+                params = ConstantFolder.parameters(child);
+                for (AST param : params) {
+                    declare(param.stringData, new Symbol(param.intData == 1 ? Kind.REFERENCE : Kind.VARIABLE));
+                }
+            } else if (child.kind == NodeKind.BLOCK_NODE) {
+                block = child;
+            }
+        }
+        if (block != null) {
+            walkBlock(block);
+            symbol.callee = analyze(new Callee(declNode, params), block);
+        }
+        closeScope();
+    }
+
+    /**
+     * VAR_DECL_NODEs de uma seção: VAR_SECTION_NODE -> VAR_LIST_NODE -> VAR_DECL_NODE
+     */
+    private static List<AST> variables(AST varSection) {
+        List<AST> variables = new ArrayList<>();
+        for (int i = 0; i < varSection.getChildCount(); i++) {
+            AST child = varSection.getChild(i);
+            if (child.kind == NodeKind.VAR_LIST_NODE) {
+                for (int j = 0; j < child.getChildCount(); j++) {
+                    variables.add(child.getChild(j));
+                }
+            } else if (child.kind == NodeKind.VAR_DECL_NODE) {
+                variables.add(child);
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Acrescenta as variáveis criadas à seção de variáveis do bloco (criada
+     * antes das rotinas e do corpo, se não existir)
+     */
+    private static void declareVariables(AST blockNode, List<AST> declarations) {
+        if (declarations.isEmpty()) {
+            return;
+        }
+        AST section = null;
+        int position = 0;
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+            if (child.kind == NodeKind.VAR_SECTION_NODE) {
+                section = child;
+            } else if (child.kind == NodeKind.CONST_SECTION_NODE) {
+                position = i + 1;
+            }
+        }
+        if (section == null) {
+            section = new AST(NodeKind.VAR_SECTION_NODE, Type.NO_TYPE);
+            List<AST> rest = new ArrayList<>();
+            while (blockNode.getChildCount() > position) {
+                rest.add(blockNode.getChild(position));
+                blockNode.removeChild(position);
+            }
+            blockNode.addChild(section);
+            for (AST child : rest) {
+                blockNode.addChild(child);
+            }
+        }
+        for (AST declaration : declarations) {
+            section.addChild(AST.newSubtree(NodeKind.VAR_LIST_NODE, Type.NO_TYPE, declaration));
+        }
+    }
+
+    // ==================== Análise das rotinas ====================
+
+    /**
+     * Preenche a descrição da rotina, ou retorna null se ela não pode ser
+     * expandida. Os escopos da rotina ainda estão abertos.
+     */
+    private Callee analyze(Callee callee, AST block) {
+        for (AST param : callee.params) {
+            if (!isScalar(param.type)) {
+                return null;
+            }
+        }
+        for (int i = 0; i < block.getChildCount(); i++) {
+            AST child = block.getChild(i);
+            switch (child.kind) {
+                case VAR_SECTION_NODE -> {
+                    for (AST var : variables(child)) {
+                        if (!isScalar(var.type) || var.getChildCount() > 0) {
+                            return null;
+                        }
+                        callee.locals.add(var);
+                    }
+                }
+                case COMPOUND_STMT_NODE -> callee.body = child;
+                default -> {
+                    // Constantes e rotinas aninhadas não existem no chamador
+                    return null;
+                }
+            }
+        }
+        if (callee.body == null) {
+            return null;
+        }
+
+        Set<String> own = new HashSet<>();
+        for (AST param : callee.params) {
+            own.add(param.stringData.toLowerCase());
+        }
+        for (AST var : callee.locals) {
+            own.add(var.stringData.toLowerCase());
+        }
+        boolean[] io = new boolean[1];
+        if (!scan(callee, callee.body, own, false, io)) {
+            return null;
+        }
+        boolean references = false;
+        for (AST param : callee.params) {
+            references |= param.intData == 1;
+        }
+        callee.pure = !io[0] && !callee.writesOutside && !references;
+        callee.size = size(callee.body);
+        if (!findUninitialized(callee)) {
+            return null;
+        }
+        return callee;
+    }
+
+    private static boolean isScalar(Type type) {
+        return type == Type.INTEGER || type == Type.REAL || type == Type.BOOLEAN || type == Type.CHAR;
+    }
+
+    /**
+     * Percorre o corpo anotando nomes livres e escritas; retorna false se
+     * ele tem algo que impede a expansão (chamadas, return, leitura do
+     * resultado)
+     */
+    private boolean scan(Callee callee, AST node, Set<String> own, boolean target, boolean[] io) {
+        switch (node.kind) {
+            case FUNC_CALL_NODE, RETURN_NODE -> {
+                return false;
+            }
+            case PROC_CALL_NODE -> {
+                if (!isBuiltinProcedure(node.stringData)) {
+                    return false;
+                }
+                io[0] = true;
+                if (isRead(node) && node.getChildCount() > 0) {
+                    AST args = node.getChild(0);
+                    for (int i = 0; i < args.getChildCount(); i++) {
+                        AST arg = args.getChild(i);
+                        if (!scan(callee, arg, own, arg.kind == NodeKind.VAR_USE_NODE, io)) {
+                            return false;
+                        }
+                        if (arg.kind == NodeKind.ARRAY_ACCESS_NODE) {
+                            callee.writesOutside = true;
+                        }
+                    }
+                    return true;
+                }
+            }
+            case ASSIGN_NODE -> {
+                AST assigned = node.getChild(0);
+                if (assigned.kind == NodeKind.ARRAY_ACCESS_NODE) {
+                    callee.writesOutside = true;
+                }
+                if (!scan(callee, assigned, own, assigned.kind == NodeKind.VAR_USE_NODE, io)) {
+                    return false;
+                }
+                for (int i = 1; i < node.getChildCount(); i++) {
+                    if (!scan(callee, node.getChild(i), own, false, io)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case VAR_USE_NODE, ARRAY_ACCESS_NODE -> {
+                String name = node.stringData.toLowerCase();
+                Symbol symbol = lookup(name);
+                if (symbol == null || symbol.kind == Kind.ROUTINE) {
+                    return false;
+                }
+                if (symbol.kind == Kind.RESULT) {
+                    // O resultado só é escrito (ler o nome pode ser recursão)
+                    if (!target) {
+                        return false;
+                    }
+                } else if (own.contains(name)) {
+                    if (target) {
+                        if (symbol.kind == Kind.REFERENCE) {
+                            callee.writesOutside = true;
+                        } else {
+                            callee.written.add(name);
+                        }
+                    }
+                } else {
+                    callee.freeNames.put(name, symbol);
+                    if (target) {
+                        callee.writesOutside = true;
+                    }
+                }
+            }
+            case WHILE_NODE -> callee.loops = true;
+            default -> { }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (!scan(callee, node.getChild(i), own, false, io)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Locais e resultado que podem ser lidos antes de receber valor: só
+     * atribuições (e reads) no nível de cima do corpo contam como escrita.
+     * Retorna false se algum deles é char, que não tem literal zero.
+     */
+    private static boolean findUninitialized(Callee callee) {
+        Set<String> candidates = new HashSet<>();
+        Map<String, Type> types = new HashMap<>();
+        for (AST var : callee.locals) {
+            candidates.add(var.stringData.toLowerCase());
+            types.put(var.stringData.toLowerCase(), var.type);
+        }
+        String result = callee.declaration.stringData.toLowerCase();
+        if (callee.isFunction()) {
+            candidates.add(result);
+            types.put(result, callee.declaration.type);
+        }
+        Set<String> assigned = new HashSet<>();
+        for (AST statement : statements(callee.body)) {
+            Set<String> reads = new HashSet<>();
+            Set<String> writes = new HashSet<>();
+            if (statement.kind == NodeKind.ASSIGN_NODE && statement.getChild(0).kind == NodeKind.VAR_USE_NODE) {
+                writes.add(statement.getChild(0).stringData.toLowerCase());
+                for (int j = 1; j < statement.getChildCount(); j++) {
+                    collectNames(statement.getChild(j), reads);
+                }
+            } else if (isRead(statement) && statement.getChildCount() > 0) {
+                AST args = statement.getChild(0);
+                for (int j = 0; j < args.getChildCount(); j++) {
+                    if (args.getChild(j).kind == NodeKind.VAR_USE_NODE) {
+                        writes.add(args.getChild(j).stringData.toLowerCase());
+                    } else {
+                        collectNames(args.getChild(j), reads);
+                    }
+                }
+            } else {
+                collectNames(statement, reads);
+            }
+            for (String name : reads) {
+                if (candidates.contains(name) && !assigned.contains(name)) {
+                    callee.needsInit.add(name);
+                }
+            }
+            assigned.addAll(writes);
+        }
+        // Função cujo resultado não é sempre atribuído devolve zero
+        if (callee.isFunction() && !assigned.contains(result)) {
+            callee.needsInit.add(result);
+        }
+        for (String name : callee.needsInit) {
+            if (types.get(name) == Type.CHAR) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Statements do nível de cima de um begin ... end
+     */
+    private static List<AST> statements(AST compound) {
+        List<AST> statements = new ArrayList<>();
+        for (int i = 0; i < compound.getChildCount(); i++) {
+            AST child = compound.getChild(i);
+            if (child.kind == NodeKind.BLOCK_NODE) {
+                for (int j = 0; j < child.getChildCount(); j++) {
+                    statements.add(child.getChild(j));
+                }
+            } else {
+                statements.add(child);
+            }
+        }
+        return statements;
+    }
+
+    private static void collectNames(AST node, Set<String> names) {
+        if (node.kind == NodeKind.VAR_USE_NODE || node.kind == NodeKind.ARRAY_ACCESS_NODE) {
+            names.add(node.stringData.toLowerCase());
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collectNames(node.getChild(i), names);
+        }
+    }
+
+    private static int size(AST node) {
+        int size = 1;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            size += size(node.getChild(i));
+        }
+        return size;
+    }
+
+    // ==================== Statements ====================
+
+    /**
+     * Expande as chamadas do statement; retorna o nó que o substitui
+     */
+    private AST statement(AST node, int loops) {
+        switch (node.kind) {
+            case COMPOUND_STMT_NODE, BLOCK_NODE -> {
+                // begin ... end: COMPOUND_STMT_NODE -> BLOCK_NODE -> statements
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    node.setChild(i, statement(node.getChild(i), loops));
+                }
+                return node;
+            }
+            case WHILE_NODE -> {
+                // A condição é reavaliada a cada volta: chamadas nela ficam
+                node.setChild(1, statement(node.getChild(1), loops + 1));
+                return node;
+            }
+            case IF_NODE -> {
+                List<AST> prelude = new ArrayList<>();
+                hoistCalls(node, 0, 1, prelude, loops);
+                for (int i = 1; i < node.getChildCount(); i++) {
+                    node.setChild(i, statement(node.getChild(i), loops));
+                }
+                return withPrelude(prelude, node);
+            }
+            case ASSIGN_NODE -> {
+                List<AST> prelude = new ArrayList<>();
+                hoistCalls(node, 0, node.getChildCount(), prelude, loops);
+                return withPrelude(prelude, node);
+            }
+            case PROC_CALL_NODE -> {
+                List<AST> prelude = new ArrayList<>();
+                AST args = node.getChildCount() > 0 ? node.getChild(0) : null;
+                if (args != null) {
+                    hoistCalls(args, 0, args.getChildCount(), prelude, loops);
+                }
+                Symbol symbol = lookup(node.stringData);
+                if (symbol != null && symbol.callee != null && !symbol.callee.isFunction() &&
+                    (args == null || !containsCall(args)) && canExpand(symbol.callee, args, loops)) {
+                    prelude.addAll(expand(symbol.callee, args));
+                    return compound(prelude);
+                }
+                return withPrelude(prelude, node);
+            }
+            default -> {
+                return node;
+            }
+        }
+    }
+
+    private static AST withPrelude(List<AST> prelude, AST node) {
+        if (prelude.isEmpty()) {
+            return node;
+        }
+        prelude.add(node);
+        return compound(prelude);
+    }
+
+    private static AST compound(List<AST> statements) {
+        AST list = new AST(NodeKind.BLOCK_NODE, Type.NO_TYPE);
+        for (AST statement : statements) {
+            list.addChild(statement);
+        }
+        return AST.newSubtree(NodeKind.COMPOUND_STMT_NODE, Type.NO_TYPE, list);
+    }
+
+    /**
+     * Calcula antes do statement as chamadas de função nos filhos
+     * [from, to) do nó, se todas puderem ser expandidas
+     */
+    private void hoistCalls(AST node, int from, int to, List<AST> prelude, int loops) {
+        boolean[] blocked = new boolean[1];
+        boolean any = false;
+        for (int i = from; i < to; i++) {
+            any |= findCalls(node.getChild(i), false, loops, blocked);
+        }
+        if (!any || blocked[0]) {
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            node.setChild(i, replaceCalls(node.getChild(i), prelude));
+        }
+    }
+
+    /**
+     * Procura chamadas na expressão; marca blocked se alguma não pode ser
+     * calculada antes do statement
+     */
+    private boolean findCalls(AST node, boolean conditional, int loops, boolean[] blocked) {
+        boolean found = false;
+        Callee callee = calledFunction(node);
+        if (callee != null || isCall(node)) {
+            found = true;
+            AST args = node.kind == NodeKind.FUNC_CALL_NODE && node.getChildCount() > 0 ? node.getChild(0) : null;
+            if (callee == null || conditional || !callee.pure || !canExpand(callee, args, loops)) {
+                blocked[0] = true;
+            }
+        }
+        boolean shortCircuit = node.kind == NodeKind.AND_NODE || node.kind == NodeKind.OR_NODE;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            found |= findCalls(node.getChild(i), conditional || shortCircuit, loops, blocked);
+        }
+        return found;
+    }
+
+    private boolean isCall(AST node) {
+        if (node.kind == NodeKind.FUNC_CALL_NODE) {
+            return true;
+        }
+        if (node.kind == NodeKind.VAR_USE_NODE) {
+            Symbol symbol = lookup(node.stringData);
+            return symbol != null && symbol.kind == Kind.ROUTINE;
+        }
+        return false;
+    }
+
+    private boolean containsCall(AST node) {
+        if (isCall(node)) {
+            return true;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (containsCall(node.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Função expansível chamada pelo nó (FUNC_CALL_NODE, ou VAR_USE_NODE de
+     * função sem parâmetros), ou null
+     */
+    private Callee calledFunction(AST node) {
+        if (node.kind != NodeKind.FUNC_CALL_NODE && node.kind != NodeKind.VAR_USE_NODE) {
+            return null;
+        }
+        Symbol symbol = lookup(node.stringData);
+        if (symbol == null || symbol.kind != Kind.ROUTINE || symbol.callee == null ||
+            !symbol.callee.isFunction()) {
+            return null;
+        }
+        return symbol.callee;
+    }
+
+    /**
+     * Troca as chamadas da expressão (internas primeiro) pela variável de
+     * resultado, acrescentando as expansões ao prelúdio
+     */
+    private AST replaceCalls(AST node, List<AST> prelude) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            node.setChild(i, replaceCalls(node.getChild(i), prelude));
+        }
+        Callee callee = calledFunction(node);
+        if (callee == null) {
+            return node;
+        }
+        AST args = node.kind == NodeKind.FUNC_CALL_NODE && node.getChildCount() > 0 ? node.getChild(0) : null;
+        List<AST> expansion = expand(callee, args);
+        // A última variável criada pela expansão é o resultado
+        AST result = pendingDeclarations.get(pendingDeclarations.size() - 1);
+        prelude.addAll(expansion);
+        return new AST(NodeKind.VAR_USE_NODE, result.stringData, result.type);
+    }
+
+    // ==================== Expansão ====================
+
+    /**
+     * A chamada pode ser expandida aqui: tamanho, argumentos VAR e nomes
+     * livres que significam o mesmo no chamador
+     */
+    private boolean canExpand(Callee callee, AST args, int loops) {
+        String name = callee.declaration.stringData.toLowerCase();
+        boolean hot = loops > 0 || (callCounts.getOrDefault(name, 0) == 1 && !callee.loops);
+        if (callee.size > (hot ? HOT_SIZE_LIMIT : SIZE_LIMIT)) {
+            return false;
+        }
+        int count = args != null ? args.getChildCount() : 0;
+        if (count != callee.params.size()) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            AST param = callee.params.get(i);
+            AST arg = args.getChild(i);
+            if (param.intData == 1 && !isReferenceArgument(arg)) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, Symbol> free : callee.freeNames.entrySet()) {
+            if (lookup(free.getKey()) != free.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Argumento VAR que pode substituir o parâmetro em cada uso: variável,
+     * ou elemento de array de índice constante
+     */
+    private boolean isReferenceArgument(AST arg) {
+        if (arg.kind == NodeKind.ARRAY_ACCESS_NODE) {
+            return arg.getChildCount() == 1 && arg.getChild(0).kind == NodeKind.INT_VAL_NODE;
+        }
+        if (arg.kind != NodeKind.VAR_USE_NODE) {
+            return false;
+        }
+        Symbol symbol = lookup(arg.stringData);
+        return symbol != null && (symbol.kind == Kind.VARIABLE || symbol.kind == Kind.REFERENCE);
+    }
+
+    /**
+     * Statements que executam a rotina com os argumentos dados; numa função,
+     * a variável de resultado é a última declarada
+     */
+    private List<AST> expand(Callee callee, AST args) {
+        expanded++;
+        inlinedRoutines.add(callee.declaration);
+        String prefix = "_" + callee.declaration.stringData + expanded + "_";
+        Map<String, AST> replacements = new HashMap<>();
+        List<AST> statements = new ArrayList<>();
+
+        for (int i = 0; i < callee.params.size(); i++) {
+            AST param = callee.params.get(i);
+            AST arg = args.getChild(i);
+            String name = param.stringData.toLowerCase();
+            if (param.intData == 1 || canSubstitute(callee, name, param.type, arg)) {
+                replacements.put(name, arg);
+                continue;
+            }
+            AST variable = newVariable(prefix + param.stringData, param.type);
+            replacements.put(name, variable);
+            AST value = param.type == Type.REAL && arg.type == Type.INTEGER ? Conv.createConvNode(Conv.I2R, arg) : arg;
+            statements.add(AST.newSubtree(NodeKind.ASSIGN_NODE, Type.NO_TYPE, variable.copy(), value));
+        }
+        for (AST local : callee.locals) {
+            AST variable = newVariable(prefix + local.stringData, local.type);
+            replacements.put(local.stringData.toLowerCase(), variable);
+            if (callee.needsInit.contains(local.stringData.toLowerCase())) {
+                statements.add(AST.newSubtree(NodeKind.ASSIGN_NODE, Type.NO_TYPE, variable.copy(), zero(local.type)));
+            }
+        }
+        if (callee.isFunction()) {
+            String name = callee.declaration.stringData.toLowerCase();
+            AST variable = newVariable(prefix + "result", callee.declaration.type);
+            replacements.put(name, variable);
+            if (callee.needsInit.contains(name)) {
+                statements.add(AST.newSubtree(NodeKind.ASSIGN_NODE, Type.NO_TYPE, variable.copy(),
+                                              zero(callee.declaration.type)));
+            }
+        }
+        statements.add(substitute(callee.body, replacements));
+        return statements;
+    }
+
+    /**
+     * O parâmetro por valor pode usar o argumento direto: não é escrito, e
+     * o argumento é um literal ou uma variável que a rotina não altera
+     */
+    private boolean canSubstitute(Callee callee, String name, Type type, AST arg) {
+        if (callee.written.contains(name) || arg.type != type) {
+            return false;
+        }
+        return switch (arg.kind) {
+            case INT_VAL_NODE, REAL_VAL_NODE, BOOL_VAL_NODE -> true;
+            case VAR_USE_NODE -> !callee.writesOutside && isReferenceArgument(arg);
+            default -> false;
+        };
+    }
+
+    private AST newVariable(String name, Type type) {
+        AST declaration = new AST(NodeKind.VAR_DECL_NODE, name, type);
+        pendingDeclarations.add(declaration);
+        declare(name, new Symbol(Kind.VARIABLE));
+        return new AST(NodeKind.VAR_USE_NODE, name, type);
+    }
+
+    private static AST zero(Type type) {
+        return switch (type) {
+            case REAL -> new AST(NodeKind.REAL_VAL_NODE, 0.0f, Type.REAL);
+            case BOOLEAN -> new AST(NodeKind.BOOL_VAL_NODE, 0, Type.BOOLEAN);
+            default -> new AST(NodeKind.INT_VAL_NODE, 0, Type.INTEGER);
+        };
+    }
+
+    /**
+     * Cópia do corpo com os nomes da rotina trocados
+     */
+    private static AST substitute(AST node, Map<String, AST> replacements) {
+        if (node.kind == NodeKind.VAR_USE_NODE) {
+            AST replacement = replacements.get(node.stringData.toLowerCase());
+            if (replacement != null) {
+                return replacement.copy();
+            }
+        }
+        AST copy = node.copy();
+        for (int i = 0; i < copy.getChildCount(); i++) {
+            copy.setChild(i, substitute(node.getChild(i), replacements));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,619 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import typing.Type;
+
+/**
+ * Análise de intervalos das variáveis inteiras, usada para provar que
+ * acessos a arrays ficam dentro dos limites e dispensar a verificação em
+ * tempo de execução (--bounds-check). Roda sobre a AST já dobrada.
+ *
+ * Cada rotina é interpretada abstratamente, statement por statement: uma
+ * atribuição dá à variável o intervalo da expressão, as condições de if e
+ * while restringem os intervalos em cada ramo e os laços iteram até o ponto
+ * fixo, com alargamento (widening) dos limites que crescem. Assim, em
+ *
+ *     i := 1; while i <= 3 do begin a[i] := 0; i := i + 1 end
+ *
+ * o corpo vê i em [1, 3] e a[i] é seguro para array[1..3].
+ *
+ * Só escalares inteiros passados por valor são acompanhados. Chamadas
+ * esquecem as variáveis que a rotina chamada pode alterar (as de fora da
+ * rotina atual, todas se ela declara sub-rotinas, e os argumentos VAR), e
+ * uma escrita num parâmetro VAR esquece as variáveis de fora da rotina.
+ */
+public class RangeAnalysis {
+
+    // Intervalo fechado de inteiros; TOP é qualquer valor
+    private record Range(long low, long high) {
+        static final Range TOP = new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        static Range of(long low, long high) {
+            return low < Integer.MIN_VALUE || high > Integer.MAX_VALUE ? TOP : new Range(low, high);
+        }
+
+        Range hull(Range other) {
+            return new Range(Math.min(low, other.low), Math.max(high, other.high));
+        }
+    }
+
+    // Símbolo visível: variável acompanhada, array com limites, rotina ou
+    // nome que só esconde outro (parâmetro VAR, real, char...)
+    private static class Symbol {
+        final int owner;           // nível da rotina que declara (0 = programa)
+        final boolean tracked;
+        final boolean reference;   // parâmetro VAR
+        final boolean routine;
+        final AST declaration;     // PROC/FUNC_DECL_NODE das rotinas
+        final int low, high;       // limites dos arrays
+        final boolean array;
+
+        Symbol(int owner, boolean tracked, boolean reference, AST declaration, boolean array, int low, int high) {
+            this.owner = owner;
+            this.tracked = tracked;
+            this.reference = reference;
+            this.routine = declaration != null;
+            this.declaration = declaration;
+            this.array = array;
+            this.low = low;
+            this.high = high;
+        }
+    }
+
+    // Estado abstrato: intervalo de cada variável acompanhada (ausente =
+    // qualquer valor); null é um ponto inalcançável
+    private final List<Map<String, Symbol>> scopes = new ArrayList<>();
+
+    // Por nível: a rotina declara sub-rotinas, que podem alterar suas locais
+    private final List<Boolean> declaresRoutines = new ArrayList<>();
+
+    // Acessos vistos em algum estado alcançável, e os que não foram provados
+    private final Set<AST> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<AST> unsafe = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Analisa o programa inteiro
+     */
+    public void analyze(AST programNode) {
+        if (programNode.kind != NodeKind.PROGRAM_NODE) {
+            throw new RuntimeException("Root node must be a PROGRAM_NODE");
+        }
+        if (programNode.getChildCount() > 0) {
+            analyzeRoutine(programNode.getChild(0), null);
+        }
+    }
+
+    /**
+     * O índice do acesso está provadamente dentro dos limites do array
+     */
+    public boolean isSafe(AST arrayAccessNode) {
+        return visited.contains(arrayAccessNode) && !unsafe.contains(arrayAccessNode);
+    }
+
+    public int getAccessCount() {
+        return visited.size();
+    }
+
+    public int getSafeCount() {
+        return visited.size() - unsafe.size();
+    }
+
+    public String report() {
+        return String.format("Bounds checks: %d of %d array accesses proven safe%n", getSafeCount(), getAccessCount());
+    }
+
+    // ==================== Escopos ====================
+
+    private int level() {
+        return scopes.size() - 1;
+    }
+
+    private void declare(String name, Symbol symbol) {
+        scopes.get(level()).put(name.toLowerCase(), symbol);
+    }
+
+    private Symbol lookup(String name) {
+        String key = name.toLowerCase();
+        for (int i = level(); i >= 0; i--) {
+            Symbol symbol = scopes.get(i).get(key);
+            if (symbol != null) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+
+    private Symbol tracked(AST node) {
+        if (node.kind != NodeKind.VAR_USE_NODE) {
+            return null;
+        }
+        Symbol symbol = lookup(node.stringData);
+        return symbol != null && symbol.tracked ? symbol : null;
+    }
+
+    // ==================== Rotinas ====================
+
+    /**
+     * Declarações e corpo de um bloco, num novo escopo; declNode é a
+     * declaração da rotina (null para o programa principal)
+     */
+    private void analyzeRoutine(AST blockNode, AST declNode) {
+        scopes.add(new HashMap<>());
+        declaresRoutines.add(false);
+        if (declNode != null) {
+            if (declNode.kind == NodeKind.FUNC_DECL_NODE) {
+                declare(declNode.stringData, new Symbol(level(), false, false, declNode, false, 0, 0));
+            }
+            for (int i = 0; i < declNode.getChildCount(); i++) {
+                if (declNode.getChild(i).kind == NodeKind.PARAM_LIST_NODE) {
+                    for (AST param : ConstantFolder.parameters(declNode.getChild(i))) {
+                        boolean reference = param.intData == 1;
+                        declare(param.stringData, new Symbol(level(), !reference && param.type == Type.INTEGER,
+                                                             reference, null, false, 0, 0));
+                    }
+                }
+            }
+        }
+
+        Map<Symbol, Range> state = new HashMap<>();
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+            switch (child.kind) {
+                case CONST_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST constDecl = child.getChild(j);
+                        if (constDecl.kind == NodeKind.CONST_DECL_NODE) {
+                            declare(constDecl.stringData, new Symbol(level(), false, false, null, false, 0, 0));
+                        }
+                    }
+                }
+                case VAR_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST varList = child.getChild(j);
+                        for (int k = 0; k < varList.getChildCount(); k++) {
+                            declareVariable(varList.getChild(k));
+                        }
+                    }
+                }
+                case PROC_DECL_NODE, FUNC_DECL_NODE -> {
+                    declare(child.stringData, new Symbol(level(), false, false, child, false, 0, 0));
+                    declaresRoutines.set(level(), true);
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        if (child.getChild(j).kind == NodeKind.BLOCK_NODE) {
+                            analyzeRoutine(child.getChild(j), child);
+                        }
+                    }
+                }
+                default -> state = analyzeStatement(child, state);
+            }
+        }
+        declaresRoutines.remove(level());
+        scopes.remove(level());
+    }
+
+    private void declareVariable(AST varDecl) {
+        AST arrayType = varDecl.getChildCount() > 0 ? varDecl.getChild(0) : null;
+        if (arrayType != null && arrayType.kind == NodeKind.ARRAY_TYPE_NODE) {
+            AST range = arrayType.getChild(0);
+            boolean bounded = range != null && range.getChildCount() == 2 &&
+                              range.getChild(0).kind == NodeKind.INT_VAL_NODE &&
+                              range.getChild(1).kind == NodeKind.INT_VAL_NODE;
+            declare(varDecl.stringData, new Symbol(level(), false, false, null, bounded,
+                                                   bounded ? range.getChild(0).intData : 0,
+                                                   bounded ? range.getChild(1).intData : 0));
+        } else {
+            declare(varDecl.stringData, new Symbol(level(), varDecl.type == Type.INTEGER, false, null, false, 0, 0));
+        }
+    }
+
+    // ==================== Statements ====================
+
+    /**
+     * Estado depois do statement
+     */
+    private Map<Symbol, Range> analyzeStatement(AST node, Map<Symbol, Range> state) {
+        if (state == null) {
+            return null;
+        }
+        switch (node.kind) {
+            case COMPOUND_STMT_NODE -> {
+                AST stmtList = node.getChild(0);
+                for (int i = 0; stmtList != null && i < stmtList.getChildCount(); i++) {
+                    state = analyzeStatement(stmtList.getChild(i), state);
+                }
+                return state;
+            }
+            case ASSIGN_NODE -> {
+                AST target = node.getChild(0);
+                AST value = node.getChild(1);
+                state = copy(state);
+                // O alvo não é chamada nem quando é o nome da função
+                for (int i = 0; i < target.getChildCount(); i++) {
+                    forgetCalls(target.getChild(i), state);
+                }
+                forgetCalls(value, state);
+                checkAccesses(node, state);
+                Symbol symbol = target.kind == NodeKind.VAR_USE_NODE ? lookup(target.stringData) : null;
+                if (symbol != null && symbol.tracked) {
+                    Range range = evaluate(value, state);
+                    if (range.equals(Range.TOP)) {
+                        state.remove(symbol);
+                    } else {
+                        state.put(symbol, range);
+                    }
+                } else if (symbol != null && symbol.reference) {
+                    forgetOuter(state);
+                }
+                return state;
+            }
+            case PROC_CALL_NODE -> {
+                state = copy(state);
+                forgetCalls(node, state);
+                checkAccesses(node, state);
+                String name = node.stringData.toLowerCase();
+                if ((name.equals("read") || name.equals("readln")) && node.getChildCount() > 0) {
+                    AST args = node.getChild(0);
+                    for (int i = 0; i < args.getChildCount(); i++) {
+                        forgetTarget(args.getChild(i), state);
+                    }
+                }
+                return state;
+            }
+            case IF_NODE -> {
+                AST condition = node.getChild(0);
+                state = copy(state);
+                forgetCalls(condition, state);
+                checkAccesses(condition, state);
+                Map<Symbol, Range> thenState = analyzeStatement(node.getChild(1), refine(state, condition, true));
+                Map<Symbol, Range> elseState = refine(state, condition, false);
+                if (node.getChildCount() > 2) {
+                    elseState = analyzeStatement(node.getChild(2), elseState);
+                }
+                return join(thenState, elseState);
+            }
+            case WHILE_NODE -> {
+                return analyzeWhile(node, state);
+            }
+            default -> {
+                state = copy(state);
+                forgetCalls(node, state);
+                checkAccesses(node, state);
+                return state;
+            }
+        }
+    }
+
+    /**
+     * Itera o laço até o estado no teste da condição estabilizar; os
+     * acessos da última iteração são os do ponto fixo
+     */
+    private Map<Symbol, Range> analyzeWhile(AST node, Map<Symbol, Range> entry) {
+        AST condition = node.getChild(0);
+        Map<Symbol, Range> head = copy(entry);
+        while (true) {
+            forgetCalls(condition, head);
+            checkAccesses(condition, head);
+            Map<Symbol, Range> bodyEnd = analyzeStatement(node.getChild(1), refine(head, condition, true));
+            Map<Symbol, Range> next = widen(head, join(entry, bodyEnd));
+            if (next.equals(head)) {
+                return refine(head, condition, false);
+            }
+            head = next;
+        }
+    }
+
+    /**
+     * Alvo de read: a variável passa a ter qualquer valor
+     */
+    private void forgetTarget(AST target, Map<Symbol, Range> state) {
+        if (target.kind != NodeKind.VAR_USE_NODE) {
+            return;
+        }
+        Symbol symbol = lookup(target.stringData);
+        if (symbol != null && symbol.tracked) {
+            state.remove(symbol);
+        } else if (symbol != null && symbol.reference) {
+            forgetOuter(state);
+        }
+    }
+
+    /**
+     * Esquece as variáveis declaradas fora da rotina atual
+     */
+    private void forgetOuter(Map<Symbol, Range> state) {
+        state.keySet().removeIf(symbol -> symbol.owner < level());
+    }
+
+    /**
+     * Efeitos de todas as chamadas da subárvore, aplicados antes de avaliá-la:
+     * vale para qualquer ordem de avaliação dos operandos
+     */
+    private void forgetCalls(AST node, Map<Symbol, Range> state) {
+        if (node == null) {
+            return;
+        }
+        boolean call = node.kind == NodeKind.FUNC_CALL_NODE || node.kind == NodeKind.PROC_CALL_NODE;
+        Symbol callee = call || node.kind == NodeKind.VAR_USE_NODE ? lookup(node.stringData) : null;
+        if (callee != null && callee.routine) {
+            if (declaresRoutines.get(level())) {
+                state.clear();
+            } else {
+                forgetOuter(state);
+            }
+            if (call && node.getChildCount() > 0) {
+                forgetReferenceArguments(callee.declaration, node.getChild(0), state);
+            }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            forgetCalls(node.getChild(i), state);
+        }
+    }
+
+    private void forgetReferenceArguments(AST declaration, AST args, Map<Symbol, Range> state) {
+        List<AST> params = new ArrayList<>();
+        for (int i = 0; i < declaration.getChildCount(); i++) {
+            if (declaration.getChild(i).kind == NodeKind.PARAM_LIST_NODE) {
+                params = ConstantFolder.parameters(declaration.getChild(i));
+            }
+        }
+        for (int i = 0; i < args.getChildCount(); i++) {
+            Symbol symbol = tracked(args.getChild(i));
+            if (symbol != null && (i >= params.size() || params.get(i).intData == 1)) {
+                state.remove(symbol);
+            }
+        }
+    }
+
+    /**
+     * Registra se cada acesso a array da subárvore está dentro dos limites
+     */
+    private void checkAccesses(AST node, Map<Symbol, Range> state) {
+        if (node == null || state == null) {
+            return;
+        }
+        if (node.kind == NodeKind.ARRAY_ACCESS_NODE) {
+            Symbol array = lookup(node.stringData);
+            Range index = evaluate(node.getChild(0), state);
+            visited.add(node);
+            if (array == null || !array.array || index.low() < array.low || index.high() > array.high) {
+                unsafe.add(node);
+            }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            checkAccesses(node.getChild(i), state);
+        }
+    }
+
+    // ==================== Expressões ====================
+
+    private Range evaluate(AST node, Map<Symbol, Range> state) {
+        if (node == null || node.type != Type.INTEGER) {
+            return Range.TOP;
+        }
+        switch (node.kind) {
+            case INT_VAL_NODE -> {
+                return new Range(node.intData, node.intData);
+            }
+            case VAR_USE_NODE -> {
+                Symbol symbol = tracked(node);
+                Range range = symbol != null ? state.get(symbol) : null;
+                return range != null ? range : Range.TOP;
+            }
+            case PAREN_EXPR_NODE -> {
+                return evaluate(node.getChild(0), state);
+            }
+            default -> { }
+        }
+        if (node.getChildCount() != 2) {
+            return Range.TOP;
+        }
+        Range a = evaluate(node.getChild(0), state);
+        Range b = evaluate(node.getChild(1), state);
+        switch (node.kind) {
+            case PLUS_NODE -> {
+                return Range.of(a.low() + b.low(), a.high() + b.high());
+            }
+            case MINUS_NODE -> {
+                return Range.of(a.low() - b.high(), a.high() - b.low());
+            }
+            case TIMES_NODE -> {
+                long[] products = { a.low() * b.low(), a.low() * b.high(), a.high() * b.low(), a.high() * b.high() };
+                long low = products[0];
+                long high = products[0];
+                for (long product : products) {
+                    low = Math.min(low, product);
+                    high = Math.max(high, product);
+                }
+                return Range.of(low, high);
+            }
+            case DIV_NODE -> {
+                // Divisão truncada é monótona no dividendo para divisor fixo
+                if (b.low() != b.high() || b.low() == 0) {
+                    return Range.TOP;
+                }
+                long c = b.low();
+                return c > 0 ? Range.of(a.low() / c, a.high() / c) : Range.of(a.high() / c, a.low() / c);
+            }
+            case MOD_NODE -> {
+                // Resto com o sinal do dividendo e módulo menor que |c|
+                if (b.low() != b.high() || b.low() == 0) {
+                    return Range.TOP;
+                }
+                long m = Math.abs(b.low()) - 1;
+                if (a.low() >= 0) {
+                    return new Range(0, Math.min(m, a.high()));
+                }
+                return new Range(a.high() <= 0 ? Math.max(-m, a.low()) : -m, a.high() <= 0 ? 0 : m);
+            }
+            default -> {
+                return Range.TOP;
+            }
+        }
+    }
+
+    // ==================== Condições ====================
+
+    /**
+     * Estado em que a condição tem o valor dado, ou null se impossível
+     */
+    private Map<Symbol, Range> refine(Map<Symbol, Range> state, AST condition, boolean value) {
+        if (state == null) {
+            return null;
+        }
+        switch (condition.kind) {
+            case PAREN_EXPR_NODE -> {
+                return refine(state, condition.getChild(0), value);
+            }
+            case NOT_NODE -> {
+                return refine(state, condition.getChild(0), !value);
+            }
+            case BOOL_VAL_NODE -> {
+                return (condition.intData != 0) == value ? state : null;
+            }
+            case AND_NODE, OR_NODE -> {
+                if (condition.getChildCount() != 2) {
+                    return state;
+                }
+                AST left = condition.getChild(0);
+                AST right = condition.getChild(1);
+                // and verdadeiro (ou or falso): valem os dois lados
+                if ((condition.kind == NodeKind.AND_NODE) == value) {
+                    return refine(refine(state, left, value), right, value);
+                }
+                return join(refine(state, left, value), refine(state, right, value));
+            }
+            case EQ_NODE, NEQ_NODE, LT_NODE, LE_NODE, GT_NODE, GE_NODE -> {
+                if (condition.getChildCount() != 2) {
+                    return state;
+                }
+                NodeKind op = value ? condition.kind : negated(condition.kind);
+                AST left = condition.getChild(0);
+                AST right = condition.getChild(1);
+                Range a = evaluate(left, state);
+                Range b = evaluate(right, state);
+                Map<Symbol, Range> result = copy(state);
+                if (!restrict(result, left, op, b) || !restrict(result, right, swapped(op), a)) {
+                    return null;
+                }
+                return result;
+            }
+            default -> {
+                return state;
+            }
+        }
+    }
+
+    /**
+     * Restringe a variável em 'node op bound'; false se nenhum valor satisfaz
+     */
+    private boolean restrict(Map<Symbol, Range> state, AST node, NodeKind op, Range bound) {
+        Symbol symbol = node.type == Type.INTEGER ? tracked(node) : null;
+        if (symbol == null) {
+            return true;
+        }
+        Range range = state.getOrDefault(symbol, Range.TOP);
+        long low = range.low();
+        long high = range.high();
+        switch (op) {
+            case LT_NODE -> high = Math.min(high, bound.high() - 1);
+            case LE_NODE -> high = Math.min(high, bound.high());
+            case GT_NODE -> low = Math.max(low, bound.low() + 1);
+            case GE_NODE -> low = Math.max(low, bound.low());
+            case EQ_NODE -> {
+                low = Math.max(low, bound.low());
+                high = Math.min(high, bound.high());
+            }
+            default -> {
+                // x <> c só corta um extremo igual a c
+                if (bound.low() == bound.high()) {
+                    if (low == bound.low()) {
+                        low++;
+                    }
+                    if (high == bound.low()) {
+                        high--;
+                    }
+                }
+            }
+        }
+        if (low > high) {
+            return false;
+        }
+        state.put(symbol, new Range(low, high));
+        return true;
+    }
+
+    private static NodeKind negated(NodeKind op) {
+        return switch (op) {
+            case EQ_NODE -> NodeKind.NEQ_NODE;
+            case NEQ_NODE -> NodeKind.EQ_NODE;
+            case LT_NODE -> NodeKind.GE_NODE;
+            case LE_NODE -> NodeKind.GT_NODE;
+            case GT_NODE -> NodeKind.LE_NODE;
+            default -> NodeKind.LT_NODE;
+        };
+    }
+
+    private static NodeKind swapped(NodeKind op) {
+        return switch (op) {
+            case LT_NODE -> NodeKind.GT_NODE;
+            case LE_NODE -> NodeKind.GE_NODE;
+            case GT_NODE -> NodeKind.LT_NODE;
+            case GE_NODE -> NodeKind.LE_NODE;
+            default -> op;
+        };
+    }
+
+    // ==================== Estados ====================
+
+    private static Map<Symbol, Range> copy(Map<Symbol, Range> state) {
+        return state == null ? null : new HashMap<>(state);
+    }
+
+    /**
+     * Ponto de junção: só sobram as variáveis conhecidas nos dois estados
+     */
+    private static Map<Symbol, Range> join(Map<Symbol, Range> a, Map<Symbol, Range> b) {
+        if (a == null) {
+            return copy(b);
+        }
+        if (b == null) {
+            return copy(a);
+        }
+        Map<Symbol, Range> result = new HashMap<>();
+        for (Map.Entry<Symbol, Range> entry : a.entrySet()) {
+            Range other = b.get(entry.getKey());
+            if (other != null) {
+                result.put(entry.getKey(), entry.getValue().hull(other));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Limites que cresceram desde a iteração anterior vão para o infinito,
+     * o que garante o fim da iteração
+     */
+    private static Map<Symbol, Range> widen(Map<Symbol, Range> previous, Map<Symbol, Range> next) {
+        Map<Symbol, Range> result = new HashMap<>();
+        for (Map.Entry<Symbol, Range> entry : next.entrySet()) {
+            Range old = previous.get(entry.getKey());
+            if (old == null) {
+                continue;
+            }
+            Range range = entry.getValue();
+            long low = range.low() < old.low() ? Integer.MIN_VALUE : old.low();
+            long high = range.high() > old.high() ? Integer.MAX_VALUE : old.high();
+            if (low != Integer.MIN_VALUE || high != Integer.MAX_VALUE) {
+                result.put(entry.getKey(), new Range(low, high));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,580 @@
+package bytecode;
+
+import ast.AST;
+import ast.NodeKind;
+import entries.ArrayEntry;
+import interpreter.FrameLayout;
+import interpreter.Resolver;
+import tables.StrTable;
+import typing.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compila a AST verificada em bytecode para a VM de pilha.
+ * Usa o Resolver do interpretador para os endereços (profundidade, slot);
+ * no frame da VM cada array ocupa slots contíguos, um por elemento.
+ * Parâmetros VAR recebem o endereço do argumento e são acessados com
+ * LOADI/STOREI.
+ */
+public class BytecodeCompiler {
+
+    private final Resolver resolver = new Resolver();
+
+    // Código em construção
+    private int[] code = new int[256];
+    private int size = 0;
+
+    // Altura atual e máxima da pilha de operandos (por rotina)
+    private int stackHeight = 0;
+    private int maxStack = 0;
+
+    // Pool de constantes: começa com as strings da StrTable
+    private final List<String> constants = new ArrayList<>();
+    private final Map<String, Integer> constantIndex = new HashMap<>();
+
+    // Por rotina (mesmo índice do Resolver)
+    private int[][] slotOffsets;
+    private int[] frameSizes;
+    private int[] entries;
+    private int[][] chains;     // cadeia léxica: índice da rotina visível em cada profundidade
+
+    // Rotinas referenciadas ainda não compiladas
+    private final ArrayDeque<Integer> pending = new ArrayDeque<>();
+
+    // Rotina em compilação
+    private int current;
+
+    public BytecodeCompiler(StrTable strTable) {
+        if (strTable != null) {
+            for (String s : strTable) {
+                constant(s);
+            }
+        }
+    }
+
+    /**
+     * Compila o programa inteiro
+     */
+    public Chunk compile(AST programNode) {
+        resolver.resolve(programNode);
+        int routineCount = resolver.getRoutines().size();
+        slotOffsets = new int[routineCount][];
+        frameSizes = new int[routineCount];
+        entries = new int[routineCount];
+        chains = new int[routineCount][];
+        Arrays.fill(entries, -1);
+
+        // Programa principal
+        current = 0;
+        computeOffsets(0);
+        chains[0] = new int[] {0};
+        entries[0] = 0;
+        if (programNode.getChildCount() > 0) {
+            compileBlock(programNode.getChild(0));
+        }
+        emit(Opcode.HALT);
+
+        // Rotinas chamadas, na ordem em que foram encontradas
+        while (!pending.isEmpty()) {
+            current = pending.poll();
+            entries[current] = size;
+            stackHeight = 0;
+            AST body = resolver.getRoutine(current).getBody();
+            if (body != null) {
+                compileBlock(body);
+            }
+            emit(Opcode.RET);
+        }
+
+        String[] names = new String[routineCount];
+        int[] depths = new int[routineCount];
+        int[] resultSlots = new int[routineCount];
+        int[][] paramSlots = new int[routineCount][];
+        for (int r = 0; r < routineCount; r++) {
+            FrameLayout layout = resolver.getRoutine(r);
+            names[r] = layout.getName();
+            depths[r] = layout.getDepth();
+            if (slotOffsets[r] == null) {
+                // Rotina nunca chamada: não tem código
+                resultSlots[r] = -1;
+                paramSlots[r] = new int[0];
+                continue;
+            }
+            resultSlots[r] = layout.getResultSlot() >= 0 ? slotOffsets[r][layout.getResultSlot()] : -1;
+            List<Integer> params = layout.getParamSlots();
+            paramSlots[r] = new int[params.size()];
+            for (int i = 0; i < params.size(); i++) {
+                paramSlots[r][i] = slotOffsets[r][params.get(i)];
+            }
+        }
+
+        return new Chunk(Arrays.copyOf(code, size), constants.toArray(new String[0]), maxStack,
+                         names, entries, depths, frameSizes, resultSlots, paramSlots);
+    }
+
+    // ==================== Layout dos frames ====================
+
+    /**
+     * Calcula o offset de cada slot do layout; arrays ocupam um slot por elemento
+     */
+    private void computeOffsets(int routine) {
+        FrameLayout layout = resolver.getRoutine(routine);
+        int[] offsets = new int[layout.getSlotCount()];
+        int next = 0;
+        for (int slot = 0; slot < offsets.length; slot++) {
+            offsets[slot] = next;
+            ArrayEntry array = layout.getSlotArray(slot);
+            next += array != null ? array.getArraySize() : 1;
+        }
+        slotOffsets[routine] = offsets;
+        frameSizes[routine] = next;
+    }
+
+    /**
+     * Registra uma rotina chamada a partir da rotina atual
+     */
+    private void reference(int routine) {
+        if (slotOffsets[routine] != null) {
+            return;
+        }
+        computeOffsets(routine);
+        int depth = resolver.getRoutine(routine).getDepth();
+        int[] chain = Arrays.copyOf(chains[current], depth + 1);
+        chain[depth] = routine;
+        chains[routine] = chain;
+        pending.add(routine);
+    }
+
+    private FrameLayout layoutAt(int depth) {
+        return resolver.getRoutine(chains[current][depth]);
+    }
+
+    private int offsetOf(AST node) {
+        return slotOffsets[chains[current][node.depth]][node.slot];
+    }
+
+    // Slot extra no frame atual (argumentos VAR que não são variáveis)
+    private int hiddenSlot() {
+        return frameSizes[current]++;
+    }
+
+    private int constant(String s) {
+        Integer index = constantIndex.get(s);
+        if (index == null) {
+            index = constants.size();
+            constants.add(s);
+            constantIndex.put(s, index);
+        }
+        return index;
+    }
+
+    // ==================== Emissão ====================
+
+    private void emit(int op, int... operands) {
+        ensureCapacity(1 + operands.length);
+        code[size++] = op;
+        for (int operand : operands) {
+            code[size++] = operand;
+        }
+        adjustStack(Opcode.STACK_EFFECT[op]);
+    }
+
+    private void adjustStack(int delta) {
+        stackHeight += delta;
+        maxStack = Math.max(maxStack, stackHeight);
+    }
+
+    private void ensureCapacity(int words) {
+        if (size + words > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + words));
+        }
+    }
+
+    /**
+     * Emite um desvio com destino a preencher; retorna a posição do operando
+     */
+    private int emitJump(int op) {
+        emit(op, -1);
+        return size - 1;
+    }
+
+    private void patch(int operandPos) {
+        code[operandPos] = size;
+    }
+
+    // ==================== Blocos e statements ====================
+
+    private void compileBlock(AST blockNode) {
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+            switch (child.kind) {
+                case CONST_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST constDecl = child.getChild(j);
+                        if (constDecl.kind == NodeKind.CONST_DECL_NODE && constDecl.getChildCount() > 0) {
+                            compileAs(constDecl.getChild(0), constDecl.type);
+                            emit(Opcode.STORE, constDecl.depth, offsetOf(constDecl));
+                        }
+                    }
+                }
+                case VAR_SECTION_NODE -> {
+                    // Frames começam zerados (0, 0.0, false, '\0'); só strings precisam de valor inicial
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST varList = child.getChild(j);
+                        for (int k = 0; k < varList.getChildCount(); k++) {
+                            AST varDecl = varList.getChild(k);
+                            if (varDecl.kind == NodeKind.VAR_DECL_NODE && varDecl.type == Type.STRING) {
+                                emit(Opcode.CONST, constant(""));
+                                emit(Opcode.STORE, varDecl.depth, offsetOf(varDecl));
+                            }
+                        }
+                    }
+                }
+                case COMPOUND_STMT_NODE -> compileStatement(child);
+                default -> {
+                    // Subrotinas são compiladas a partir das chamadas
+                }
+            }
+        }
+    }
+
+    private void compileStatement(AST stmtNode) {
+        switch (stmtNode.kind) {
+            case ASSIGN_NODE -> compileAssignment(stmtNode);
+            case PROC_CALL_NODE -> compileProcedureCall(stmtNode);
+            case COMPOUND_STMT_NODE -> {
+                if (stmtNode.getChildCount() > 0) {
+                    AST stmtList = stmtNode.getChild(0);
+                    for (int i = 0; i < stmtList.getChildCount(); i++) {
+                        compileStatement(stmtList.getChild(i));
+                    }
+                }
+            }
+            case IF_NODE -> {
+                compileExpr(stmtNode.getChild(0));
+                int toElse = emitJump(Opcode.JZ);
+                compileStatement(stmtNode.getChild(1));
+                if (stmtNode.getChildCount() > 2) {
+                    int toEnd = emitJump(Opcode.JMP);
+                    patch(toElse);
+                    compileStatement(stmtNode.getChild(2));
+                    patch(toEnd);
+                } else {
+                    patch(toElse);
+                }
+            }
+            case WHILE_NODE -> {
+                int top = size;
+                compileExpr(stmtNode.getChild(0));
+                int toEnd = emitJump(Opcode.JZ);
+                emit(Opcode.TICK);
+                compileStatement(stmtNode.getChild(1));
+                emit(Opcode.JMP, top);
+                patch(toEnd);
+            }
+            case RETURN_NODE -> {
+                FrameLayout layout = resolver.getRoutine(current);
+                if (layout.getResultSlot() < 0) {
+                    throw new RuntimeException("Return statement outside of function");
+                }
+                if (stmtNode.getChildCount() > 0) {
+                    compileAs(stmtNode.getChild(0), layout.getSlotType(layout.getResultSlot()));
+                    emit(Opcode.STORE, layout.getDepth(), slotOffsets[current][layout.getResultSlot()]);
+                }
+            }
+            default -> {
+                // EMPTY_STMT_NODE e statements sem efeito
+            }
+        }
+    }
+
+    private void compileAssignment(AST assignNode) {
+        AST varNode = assignNode.getChild(0);
+        AST exprNode = assignNode.getChild(1);
+
+        if (varNode.slot < 0) {
+            throw new RuntimeException("Variable '" + varNode.stringData + "' not declared");
+        }
+        FrameLayout layout = layoutAt(varNode.depth);
+        if (varNode.kind == NodeKind.ARRAY_ACCESS_NODE) {
+            ArrayEntry array = layout.getSlotArray(varNode.slot);
+            // Valor antes do índice, como no interpretador: uma chamada no
+            // lado direito pode alterar as variáveis do índice
+            compileAs(exprNode, array.getElementType());
+            compileAs(varNode.getChild(0), Type.INTEGER);
+            emit(Opcode.ASTORE, varNode.depth, offsetOf(varNode), array.getStartIndex(), array.getEndIndex());
+        } else {
+            compileAs(exprNode, layout.getSlotType(varNode.slot));
+            emit(layout.isReference(varNode.slot) ? Opcode.STOREI : Opcode.STORE, varNode.depth, offsetOf(varNode));
+        }
+    }
+
+    private void compileProcedureCall(AST procCallNode) {
+        String procName = procCallNode.stringData.toLowerCase();
+        AST args = procCallNode.getChild(0);
+        int argCount = args != null ? args.getChildCount() : 0;
+
+        switch (procName) {
+            case "writeln", "write" -> {
+                for (int i = 0; i < argCount; i++) {
+                    if (i > 0) {
+                        emit(Opcode.PRINT_SP);
+                    }
+                    AST arg = args.getChild(i);
+                    compileExpr(arg);
+                    emit(switch (arg.type) {
+                        case REAL -> Opcode.PRINT_F;
+                        case BOOLEAN -> Opcode.PRINT_B;
+                        case CHAR -> Opcode.PRINT_C;
+                        case STRING -> Opcode.PRINT_S;
+                        default -> Opcode.PRINT_I;
+                    });
+                }
+                if (procName.equals("writeln")) {
+                    emit(Opcode.PRINT_NL);
+                }
+            }
+            case "read", "readln" -> {
+                for (int i = 0; i < argCount; i++) {
+                    emit(compileReadTarget(args.getChild(i)));
+                }
+                if (procName.equals("readln")) {
+                    emit(Opcode.READLN);
+                }
+            }
+            default -> {
+                if (procCallNode.slot < 0) {
+                    throw new RuntimeException("Procedure '" + procName + "' not found");
+                }
+                compileCall(procCallNode);
+                if (resolver.getRoutine(procCallNode.slot).getResultSlot() >= 0) {
+                    // Função chamada como statement: descarta o resultado
+                    emit(Opcode.POP);
+                }
+            }
+        }
+    }
+
+    /**
+     * Empilha os argumentos (convertidos ao tipo do parâmetro) e chama a rotina
+     */
+    private void compileCall(AST callNode) {
+        int routine = callNode.slot;
+        reference(routine);
+        FrameLayout layout = resolver.getRoutine(routine);
+        List<Integer> params = layout.getParamSlots();
+        AST args = callNode.kind == NodeKind.VAR_USE_NODE ? null : callNode.getChild(0);
+        int argCount = args != null ? args.getChildCount() : 0;
+        if (argCount != params.size()) {
+            throw new RuntimeException("Wrong number of arguments for " + callNode.stringData.toLowerCase());
+        }
+        for (int i = 0; i < argCount; i++) {
+            if (layout.isReference(params.get(i))) {
+                compileAddress(args.getChild(i));
+            } else {
+                compileAs(args.getChild(i), layout.getSlotType(params.get(i)));
+            }
+        }
+        emit(Opcode.CALL, routine);
+        adjustStack(-argCount + (layout.getResultSlot() >= 0 ? 1 : 0));
+    }
+
+    /**
+     * Empilha o endereço de um argumento de read/readln e retorna a leitura
+     * correspondente ao seu tipo
+     */
+    private int compileReadTarget(AST target) {
+        Type type;
+        if (target.kind == NodeKind.VAR_USE_NODE && target.slot >= 0) {
+            FrameLayout layout = layoutAt(target.depth);
+            if (layout.getSlotKind(target.slot) == FrameLayout.SlotKind.CONST ||
+                layout.getSlotArray(target.slot) != null) {
+                throw new RuntimeException("Cannot read into '" + target.stringData + "'");
+            }
+            type = layout.getSlotType(target.slot);
+        } else if (target.kind == NodeKind.ARRAY_ACCESS_NODE && target.slot >= 0) {
+            type = layoutAt(target.depth).getSlotArray(target.slot).getElementType();
+        } else {
+            throw new RuntimeException("Argument of read must be a variable");
+        }
+        int opcode = switch (type) {
+            case INTEGER -> Opcode.READ_I;
+            case REAL -> Opcode.READ_F;
+            case CHAR -> Opcode.READ_C;
+            default -> throw new RuntimeException("Cannot read a value of type " + type +
+                                                  " into '" + target.stringData + "'");
+        };
+        compileAddress(target);
+        return opcode;
+    }
+
+    /**
+     * Empilha o endereço de um argumento passado a parâmetro VAR. Um argumento
+     * que não é variável é copiado para um slot oculto do frame atual.
+     */
+    private void compileAddress(AST argNode) {
+        if (argNode.kind == NodeKind.VAR_USE_NODE && argNode.depth >= 0) {
+            FrameLayout layout = layoutAt(argNode.depth);
+            if (layout.isReference(argNode.slot)) {
+                // Repassa o endereço recebido
+                emit(Opcode.LOAD, argNode.depth, offsetOf(argNode));
+                return;
+            }
+            if (layout.getSlotArray(argNode.slot) == null) {
+                emit(Opcode.ADDR, argNode.depth, offsetOf(argNode));
+                return;
+            }
+        } else if (argNode.kind == NodeKind.ARRAY_ACCESS_NODE && argNode.slot >= 0) {
+            ArrayEntry array = layoutAt(argNode.depth).getSlotArray(argNode.slot);
+            compileAs(argNode.getChild(0), Type.INTEGER);
+            emit(Opcode.AADDR, argNode.depth, offsetOf(argNode), array.getStartIndex(), array.getEndIndex());
+            return;
+        }
+        int temp = hiddenSlot();
+        int depth = resolver.getRoutine(current).getDepth();
+        compileExpr(argNode);
+        emit(Opcode.STORE, depth, temp);
+        emit(Opcode.ADDR, depth, temp);
+    }
+
+    // ==================== Expressões ====================
+
+    /**
+     * Compila a expressão convertendo inteiro para real quando o destino é real
+     */
+    private void compileAs(AST exprNode, Type target) {
+        compileExpr(exprNode);
+        if (target == Type.REAL && exprNode.type == Type.INTEGER) {
+            emit(Opcode.I2F);
+        }
+    }
+
+    private void compileExpr(AST exprNode) {
+        switch (exprNode.kind) {
+            case INT_VAL_NODE -> emit(Opcode.CONST, exprNode.intData);
+            case REAL_VAL_NODE -> emit(Opcode.CONST, Float.floatToRawIntBits(exprNode.floatData));
+            case BOOL_VAL_NODE -> emit(Opcode.CONST, exprNode.intData == 1 ? 1 : 0);
+            case CHAR_VAL_NODE -> emit(Opcode.CONST, charLiteral(exprNode.stringData));
+            case STR_VAL_NODE -> emit(Opcode.CONST, constant(exprNode.stringData != null ? exprNode.stringData : ""));
+
+            case VAR_USE_NODE -> {
+                if (exprNode.depth == Resolver.CALL_DEPTH) {
+                    compileCall(exprNode);
+                } else if (exprNode.slot < 0) {
+                    throw new RuntimeException("Variable '" + exprNode.stringData + "' not initialized");
+                } else {
+                    boolean reference = layoutAt(exprNode.depth).isReference(exprNode.slot);
+                    emit(reference ? Opcode.LOADI : Opcode.LOAD, exprNode.depth, offsetOf(exprNode));
+                }
+            }
+            case ARRAY_ACCESS_NODE -> {
+                ArrayEntry array = exprNode.slot < 0 ? null : layoutAt(exprNode.depth).getSlotArray(exprNode.slot);
+                if (array == null) {
+                    throw new RuntimeException("Array '" + exprNode.stringData + "' not found");
+                }
+                compileAs(exprNode.getChild(0), Type.INTEGER);
+                emit(Opcode.ALOAD, exprNode.depth, offsetOf(exprNode), array.getStartIndex(), array.getEndIndex());
+            }
+
+            case PLUS_NODE -> compileArithmetic(exprNode, Opcode.IADD, Opcode.FADD);
+            case MINUS_NODE -> compileArithmetic(exprNode, Opcode.ISUB, Opcode.FSUB);
+            case TIMES_NODE -> compileArithmetic(exprNode, Opcode.IMUL, Opcode.FMUL);
+            case DIVIDE_NODE -> compileBinary(exprNode, Type.REAL, Opcode.FDIV);
+            case DIV_NODE -> compileBinary(exprNode, Type.INTEGER, Opcode.IDIV);
+            case MOD_NODE -> compileBinary(exprNode, Type.INTEGER, Opcode.IMOD);
+
+            case AND_NODE -> compileBinary(exprNode, Type.BOOLEAN, Opcode.AND);
+            case OR_NODE -> compileBinary(exprNode, Type.BOOLEAN, Opcode.OR);
+            case NOT_NODE -> {
+                compileExpr(exprNode.getChild(0));
+                emit(Opcode.NOT);
+            }
+
+            case EQ_NODE -> compileComparison(exprNode, Opcode.IEQ, Opcode.FEQ);
+            case NEQ_NODE -> compileComparison(exprNode, Opcode.INE, Opcode.FNE);
+            case LT_NODE -> compileComparison(exprNode, Opcode.ILT, Opcode.FLT);
+            case GT_NODE -> compileComparison(exprNode, Opcode.IGT, Opcode.FGT);
+            case LE_NODE -> compileComparison(exprNode, Opcode.ILE, Opcode.FLE);
+            case GE_NODE -> compileComparison(exprNode, Opcode.IGE, Opcode.FGE);
+
+            case I2R_NODE -> compileAs(exprNode.getChild(0), Type.REAL);
+            case PAREN_EXPR_NODE -> compileExpr(exprNode.getChild(0));
+
+            case FUNC_CALL_NODE -> {
+                if (exprNode.slot >= 0) {
+                    compileCall(exprNode);
+                    return;
+                }
+                String funcName = exprNode.stringData.toLowerCase();
+                AST args = exprNode.getChild(0);
+                if ((funcName.equals("abs") || funcName.equals("sqrt")) && (args == null || args.getChildCount() == 0)) {
+                    throw new RuntimeException("Function '" + funcName + "' requires one argument");
+                }
+                switch (funcName) {
+                    case "abs" -> {
+                        AST arg = args.getChild(0);
+                        if (arg.type == Type.INTEGER) {
+                            compileExpr(arg);
+                            emit(Opcode.IABS);
+                        } else {
+                            compileAs(arg, Type.REAL);
+                            emit(Opcode.FABS);
+                        }
+                    }
+                    case "sqrt" -> {
+                        compileAs(args.getChild(0), Type.REAL);
+                        emit(Opcode.SQRT);
+                    }
+                    default -> throw new RuntimeException("Function '" + funcName + "' not found");
+                }
+            }
+
+            default -> throw new RuntimeException("Unsupported expression node: " + exprNode.kind);
+        }
+    }
+
+    private void compileArithmetic(AST opNode, int intOp, int realOp) {
+        if (opNode.type == Type.INTEGER) {
+            compileBinary(opNode, Type.INTEGER, intOp);
+        } else {
+            compileBinary(opNode, Type.REAL, realOp);
+        }
+    }
+
+    private void compileBinary(AST opNode, Type operandType, int op) {
+        compileAs(opNode.getChild(0), operandType);
+        compileAs(opNode.getChild(1), operandType);
+        emit(op);
+    }
+
+    private void compileComparison(AST opNode, int intOp, int realOp) {
+        Type left = opNode.getChild(0).type;
+        Type right = opNode.getChild(1).type;
+        if (left == Type.REAL || right == Type.REAL) {
+            compileBinary(opNode, Type.REAL, realOp);
+        } else if (left == Type.STRING) {
+            compileBinary(opNode, Type.STRING, Opcode.SCMP);
+            emit(Opcode.CONST, 0);
+            emit(intOp);
+        } else {
+            // Inteiros, chars e booleanos comparam como int
+            compileBinary(opNode, left, intOp);
+        }
+    }
+
+    private static char charLiteral(String charStr) {
+        if (charStr != null && charStr.length() >= 3) {
+            // Remove aspas simples se estiverem presentes
+            if (charStr.startsWith("'") && charStr.endsWith("'")) {
+                charStr = charStr.substring(1, charStr.length() - 1);
+            }
+            return charStr.length() > 0 ? charStr.charAt(0) : '\0';
+        }
+        return '\0';
+    }
+}
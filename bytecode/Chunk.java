@@ -0,0 +1,166 @@
+package bytecode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Programa compilado para a VM: código, pool de strings e tabela de rotinas.
+ * Pode ser salvo em disco e recarregado sem repetir a análise do fonte.
+ */
+public final class Chunk {
+
+    // Identificação e versão do formato em disco
+    private static final int MAGIC = 0x50424336; // "PBC6"
+
+    final int[] code;
+    final String[] constants;
+    final int maxStack;         // maior altura da pilha dentro de uma rotina
+
+    // Tabela de rotinas (índice 0 = programa principal)
+    final String[] routineNames;
+    final int[] entry;          // pc inicial
+    final int[] depth;          // profundidade léxica
+    final int[] frameSize;      // número de slots do frame
+    final int[] resultSlot;     // slot do resultado, -1 em procedimentos
+    final int[][] paramSlots;   // slots dos parâmetros, na ordem de declaração
+
+    Chunk(int[] code, String[] constants, int maxStack, String[] routineNames, int[] entry, int[] depth,
+          int[] frameSize, int[] resultSlot, int[][] paramSlots) {
+        this.code = code;
+        this.constants = constants;
+        this.maxStack = maxStack;
+        this.routineNames = routineNames;
+        this.entry = entry;
+        this.depth = depth;
+        this.frameSize = frameSize;
+        this.resultSlot = resultSlot;
+        this.paramSlots = paramSlots;
+    }
+
+    public int getMaxDepth() {
+        int max = 0;
+        for (int d : depth) {
+            max = Math.max(max, d);
+        }
+        return max;
+    }
+
+    /**
+     * Identificação do fonte gravada no cabeçalho: caminho canônico e hash
+     * do conteúdo, para que o cache de um arquivo homônimo não seja usado
+     */
+    public static String sourceKey(Path source) throws IOException {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(source));
+            StringBuilder sb = new StringBuilder(source.toRealPath().toString()).append(':');
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Salva o chunk em formato binário; source é a chave de sourceKey()
+     */
+    public void save(Path path, String source) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(source);
+            out.writeInt(maxStack);
+            out.writeInt(constants.length);
+            for (String s : constants) {
+                out.writeUTF(s);
+            }
+            out.writeInt(routineNames.length);
+            for (int r = 0; r < routineNames.length; r++) {
+                out.writeUTF(routineNames[r]);
+                out.writeInt(entry[r]);
+                out.writeInt(depth[r]);
+                out.writeInt(frameSize[r]);
+                out.writeInt(resultSlot[r]);
+                out.writeInt(paramSlots[r].length);
+                for (int slot : paramSlots[r]) {
+                    out.writeInt(slot);
+                }
+            }
+            out.writeInt(code.length);
+            for (int word : code) {
+                out.writeInt(word);
+            }
+        }
+    }
+
+    /**
+     * Carrega um chunk salvo por save() a partir do mesmo fonte
+     */
+    public static Chunk load(Path path, String source) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a bytecode file: " + path);
+            }
+            if (!in.readUTF().equals(source)) {
+                throw new IOException("Bytecode compiled from another source: " + path);
+            }
+            int maxStack = in.readInt();
+            String[] constants = new String[in.readInt()];
+            for (int i = 0; i < constants.length; i++) {
+                constants[i] = in.readUTF();
+            }
+            int routineCount = in.readInt();
+            String[] names = new String[routineCount];
+            int[] entry = new int[routineCount];
+            int[] depth = new int[routineCount];
+            int[] frameSize = new int[routineCount];
+            int[] resultSlot = new int[routineCount];
+            int[][] paramSlots = new int[routineCount][];
+            for (int r = 0; r < routineCount; r++) {
+                names[r] = in.readUTF();
+                entry[r] = in.readInt();
+                depth[r] = in.readInt();
+                frameSize[r] = in.readInt();
+                resultSlot[r] = in.readInt();
+                paramSlots[r] = new int[in.readInt()];
+                for (int i = 0; i < paramSlots[r].length; i++) {
+                    paramSlots[r][i] = in.readInt();
+                }
+            }
+            int[] code = new int[in.readInt()];
+            for (int i = 0; i < code.length; i++) {
+                code[i] = in.readInt();
+            }
+            return new Chunk(code, constants, maxStack, names, entry, depth, frameSize, resultSlot, paramSlots);
+        }
+    }
+
+    /**
+     * Listagem legível do código, para depuração
+     */
+    public String disassemble() {
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < routineNames.length; r++) {
+            sb.append(String.format("; routine %d %s: entry=%d depth=%d frame=%d%n",
+                                    r, routineNames[r], entry[r], depth[r], frameSize[r]));
+        }
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            sb.append(String.format("%5d  %-8s", pc, Opcode.NAMES[op]));
+            for (int i = 1; i <= Opcode.OPERANDS[op]; i++) {
+                sb.append(' ').append(code[pc + i]);
+            }
+            sb.append(System.lineSeparator());
+            pc += 1 + Opcode.OPERANDS[op];
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package bytecode;
+
+/**
+ * Opcodes da VM de pilha. Cada instrução ocupa uma posição do array de código
+ * seguida de seus operandos imediatos (ver OPERANDS).
+ *
+ * Todos os valores na pilha e nos frames são int: inteiros, booleanos (0/1) e
+ * chars diretamente, reais como os bits do float (Float.floatToRawIntBits) e
+ * strings como índices no pool de constantes. Parâmetros VAR guardam o
+ * endereço absoluto (índice em mem) da variável referenciada.
+ */
+public final class Opcode {
+
+    private Opcode() {
+    }
+
+    // Constantes e variáveis
+    public static final int CONST  = 0;   // valor          -> empilha o valor imediato
+    public static final int LOAD   = 1;   // depth slot     -> empilha mem[display[depth] + slot]
+    public static final int STORE  = 2;   // depth slot     -> desempilha em mem[display[depth] + slot]
+    public static final int ALOAD  = 3;   // depth slot lo hi -> índice na pilha, empilha o elemento
+    public static final int ASTORE = 4;   // depth slot lo hi -> valor e índice na pilha
+    public static final int POP    = 5;
+
+    // Aritmética inteira
+    public static final int IADD = 6;
+    public static final int ISUB = 7;
+    public static final int IMUL = 8;
+    public static final int IDIV = 9;
+    public static final int IMOD = 10;
+
+    // Aritmética real
+    public static final int FADD = 11;
+    public static final int FSUB = 12;
+    public static final int FMUL = 13;
+    public static final int FDIV = 14;
+    public static final int I2F  = 15;
+
+    // Comparações (resultado 0/1)
+    public static final int IEQ = 16;
+    public static final int INE = 17;
+    public static final int ILT = 18;
+    public static final int IGT = 19;
+    public static final int ILE = 20;
+    public static final int IGE = 21;
+    public static final int FEQ = 22;
+    public static final int FNE = 23;
+    public static final int FLT = 24;
+    public static final int FGT = 25;
+    public static final int FLE = 26;
+    public static final int FGE = 27;
+    public static final int SCMP = 28;   // compara duas strings do pool, empilha -1/0/1
+
+    // Lógica
+    public static final int AND = 29;
+    public static final int OR  = 30;
+    public static final int NOT = 31;
+
+    // Desvios
+    public static final int JMP = 32;    // destino
+    public static final int JZ  = 33;    // destino (desvia se o topo for 0)
+    public static final int TICK = 34;   // consome um passo do orçamento de execução (iteração de laço)
+
+    // Rotinas
+    public static final int CALL = 35;   // índice da rotina
+    public static final int RET  = 36;
+    public static final int HALT = 37;
+
+    // Entrada e saída
+    public static final int PRINT_I = 38;
+    public static final int PRINT_F = 39;
+    public static final int PRINT_B = 40;
+    public static final int PRINT_C = 41;
+    public static final int PRINT_S = 42;
+    public static final int PRINT_SP = 43;
+    public static final int PRINT_NL = 44;
+    public static final int READ_I = 45;  // desempilha um endereço e guarda nele o inteiro lido
+    public static final int READ_F = 46;  // idem, real
+    public static final int READ_C = 47;  // idem, char
+    public static final int READLN = 48;  // descarta o restante da linha de entrada
+
+    // Funções built-in
+    public static final int IABS = 49;
+    public static final int FABS = 50;
+    public static final int SQRT = 51;
+
+    // Referências (parâmetros VAR)
+    public static final int ADDR   = 52;  // depth slot     -> empilha o endereço display[depth] + slot
+    public static final int AADDR  = 53;  // depth slot lo hi -> índice na pilha, empilha o endereço do elemento
+    public static final int LOADI  = 54;  // depth slot     -> empilha mem[mem[display[depth] + slot]]
+    public static final int STOREI = 55;  // depth slot     -> desempilha em mem[mem[display[depth] + slot]]
+
+    public static final String[] NAMES = {
+        "CONST", "LOAD", "STORE", "ALOAD", "ASTORE", "POP",
+        "IADD", "ISUB", "IMUL", "IDIV", "IMOD",
+        "FADD", "FSUB", "FMUL", "FDIV", "I2F",
+        "IEQ", "INE", "ILT", "IGT", "ILE", "IGE",
+        "FEQ", "FNE", "FLT", "FGT", "FLE", "FGE", "SCMP",
+        "AND", "OR", "NOT",
+        "JMP", "JZ", "TICK",
+        "CALL", "RET", "HALT",
+        "PRINT_I", "PRINT_F", "PRINT_B", "PRINT_C", "PRINT_S", "PRINT_SP", "PRINT_NL",
+        "READ_I", "READ_F", "READ_C", "READLN",
+        "IABS", "FABS", "SQRT",
+        "ADDR", "AADDR", "LOADI", "STOREI"
+    };
+
+    // Efeito de cada opcode na altura da pilha (CALL depende da rotina chamada)
+    public static final int[] STACK_EFFECT = {
+        1, 1, -1, 0, -2, -1,
+        -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, 0,
+        -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, 0,
+        0, -1, 0,
+        0, 0, 0,
+        -1, -1, -1, -1, -1, 0, 0,
+        -1, -1, -1, 0,
+        0, 0, 0,
+        1, 0, 1, -1
+    };
+
+    // Número de operandos imediatos de cada opcode
+    public static final int[] OPERANDS = {
+        1, 2, 2, 4, 4, 0,
+        0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0,
+        1, 1, 0,
+        1, 0, 0,
+        0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0,
+        0, 0, 0,
+        2, 4, 2, 2
+    };
+}
@@ -0,0 +1,268 @@
+package bytecode;
+
+import interpreter.Fuel;
+import interpreter.Input;
+import interpreter.Output;
+import interpreter.Values;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Máquina virtual de pilha que executa um Chunk.
+ * Um único laço de despacho sobre o array de código; pilha de operandos,
+ * memória de frames e registros de chamada são arrays de int.
+ */
+public class VM {
+
+    private final Chunk chunk;
+    private final Fuel fuel;
+    private final Output out = Output.console();
+    private final Input input;
+
+    public VM(Chunk chunk, InputStream in) {
+        this(chunk, in, Fuel.standard());
+    }
+
+    /**
+     * VM com orçamento de execução: cada iteração de laço (TICK) e cada
+     * chamada consomem um passo
+     */
+    public VM(Chunk chunk, InputStream in, Fuel fuel) {
+        this.chunk = chunk;
+        this.input = new Input(in, out);
+        this.fuel = fuel;
+    }
+
+    /**
+     * Executa o programa a partir da rotina principal
+     */
+    public void run() {
+        try {
+            execute();
+        } finally {
+            out.flush();
+        }
+    }
+
+    private void execute() {
+        final int[] code = chunk.code;
+        final String[] constants = chunk.constants;
+        final int[] frameSize = chunk.frameSize;
+        final int[] depthOf = chunk.depth;
+        final int maxStack = chunk.maxStack + 1;
+        final Fuel fuel = this.fuel;
+        final int maxCalls = Fuel.MAX_CALL_DEPTH * 4;   // 4 palavras por registro de chamada
+
+        int[] stack = new int[Math.max(64, maxStack * 4)];
+        int[] mem = new int[Math.max(1024, frameSize[0] * 2)];
+        int[] calls = new int[64];
+        int[] display = new int[chunk.getMaxDepth() + 1];
+
+        int sp = 0;         // topo da pilha de operandos
+        int csp = 0;        // topo da pilha de registros de chamada
+        int fp = 0;         // base do frame atual
+        int top = frameSize[0];
+        int routine = 0;
+        int pc = chunk.entry[0];
+
+        while (true) {
+            switch (code[pc++]) {
+                case Opcode.CONST -> stack[sp++] = code[pc++];
+                case Opcode.LOAD -> {
+                    stack[sp++] = mem[display[code[pc]] + code[pc + 1]];
+                    pc += 2;
+                }
+                case Opcode.STORE -> {
+                    mem[display[code[pc]] + code[pc + 1]] = stack[--sp];
+                    pc += 2;
+                }
+                case Opcode.ALOAD -> {
+                    int index = stack[sp - 1];
+                    checkBounds(index, code[pc + 2], code[pc + 3]);
+                    stack[sp - 1] = mem[display[code[pc]] + code[pc + 1] + index - code[pc + 2]];
+                    pc += 4;
+                }
+                case Opcode.ASTORE -> {
+                    int index = stack[--sp];
+                    int value = stack[--sp];
+                    checkBounds(index, code[pc + 2], code[pc + 3]);
+                    mem[display[code[pc]] + code[pc + 1] + index - code[pc + 2]] = value;
+                    pc += 4;
+                }
+                case Opcode.POP -> sp--;
+
+                case Opcode.IADD -> { sp--; stack[sp - 1] += stack[sp]; }
+                case Opcode.ISUB -> { sp--; stack[sp - 1] -= stack[sp]; }
+                case Opcode.IMUL -> { sp--; stack[sp - 1] *= stack[sp]; }
+                case Opcode.IDIV -> {
+                    int b = stack[--sp];
+                    if (b == 0) {
+                        throw new RuntimeException("Integer division by zero");
+                    }
+                    stack[sp - 1] /= b;
+                }
+                case Opcode.IMOD -> {
+                    int b = stack[--sp];
+                    if (b == 0) {
+                        throw new RuntimeException("Modulo by zero");
+                    }
+                    stack[sp - 1] %= b;
+                }
+
+                case Opcode.FADD -> { sp--; stack[sp - 1] = bits(real(stack[sp - 1]) + real(stack[sp])); }
+                case Opcode.FSUB -> { sp--; stack[sp - 1] = bits(real(stack[sp - 1]) - real(stack[sp])); }
+                case Opcode.FMUL -> { sp--; stack[sp - 1] = bits(real(stack[sp - 1]) * real(stack[sp])); }
+                case Opcode.FDIV -> {
+                    float b = real(stack[--sp]);
+                    if (Math.abs(b) < 1e-10) {
+                        throw new RuntimeException("Division by zero");
+                    }
+                    stack[sp - 1] = bits(real(stack[sp - 1]) / b);
+                }
+                case Opcode.I2F -> stack[sp - 1] = bits((float) stack[sp - 1]);
+
+                case Opcode.IEQ -> { sp--; stack[sp - 1] = stack[sp - 1] == stack[sp] ? 1 : 0; }
+                case Opcode.INE -> { sp--; stack[sp - 1] = stack[sp - 1] != stack[sp] ? 1 : 0; }
+                case Opcode.ILT -> { sp--; stack[sp - 1] = stack[sp - 1] < stack[sp] ? 1 : 0; }
+                case Opcode.IGT -> { sp--; stack[sp - 1] = stack[sp - 1] > stack[sp] ? 1 : 0; }
+                case Opcode.ILE -> { sp--; stack[sp - 1] = stack[sp - 1] <= stack[sp] ? 1 : 0; }
+                case Opcode.IGE -> { sp--; stack[sp - 1] = stack[sp - 1] >= stack[sp] ? 1 : 0; }
+                case Opcode.FEQ -> { sp--; stack[sp - 1] = compareReal(stack[sp - 1], stack[sp]) == 0 ? 1 : 0; }
+                case Opcode.FNE -> { sp--; stack[sp - 1] = compareReal(stack[sp - 1], stack[sp]) != 0 ? 1 : 0; }
+                case Opcode.FLT -> { sp--; stack[sp - 1] = compareReal(stack[sp - 1], stack[sp]) < 0 ? 1 : 0; }
+                case Opcode.FGT -> { sp--; stack[sp - 1] = compareReal(stack[sp - 1], stack[sp]) > 0 ? 1 : 0; }
+                case Opcode.FLE -> { sp--; stack[sp - 1] = compareReal(stack[sp - 1], stack[sp]) <= 0 ? 1 : 0; }
+                case Opcode.FGE -> { sp--; stack[sp - 1] = compareReal(stack[sp - 1], stack[sp]) >= 0 ? 1 : 0; }
+                case Opcode.SCMP -> {
+                    sp--;
+                    stack[sp - 1] = Integer.signum(constants[stack[sp - 1]].compareTo(constants[stack[sp]]));
+                }
+
+                case Opcode.AND -> { sp--; stack[sp - 1] &= stack[sp]; }
+                case Opcode.OR -> { sp--; stack[sp - 1] |= stack[sp]; }
+                case Opcode.NOT -> stack[sp - 1] ^= 1;
+
+                case Opcode.JMP -> pc = code[pc];
+                case Opcode.JZ -> pc = stack[--sp] == 0 ? code[pc] : pc + 1;
+                case Opcode.TICK -> fuel.burn();
+
+                case Opcode.CALL -> {
+                    fuel.burn();
+                    if (csp == maxCalls) {
+                        // Recursão sem fim: erro antes de esgotar o heap
+                        throw Fuel.stackOverflow();
+                    }
+                    int callee = code[pc++];
+                    int base = top;
+                    int size = frameSize[callee];
+                    if (base + size > mem.length) {
+                        mem = Arrays.copyOf(mem, Math.max(mem.length * 2, base + size));
+                    }
+                    Arrays.fill(mem, base, base + size, 0);
+
+                    // Argumentos já avaliados no escopo de quem chama
+                    int[] params = chunk.paramSlots[callee];
+                    for (int i = params.length - 1; i >= 0; i--) {
+                        mem[base + params[i]] = stack[--sp];
+                    }
+
+                    if (csp + 4 > calls.length) {
+                        calls = Arrays.copyOf(calls, calls.length * 2);
+                    }
+                    int depth = depthOf[callee];
+                    calls[csp++] = pc;
+                    calls[csp++] = routine;
+                    calls[csp++] = display[depth];
+                    calls[csp++] = fp;
+
+                    display[depth] = base;
+                    fp = base;
+                    top = base + size;
+                    routine = callee;
+                    pc = chunk.entry[callee];
+
+                    if (sp + maxStack > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                }
+                case Opcode.RET -> {
+                    int result = chunk.resultSlot[routine];
+                    if (result >= 0) {
+                        stack[sp++] = mem[fp + result];
+                    }
+                    top = fp;
+                    int depth = depthOf[routine];
+                    fp = calls[--csp];
+                    display[depth] = calls[--csp];
+                    routine = calls[--csp];
+                    pc = calls[--csp];
+                }
+                case Opcode.HALT -> {
+                    return;
+                }
+
+                case Opcode.PRINT_I -> out.printInt(stack[--sp]);
+                case Opcode.PRINT_F -> out.printReal(real(stack[--sp]));
+                case Opcode.PRINT_B -> out.printBool(stack[--sp] != 0);
+                case Opcode.PRINT_C -> out.printChar((char) stack[--sp]);
+                case Opcode.PRINT_S -> out.print(Values.format(constants[stack[--sp]]));
+                case Opcode.PRINT_SP -> out.printChar(' ');
+                case Opcode.PRINT_NL -> out.printChar('\n');
+                case Opcode.READ_I -> mem[stack[--sp]] = input.readInt();
+                case Opcode.READ_F -> mem[stack[--sp]] = bits(input.readReal());
+                case Opcode.READ_C -> mem[stack[--sp]] = input.readChar();
+                case Opcode.READLN -> input.skipLine();
+
+                case Opcode.IABS -> stack[sp - 1] = Math.abs(stack[sp - 1]);
+                case Opcode.FABS -> stack[sp - 1] = bits(Math.abs(real(stack[sp - 1])));
+                case Opcode.SQRT -> {
+                    float f = real(stack[sp - 1]);
+                    if (f < 0) {
+                        throw new RuntimeException("Square root of negative number");
+                    }
+                    stack[sp - 1] = bits((float) Math.sqrt(f));
+                }
+
+                case Opcode.ADDR -> {
+                    stack[sp++] = display[code[pc]] + code[pc + 1];
+                    pc += 2;
+                }
+                case Opcode.AADDR -> {
+                    int index = stack[sp - 1];
+                    checkBounds(index, code[pc + 2], code[pc + 3]);
+                    stack[sp - 1] = display[code[pc]] + code[pc + 1] + index - code[pc + 2];
+                    pc += 4;
+                }
+                case Opcode.LOADI -> {
+                    stack[sp++] = mem[mem[display[code[pc]] + code[pc + 1]]];
+                    pc += 2;
+                }
+                case Opcode.STOREI -> {
+                    mem[mem[display[code[pc]] + code[pc + 1]]] = stack[--sp];
+                    pc += 2;
+                }
+
+                default -> throw new RuntimeException("Invalid opcode " + code[pc - 1] + " at " + (pc - 1));
+            }
+        }
+    }
+
+    private static float real(int bits) {
+        return Float.intBitsToFloat(bits);
+    }
+
+    private static int bits(float value) {
+        return Float.floatToRawIntBits(value);
+    }
+
+    private static int compareReal(int a, int b) {
+        return Float.compare(real(a), real(b));
+    }
+
+    private static void checkBounds(int index, int startIndex, int endIndex) {
+        if (index < startIndex || index > endIndex) {
+            throw new RuntimeException("Array index " + index + " out of bounds [" +
+                                       startIndex + ".." + endIndex + "]");
+        }
+    }
+}
@@ -407,8 +407,8 @@ public class SemanticChecker extends PascalParserBaseVisitor<AST> {
             ParamEntry paramEntry = new ParamEntry(paramName, line, paramType, isVarParam);
             symbolTable.addEntry(paramName, paramEntry);
             
-            // Cria nó AST para o parâmetro
-            AST paramNode = new AST(NodeKind.PARAM_NODE, paramName, paramType);
+            // Cria nó AST para o parâmetro (intData = 1 para parâmetros VAR)
+            AST paramNode = new AST(NodeKind.PARAM_NODE, isVarParam ? 1 : 0, paramName, paramType);
             paramSectionNode.addChild(paramNode);
         }
         
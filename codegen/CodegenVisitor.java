@@ -9,8 +9,31 @@ import tables.SymbolTable;
 import java.util.*;
 
 public class CodegenVisitor {
-    // Acumula o código MIPS gerado
-    private StringBuilder mipsCode = new StringBuilder();
+    // Acumula o código MIPS gerado (seção .text), instrução por instrução
+    private MipsCode mipsCode = new MipsCode();
+    
+    // Otimizador aplicado à seção .text ao final (null desativa)
+    private PeepholeOptimizer peephole = PeepholeOptimizer.standard();
+    private StrengthReduction strengthReduction = new StrengthReduction();
+    
+    // Declarações da seção .data, concatenadas antes do código ao final
+    private StringBuilder dataSection = new StringBuilder();
+    
+    // Pool de constantes reais: bits do float -> label em .data
+    private Map<Integer, String> realConstants = new HashMap<>();
+    
+    // Reais inteiros nesta faixa são montados com li/mtc1/cvt.s.w, sem acesso à memória
+    private static final int SMALL_REAL_LIMIT = 1 << 15;
+    
+    // Registradores para temporários de expressão; $v0/$a0-$a3/$f0/$f12/$f14
+    // ficam para syscalls, argumentos e valores de retorno, e $t9 para
+    // cálculos de endereço
+    private RegisterPool intRegisters = newIntRegisters();
+    private RegisterPool floatRegisters = newFloatRegisters();
+    private static final String SCRATCH = "$t9";
+    
+    // Registradores necessários por subárvore de expressão (Sethi-Ullman)
+    private Map<AST, Integer> registerNeeds = new IdentityHashMap<>();
     
     private StrTable strTable;
     
@@ -31,6 +54,27 @@ public class CodegenVisitor {
     // Ajuda a identificar o bloco principal do programa para tratamento especial.
     private boolean isTopLevelBlock = false;
     
+    // Rotinas que recebem parâmetros em $a0-$a3/$f12/$f14 em vez da pilha
+    private Set<String> registerParamRoutines = new HashSet<>();
+    private boolean registerArguments = false;
+    private static final int INT_ARGUMENT_REGISTERS = 4;
+
+    // Verificação de limites dos arrays (null = desativada); os acessos que a
+    // análise de intervalos provou seguros não são verificados
+    private RangeAnalysis boundsCheck;
+    private boolean emitsBoundsError;
+    private static final String BOUNDS_ERROR = "bounds_error";
+
+    // Subexpressões comuns da atribuição atual, avaliadas uma vez: chave
+    // estrutural -> registrador com o valor ("&" + chave de um acesso a
+    // array -> registrador com o endereço do elemento)
+    private Map<String, String> commonValues = new HashMap<>();
+    private boolean commonSubexpressions = true;
+    private static final int MAX_COMMON_VALUES = 4;
+    private static final String[] REAL_ARGUMENT_REGISTERS = { "$f12", "$f14" };
+    // Registradores de argumento que as syscalls de write/read sobrescrevem
+    private static final Set<String> SYSCALL_ARGUMENT_REGISTERS = Set.of("$a0", "$f12");
+    
     // Classe auxiliar para contexto de função
     private static class FunctionContext {
         public final String name;
@@ -38,6 +82,12 @@ public class CodegenVisitor {
         public final Type returnType;
         public final Map<String, Integer> localVarOffsets = new HashMap<>();
         public int localVarSize = 0;
+        // Parâmetros que continuam nos registradores em que chegaram
+        public final Map<String, String> paramRegisters = new HashMap<>();
+        // Parâmetros que chegam em registradores e são guardados no frame
+        public final Map<String, String> homedParams = new LinkedHashMap<>();
+        public boolean savesReturnAddress = true;
+        public boolean hasFrame = true;
         
         public FunctionContext(String name, boolean isFunction, Type returnType) {
             this.name = name;
@@ -52,25 +102,75 @@ public class CodegenVisitor {
     public String generate(AST program, SymbolTable symbolTable, StrTable stringTable) {
         // Initialize state
         strTable = stringTable;
-        mipsCode = new StringBuilder();
+        mipsCode = new MipsCode();
+        dataSection = new StringBuilder();
+        realConstants = new HashMap<>();
+        intRegisters = newIntRegisters();
+        floatRegisters = newFloatRegisters();
+        registerNeeds = new IdentityHashMap<>();
         labelCounter = 0;
         varLabels = new HashMap<>();
         arrayInfo = new HashMap<>();
         functionInfo = new HashMap<>();
+        registerParamRoutines = new HashSet<>();
         functionStack = new Stack<>();
         currentFunction = null;
         isTopLevelBlock = true;
+        emitsBoundsError = false;
         
         // Generate code
         emitHeader();
         visitNode(program);
         emitFooter();
         
-        return mipsCode.toString();
+        if (strengthReduction != null) {
+            strengthReduction.reduce(mipsCode.instructions());
+        }
+        if (peephole != null) {
+            peephole.optimize(mipsCode.instructions());
+        }
+        return dataSection.append(mipsCode).toString();
+    }
+
+    /**
+     * Define o otimizador peephole da seção .text (null para desativar)
+     */
+    public void setPeephole(PeepholeOptimizer peephole) {
+        this.peephole = peephole;
+    }
+
+    /**
+     * Passa os primeiros argumentos de todas as rotinas em $a0-$a3 e
+     * $f12/$f14 (por padrão só as rotinas folha recebem em registradores)
+     */
+    public void setRegisterArguments(boolean registerArguments) {
+        this.registerArguments = registerArguments;
+    }
+
+    /**
+     * Verifica os índices dos acessos a arrays que a análise não provou
+     * seguros (null para desativar)
+     */
+    public void setBoundsCheck(RangeAnalysis ranges) {
+        this.boundsCheck = ranges;
+    }
+
+    /**
+     * Avalia uma única vez as subexpressões repetidas de cada atribuição
+     */
+    public void setCommonSubexpressions(boolean commonSubexpressions) {
+        this.commonSubexpressions = commonSubexpressions;
+    }
+
+    /**
+     * Define a redução de força aplicada antes do peephole (null para desativar)
+     */
+    public void setStrengthReduction(StrengthReduction strengthReduction) {
+        this.strengthReduction = strengthReduction;
     }
 
     // Método auxiliar para converter string Pascal para MIPS
-    private String convertPascalStringToMips(String pascalStr) {
+    static String convertPascalStringToMips(String pascalStr) {
         if (pascalStr == null) return "\"\"";
         
         // Remove aspas simples se presentes
@@ -89,27 +189,54 @@ public class CodegenVisitor {
     }
 
     private void emitHeader() {
-        mipsCode.append(".data\n");
-        mipsCode.append("newline: .asciiz \"\\n\"\n");
+        dataSection.append(".data\n");
+        dataSection.append("newline: .asciiz \"\\n\"\n");
         
         // Declara strings constantes
         if (strTable != null) {
             for (int i = 0; i < strTable.size(); i++) {
                 String str = strTable.get(i);
                 String mipsStr = convertPascalStringToMips(str);
-                mipsCode.append("str_" + i + ": .asciiz " + mipsStr + "\n");
+                dataSection.append("str_" + i + ": .asciiz " + mipsStr + "\n");
             }
         }
+        dataSection.append("\n");
         
-        mipsCode.append("\n.text\n.globl main\nmain:\n");
+        mipsCode.append(".text\n.globl main\nmain:\n");
         // Inicializa frame pointer para main
         mipsCode.append("move $fp, $sp\n");
     }
 
+    // Acrescenta uma declaração à seção .data, em qualquer ponto da geração
+    private void emitData(String declaration) {
+        dataSection.append(declaration).append('\n');
+    }
+
     // Emite o rodapé do programa MIPS
     private void emitFooter() {
         mipsCode.append("li $v0, 10\n"); // Syscall para encerrar programa
         mipsCode.append("syscall\n");
+
+        // Destino comum das verificações de limites que falham
+        if (emitsBoundsError) {
+            emitData(BOUNDS_ERROR + "_msg: .asciiz \"RUNTIME ERROR: array index out of bounds\\n\"");
+            mipsCode.append(BOUNDS_ERROR + ":\n");
+            mipsCode.append("la $a0, " + BOUNDS_ERROR + "_msg\n");
+            mipsCode.append("li $v0, 4\n");
+            mipsCode.append("syscall\n");
+            mipsCode.append("li $v0, 10\n");
+            mipsCode.append("syscall\n");
+        }
+    }
+
+    private static RegisterPool newIntRegisters() {
+        return new RegisterPool("$t0", "$t1", "$t2", "$t3", "$t4", "$t5", "$t6", "$t7", "$t8",
+                                "$s0", "$s1", "$s2", "$s3", "$s4", "$s5", "$s6", "$s7");
+    }
+
+    private static RegisterPool newFloatRegisters() {
+        return new RegisterPool("$f2", "$f3", "$f4", "$f5", "$f6", "$f7", "$f8", "$f9", "$f10", "$f11",
+                                "$f16", "$f17", "$f18", "$f19", "$f20", "$f21");
     }
 
     // Gera um label único
@@ -159,46 +286,18 @@ public class CodegenVisitor {
             // Implementações para funções
             case FUNC_DECL_NODE -> visitFunctionDeclaration(node);
             case PROC_DECL_NODE -> visitProcedureDeclaration(node);
-            case FUNC_CALL_NODE -> visitFunctionCall(node);
             case PARAM_LIST_NODE -> visitParameterList(node);
             case PARAM_NODE -> visitParameterDeclaration(node);
             
-            // Expressões aritméticas
-            case PLUS_NODE -> visitBinaryOp(node, "add");
-            case MINUS_NODE -> visitBinaryOp(node, "sub");
-            case TIMES_NODE -> visitBinaryOp(node, "mul");
-            case DIVIDE_NODE -> visitRealDivision(node);  
-            case DIV_NODE -> visitIntegerDivision(node);
-            case MOD_NODE -> visitModulo(node);
-            
-            // Expressões lógicas
-            case AND_NODE -> visitLogicalAnd(node);
-            case OR_NODE -> visitLogicalOr(node);
-            case NOT_NODE -> visitLogicalNot(node);
-            
-            // Comparações
-            case EQ_NODE -> visitComparison(node, "eq");
-            case NEQ_NODE -> visitComparison(node, "ne");
-            case LT_NODE -> visitComparison(node, "lt");
-            case GT_NODE -> visitComparison(node, "gt");
-            case LE_NODE -> visitComparison(node, "le");
-            case GE_NODE -> visitComparison(node, "ge");
-            
-            // Valores
-            case INT_VAL_NODE -> visitIntValue(node);
-            case REAL_VAL_NODE -> visitRealValue(node);  
-            case BOOL_VAL_NODE -> visitBoolValue(node);
-            case CHAR_VAL_NODE -> visitCharValue(node);
-            case STR_VAL_NODE -> visitStringValue(node);
-            
-            // Variáveis
-            case VAR_USE_NODE -> visitVariableUse(node);
-            case ARRAY_ACCESS_NODE -> visitArrayAccess(node);
-            
-            // Conversões de tipo
-            case I2R_NODE -> visitIntegerToReal(node);  
-            
             default -> {
+                if (isExpression(node.kind)) {
+                    // Expressão avulsa: avalia e descarta o resultado
+                    String reg = emitExpr(node);
+                    if (reg != null) {
+                        freeRegister(reg);
+                    }
+                    return;
+                }
                 // Para nós não implementados, visita os filhos
                 for (int i = 0; i < node.getChildCount(); i++) {
                     visitNode(node.getChild(i));
@@ -237,8 +336,8 @@ public class CodegenVisitor {
             // --- PASSADA 2: Processar declarações de sub-rotinas ---
             // Agora que as variáveis globais são conhecidas, podemos processar as sub-rotinas.
             // O código MIPS delas será armazenado em um buffer para ser inserido depois do código principal.
-            StringBuilder procedureCodeBuffer = new StringBuilder();
-            StringBuilder originalMipsCode = mipsCode;
+            MipsCode procedureCodeBuffer = new MipsCode();
+            MipsCode originalMipsCode = mipsCode;
             mipsCode = procedureCodeBuffer; // Redireciona a saída de código para o buffer
     
             for (AST subroutine : subroutines) {
@@ -259,7 +358,7 @@ public class CodegenVisitor {
             mipsCode.append("j " + endMainLabel + "\n\n");
             
             // Anexa o código das sub-rotinas que estava no buffer.
-            mipsCode.append(procedureCodeBuffer.toString());
+            mipsCode.append(procedureCodeBuffer);
             
             // Adiciona o label de destino do salto.
             mipsCode.append(endMainLabel + ":\n");
@@ -314,6 +413,7 @@ public class CodegenVisitor {
         mipsCode.append("\n" + label + ":\n");
         
         // Prólogo da função
+        planFrame(funcContext, parameters, blockNode);
         emitFunctionProlog(parameters);
         
         // Processa corpo da função (bloco)
@@ -366,6 +466,7 @@ public class CodegenVisitor {
         mipsCode.append("\n" + label + ":\n");
         
         // Prólogo do procedimento
+        planFrame(procContext, parameters, blockNode);
         emitFunctionProlog(parameters);
         
         // Processa corpo do procedimento (bloco)
@@ -428,13 +529,159 @@ public class CodegenVisitor {
         
         return parameters;
     }
+    /**
+     * Decide o frame da rotina. Sem chamadas ela não salva $ra. Uma rotina
+     * sem chamadas nem syscalls (que usam $a0 e $f12) cujos parâmetros cabem
+     * nos registradores de argumento os recebe neles e os usa direto; se
+     * além disso não tiver variáveis locais, dispensa o frame inteiro (uma
+     * rotina com chamadas sempre tem frame, que é onde $ra fica salvo). Com
+     * registerArguments todas as rotinas recebem os primeiros argumentos em
+     * registradores e guardam no frame, na entrada, os que podem ser
+     * sobrescritos: todos se a rotina faz chamadas, só $a0/$f12 se ela
+     * apenas usa write/read.
+     */
+    private void planFrame(FunctionContext context, List<ParamEntry> parameters, AST blockNode) {
+        if (blockNode == null || declaresSubroutines(blockNode)) {
+            return;
+        }
+        boolean calls = callsSubroutine(blockNode);
+        boolean syscalls = usesSyscalls(blockNode);
+        context.savesReturnAddress = calls;
+        
+        String[] registers = argumentRegisters(parameters);
+        boolean allInRegisters = !Arrays.asList(registers).contains(null);
+        if (!registerArguments && (calls || syscalls || !allInRegisters)) {
+            return;
+        }
+        registerParamRoutines.add(context.name);
+        
+        // Parâmetros restantes continuam na pilha, logo acima de $ra e $fp
+        int stackOffset = 8;
+        for (int i = 0; i < parameters.size(); i++) {
+            String name = parameters.get(i).getName();
+            if (registers[i] == null) {
+                context.localVarOffsets.put(name, stackOffset);
+                stackOffset += 4;
+            } else if (calls || (syscalls && SYSCALL_ARGUMENT_REGISTERS.contains(registers[i]))) {
+                context.homedParams.put(name, registers[i]);
+            } else {
+                context.paramRegisters.put(name, registers[i]);
+            }
+        }
+        context.hasFrame = calls || !context.homedParams.isEmpty() || !allInRegisters || declaresLocals(blockNode);
+    }
+
+    /**
+     * Registrador de cada parâmetro na convenção por registradores: os
+     * quatro primeiros inteiros, chars, booleanos e endereços (VAR) em
+     * $a0-$a3, os dois primeiros reais em $f12/$f14; null vai para a pilha
+     */
+    private static String[] argumentRegisters(List<ParamEntry> parameters) {
+        String[] registers = new String[parameters.size()];
+        int ints = 0;
+        int reals = 0;
+        for (int i = 0; i < parameters.size(); i++) {
+            ParamEntry param = parameters.get(i);
+            if (param.getEntryType() == Type.REAL && !param.isReference()) {
+                if (reals < REAL_ARGUMENT_REGISTERS.length) {
+                    registers[i] = REAL_ARGUMENT_REGISTERS[reals++];
+                }
+            } else if (ints < INT_ARGUMENT_REGISTERS) {
+                registers[i] = "$a" + ints++;
+            }
+        }
+        return registers;
+    }
+
+    private static boolean declaresSubroutines(AST blockNode) {
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            NodeKind kind = blockNode.getChild(i).kind;
+            if (kind == NodeKind.FUNC_DECL_NODE || kind == NodeKind.PROC_DECL_NODE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean declaresLocals(AST blockNode) {
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+            if (child.kind == NodeKind.VAR_SECTION_NODE && child.getChildCount() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Chamadas a sub-rotinas (jal); o destino de "f := ..." não é chamada
+    private boolean callsSubroutine(AST node) {
+        switch (node.kind) {
+            case FUNC_CALL_NODE:
+                return true;
+            case PROC_CALL_NODE:
+                if (!isBuiltinProcedure(node.stringData)) {
+                    return true;
+                }
+                break;
+            case VAR_USE_NODE:
+                return containsCall(node);
+            case ASSIGN_NODE:
+                AST target = node.getChild(0);
+                return (target.kind == NodeKind.ARRAY_ACCESS_NODE && callsSubroutine(target)) ||
+                       callsSubroutine(node.getChild(1));
+            default:
+                break;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (callsSubroutine(node.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean usesSyscalls(AST node) {
+        if (node.kind == NodeKind.PROC_CALL_NODE && isBuiltinProcedure(node.stringData)) {
+            return true;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (usesSyscalls(node.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBuiltinProcedure(String name) {
+        return name.equalsIgnoreCase("writeln") || name.equalsIgnoreCase("write") ||
+               name.equalsIgnoreCase("read") || name.equalsIgnoreCase("readln");
+    }
+
     // Prólogo da função
     private void emitFunctionProlog(List<ParamEntry> parameters) {
-        // Salva registradores
-        mipsCode.append("subu $sp, $sp, 8\n"); // Espaço para $ra e $fp
-        mipsCode.append("sw $ra, 4($sp)\n");   // Salva return address
-        mipsCode.append("sw $fp, 0($sp)\n");   // Salva frame pointer
-        mipsCode.append("move $fp, $sp\n");    // Novo frame pointer
+        if (!currentFunction.hasFrame) {
+            return; // Folha sem locais: nada a salvar
+        }
+        // Um único ajuste do $sp cobre $ra, $fp e os argumentos guardados
+        int homes = currentFunction.homedParams.size() * 4;
+        mipsCode.append("subu $sp, $sp, " + (homes + 8) + "\n"); // Espaço para $ra e $fp
+        if (currentFunction.savesReturnAddress) {
+            mipsCode.append("sw $ra, " + (homes + 4) + "($sp)\n"); // Salva return address
+        }
+        mipsCode.append("sw $fp, " + homes + "($sp)\n");          // Salva frame pointer
+        if (homes > 0) {
+            mipsCode.append("addu $fp, $sp, " + homes + "\n");    // Novo frame pointer
+        } else {
+            mipsCode.append("move $fp, $sp\n");
+        }
+        
+        // Argumentos recebidos em registradores que a rotina vai sobrescrever
+        for (Map.Entry<String, String> home : currentFunction.homedParams.entrySet()) {
+            currentFunction.localVarSize += 4;
+            currentFunction.localVarOffsets.put(home.getKey(), -currentFunction.localVarSize);
+            String store = isFloatRegister(home.getValue()) ? "swc1 " : "sw ";
+            mipsCode.append(store + home.getValue() + ", " + (-currentFunction.localVarSize) + "($fp)\n");
+        }
         
         // Reserva espaço para variáveis locais (será calculado dinamicamente)
         // Não fazemos isso aqui pois não sabemos ainda quantas variáveis locais haverá
@@ -442,76 +689,114 @@ public class CodegenVisitor {
 
     // Epílogo da função
     private void emitFunctionEpilog() {
-        // Se há variáveis locais alocadas, libera o espaço
-        if (currentFunction != null && currentFunction.localVarSize > 0) {
-            mipsCode.append("addu $sp, $sp, " + currentFunction.localVarSize + "\n");
+        if (!currentFunction.hasFrame) {
+            mipsCode.append("jr $ra\n");
+            return;
         }
-        
-        // Restaura registradores
-        mipsCode.append("lw $fp, 0($sp)\n");   // Restaura frame pointer
-        mipsCode.append("lw $ra, 4($sp)\n");   // Restaura return address
-        mipsCode.append("addu $sp, $sp, 8\n"); // Restaura stack pointer
-        mipsCode.append("jr $ra\n");           // Retorna
+        // Restaura registradores a partir do $fp, o que também libera as locais
+        if (currentFunction.savesReturnAddress) {
+            mipsCode.append("lw $ra, 4($fp)\n");   // Restaura return address
+        }
+        mipsCode.append("addu $sp, $fp, 8\n");     // Restaura stack pointer
+        mipsCode.append("lw $fp, 0($fp)\n");       // Restaura frame pointer
+        mipsCode.append("jr $ra\n");               // Retorna
     }
 
-    private void visitFunctionCall(AST node) {
-        String funcName = node.stringData;
-        FuncEntry funcInfo = functionInfo.get(funcName);
-        
-        if (funcInfo != null) {
-            // Verifica se há argumentos
-            if (node.getChildCount() > 0) {
-                AST argsNode = node.getChild(0);
-                
-                // Empilha argumentos na ordem correta (da direita para esquerda)
-                if (argsNode != null && argsNode.getChildCount() > 0) {
-                    for (int i = argsNode.getChildCount() - 1; i >= 0; i--) {
-                        AST argNode = argsNode.getChild(i);
-                        
-                        if (i < funcInfo.getParameters().size()) {
-                            ParamEntry paramInfo = funcInfo.getParameters().get(i);
-                            
-                            if (paramInfo.isReference()) {
-                                // Passagem por referência - empilha endereço
-                                emitArgumentByReference(argNode);
-                            } else {
-                                // Passagem por valor - avalia expressão e empilha valor
-                                visitNode(argNode);
-                                // O resultado já foi empilhado pelo visitNode
-                            }
-                        } else {
-                            // Mais argumentos que parâmetros - ainda avalia
-                            visitNode(argNode);
-                        }
-                    }
-                }
-            }
-            
-            // Chama a função
-            mipsCode.append("jal func_" + funcInfo.getName() + "\n");
-            
-            // Remove argumentos da pilha
-            int actualArgsCount = 0;
-            if (node.getChildCount() > 0 && node.getChild(0) != null) {
-                actualArgsCount = node.getChild(0).getChildCount();
+    private String visitFunctionCall(AST node) {
+        String resultReg = emitCall(node.stringData, node.getChildCount() > 0 ? node.getChild(0) : null);
+        if (resultReg == null) {
+            throw new RuntimeException("Procedure '" + node.stringData + "' used as a value");
+        }
+        return resultReg;
+    }
+
+    /**
+     * Chamada de sub-rotina: salva os registradores vivos, empilha os
+     * argumentos (da direita para a esquerda; endereços para parâmetros VAR)
+     * e, se a rotina recebe em registradores, preenche $a0-$a3/$f12/$f14,
+     * chama e restaura. Retorna o registrador com o resultado de uma função,
+     * ou null para procedimentos.
+     */
+    private String emitCall(String name, AST argsNode) {
+        FuncEntry funcInfo = functionInfo.get(name);
+        if (funcInfo == null) {
+            throw new RuntimeException("Subroutine '" + name + "' not found");
+        }
+        List<String> live = saveLiveRegisters();
+        
+        int argCount = argsNode != null ? argsNode.getChildCount() : 0;
+        List<ParamEntry> parameters = funcInfo.getParameters();
+        String[] registers = registerParamRoutines.contains(name) ? argumentRegisters(parameters) : null;
+        
+        // Argumentos de registrador são avaliados antes e só ocupam $a/$f
+        // junto do jal, pois outro argumento pode conter uma chamada
+        String[] values = new String[argCount];
+        for (int i = 0; i < argCount; i++) {
+            if (registers != null && i < registers.length && registers[i] != null) {
+                values[i] = emitArgument(argsNode.getChild(i), parameters, i);
             }
-            
-            if (actualArgsCount > 0) {
-                int argsSize = actualArgsCount * 4;
-                mipsCode.append("addu $sp, $sp, " + argsSize + "\n");
+        }
+        int pushed = 0;
+        for (int i = argCount - 1; i >= 0; i--) {
+            if (values[i] == null) {
+                String reg = emitArgument(argsNode.getChild(i), parameters, i);
+                emitPush(reg);
+                freeRegister(reg);
+                pushed++;
             }
-            
-            // Se for função, empilha o resultado
-            if (funcInfo.getEntryType() != null) {
-                if (funcInfo.getEntryType() == Type.REAL) {
-                    emitPushFloat("$f0");
-                } else {
-                    emitPushTemp("$v0");
-                }
+        }
+        for (int i = 0; i < argCount; i++) {
+            if (values[i] != null) {
+                emitArgumentMove(registers[i], values[i]);
+                freeRegister(values[i]);
             }
         }
+        
+        // Chama a função usando func_ como prefixo
+        mipsCode.append("jal func_" + funcInfo.getName() + "\n");
+        
+        // Remove argumentos da pilha
+        if (pushed > 0) {
+            mipsCode.append("addu $sp, $sp, " + (pushed * 4) + "\n");
+        }
+        restoreLiveRegisters(live);
+        
+        // O resultado vem em $v0 (inteiros) ou $f0 (reais)
+        Type returnType = funcInfo.getEntryType();
+        if (returnType == null) {
+            return null;
+        }
+        if (returnType == Type.REAL) {
+            String reg = floatRegisters.allocate();
+            mipsCode.append("mov.s " + reg + ", $f0\n");
+            return reg;
+        }
+        String reg = intRegisters.allocate();
+        mipsCode.append("move " + reg + ", $v0\n");
+        return reg;
+    }
+
+    // Valor do argumento, ou seu endereço para parâmetro VAR
+    private String emitArgument(AST argNode, List<ParamEntry> parameters, int i) {
+        return i < parameters.size() && parameters.get(i).isReference()
+                ? emitArgumentByReference(argNode)
+                : emitExpr(argNode);
     }
 
+    // Copia o argumento para o registrador da convenção (entre bancos, os bits)
+    private void emitArgumentMove(String target, String value) {
+        boolean floatTarget = isFloatRegister(target);
+        boolean floatValue = isFloatRegister(value);
+        if (floatTarget && floatValue) {
+            mipsCode.append("mov.s " + target + ", " + value + "\n");
+        } else if (floatTarget) {
+            mipsCode.append("mtc1 " + value + ", " + target + "\n");
+        } else if (floatValue) {
+            mipsCode.append("mfc1 " + target + ", " + value + "\n");
+        } else {
+            mipsCode.append("move " + target + ", " + value + "\n");
+        }
+    }
 
     private void visitVarSection(AST node) {
         if (currentFunction == null) {
@@ -522,13 +807,22 @@ public class CodegenVisitor {
             }
         } else {
             // Variáveis locais - apenas atualiza offsets e reserva espaço
+            // (cada declaração vem agrupada em um VAR_LIST_NODE)
+            int reserved = currentFunction.localVarSize;
             for (int i = 0; i < node.getChildCount(); i++) {
-                visitLocalVarDeclaration(node.getChild(i));
+                AST child = node.getChild(i);
+                if (child.kind == NodeKind.VAR_LIST_NODE) {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        visitLocalVarDeclaration(child.getChild(j));
+                    }
+                } else {
+                    visitLocalVarDeclaration(child);
+                }
             }
             
             // Reserva espaço para variáveis locais se necessário
-            if (currentFunction.localVarSize > 0) {
-                mipsCode.append("subu $sp, $sp, " + currentFunction.localVarSize + "\n");
+            if (currentFunction.localVarSize > reserved) {
+                mipsCode.append("subu $sp, $sp, " + (currentFunction.localVarSize - reserved) + "\n");
             }
         }
     }
@@ -625,57 +919,23 @@ public class CodegenVisitor {
     }
     
     private void insertVariableDeclaration(String label, Type type) {
-        // Insere declaração na seção .data (será movida para o local correto)
-        String currentText = mipsCode.toString();
-        int dataEnd = currentText.indexOf(".text");
-        if (dataEnd != -1) {
-            String dataPart = currentText.substring(0, dataEnd);
-            String textPart = currentText.substring(dataEnd);
-            
-            mipsCode.setLength(0);
-            mipsCode.append(dataPart);
-            
-            // Aloca espaço baseado no tipo
-            if (type == Type.REAL) {
-                mipsCode.append(label + ": .float 0.0\n");  // Variável float
-            } else {
-                mipsCode.append(label + ": .word 0\n");     // Variável inteira
-            }
-            
-            mipsCode.append(textPart);
+        // Aloca espaço baseado no tipo
+        if (type == Type.REAL) {
+            emitData(label + ": .float 0.0");  // Variável float
+        } else {
+            emitData(label + ": .word 0");     // Variável inteira
         }
     }
     
     private void insertArrayDeclaration(String label, int size, Type elementType) {
-        // Insere declaração do array na seção .data
-        String currentText = mipsCode.toString();
-        int dataEnd = currentText.indexOf(".text");
-        if (dataEnd != -1) {
-            String dataPart = currentText.substring(0, dataEnd);
-            String textPart = currentText.substring(dataEnd);
-            
-            mipsCode.setLength(0);
-            mipsCode.append(dataPart);
-            
-            // Aloca espaço para o array baseado no tipo do elemento
-            if (elementType == Type.REAL) {
-                mipsCode.append(label + ": .float ");
-                for (int i = 0; i < size; i++) {
-                    mipsCode.append("0.0");
-                    if (i < size - 1) mipsCode.append(", ");
-                }
-                mipsCode.append("\n");
-            } else {
-                mipsCode.append(label + ": .word ");
-                for (int i = 0; i < size; i++) {
-                    mipsCode.append("0");
-                    if (i < size - 1) mipsCode.append(", ");
-                }
-                mipsCode.append("\n");
-            }
-            
-            mipsCode.append(textPart);
+        // Aloca espaço para o array baseado no tipo do elemento
+        String zero = elementType == Type.REAL ? "0.0" : "0";
+        dataSection.append(label).append(elementType == Type.REAL ? ": .float " : ": .word ");
+        for (int i = 0; i < size; i++) {
+            dataSection.append(zero);
+            if (i < size - 1) dataSection.append(", ");
         }
+        dataSection.append('\n');
     }
     
     private void visitArrayType(AST node) {
@@ -707,116 +967,222 @@ public class CodegenVisitor {
         
         AST varNode = node.getChild(0);
         AST exprNode = node.getChild(1);
-        
+        pinCommonSubexpressions(varNode, exprNode);
+        emitAssignment(varNode, exprNode);
+        releaseCommonSubexpressions();
+    }
+
+    private void emitAssignment(AST varNode, AST exprNode) {
         // Verifica se é assignment para valor de retorno de função
         if (varNode.kind == NodeKind.VAR_USE_NODE && currentFunction != null && 
             currentFunction.isFunction && varNode.stringData.equals(currentFunction.name)) {
             
             // Assignment para valor de retorno da função
-            visitNode(exprNode);
+            String valueReg = emitExpr(exprNode);
             
             if (currentFunction.returnType == Type.REAL) {
-                emitPopFloat("$f0"); // Valor de retorno em $f0 para floats
+                mipsCode.append("mov.s $f0, " + valueReg + "\n"); // Valor de retorno em $f0 para floats
             } else {
-                emitPopTemp("$v0"); // Valor de retorno em $v0 para integers
+                mipsCode.append("move $v0, " + valueReg + "\n");  // Valor de retorno em $v0 para integers
             }
+            freeRegister(valueReg);
             return;
         }
         
-        // Verifica se a expressão é uma chamada de função
-        if (exprNode.kind == NodeKind.FUNC_CALL_NODE) {
-            // É uma chamada de função - processa normalmente
-            visitFunctionCall(exprNode);
-            
-            // O resultado já está empilhado, agora armazena na variável
-            if (varNode.kind == NodeKind.VAR_USE_NODE) {
-                if (varNode.type == Type.REAL) {
-                    emitPopFloat("$f0");
-                    storeIntoVariable(varNode, "$f0", true);
-                } else {
-                    emitPopTemp("$t0");
-                    storeIntoVariable(varNode, "$t0", false);
-                }
-            } else if (varNode.kind == NodeKind.ARRAY_ACCESS_NODE) {
-                if (varNode.type == Type.REAL) {
-                    emitPopFloat("$f0");
-                    visitArrayAssignmentFloat(varNode, "$f0");
-                } else {
-                    emitPopTemp("$t0");
-                    visitArrayAssignment(varNode, "$t0");
-                }
+        if (varNode.kind == NodeKind.VAR_USE_NODE) {
+            String valueReg = emitExpr(exprNode);
+            storeIntoVariable(varNode, valueReg, varNode.type == Type.REAL);
+            freeRegister(valueReg);
+        } else if (varNode.kind == NodeKind.ARRAY_ACCESS_NODE && commonAddress(varNode) != null) {
+            // Endereço do elemento já calculado para a expressão
+            String valueReg = emitExpr(exprNode);
+            mipsCode.append((varNode.type == Type.REAL ? "swc1 " : "sw ") + valueReg + ", 0(" + commonAddress(varNode) + ")\n");
+            freeRegister(valueReg);
+        } else if (varNode.kind == NodeKind.ARRAY_ACCESS_NODE) {
+            // Valor e índice avaliados juntos, na ordem que usa menos registradores
+            String[] regs = emitOperands(exprNode, varNode.getChild(0));
+            String addressReg = emitElementAddress(varNode, regs[1]);
+            mipsCode.append((varNode.type == Type.REAL ? "swc1 " : "sw ") + regs[0] + ", 0(" + addressReg + ")\n");
+            freeRegister(regs[0]);
+            freeRegister(addressReg);
+        }
+    }
+
+    // ==================== Subexpressões comuns ====================
+    //
+    // Numeração de valores local à atribuição: subárvores puras com a mesma
+    // chave estrutural têm o mesmo valor, pois nada é escrito na memória
+    // antes do store final. As repetidas são avaliadas antes do resto e
+    // ficam num registrador até o fim do statement; os demais usos viram
+    // uma cópia. Um acesso a array repetido (a[i] := a[i] + 1) guarda o
+    // endereço do elemento, usado pelos loads e pelo store.
+
+    private void pinCommonSubexpressions(AST target, AST value) {
+        boolean arrayTarget = target.kind == NodeKind.ARRAY_ACCESS_NODE;
+        if (!commonSubexpressions || containsCall(value) || (arrayTarget && containsCall(target))) {
+            return;
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        if (arrayTarget) {
+            countSubexpressions(target, counts);
+        }
+        countSubexpressions(value, counts);
+
+        List<AST> selected = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        if (arrayTarget) {
+            selectCommon(target, counts, keys, selected);
+        }
+        selectCommon(value, counts, keys, selected);
+        for (AST node : selected) {
+            String key = expressionKey(node);
+            if (node.kind == NodeKind.ARRAY_ACCESS_NODE) {
+                commonValues.put("&" + key, emitElementAddress(node, emitExpr(node.getChild(0))));
+            } else {
+                commonValues.put(key, emitExpr(node));
             }
-        } else {
-            // Expressão normal - avalia primeiro
-            visitNode(exprNode);
-            
-            // Armazena na variável
-            if (varNode.kind == NodeKind.VAR_USE_NODE) {
-                if (varNode.type == Type.REAL) {
-                    emitPopFloat("$f0");
-                    storeIntoVariable(varNode, "$f0", true);
-                } else {
-                    emitPopTemp("$t0");
-                    storeIntoVariable(varNode, "$t0", false);
-                }
-            } else if (varNode.kind == NodeKind.ARRAY_ACCESS_NODE) {
-                if (varNode.type == Type.REAL) {
-                    emitPopFloat("$f0");
-                    visitArrayAssignmentFloat(varNode, "$f0");
-                } else {
-                    emitPopTemp("$t0");
-                    visitArrayAssignment(varNode, "$t0");
-                }
+        }
+    }
+
+    private void releaseCommonSubexpressions() {
+        for (String reg : commonValues.values()) {
+            freeRegister(reg);
+        }
+        commonValues.clear();
+    }
+
+    private void countSubexpressions(AST node, Map<String, Integer> counts) {
+        // Parênteses têm a chave da expressão interna, que já é contada
+        String key = node.kind == NodeKind.PAREN_EXPR_NODE ? null : expressionKey(node);
+        if (key != null) {
+            counts.merge(key, 1, Integer::sum);
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            countSubexpressions(node.getChild(i), counts);
+        }
+    }
+
+    /**
+     * Escolhe, em pré-ordem, as subárvores repetidas mais externas que valem
+     * mais que uma cópia (folhas custam o mesmo que o move)
+     */
+    private void selectCommon(AST node, Map<String, Integer> counts, Set<String> keys, List<AST> selected) {
+        String key = expressionKey(node);
+        boolean leaf = switch (node.kind) {
+            case VAR_USE_NODE, INT_VAL_NODE, BOOL_VAL_NODE, CHAR_VAL_NODE, REAL_VAL_NODE, PAREN_EXPR_NODE -> true;
+            default -> false;
+        };
+        if (key != null && !leaf && counts.getOrDefault(key, 0) >= 2) {
+            if (keys.size() < MAX_COMMON_VALUES && keys.add(key)) {
+                selected.add(node);
+            }
+            if (keys.contains(key)) {
+                return;
             }
         }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            selectCommon(node.getChild(i), counts, keys, selected);
+        }
     }
 
-    private void visitArrayAssignment(AST arrayNode, String valueReg) {
-        String arrayName = arrayNode.stringData;
-        AST indexNode = arrayNode.getChild(0);
-        
-        // Calcula o índice
-        visitNode(indexNode);
-        emitPopTemp("$t1"); // índice em $t1
-        
-        // Ajusta o índice baseado no startIndex do array
-        ArrayEntry info = arrayInfo.get(arrayName);
-        if (info != null && info.getStartIndex() != 0) {
-            mipsCode.append("addi $t1, $t1, " + (-info.getStartIndex()) + "\n");
+    /**
+     * Chave estrutural de uma expressão sem chamadas, ou null
+     */
+    private String expressionKey(AST node) {
+        switch (node.kind) {
+            case INT_VAL_NODE, BOOL_VAL_NODE -> {
+                return "#" + node.intData;
+            }
+            case REAL_VAL_NODE -> {
+                return "#f" + Float.floatToRawIntBits(node.floatData);
+            }
+            case CHAR_VAL_NODE -> {
+                return "#" + node.stringData;
+            }
+            case VAR_USE_NODE -> {
+                return functionInfo.containsKey(node.stringData) ? null : node.stringData;
+            }
+            case PAREN_EXPR_NODE -> {
+                return expressionKey(node.getChild(0));
+            }
+            case FUNC_CALL_NODE, STR_VAL_NODE, C2S_NODE -> {
+                return null;
+            }
+            default -> { }
         }
-        
-        // Calcula endereço: base + (índice * 4)
-        String arrayLabel = varLabels.get(arrayName);
-        if (arrayLabel != null) {
-            mipsCode.append("sll $t1, $t1, 2\n"); // multiplica por 4
-            mipsCode.append("la $t2, " + arrayLabel + "\n");
-            mipsCode.append("add $t2, $t2, $t1\n");
-            mipsCode.append("sw " + valueReg + ", 0($t2)\n");
+        if (!isExpression(node.kind)) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(node.kind.name()).append(':').append(node.type);
+        if (node.kind == NodeKind.ARRAY_ACCESS_NODE) {
+            key.append(':').append(node.stringData);
+        }
+        key.append('(');
+        for (int i = 0; i < node.getChildCount(); i++) {
+            String child = expressionKey(node.getChild(i));
+            if (child == null) {
+                return null;
+            }
+            key.append(i > 0 ? "," : "").append(child);
+        }
+        return key.append(')').toString();
+    }
+
+    /**
+     * Registrador com o endereço já calculado do elemento, ou null
+     */
+    private String commonAddress(AST arrayNode) {
+        return commonValues.isEmpty() ? null : commonValues.get("&" + expressionKey(arrayNode));
+    }
+
+    /**
+     * Cópia do valor já calculado da expressão, ou null
+     */
+    private String copyCommonValue(AST node) {
+        if (commonValues.isEmpty()) {
+            return null;
         }
+        String key = expressionKey(node);
+        String reg = key != null ? commonValues.get(key) : null;
+        if (reg == null) {
+            return null;
+        }
+        boolean isFloat = isFloatRegister(reg);
+        String copy = isFloat ? floatRegisters.allocate() : intRegisters.allocate();
+        mipsCode.append((isFloat ? "mov.s " : "move ") + copy + ", " + reg + "\n");
+        return copy;
     }
 
-    private void visitArrayAssignmentFloat(AST arrayNode, String valueReg) {
+    /**
+     * Converte o índice (no registrador dado) no endereço do elemento do
+     * array global, no mesmo registrador
+     */
+    private String emitElementAddress(AST arrayNode, String indexReg) {
         String arrayName = arrayNode.stringData;
-        AST indexNode = arrayNode.getChild(0);
-        
-        // Calcula o índice
-        visitNode(indexNode);
-        emitPopTemp("$t1"); // índice em $t1
         
         // Ajusta o índice baseado no startIndex do array
         ArrayEntry info = arrayInfo.get(arrayName);
         if (info != null && info.getStartIndex() != 0) {
-            mipsCode.append("addi $t1, $t1, " + (-info.getStartIndex()) + "\n");
+            mipsCode.append("addi " + indexReg + ", " + indexReg + ", " + (-info.getStartIndex()) + "\n");
+        }
+        if (info != null && boundsCheck != null && !boundsCheck.isSafe(arrayNode)) {
+            // Índice já relativo ao início: uma comparação sem sinal cobre os dois limites
+            mipsCode.append("bgeu " + indexReg + ", " + info.getArraySize() + ", " + BOUNDS_ERROR + "\n");
+            emitsBoundsError = true;
         }
         
         // Calcula endereço: base + (índice * 4)
         String arrayLabel = varLabels.get(arrayName);
-        if (arrayLabel != null) {
-            mipsCode.append("sll $t1, $t1, 2\n"); // multiplica por 4
-            mipsCode.append("la $t2, " + arrayLabel + "\n");
-            mipsCode.append("add $t2, $t2, $t1\n");
-            mipsCode.append("swc1 " + valueReg + ", 0($t2)\n");
+        if (arrayLabel == null) {
+            if (currentFunction != null && currentFunction.localVarOffsets.containsKey(arrayName)) {
+                throw new RuntimeException("Local array '" + arrayName + "' is not supported by the MIPS backend");
+            }
+            throw new RuntimeException("Array '" + arrayName + "' not found");
         }
+        mipsCode.append("sll " + indexReg + ", " + indexReg + ", 2\n"); // multiplica por 4
+        mipsCode.append("la " + SCRATCH + ", " + arrayLabel + "\n");
+        mipsCode.append("add " + indexReg + ", " + indexReg + ", " + SCRATCH + "\n");
+        return indexReg;
     }
 
     private void visitProcedureCall(AST node) {
@@ -826,40 +1192,10 @@ public class CodegenVisitor {
         } else if (node.stringData.equalsIgnoreCase("read") || node.stringData.equalsIgnoreCase("readln")) {
             visitBuiltinRead(node);
         } else {
-            // Verifica se é uma chamada de função ou procedimento
-            String name = node.stringData;
-            FuncEntry entry = functionInfo.get(name);
-            
-            if (entry != null) {
-                // Processa argumentos na ordem inversa (da direita para esquerda)
-                if (node.getChildCount() > 0) {
-                    AST argsNode = node.getChild(0);
-                    if (argsNode != null && argsNode.getChildCount() > 0) {
-                        for (int i = argsNode.getChildCount() - 1; i >= 0; i--) {
-                            AST argNode = argsNode.getChild(i);
-                            visitNode(argNode);
-                        }
-                    }
-                }
-                
-                // Chama o procedimento/função usando func_ como prefixo
-                mipsCode.append("jal func_" + name + "\n");
-                
-                // Remove argumentos da pilha
-                if (node.getChildCount() > 0) {
-                    AST argsNode = node.getChild(0);
-                    if (argsNode != null) {
-                        int argsSize = argsNode.getChildCount() * 4;
-                        if (argsSize > 0) {
-                            mipsCode.append("addu $sp, $sp, " + argsSize + "\n");
-                        }
-                    }
-                }
-                
-                // Se for uma função sendo usada como procedimento, descarta o valor de retorno
-                if (entry.getEntryType() != null) {
-                    emitPopTemp("$t0"); // Remove o valor de retorno da pilha
-                }
+            // Uma função chamada como procedimento tem o resultado descartado
+            String resultReg = emitCall(node.stringData, node.getChildCount() > 0 ? node.getChild(0) : null);
+            if (resultReg != null) {
+                freeRegister(resultReg);
             }
         }
     }
@@ -869,24 +1205,25 @@ public class CodegenVisitor {
         if (node.getChildCount() > 0) {
             AST argsNode = node.getChild(0);
             for (int i = 0; i < argsNode.getChildCount(); i++) {
-                visitNode(argsNode.getChild(i));
+                AST argNode = argsNode.getChild(i);
+                String valueReg = emitExpr(argNode);
                 
                 // Determina o tipo baseado no nó da expressão
-                AST argNode = argsNode.getChild(i);
                 if (argNode.type == Type.REAL) {
-                    emitPopFloat("$f12");
+                    mipsCode.append("mov.s $f12, " + valueReg + "\n");
                     mipsCode.append("li $v0, 2\n"); // print float
                 } else if (argNode.type == Type.INTEGER) {
-                    emitPopTemp("$a0");
+                    mipsCode.append("move $a0, " + valueReg + "\n");
                     mipsCode.append("li $v0, 1\n"); // print integer
                 } else if (argNode.type == Type.STRING) {
-                    emitPopTemp("$a0");
+                    mipsCode.append("move $a0, " + valueReg + "\n");
                     mipsCode.append("li $v0, 4\n"); // print string
                 } else {
-                    emitPopTemp("$a0");
+                    mipsCode.append("move $a0, " + valueReg + "\n");
                     mipsCode.append("li $v0, 1\n"); // default to integer
                 }
                 mipsCode.append("syscall\n");
+                freeRegister(valueReg);
             }
         }
         
@@ -915,82 +1252,39 @@ public class CodegenVisitor {
         }
     }
 
-    private void readIntoVariable(AST varNode) {
-        String varName = varNode.stringData;
-        
-        // Verifica se é variável local ou global
-        if (currentFunction != null && currentFunction.localVarOffsets.containsKey(varName)) {
-            int offset = currentFunction.localVarOffsets.get(varName);
-            
-            if (varNode.type == Type.REAL) {
-                mipsCode.append("li $v0, 6\n");     // syscall para ler float
-                mipsCode.append("syscall\n");
-                mipsCode.append("swc1 $f0, " + offset + "($fp)\n");
-            } else if (varNode.type == Type.INTEGER) {
-                mipsCode.append("li $v0, 5\n");     // syscall para ler inteiro
-                mipsCode.append("syscall\n");
-                mipsCode.append("sw $v0, " + offset + "($fp)\n");
-            } else if (varNode.type == Type.CHAR) {
-                mipsCode.append("li $v0, 12\n");    // syscall para ler caractere
-                mipsCode.append("syscall\n");
-                mipsCode.append("sw $v0, " + offset + "($fp)\n");
-            }
+    // Emite a syscall de leitura do tipo; o valor fica em $v0 ou $f0
+    private boolean emitReadSyscall(Type type) {
+        if (type == Type.REAL) {
+            mipsCode.append("li $v0, 6\n");     // syscall para ler float
+        } else if (type == Type.INTEGER) {
+            mipsCode.append("li $v0, 5\n");     // syscall para ler inteiro
+        } else if (type == Type.CHAR) {
+            mipsCode.append("li $v0, 12\n");    // syscall para ler caractere
         } else {
-            String label = varLabels.get(varName);
-            if (label != null) {
-                if (varNode.type == Type.REAL) {
-                    mipsCode.append("li $v0, 6\n");     // syscall para ler float
-                    mipsCode.append("syscall\n");
-                    mipsCode.append("swc1 $f0, " + label + "\n");
-                } else if (varNode.type == Type.INTEGER) {
-                    mipsCode.append("li $v0, 5\n");     // syscall para ler inteiro
-                    mipsCode.append("syscall\n");
-                    mipsCode.append("sw $v0, " + label + "\n");
-                } else if (varNode.type == Type.CHAR) {
-                    mipsCode.append("li $v0, 12\n");    // syscall para ler caractere
-                    mipsCode.append("syscall\n");
-                    mipsCode.append("sw $v0, " + label + "\n");
-                }
-            }
+            return false;
         }
+        mipsCode.append("syscall\n");
+        return true;
     }
 
-    private void readIntoArrayElement(AST arrayNode) {
-        String arrayName = arrayNode.stringData;
-        AST indexNode = arrayNode.getChild(0);
-        
-        // Calcula o índice do array
-        visitNode(indexNode);
-        emitPopTemp("$t1"); // índice em $t1
-        
-        // Ajusta o índice baseado no startIndex do array
-        ArrayEntry info = arrayInfo.get(arrayName);
-        if (info != null && info.getStartIndex() != 0) {
-            mipsCode.append("addi $t1, $t1, " + (-info.getStartIndex()) + "\n");
+    private void readIntoVariable(AST varNode) {
+        if (emitReadSyscall(varNode.type)) {
+            boolean isFloat = varNode.type == Type.REAL;
+            storeIntoVariable(varNode, isFloat ? "$f0" : "$v0", isFloat);
         }
-        
-        // Calcula endereço: base + (índice * 4)
-        String arrayLabel = varLabels.get(arrayName);
-        if (arrayLabel != null) {
-            mipsCode.append("sll $t1, $t1, 2\n"); // multiplica por 4
-            mipsCode.append("la $t2, " + arrayLabel + "\n");
-            mipsCode.append("add $t2, $t2, $t1\n"); // $t2 = endereço do elemento
-            
-            // Lê o valor baseado no tipo do array
+    }
+
+    private void readIntoArrayElement(AST arrayNode) {
+        // Calcula o endereço do elemento antes da leitura
+        String addressReg = emitElementAddress(arrayNode, emitExpr(arrayNode.getChild(0)));
+        if (emitReadSyscall(arrayNode.type)) {
             if (arrayNode.type == Type.REAL) {
-                mipsCode.append("li $v0, 6\n");      // syscall para ler float
-                mipsCode.append("syscall\n");
-                mipsCode.append("swc1 $f0, 0($t2)\n"); // armazena no elemento do array
-            } else if (arrayNode.type == Type.INTEGER) {
-                mipsCode.append("li $v0, 5\n");      // syscall para ler inteiro
-                mipsCode.append("syscall\n");
-                mipsCode.append("sw $v0, 0($t2)\n");  // armazena no elemento do array
-            } else if (arrayNode.type == Type.CHAR) {
-                mipsCode.append("li $v0, 12\n");     // syscall para ler caractere
-                mipsCode.append("syscall\n");
-                mipsCode.append("sw $v0, 0($t2)\n");  // armazena no elemento do array
+                mipsCode.append("swc1 $f0, 0(" + addressReg + ")\n"); // armazena no elemento do array
+            } else {
+                mipsCode.append("sw $v0, 0(" + addressReg + ")\n");   // armazena no elemento do array
             }
         }
+        freeRegister(addressReg);
     }
     
     private void visitIfStatement(AST node) {
@@ -999,16 +1293,14 @@ public class CodegenVisitor {
         String elseLabel = generateLabel("else");
         String endLabel = generateLabel("endif");
         
-        // Avalia condição
-        visitNode(node.getChild(0));
-        emitPopTemp("$t0");
-        
-        // Salta para else se falso
-        mipsCode.append("beq $t0, $zero, " + elseLabel + "\n");
+        // Salta para else se a condição for falsa
+        emitCondition(node.getChild(0), elseLabel, false);
         
         // Statement THEN
         visitNode(node.getChild(1));
-        mipsCode.append("j " + endLabel + "\n");
+        if (node.getChildCount() > 2) {
+            mipsCode.append("j " + endLabel + "\n");
+        }
         
         // Label ELSE
         mipsCode.append(elseLabel + ":\n");
@@ -1016,187 +1308,345 @@ public class CodegenVisitor {
         // Statement ELSE (se existir)
         if (node.getChildCount() > 2) {
             visitNode(node.getChild(2));
+            mipsCode.append(endLabel + ":\n");
         }
-        
-        mipsCode.append(endLabel + ":\n");
     }
 
     private void visitWhileStatement(AST node) {
         if (node.getChildCount() < 2) return;
         
         String loopLabel = generateLabel("loop");
-        String endLabel = generateLabel("endloop");
+        String testLabel = generateLabel("looptest");
         
+        // Teste no fim do laço: um único desvio por iteração
+        mipsCode.append("j " + testLabel + "\n");
         mipsCode.append(loopLabel + ":\n");
         
-        // Avalia condição
-        visitNode(node.getChild(0));
-        emitPopTemp("$t0");
-        
-        // Salta para fim se falso
-        mipsCode.append("beq $t0, $zero, " + endLabel + "\n");
-        
         // Corpo do loop
         visitNode(node.getChild(1));
         
-        // Volta para o início
-        mipsCode.append("j " + loopLabel + "\n");
-        mipsCode.append(endLabel + ":\n");
+        // Volta para o início enquanto a condição for verdadeira
+        mipsCode.append(testLabel + ":\n");
+        emitCondition(node.getChild(0), loopLabel, true);
     }
 
-    private void visitBinaryOp(AST node, String operation) {
-        if (node.getChildCount() != 2) return;
-        
-        // Verifica se é operação com floats
-        if (node.type == Type.REAL) {
-            visitFloatBinaryOp(node, operation);
+    // ==================== Condições ====================
+    //
+    // Condições de if/while não materializam 0/1: cada comparação vira um
+    // desvio direto para o label, and/or viram saltos em curto-circuito e
+    // not só troca o sentido do desvio.
+
+    /**
+     * Salta para label quando a condição vale jumpIf; senão segue adiante
+     */
+    private void emitCondition(AST node, String label, boolean jumpIf) {
+        switch (node.kind) {
+            case PAREN_EXPR_NODE -> emitCondition(node.getChild(0), label, jumpIf);
+            case NOT_NODE -> emitCondition(node.getChild(0), label, !jumpIf);
+            case BOOL_VAL_NODE -> {
+                if ((node.intData != 0) == jumpIf) {
+                    mipsCode.append("j " + label + "\n");
+                }
+            }
+            case AND_NODE, OR_NODE -> {
+                // O interpretador avalia os dois lados: com chamadas à direita
+                // não dá para pular a avaliação
+                if (containsCall(node.getChild(1))) {
+                    emitValueCondition(node, label, jumpIf);
+                    return;
+                }
+                // and salta se algum lado for falso; or, se algum for verdadeiro
+                boolean shortCircuit = node.kind == NodeKind.OR_NODE;
+                if (jumpIf == shortCircuit) {
+                    emitCondition(node.getChild(0), label, jumpIf);
+                    emitCondition(node.getChild(1), label, jumpIf);
+                } else {
+                    String skipLabel = generateLabel("skip");
+                    emitCondition(node.getChild(0), skipLabel, !jumpIf);
+                    emitCondition(node.getChild(1), label, jumpIf);
+                    mipsCode.append(skipLabel + ":\n");
+                }
+            }
+            case EQ_NODE, NEQ_NODE, LT_NODE, GT_NODE, LE_NODE, GE_NODE -> {
+                AST left = node.getChild(0);
+                AST right = node.getChild(1);
+                if (left.type == Type.REAL || right.type == Type.REAL) {
+                    emitFloatBranch(node, label, jumpIf);
+                } else {
+                    emitIntBranch(node, label, jumpIf);
+                }
+            }
+            default -> emitValueCondition(node, label, jumpIf);
+        }
+    }
+
+    private void emitValueCondition(AST node, String label, boolean jumpIf) {
+        String reg = emitExpr(node);
+        mipsCode.append((jumpIf ? "bne " : "beq ") + reg + ", $zero, " + label + "\n");
+        freeRegister(reg);
+    }
+
+    private void emitIntBranch(AST node, String label, boolean jumpIf) {
+        NodeKind kind = jumpIf ? node.kind : negatedComparison(node.kind);
+        String branch = switch (kind) {
+            case EQ_NODE -> "beq";
+            case NEQ_NODE -> "bne";
+            case LT_NODE -> "blt";
+            case GT_NODE -> "bgt";
+            case LE_NODE -> "ble";
+            default -> "bge";
+        };
+        AST right = node.getChild(1);
+        if (right.kind == NodeKind.INT_VAL_NODE) {
+            // Constante à direita vai como imediato (zero é $zero)
+            String reg = emitExpr(node.getChild(0));
+            String value = right.intData == 0 ? "$zero" : Integer.toString(right.intData);
+            mipsCode.append(branch + " " + reg + ", " + value + ", " + label + "\n");
+            freeRegister(reg);
             return;
         }
-        
-        // Avalia operandos
-        visitNode(node.getChild(0));
-        visitNode(node.getChild(1));
-        
-        // Pop em ordem reversa
-        emitPopTemp("$t1");
-        emitPopTemp("$t0");
-        
-        // Executa operação
-        mipsCode.append(operation + " $t0, $t0, $t1\n");
-        
-        // Empilha resultado
-        emitPushTemp("$t0");
+        String[] regs = emitOperands(node.getChild(0), right);
+        mipsCode.append(branch + " " + regs[0] + ", " + regs[1] + ", " + label + "\n");
+        freeRegister(regs[0]);
+        freeRegister(regs[1]);
     }
 
-    private void visitFloatBinaryOp(AST node, String operation) {
-       
-        if (node.getChildCount() != 2) return;
-        
-        // Avalia operandos
-        visitNode(node.getChild(0));
-        visitNode(node.getChild(1));
-        
-        // Pop em ordem reversa
-        emitPopFloat("$f1");
-        emitPopFloat("$f0");
-        
-        // Executa operação float
-        String floatOp = switch (operation) {
-            case "add" -> "add.s";
-            case "sub" -> "sub.s";
-            case "mul" -> "mul.s";
-            default -> "add.s";
+    private void emitFloatBranch(AST node, String label, boolean jumpIf) {
+        String[] regs = emitOperands(node.getChild(0), node.getChild(1));
+        boolean flag = emitFloatCompare(node.kind, regs[0], regs[1]);
+        mipsCode.append((flag == jumpIf ? "bc1t " : "bc1f ") + label + "\n");
+        freeRegister(regs[0]);
+        freeRegister(regs[1]);
+    }
+
+    /**
+     * c.eq/c.lt/c.le.s para a comparação; retorna o valor do flag que
+     * significa verdadeiro (ne testa igualdade com o flag falso)
+     */
+    private boolean emitFloatCompare(NodeKind kind, String left, String right) {
+        switch (kind) {
+            case LT_NODE -> mipsCode.append("c.lt.s " + left + ", " + right + "\n");
+            case LE_NODE -> mipsCode.append("c.le.s " + left + ", " + right + "\n");
+            case GT_NODE -> mipsCode.append("c.lt.s " + right + ", " + left + "\n"); // operandos trocados
+            case GE_NODE -> mipsCode.append("c.le.s " + right + ", " + left + "\n"); // operandos trocados
+            default -> mipsCode.append("c.eq.s " + left + ", " + right + "\n");
+        }
+        return kind != NodeKind.NEQ_NODE;
+    }
+
+    private static NodeKind negatedComparison(NodeKind kind) {
+        return switch (kind) {
+            case EQ_NODE -> NodeKind.NEQ_NODE;
+            case NEQ_NODE -> NodeKind.EQ_NODE;
+            case LT_NODE -> NodeKind.GE_NODE;
+            case GE_NODE -> NodeKind.LT_NODE;
+            case GT_NODE -> NodeKind.LE_NODE;
+            default -> NodeKind.GT_NODE;
         };
-        
-        mipsCode.append(floatOp + " $f0, $f0, $f1\n");
-        
-        // Empilha resultado
-        emitPushFloat("$f0");
     }
 
-    private void visitRealDivision(AST node) {
-;
-        if (node.getChildCount() != 2) return;
-        
-        visitNode(node.getChild(0));
-        visitNode(node.getChild(1));
-        
-        emitPopFloat("$f1");
-        emitPopFloat("$f0");
-        
-        mipsCode.append("div.s $f0, $f0, $f1\n");
-        
-        emitPushFloat("$f0");
+    // ==================== Expressões ====================
+    //
+    // Cada expressão é avaliada para um registrador do pool ($t/$s para
+    // inteiros, booleanos, chars e endereços; $f para reais), que quem chama
+    // libera com freeRegister. Nos operadores binários é avaliado primeiro o
+    // operando que precisa de mais registradores (numeração de Sethi-Ullman);
+    // se o segundo não couber nos registradores livres, o resultado do
+    // primeiro vai para a pilha enquanto ele é avaliado. Chamadas salvam na
+    // pilha os registradores vivos.
+
+    /**
+     * Avalia a expressão e retorna o registrador com o resultado
+     */
+    private String emitExpr(AST node) {
+        String common = copyCommonValue(node);
+        if (common != null) {
+            return common;
+        }
+        return switch (node.kind) {
+            // Expressões aritméticas
+            case PLUS_NODE -> visitBinaryOp(node, "add");
+            case MINUS_NODE -> visitBinaryOp(node, "sub");
+            case TIMES_NODE -> visitBinaryOp(node, "mul");
+            case DIVIDE_NODE -> visitRealDivision(node);
+            case DIV_NODE -> visitIntegerDivision(node, "mflo");
+            case MOD_NODE -> visitIntegerDivision(node, "mfhi"); // resto da divisão
+            
+            // Expressões lógicas
+            case AND_NODE -> visitLogicalOp(node, "and");
+            case OR_NODE -> visitLogicalOp(node, "or");
+            case NOT_NODE -> visitLogicalNot(node);
+            
+            // Comparações
+            case EQ_NODE -> visitComparison(node, "eq");
+            case NEQ_NODE -> visitComparison(node, "ne");
+            case LT_NODE -> visitComparison(node, "lt");
+            case GT_NODE -> visitComparison(node, "gt");
+            case LE_NODE -> visitComparison(node, "le");
+            case GE_NODE -> visitComparison(node, "ge");
+            
+            // Valores
+            case INT_VAL_NODE, BOOL_VAL_NODE -> emitLoadImmediate(node.intData);
+            case REAL_VAL_NODE -> visitRealValue(node);
+            case CHAR_VAL_NODE -> visitCharValue(node);
+            case STR_VAL_NODE -> visitStringValue(node);
+            
+            // Variáveis e chamadas
+            case VAR_USE_NODE -> visitVariableUse(node);
+            case ARRAY_ACCESS_NODE -> visitArrayAccess(node);
+            case FUNC_CALL_NODE -> visitFunctionCall(node);
+            
+            // Conversões de tipo
+            case I2R_NODE -> visitIntegerToReal(node);
+            
+            // Parênteses e char -> string não geram código
+            case PAREN_EXPR_NODE, C2S_NODE -> emitExpr(node.getChild(0));
+            
+            default -> throw new RuntimeException("Unsupported expression node " + node.kind.name());
+        };
     }
 
-    private void visitIntegerDivision(AST node) {
-        if (node.getChildCount() != 2) return;
-        
-        visitNode(node.getChild(0));
-        visitNode(node.getChild(1));
-        
-        emitPopTemp("$t1");
-        emitPopTemp("$t0");
-        
-        mipsCode.append("div $t0, $t1\n");
-        mipsCode.append("mflo $t0\n");
-        
-        emitPushTemp("$t0");
+    private static boolean isExpression(NodeKind kind) {
+        return switch (kind) {
+            case PLUS_NODE, MINUS_NODE, TIMES_NODE, DIVIDE_NODE, DIV_NODE, MOD_NODE,
+                 AND_NODE, OR_NODE, NOT_NODE,
+                 EQ_NODE, NEQ_NODE, LT_NODE, GT_NODE, LE_NODE, GE_NODE,
+                 INT_VAL_NODE, REAL_VAL_NODE, BOOL_VAL_NODE, CHAR_VAL_NODE, STR_VAL_NODE,
+                 VAR_USE_NODE, ARRAY_ACCESS_NODE, FUNC_CALL_NODE, I2R_NODE, PAREN_EXPR_NODE, C2S_NODE -> true;
+            default -> false;
+        };
     }
 
-    private void visitModulo(AST node) {
+    /**
+     * Número de registradores necessários para avaliar a expressão sem
+     * spill (Sethi-Ullman). Chamadas contam como folhas, pois salvam os
+     * registradores vivos e devolvem o resultado em um único registrador.
+     */
+    private int registerNeed(AST node) {
+        Integer cached = registerNeeds.get(node);
+        if (cached != null) {
+            return cached;
+        }
+        int need = switch (node.kind) {
+            case PLUS_NODE, MINUS_NODE, TIMES_NODE, DIVIDE_NODE, DIV_NODE, MOD_NODE,
+                 AND_NODE, OR_NODE, EQ_NODE, NEQ_NODE, LT_NODE, GT_NODE, LE_NODE, GE_NODE -> {
+                int left = registerNeed(node.getChild(0));
+                int right = registerNeed(node.getChild(1));
+                yield left == right ? left + 1 : Math.max(left, right);
+            }
+            case NOT_NODE, I2R_NODE, ARRAY_ACCESS_NODE, PAREN_EXPR_NODE, C2S_NODE -> registerNeed(node.getChild(0));
+            default -> 1;
+        };
+        registerNeeds.put(node, need);
+        return need;
+    }
 
-        if (node.getChildCount() != 2) return;
-        
-        visitNode(node.getChild(0));
-        visitNode(node.getChild(1));
-        
-        emitPopTemp("$t1");
-        emitPopTemp("$t0");
-        
-        mipsCode.append("div $t0, $t1\n");
-        mipsCode.append("mfhi $t0\n"); // resto da divisão
-        
-        emitPushTemp("$t0");
+    // Verifica se a avaliação da expressão pode chamar uma sub-rotina
+    private boolean containsCall(AST node) {
+        if (node.kind == NodeKind.FUNC_CALL_NODE ||
+            (node.kind == NodeKind.VAR_USE_NODE && functionInfo.containsKey(node.stringData))) {
+            return true;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (containsCall(node.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    /**
+     * Avalia dois operandos e retorna {esquerdo, direito}. O operando que
+     * precisa de mais registradores é avaliado primeiro, exceto quando há
+     * chamadas, que mantêm a ordem da esquerda para a direita.
+     */
+    private String[] emitOperands(AST left, AST right) {
+        boolean rightFirst = registerNeed(right) > registerNeed(left) &&
+                             !containsCall(left) && !containsCall(right);
+        AST first = rightFirst ? right : left;
+        AST second = rightFirst ? left : right;
+        
+        String firstReg = emitExpr(first);
+        String secondReg;
+        if (registerNeed(second) > freeRegisterCount()) {
+            // Spill: o primeiro resultado espera na pilha
+            boolean isFloat = isFloatRegister(firstReg);
+            emitPush(firstReg);
+            freeRegister(firstReg);
+            secondReg = emitExpr(second);
+            firstReg = isFloat ? floatRegisters.allocate() : intRegisters.allocate();
+            emitPop(firstReg);
+        } else {
+            secondReg = emitExpr(second);
+        }
+        return rightFirst ? new String[] { secondReg, firstReg } : new String[] { firstReg, secondReg };
     }
 
-    private void visitLogicalAnd(AST node) {
-        if (node.getChildCount() != 2) return;
-        
-        visitNode(node.getChild(0));
-        visitNode(node.getChild(1));
-        
-        emitPopTemp("$t1");
-        emitPopTemp("$t0");
-        
-        mipsCode.append("and $t0, $t0, $t1\n");
+    private String visitBinaryOp(AST node, String operation) {
+        // Verifica se é operação com floats
+        if (node.type == Type.REAL) {
+            return visitFloatBinaryOp(node, operation);
+        }
         
-        emitPushTemp("$t0");
+        String[] regs = emitOperands(node.getChild(0), node.getChild(1));
+        mipsCode.append(operation + " " + regs[0] + ", " + regs[0] + ", " + regs[1] + "\n");
+        freeRegister(regs[1]);
+        return regs[0];
     }
 
-    private void visitLogicalOr(AST node) {
-        if (node.getChildCount() != 2) return;
-        
-        visitNode(node.getChild(0));
-        visitNode(node.getChild(1));
-        
-        emitPopTemp("$t1");
-        emitPopTemp("$t0");
-        
-        mipsCode.append("or $t0, $t0, $t1\n");
+    private String visitFloatBinaryOp(AST node, String operation) {
+        String floatOp = switch (operation) {
+            case "add" -> "add.s";
+            case "sub" -> "sub.s";
+            case "mul" -> "mul.s";
+            default -> "add.s";
+        };
         
-        emitPushTemp("$t0");
+        String[] regs = emitOperands(node.getChild(0), node.getChild(1));
+        mipsCode.append(floatOp + " " + regs[0] + ", " + regs[0] + ", " + regs[1] + "\n");
+        freeRegister(regs[1]);
+        return regs[0];
     }
 
-    private void visitLogicalNot(AST node) {
-        if (node.getChildCount() != 1) return;
-        
-        visitNode(node.getChild(0));
-        emitPopTemp("$t0");
-        
-        mipsCode.append("seq $t0, $t0, $zero\n"); // set equal to zero
-        
-        emitPushTemp("$t0");
+    private String visitRealDivision(AST node) {
+        String[] regs = emitOperands(node.getChild(0), node.getChild(1));
+        mipsCode.append("div.s " + regs[0] + ", " + regs[0] + ", " + regs[1] + "\n");
+        freeRegister(regs[1]);
+        return regs[0];
     }
 
-    private void visitComparison(AST node, String operation) {
-        if (node.getChildCount() != 2) return;
-        
+    // div e mod: quociente em LO (mflo) e resto em HI (mfhi)
+    private String visitIntegerDivision(AST node, String move) {
+        String[] regs = emitOperands(node.getChild(0), node.getChild(1));
+        mipsCode.append("div " + regs[0] + ", " + regs[1] + "\n");
+        mipsCode.append(move + " " + regs[0] + "\n");
+        freeRegister(regs[1]);
+        return regs[0];
+    }
+
+    private String visitLogicalOp(AST node, String operation) {
+        String[] regs = emitOperands(node.getChild(0), node.getChild(1));
+        mipsCode.append(operation + " " + regs[0] + ", " + regs[0] + ", " + regs[1] + "\n");
+        freeRegister(regs[1]);
+        return regs[0];
+    }
+
+    private String visitLogicalNot(AST node) {
+        String reg = emitExpr(node.getChild(0));
+        mipsCode.append("seq " + reg + ", " + reg + ", $zero\n"); // set equal to zero
+        return reg;
+    }
+
+    private String visitComparison(AST node, String operation) {
         // Verifica se é comparação de floats
         AST left = node.getChild(0);
         AST right = node.getChild(1);
         
         if (left.type == Type.REAL || right.type == Type.REAL) {
-            visitFloatComparison(node, operation);
-            return;
+            return visitFloatComparison(node);
         }
         
-        visitNode(node.getChild(0));
-        visitNode(node.getChild(1));
-        
-        emitPopTemp("$t1");
-        emitPopTemp("$t0");
+        String[] regs = emitOperands(left, right);
         
         String instruction = switch (operation) {
             case "eq" -> "seq";
@@ -1208,363 +1658,259 @@ public class CodegenVisitor {
             default -> "seq";
         };
         
-        mipsCode.append(instruction + " $t0, $t0, $t1\n");
-        
-        emitPushTemp("$t0");
+        mipsCode.append(instruction + " " + regs[0] + ", " + regs[0] + ", " + regs[1] + "\n");
+        freeRegister(regs[1]);
+        return regs[0];
     }
 
-    private void visitFloatComparison(AST node, String operation) {;
-        if (node.getChildCount() != 2) return;
-        
-        visitNode(node.getChild(0));
-        visitNode(node.getChild(1));
-        
-        emitPopFloat("$f1");
-        emitPopFloat("$f0");
-        
-        String instruction = switch (operation) {
-            case "eq" -> "c.eq.s";
-            case "ne" -> "c.eq.s";  // negamos depois
-            case "lt" -> "c.lt.s";
-            case "le" -> "c.le.s";
-            case "gt" -> "c.lt.s";  // trocamos operandos
-            case "ge" -> "c.le.s";  // trocamos operandos
-            default -> "c.eq.s";
-        };
-        
-        if (operation.equals("gt") || operation.equals("ge")) {
-            mipsCode.append(instruction + " $f1, $f0\n"); // operandos trocados
-        } else {
-            mipsCode.append(instruction + " $f0, $f1\n");
-        }
-        
-        // Converte resultado da comparação para inteiro
-        String trueLabel = generateLabel("true_cmp");
-        String endLabel = generateLabel("end_cmp");
-        
-        if (operation.equals("ne")) {
-            mipsCode.append("bc1f " + trueLabel + "\n"); // salta se falso (diferente)
-            mipsCode.append("li $t0, 0\n");
-            mipsCode.append("j " + endLabel + "\n");
-            mipsCode.append(trueLabel + ":\n");
-            mipsCode.append("li $t0, 1\n");
-        } else {
-            mipsCode.append("bc1t " + trueLabel + "\n"); // salta se verdadeiro
-            mipsCode.append("li $t0, 0\n");
-            mipsCode.append("j " + endLabel + "\n");
-            mipsCode.append(trueLabel + ":\n");
-            mipsCode.append("li $t0, 1\n");
-        }
-        
-        mipsCode.append(endLabel + ":\n");
-        emitPushTemp("$t0");
-  
+    private String visitFloatComparison(AST node) {
+        String[] regs = emitOperands(node.getChild(0), node.getChild(1));
+        boolean flag = emitFloatCompare(node.kind, regs[0], regs[1]);
+        freeRegister(regs[0]);
+        freeRegister(regs[1]);
+        
+        // Converte o flag da comparação para 0/1 sem desvios
+        String resultReg = intRegisters.allocate();
+        mipsCode.append("li " + resultReg + ", 1\n");
+        mipsCode.append((flag ? "movf " : "movt ") + resultReg + ", $zero\n");
+        return resultReg;
     }
 
-    private void visitIntValue(AST node) {
-
-        mipsCode.append("li $t0, " + node.intData + "\n");
-        emitPushTemp("$t0");
-
+    private String emitLoadImmediate(int value) {
+        String reg = intRegisters.allocate();
+        mipsCode.append("li " + reg + ", " + value + "\n");
+        return reg;
     }
 
-    private void visitRealValue(AST node) {
-      
-        // Para valores reais, criamos uma constante float na seção .data
-        String floatLabel = generateLabel("float_const");
-        
-        // Insere declaração na seção .data
-        String currentText = mipsCode.toString();
-        int dataEnd = currentText.indexOf(".text");
-        if (dataEnd != -1) {
-            String dataPart = currentText.substring(0, dataEnd);
-            String textPart = currentText.substring(dataEnd);
-            
-            mipsCode.setLength(0);
-            mipsCode.append(dataPart);
-            mipsCode.append(floatLabel + ": .float " + node.floatData + "\n");
-            mipsCode.append(textPart);
-        }
-        
-        // Carrega o valor float
-        mipsCode.append("lwc1 $f0, " + floatLabel + "\n");
-        emitPushFloat("$f0");
+    private String visitRealValue(AST node) {
+        String reg = floatRegisters.allocate();
+        emitLoadReal(reg, node.floatData);
+        return reg;
     }
 
-    private void visitBoolValue(AST node) {
-        mipsCode.append("li $t0, " + node.intData + "\n");
-        emitPushTemp("$t0");
-
+    /**
+     * Carrega uma constante real em freg. 0.0 e reais inteiros pequenos são
+     * montados a partir de inteiros; os demais vêm do pool em .data, que
+     * declara cada valor distinto (pelos bits do float) uma única vez.
+     */
+    private void emitLoadReal(String freg, float value) {
+        int bits = Float.floatToRawIntBits(value);
+        if (bits == 0) {
+            mipsCode.append("mtc1 $zero, " + freg + "\n");
+        } else if (value == (int) value && Math.abs(value) < SMALL_REAL_LIMIT && bits != 0x80000000) {
+            mipsCode.append("li " + SCRATCH + ", " + (int) value + "\n");
+            mipsCode.append("mtc1 " + SCRATCH + ", " + freg + "\n");
+            mipsCode.append("cvt.s.w " + freg + ", " + freg + "\n");
+        } else {
+            String label = realConstants.get(bits);
+            if (label == null) {
+                label = generateLabel("float_const");
+                realConstants.put(bits, label);
+                emitData(label + ": .float " + value);
+            }
+            mipsCode.append("lwc1 " + freg + ", " + label + "\n");
+        }
     }
 
-    private void visitCharValue(AST node) {
-
+    private String visitCharValue(AST node) {
         // Converte char para seu valor ASCII
         if (node.stringData != null && !node.stringData.isEmpty()) {
             char c = node.stringData.charAt(1); // Remove aspas
-            mipsCode.append("li $t0, " + (int) c + "\n");
-        } else {
-            mipsCode.append("li $t0, 0\n");
+            return emitLoadImmediate(c);
         }
-        emitPushTemp("$t0");
-
+        return emitLoadImmediate(0);
     }
 
-    private void visitStringValue(AST node) {
+    private String visitStringValue(AST node) {
         // Encontra o índice da string na tabela
-        if (strTable != null && node.stringData != null) {
-            int index = strTable.indexOf(node.stringData);
-            if (index >= 0) {
-                mipsCode.append("la $t0, str_" + index + "\n");
-                emitPushTemp("$t0");
-            }
+        int index = strTable != null && node.stringData != null ? strTable.indexOf(node.stringData) : -1;
+        if (index < 0) {
+            throw new RuntimeException("String " + node.stringData + " not found in string table");
         }
-
+        String reg = intRegisters.allocate();
+        mipsCode.append("la " + reg + ", str_" + index + "\n");
+        return reg;
     }
 
-    private void visitVariableUse(AST node) {
-
+    private String visitVariableUse(AST node) {
         String varName = node.stringData;
         
         // Antes de tratar como variável, verifica se é uma função.
-        if (functionInfo.containsKey(varName)) {
-            FuncEntry funcInfo = functionInfo.get(varName);
-            Type returnType = funcInfo.getEntryType();
-            if (returnType != null) {
-                // É uma chamada de função sem parâmetros, tratada como "uso de variável" pelo parser.
-                mipsCode.append("jal func_" + funcInfo.getName() + "\n"); // Chama a função
-                
-                // O valor de retorno da função está em $v0 (int) ou $f0 (real).
-                // Empilhamos esse valor para que a operação de atribuição possa usá-lo.
-                if (returnType == Type.REAL) {
-                    emitPushFloat("$f0");
-                } else {
-                    emitPushTemp("$v0");
-                }
-                return; // Impede a execução do resto do código do método.
-            }
+        if (functionInfo.containsKey(varName) && functionInfo.get(varName).getEntryType() != null) {
+            // É uma chamada de função sem parâmetros, tratada como "uso de variável" pelo parser.
+            return emitCall(varName, null);
         }
 
+        boolean isFloat = node.type == Type.REAL;
+        
         // Primeiro verifica se estamos dentro de uma função/procedimento
         if (currentFunction != null) {
             // Verifica primeiro se é um parâmetro usando a lista de parâmetros
-            FuncEntry funcInfo = functionInfo.get(currentFunction.name);
-            if (funcInfo != null) {
-                for (ParamEntry param : funcInfo.getParameters()) {
-                    if (param.getName().equals(varName)) {
-                        int offset = currentFunction.localVarOffsets.get(param.getName());
-                        if (param.isReference()) {
-                            // Parâmetro por referência - carrega através do endereço armazenado
-                            mipsCode.append("lw $t0, " + offset + "($fp)\n"); // carrega endereço do parâmetro
-                            
-                            if (node.type == Type.REAL) {
-                                mipsCode.append("lwc1 $f0, 0($t0)\n"); // carrega valor através do endereço
-                                emitPushFloat("$f0");
-                            } else {
-                                mipsCode.append("lw $t1, 0($t0)\n"); // carrega valor através do endereço
-                                emitPushTemp("$t1");
-                            }
-                        } else {
-                            // Parâmetro por valor - acessa diretamente do stack frame
-                            if (node.type == Type.REAL) {
-                                mipsCode.append("lwc1 $f0, " + offset + "($fp)\n");
-                                emitPushFloat("$f0");
-                            } else {
-                                mipsCode.append("lw $t0, " + offset + "($fp)\n");
-                                emitPushTemp("$t0");
-                            }
-                        }
-                        return; // Encontrou o parâmetro, termina aqui
+            ParamEntry param = findParameter(varName);
+            String argReg = currentFunction.paramRegisters.get(varName);
+            if (argReg != null) {
+                return emitRegisterParameterLoad(param, argReg, isFloat);
+            }
+            if (param != null) {
+                int offset = currentFunction.localVarOffsets.get(param.getName());
+                if (param.isReference()) {
+                    // Parâmetro por referência - carrega através do endereço armazenado
+                    String addressReg = intRegisters.allocate();
+                    mipsCode.append("lw " + addressReg + ", " + offset + "($fp)\n"); // carrega endereço do parâmetro
+                    if (!isFloat) {
+                        mipsCode.append("lw " + addressReg + ", 0(" + addressReg + ")\n");
+                        return addressReg;
                     }
+                    String reg = floatRegisters.allocate();
+                    mipsCode.append("lwc1 " + reg + ", 0(" + addressReg + ")\n");
+                    freeRegister(addressReg);
+                    return reg;
                 }
+                // Parâmetro por valor - acessa diretamente do stack frame
+                return emitLoad(isFloat, offset + "($fp)");
             }
             
             // Se não é parâmetro, verifica se é variável local
             // As variáveis locais usam offsets negativos
-            if (currentFunction.localVarOffsets.containsKey(varName)) {
-                int offset = currentFunction.localVarOffsets.get(varName);
-                
-                // Só usar este path se o offset for negativo (variável local)
-                if (offset < 0) {
-                    if (node.type == Type.REAL) {
-                        mipsCode.append("lwc1 $f0, " + offset + "($fp)\n");
-                        emitPushFloat("$f0");
-                    } else {
-                        mipsCode.append("lw $t0, " + offset + "($fp)\n");
-                        emitPushTemp("$t0");
-                    }
-                    return;
-                }
+            Integer offset = currentFunction.localVarOffsets.get(varName);
+            if (offset != null && offset < 0) {
+                return emitLoad(isFloat, offset + "($fp)");
             }
         }
         
         // Se não é variável local nem parâmetro, deve ser variável global
         String label = varLabels.get(varName);
         if (label != null) {
-            if (node.type == Type.REAL) {
-                mipsCode.append("lwc1 $f0, " + label + "\n");
-                emitPushFloat("$f0");
-            } else {
-                mipsCode.append("lw $t0, " + label + "\n");
-                emitPushTemp("$t0");
-            }
-        } else {
-            // Fallback: se a variável não foi encontrada, carrega valor zero
-            // Isso pode indicar um erro na análise semântica ou tabela de símbolos
-            if (node.type == Type.REAL) {
-                // Para floats, precisa criar uma constante zero
-                String zeroLabel = generateLabel("zero_float");
-                String currentText = mipsCode.toString();
-                int dataEnd = currentText.indexOf(".text");
-                if (dataEnd != -1) {
-                    String dataPart = currentText.substring(0, dataEnd);
-                    String textPart = currentText.substring(dataEnd);
-                    
-                    mipsCode.setLength(0);
-                    mipsCode.append(dataPart);
-                    mipsCode.append(zeroLabel + ": .float 0.0\n");
-                    mipsCode.append(textPart);
+            return emitLoad(isFloat, label);
+        }
+        
+        // Fallback: se a variável não foi encontrada, carrega valor zero
+        // Isso pode indicar um erro na análise semântica ou tabela de símbolos
+        if (isFloat) {
+            String reg = floatRegisters.allocate();
+            emitLoadReal(reg, 0.0f);
+            return reg;
+        }
+        return emitLoadImmediate(0);
+    }
+
+    // Parâmetro em registrador de argumento: valor ou endereço (VAR)
+    private String emitRegisterParameterLoad(ParamEntry param, String argReg, boolean isFloat) {
+        if (param.isReference()) {
+            return emitLoad(isFloat, "0(" + argReg + ")");
+        }
+        String reg = isFloat ? floatRegisters.allocate() : intRegisters.allocate();
+        emitArgumentMove(reg, argReg);
+        return reg;
+    }
+
+    // Carrega uma palavra (lw ou lwc1) de um endereço em um novo registrador
+    private String emitLoad(boolean isFloat, String address) {
+        String reg = isFloat ? floatRegisters.allocate() : intRegisters.allocate();
+        mipsCode.append((isFloat ? "lwc1 " : "lw ") + reg + ", " + address + "\n");
+        return reg;
+    }
+
+    private ParamEntry findParameter(String name) {
+        FuncEntry funcInfo = functionInfo.get(currentFunction.name);
+        if (funcInfo != null) {
+            for (ParamEntry param : funcInfo.getParameters()) {
+                if (param.getName().equals(name)) {
+                    return param;
                 }
-                mipsCode.append("lwc1 $f0, " + zeroLabel + "\n");
-                emitPushFloat("$f0");
-            } else {
-                mipsCode.append("li $t0, 0\n");
-                emitPushTemp("$t0");
             }
         }
+        return null;
     }
 
-    private void visitArrayAccess(AST node) {
-        String arrayName = node.stringData;
-        AST indexNode = node.getChild(0);
-        
-        // Calcula o índice
-        visitNode(indexNode);
-        emitPopTemp("$t1"); // índice
-        
-        // Ajusta o índice baseado no startIndex do array
-        ArrayEntry info = arrayInfo.get(arrayName);
-        if (info != null && info.getStartIndex() != 0) {
-            mipsCode.append("addi $t1, $t1, " + (-info.getStartIndex()) + "\n");
+    private String visitArrayAccess(AST node) {
+        String common = commonAddress(node);
+        if (common != null) {
+            return emitLoad(node.type == Type.REAL, "0(" + common + ")");
         }
-        
-        // Calcula endereço: base + (índice * 4)
-        String arrayLabel = varLabels.get(arrayName);
-        if (arrayLabel != null) {
-            mipsCode.append("sll $t1, $t1, 2\n"); // multiplica por 4
-            mipsCode.append("la $t0, " + arrayLabel + "\n");
-            mipsCode.append("add $t0, $t0, $t1\n");
-            
-            if (node.type == Type.REAL) {
-                mipsCode.append("lwc1 $f0, 0($t0)\n");
-                emitPushFloat("$f0");
-            } else {
-                mipsCode.append("lw $t0, 0($t0)\n");
-                emitPushTemp("$t0");
-            }
+        String addressReg = emitElementAddress(node, emitExpr(node.getChild(0)));
+        if (node.type != Type.REAL) {
+            mipsCode.append("lw " + addressReg + ", 0(" + addressReg + ")\n");
+            return addressReg;
         }
+        String reg = floatRegisters.allocate();
+        mipsCode.append("lwc1 " + reg + ", 0(" + addressReg + ")\n");
+        freeRegister(addressReg);
+        return reg;
     }
 
-    private void visitIntegerToReal(AST node) {
-        if (node.getChildCount() != 1) return;
-        
+    private String visitIntegerToReal(AST node) {
         // Avalia o valor inteiro
-        visitNode(node.getChild(0));
-        emitPopTemp("$t0");
+        String intReg = emitExpr(node.getChild(0));
+        freeRegister(intReg);
         
         // Converte inteiro para float
-        mipsCode.append("mtc1 $t0, $f0\n");   // move para coprocessador
-        mipsCode.append("cvt.s.w $f0, $f0\n"); // converte word para single
-        
-        emitPushFloat("$f0");
+        String reg = floatRegisters.allocate();
+        mipsCode.append("mtc1 " + intReg + ", " + reg + "\n");   // move para coprocessador
+        mipsCode.append("cvt.s.w " + reg + ", " + reg + "\n");   // converte word para single
+        return reg;
     }
 
-    private void emitArgumentByReference(AST argNode) {
+    private String emitArgumentByReference(AST argNode) {
         if (argNode.kind == NodeKind.VAR_USE_NODE) {
             String varName = argNode.stringData;
+            String reg = intRegisters.allocate();
             
             if (currentFunction != null && currentFunction.localVarOffsets.containsKey(varName)) {
-                // Variável local - calcula endereço baseado em $fp
                 int offset = currentFunction.localVarOffsets.get(varName);
-                mipsCode.append("addi $t0, $fp, " + offset + "\n");
+                ParamEntry param = findParameter(varName);
+                if (param != null && param.isReference()) {
+                    // Parâmetro por referência - repassa o endereço recebido
+                    mipsCode.append("lw " + reg + ", " + offset + "($fp)\n");
+                } else {
+                    // Variável local - calcula endereço baseado em $fp
+                    mipsCode.append("addi " + reg + ", $fp, " + offset + "\n");
+                }
             } else {
                 // Variável global - usa label
                 String label = varLabels.get(varName);
                 if (label != null) {
-                    mipsCode.append("la $t0, " + label + "\n");
+                    mipsCode.append("la " + reg + ", " + label + "\n");
                 } else {
-                    mipsCode.append("li $t0, 0\n"); // Fallback
+                    mipsCode.append("li " + reg + ", 0\n"); // Fallback
                 }
             }
-            
-            emitPushTemp("$t0");
-            
+            return reg;
         } else if (argNode.kind == NodeKind.ARRAY_ACCESS_NODE) {
             // Referência para elemento de array
-            String arrayName = argNode.stringData;
-            AST indexNode = argNode.getChild(0);
-            
-            // Calcula o índice
-            visitNode(indexNode);
-            emitPopTemp("$t1");
-            
-            // Ajusta o índice
-            ArrayEntry info = arrayInfo.get(arrayName);
-            if (info != null && info.getStartIndex() != 0) {
-                mipsCode.append("addi $t1, $t1, " + (-info.getStartIndex()) + "\n");
-            }
-            
-            // Calcula endereço do elemento
-            String arrayLabel = varLabels.get(arrayName);
-            if (arrayLabel != null) {
-                mipsCode.append("sll $t1, $t1, 2\n");
-                mipsCode.append("la $t0, " + arrayLabel + "\n");
-                mipsCode.append("add $t0, $t0, $t1\n");
-                emitPushTemp("$t0");
-            }
+            return emitElementAddress(argNode, emitExpr(argNode.getChild(0)));
         }
+        throw new RuntimeException("Argument passed by reference must be a variable");
     }
 
     private void storeIntoVariable(AST varNode, String sourceReg, boolean isFloat) {
         String varName = varNode.stringData;
+        String store = isFloat ? "swc1 " : "sw ";
         
-        // Verifica se é parâmetro por referência
         if (currentFunction != null) {
-            FuncEntry funcInfo = functionInfo.get(currentFunction.name);
-            if (funcInfo != null) {
-                for (ParamEntry param : funcInfo.getParameters()) {
-                    if (param.getName().equals(varName) && param.isReference()) {
-                        // É parâmetro por referência - armazena através do endereço
-                        int offset = currentFunction.localVarOffsets.get(param.getName()); // Get the offset from FunctionContext
-                        mipsCode.append("lw $t2, " + offset + "($fp)\n"); // carrega endereço
-                        
-                        if (isFloat) {
-                            mipsCode.append("swc1 " + sourceReg + ", 0($t2)\n");
-                        } else {
-                            mipsCode.append("sw " + sourceReg + ", 0($t2)\n");
-                        }
-                        return;
-                    } else if (param.getName().equals(varName)) {
-                        // Parâmetro por valor - armazena diretamente no stack frame
-                        int offset = currentFunction.localVarOffsets.get(param.getName());
-                        if (isFloat) {
-                            mipsCode.append("swc1 " + sourceReg + ", " + offset + "($fp)\n");
-                        } else {
-                            mipsCode.append("sw " + sourceReg + ", " + offset + "($fp)\n");
-                        }
-                        return;
-                    }
+            ParamEntry param = findParameter(varName);
+            String argReg = currentFunction.paramRegisters.get(varName);
+            if (argReg != null) {
+                // Parâmetro em $aN: endereço (VAR) ou o próprio valor
+                if (param.isReference()) {
+                    mipsCode.append(store + sourceReg + ", 0(" + argReg + ")\n");
+                } else {
+                    emitArgumentMove(argReg, sourceReg);
                 }
+                return;
+            }
+            if (param != null && param.isReference()) {
+                // É parâmetro por referência - armazena através do endereço
+                int offset = currentFunction.localVarOffsets.get(param.getName());
+                mipsCode.append("lw " + SCRATCH + ", " + offset + "($fp)\n"); // carrega endereço
+                mipsCode.append(store + sourceReg + ", 0(" + SCRATCH + ")\n");
+                return;
             }
             
-            // Variável local normal
-            if (currentFunction.localVarOffsets.containsKey(varName)) {
-                int offset = currentFunction.localVarOffsets.get(varName);
-                if (isFloat) {
-                    mipsCode.append("swc1 " + sourceReg + ", " + offset + "($fp)\n");
-                } else {
-                    mipsCode.append("sw " + sourceReg + ", " + offset + "($fp)\n");
-                }
+            // Parâmetro por valor ou variável local normal
+            Integer offset = currentFunction.localVarOffsets.get(varName);
+            if (offset != null) {
+                mipsCode.append(store + sourceReg + ", " + offset + "($fp)\n");
                 return;
             }
         }
@@ -1572,11 +1918,77 @@ public class CodegenVisitor {
         // Variável global
         String label = varLabels.get(varName);
         if (label != null) {
-            if (isFloat) {
-                mipsCode.append("swc1 " + sourceReg + ", " + label + "\n");
-            } else {
-                mipsCode.append("sw " + sourceReg + ", " + label + "\n");
+            mipsCode.append(store + sourceReg + ", " + label + "\n");
+        }
+    }
+
+    // ==================== Registradores ====================
+
+    private void freeRegister(String reg) {
+        if (isFloatRegister(reg)) {
+            floatRegisters.free(reg);
+        } else {
+            intRegisters.free(reg);
+        }
+    }
+
+    private static boolean isFloatRegister(String reg) {
+        return reg.startsWith("$f");
+    }
+
+    // Menor número de registradores livres entre os dois pools
+    private int freeRegisterCount() {
+        return Math.min(intRegisters.freeCount(), floatRegisters.freeCount());
+    }
+
+    private void emitPush(String reg) {
+        if (isFloatRegister(reg)) {
+            emitPushFloat(reg);
+        } else {
+            emitPushTemp(reg);
+        }
+    }
+
+    private void emitPop(String reg) {
+        if (isFloatRegister(reg)) {
+            emitPopFloat(reg);
+        } else {
+            emitPopTemp(reg);
+        }
+    }
+
+    /**
+     * Salva na pilha os registradores vivos antes de uma chamada (a sub-rotina
+     * pode usar qualquer registrador do pool) e os libera para os argumentos
+     */
+    private List<String> saveLiveRegisters() {
+        List<String> live = new ArrayList<>(intRegisters.allocatedRegisters());
+        live.addAll(floatRegisters.allocatedRegisters());
+        if (!live.isEmpty()) {
+            mipsCode.append("subu $sp, $sp, " + (live.size() * 4) + "\n");
+            for (int i = 0; i < live.size(); i++) {
+                String reg = live.get(i);
+                mipsCode.append((isFloatRegister(reg) ? "swc1 " : "sw ") + reg + ", " + (i * 4) + "($sp)\n");
+            }
+            intRegisters.reset();
+            floatRegisters.reset();
+        }
+        return live;
+    }
+
+    private void restoreLiveRegisters(List<String> live) {
+        if (!live.isEmpty()) {
+            for (int i = 0; i < live.size(); i++) {
+                String reg = live.get(i);
+                if (isFloatRegister(reg)) {
+                    floatRegisters.reserve(reg);
+                    mipsCode.append("lwc1 " + reg + ", " + (i * 4) + "($sp)\n");
+                } else {
+                    intRegisters.reserve(reg);
+                    mipsCode.append("lw " + reg + ", " + (i * 4) + "($sp)\n");
+                }
             }
+            mipsCode.append("addu $sp, $sp, " + (live.size() * 4) + "\n");
         }
     }
 }
@@ -0,0 +1,611 @@
+package codegen;
+
+import ir.BasicBlock;
+import ir.Const;
+import ir.Instr;
+import ir.IrProgram;
+import ir.IrRoutine;
+import ir.Op;
+import ir.Operand;
+import ir.Temp;
+import ir.Variable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Seleção de instruções MIPS a partir do código de três endereços.
+ *
+ * Frame de cada rotina, endereçado pelo $sp (que não muda dentro do corpo):
+ *
+ *     F + 4i   argumento i (área de saída do chamador)
+ *     ...      $ra, registradores preservados, entrada salva do display
+ *     ...      variáveis em memória e slots de spill
+ *     0 .. 4n  área de saída para os argumentos das chamadas
+ *
+ * Variáveis do frame acessadas por rotinas aninhadas são alcançadas pelo
+ * display (.data), onde cada rotina que as possui registra seu $sp.
+ * $t8/$t9 e $f30/$f31 ficam reservados para operandos em memória e
+ * constantes; $v0, $a0, $f0 e $f12 para syscalls e valores de retorno.
+ */
+public class InstructionSelector {
+
+    private static final String SCRATCH = "$t8";
+    private static final String SCRATCH2 = "$t9";
+    private static final String FLOAT_SCRATCH = "$f30";
+    private static final String FLOAT_SCRATCH2 = "$f31";
+
+    private MipsCode text;
+    private StringBuilder data;
+
+    // Otimizador aplicado à seção .text ao final (null desativa)
+    private PeepholeOptimizer peephole = PeepholeOptimizer.standard();
+    private StrengthReduction strengthReduction = new StrengthReduction();
+
+    // Pool de constantes reais: bits do float -> label em .data
+    private Map<Integer, String> realConstants;
+
+    // Rotina em seleção
+    private IrRoutine routine;
+    private LinearScan registers;
+    private int frameSize;
+    private int spillBase;
+    private int displaySlot;
+    private int returnAddressSlot;
+    private final Map<String, Integer> savedSlots = new HashMap<>();
+
+    /**
+     * Gera o programa MIPS completo
+     */
+    public String generate(IrProgram program) {
+        text = new MipsCode();
+        data = new StringBuilder();
+        realConstants = new HashMap<>();
+
+        // Globais primeiro: .space não alinha e as strings vêm depois
+        data.append(".data\n");
+        if (program.displayDepth >= 0) {
+            data.append("display: .space ").append(4 * (program.displayDepth + 1)).append('\n');
+        }
+        for (Variable global : program.globals) {
+            data.append(global.label).append(": .space ").append(4 * global.words()).append('\n');
+        }
+
+        text.append(".text\n.globl main");
+        for (IrRoutine r : program.routines) {
+            selectRoutine(r);
+        }
+
+        data.append("newline: .asciiz \"\\n\"\n");
+        for (int i = 0; i < program.strings.size(); i++) {
+            data.append("str_").append(i).append(": .asciiz ")
+                .append(CodegenVisitor.convertPascalStringToMips(program.strings.get(i))).append('\n');
+        }
+        data.append('\n');
+        if (strengthReduction != null) {
+            strengthReduction.reduce(text.instructions());
+        }
+        if (peephole != null) {
+            peephole.optimize(text.instructions());
+        }
+        return data.append(text).toString();
+    }
+
+    /**
+     * Define o otimizador peephole da seção .text (null para desativar)
+     */
+    public void setPeephole(PeepholeOptimizer peephole) {
+        this.peephole = peephole;
+    }
+
+    /**
+     * Define a redução de força aplicada antes do peephole (null para desativar)
+     */
+    public void setStrengthReduction(StrengthReduction strengthReduction) {
+        this.strengthReduction = strengthReduction;
+    }
+
+    // ==================== Emissão ====================
+
+    private void emit(String instruction) {
+        text.append(instruction);
+    }
+
+    private void emitLabel(String label) {
+        text.append(label + ":");
+    }
+
+    // ==================== Rotinas ====================
+
+    private void selectRoutine(IrRoutine r) {
+        routine = r;
+        registers = new LinearScan(r);
+        layoutFrame();
+
+        text.append("\n");
+        emitLabel(r.label);
+        if (frameSize > 0) {
+            emit("subu $sp, $sp, " + frameSize);
+        }
+        if (!r.isMain()) {
+            emit("sw $ra, " + returnAddressSlot + "($sp)");
+            for (Map.Entry<String, Integer> saved : savedSlots.entrySet()) {
+                emit((isFloat(saved.getKey()) ? "swc1 " : "sw ") + saved.getKey() + ", " + saved.getValue() + "($sp)");
+            }
+            if (r.usesDisplay) {
+                emit("lw " + SCRATCH + ", " + displayEntry(r.depth));
+                emit("sw " + SCRATCH + ", " + displaySlot + "($sp)");
+                emit("sw $sp, " + displayEntry(r.depth));
+            }
+        }
+
+        List<BasicBlock> blocks = r.blocks;
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            if (i > 0) {
+                emitLabel(block.label);
+            }
+            BasicBlock next = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+            for (Instr instr : block.instrs) {
+                select(instr, next);
+            }
+        }
+    }
+
+    /**
+     * Calcula os offsets do frame: área de saída, spills, variáveis,
+     * display, registradores preservados e $ra
+     */
+    private void layoutFrame() {
+        int maxArgs = 0;
+        for (BasicBlock block : routine.blocks) {
+            for (Instr instr : block.instrs) {
+                if (instr.op == Op.CALL) {
+                    maxArgs = Math.max(maxArgs, instr.args.length);
+                }
+            }
+        }
+        int offset = 4 * maxArgs;
+        spillBase = offset;
+        offset += 4 * registers.spillCount();
+        for (Variable variable : routine.frameVariables) {
+            variable.offset = offset;
+            offset += 4 * variable.words();
+        }
+        displaySlot = -1;
+        savedSlots.clear();
+        returnAddressSlot = -1;
+        if (!routine.isMain()) {
+            if (routine.usesDisplay) {
+                displaySlot = offset;
+                offset += 4;
+            }
+            for (String register : registers.calleeSavedUsed()) {
+                savedSlots.put(register, offset);
+                offset += 4;
+            }
+            returnAddressSlot = offset;
+            offset += 4;
+        }
+        frameSize = offset;
+    }
+
+    private void emitEpilogue() {
+        if (routine.usesDisplay) {
+            emit("lw " + SCRATCH + ", " + displaySlot + "($sp)");
+            emit("sw " + SCRATCH + ", " + displayEntry(routine.depth));
+        }
+        for (Map.Entry<String, Integer> saved : savedSlots.entrySet()) {
+            emit((isFloat(saved.getKey()) ? "lwc1 " : "lw ") + saved.getKey() + ", " + saved.getValue() + "($sp)");
+        }
+        emit("lw $ra, " + returnAddressSlot + "($sp)");
+        emit("addu $sp, $sp, " + frameSize);
+        emit("jr $ra");
+    }
+
+    private static String displayEntry(int depth) {
+        return "display+" + (4 * depth);
+    }
+
+    private static boolean isFloat(String register) {
+        return register.startsWith("$f");
+    }
+
+    // ==================== Operandos ====================
+
+    /**
+     * Registrador com o valor do operando; operandos em memória e constantes
+     * são carregados no registrador auxiliar dado
+     */
+    private String use(Operand operand, String scratch) {
+        if (operand instanceof Temp temp) {
+            String register = registers.register(temp);
+            if (register != null) {
+                return register;
+            }
+            emit((temp.isReal() ? "lwc1 " : "lw ") + scratch + ", " + spillAddress(temp));
+            return scratch;
+        }
+        Const constant = (Const) operand;
+        if (!constant.isReal()) {
+            if (constant.intValue() == 0) {
+                return "$zero";
+            }
+            emit("li " + scratch + ", " + constant.intValue());
+            return scratch;
+        }
+        loadReal(scratch, constant);
+        return scratch;
+    }
+
+    private String useInt(Operand operand, String scratch) {
+        return use(operand, scratch);
+    }
+
+    private String useFloat(Operand operand, String scratch) {
+        return use(operand, scratch);
+    }
+
+    /**
+     * Registrador onde calcular o destino (o auxiliar, se ele vive na memória)
+     */
+    private String def(Temp temp) {
+        String register = registers.register(temp);
+        if (register != null) {
+            return register;
+        }
+        return temp.isReal() ? FLOAT_SCRATCH : SCRATCH;
+    }
+
+    /**
+     * Grava o destino calculado em def() no slot de spill, se for o caso
+     */
+    private void commit(Temp temp, String register) {
+        if (registers.register(temp) == null) {
+            emit((temp.isReal() ? "swc1 " : "sw ") + register + ", " + spillAddress(temp));
+        }
+    }
+
+    private String spillAddress(Temp temp) {
+        return (spillBase + 4 * registers.spillSlot(temp)) + "($sp)";
+    }
+
+    /**
+     * Carrega uma constante real: 0.0 com mtc1, as demais do pool em .data
+     */
+    private void loadReal(String register, Const constant) {
+        if (constant.bits == 0) {
+            emit("mtc1 $zero, " + register);
+            return;
+        }
+        String label = realConstants.get(constant.bits);
+        if (label == null) {
+            label = "float_const_" + realConstants.size();
+            realConstants.put(constant.bits, label);
+            data.append(label).append(": .float ").append(constant.floatValue()).append('\n');
+        }
+        emit("lwc1 " + register + ", " + label);
+    }
+
+    /**
+     * Endereço de uma variável em memória como operando de lw/sw; variáveis
+     * de rotinas externas usam o display (em $t9)
+     */
+    private String variableAddress(Variable variable) {
+        if (variable.storage == Variable.Storage.GLOBAL) {
+            return variable.label;
+        }
+        if (variable.owner == routine) {
+            return variable.offset + "($sp)";
+        }
+        emit("lw " + SCRATCH2 + ", " + displayEntry(variable.owner.depth));
+        return variable.offset + "(" + SCRATCH2 + ")";
+    }
+
+    private static boolean isImmediate(int value) {
+        return value >= -32768 && value <= 32767;
+    }
+
+    private static boolean isUnsignedImmediate(int value) {
+        return value >= 0 && value <= 65535;
+    }
+
+    // ==================== Instruções ====================
+
+    private void select(Instr instr, BasicBlock next) {
+        switch (instr.op) {
+            case MOVE -> selectMove(instr);
+            case ADD, SUB, MUL, DIV, MOD, AND, OR, SLL, EQ, NE, LT, LE, GT, GE -> selectIntBinary(instr);
+            case NOT -> {
+                String a = useInt(instr.a, SCRATCH);
+                String d = def(instr.dst);
+                emit("sltiu " + d + ", " + a + ", 1");
+                commit(instr.dst, d);
+            }
+            case IABS -> {
+                String a = useInt(instr.a, SCRATCH);
+                String d = def(instr.dst);
+                emit("abs " + d + ", " + a);
+                commit(instr.dst, d);
+            }
+            case FADD, FSUB, FMUL, FDIV -> {
+                String a = useFloat(instr.a, FLOAT_SCRATCH);
+                String b = useFloat(instr.b, FLOAT_SCRATCH2);
+                String d = def(instr.dst);
+                String mnemonic = switch (instr.op) {
+                    case FADD -> "add.s";
+                    case FSUB -> "sub.s";
+                    case FMUL -> "mul.s";
+                    default -> "div.s";
+                };
+                emit(mnemonic + " " + d + ", " + a + ", " + b);
+                commit(instr.dst, d);
+            }
+            case FABS, FSQRT -> {
+                String a = useFloat(instr.a, FLOAT_SCRATCH);
+                String d = def(instr.dst);
+                emit((instr.op == Op.FABS ? "abs.s " : "sqrt.s ") + d + ", " + a);
+                commit(instr.dst, d);
+            }
+            case I2F -> {
+                String a = useInt(instr.a, SCRATCH);
+                String d = def(instr.dst);
+                emit("mtc1 " + a + ", " + d);
+                emit("cvt.s.w " + d + ", " + d);
+                commit(instr.dst, d);
+            }
+            case FEQ, FNE, FLT, FLE, FGT, FGE -> {
+                boolean flag = emitFloatCompare(instr.op, instr.a, instr.b);
+                String d = def(instr.dst);
+                // d = flag de condição == flag
+                emit("li " + d + ", 1");
+                emit((flag ? "movf " : "movt ") + d + ", $zero");
+                commit(instr.dst, d);
+            }
+            case LOAD -> {
+                String d = def(instr.dst);
+                emit((instr.dst.isReal() ? "lwc1 " : "lw ") + d + ", " + variableAddress(instr.var));
+                commit(instr.dst, d);
+            }
+            case STORE -> {
+                String value = use(instr.a, instr.a.isReal() ? FLOAT_SCRATCH : SCRATCH);
+                emit((instr.a.isReal() ? "swc1 " : "sw ") + value + ", " + variableAddress(instr.var));
+            }
+            case ADDR -> {
+                String d = def(instr.dst);
+                Variable variable = instr.var;
+                if (variable.storage == Variable.Storage.GLOBAL) {
+                    emit("la " + d + ", " + variable.label);
+                } else if (variable.owner == routine) {
+                    emit("addiu " + d + ", $sp, " + variable.offset);
+                } else {
+                    emit("lw " + d + ", " + displayEntry(variable.owner.depth));
+                    emit("addiu " + d + ", " + d + ", " + variable.offset);
+                }
+                commit(instr.dst, d);
+            }
+            case LOADW -> {
+                String address = useInt(instr.a, SCRATCH);
+                String d = def(instr.dst);
+                emit((instr.dst.isReal() ? "lwc1 " : "lw ") + d + ", " + instr.offset + "(" + address + ")");
+                commit(instr.dst, d);
+            }
+            case STOREW -> {
+                String address = useInt(instr.a, SCRATCH);
+                boolean real = instr.b.isReal();
+                String value = use(instr.b, real ? FLOAT_SCRATCH : SCRATCH2);
+                emit((real ? "swc1 " : "sw ") + value + ", " + instr.offset + "(" + address + ")");
+            }
+            case PARAM -> {
+                String d = def(instr.dst);
+                emit((instr.dst.isReal() ? "lwc1 " : "lw ") + d + ", " + (frameSize + 4 * instr.offset) + "($sp)");
+                commit(instr.dst, d);
+            }
+            case CALL -> {
+                for (int i = 0; i < instr.args.length; i++) {
+                    Operand arg = instr.args[i];
+                    String value = use(arg, arg.isReal() ? FLOAT_SCRATCH : SCRATCH);
+                    emit((arg.isReal() ? "swc1 " : "sw ") + value + ", " + (4 * i) + "($sp)");
+                }
+                emit("jal " + instr.callee.label);
+                if (instr.dst != null) {
+                    String d = def(instr.dst);
+                    emit(instr.dst.isReal() ? "mov.s " + d + ", $f0" : "move " + d + ", $v0");
+                    commit(instr.dst, d);
+                }
+            }
+            case READ_INT, READ_REAL, READ_CHAR -> {
+                int service = instr.op == Op.READ_INT ? 5 : instr.op == Op.READ_REAL ? 6 : 12;
+                emit("li $v0, " + service);
+                emit("syscall");
+                String d = def(instr.dst);
+                emit(instr.dst.isReal() ? "mov.s " + d + ", $f0" : "move " + d + ", $v0");
+                commit(instr.dst, d);
+            }
+            case PRINT_INT -> {
+                if (instr.a instanceof Const c) {
+                    emit("li $a0, " + c.intValue());
+                } else {
+                    emit("move $a0, " + useInt(instr.a, SCRATCH));
+                }
+                emit("li $v0, 1");
+                emit("syscall");
+            }
+            case PRINT_REAL -> {
+                if (instr.a instanceof Const c) {
+                    loadReal("$f12", c);
+                } else {
+                    emit("mov.s $f12, " + useFloat(instr.a, FLOAT_SCRATCH));
+                }
+                emit("li $v0, 2");
+                emit("syscall");
+            }
+            case PRINT_STR, PRINT_NL -> {
+                emit("la $a0, " + (instr.op == Op.PRINT_STR ? instr.text : "newline"));
+                emit("li $v0, 4");
+                emit("syscall");
+            }
+            case JUMP -> {
+                if (instr.target != next) {
+                    emit("j " + instr.target.label);
+                }
+            }
+            case CBR -> selectBranch(instr, next);
+            case RET -> {
+                if (instr.a != null) {
+                    if (instr.a.isReal()) {
+                        if (instr.a instanceof Const c) {
+                            loadReal("$f0", c);
+                        } else {
+                            emit("mov.s $f0, " + useFloat(instr.a, FLOAT_SCRATCH));
+                        }
+                    } else if (instr.a instanceof Const c) {
+                        emit("li $v0, " + c.intValue());
+                    } else {
+                        emit("move $v0, " + useInt(instr.a, SCRATCH));
+                    }
+                }
+                emitEpilogue();
+            }
+            case HALT -> {
+                emit("li $v0, 10");
+                emit("syscall");
+            }
+        }
+    }
+
+    private void selectMove(Instr instr) {
+        String d = def(instr.dst);
+        if (instr.a instanceof Const c) {
+            if (c.isReal()) {
+                loadReal(d, c);
+            } else {
+                emit("li " + d + ", " + c.intValue());
+            }
+        } else {
+            String source = use(instr.a, instr.dst.isReal() ? FLOAT_SCRATCH : SCRATCH);
+            if (!source.equals(d)) {
+                emit((instr.dst.isReal() ? "mov.s " : "move ") + d + ", " + source);
+            }
+        }
+        commit(instr.dst, d);
+    }
+
+    private void selectIntBinary(Instr instr) {
+        Op op = instr.op;
+        String a = useInt(instr.a, SCRATCH);
+
+        // Formas com imediato
+        if (instr.b instanceof Const c) {
+            int value = c.intValue();
+            String immediate = switch (op) {
+                case ADD -> isImmediate(value) ? "addiu" : null;
+                case SUB -> isImmediate(-value) ? "addiu" : null;
+                case AND -> isUnsignedImmediate(value) ? "andi" : null;
+                case OR -> isUnsignedImmediate(value) ? "ori" : null;
+                case SLL -> "sll";
+                case LT -> isImmediate(value) ? "slti" : null;
+                default -> null;
+            };
+            if (immediate != null) {
+                String d = def(instr.dst);
+                emit(immediate + " " + d + ", " + a + ", " + (op == Op.SUB ? -value : op == Op.SLL ? value & 31 : value));
+                commit(instr.dst, d);
+                return;
+            }
+        }
+
+        String b = useInt(instr.b, SCRATCH2);
+        String d = def(instr.dst);
+        switch (op) {
+            case DIV, MOD -> {
+                emit("div " + a + ", " + b);
+                emit((op == Op.DIV ? "mflo " : "mfhi ") + d);
+            }
+            default -> {
+                String mnemonic = switch (op) {
+                    case ADD -> "addu";
+                    case SUB -> "subu";
+                    case MUL -> "mul";
+                    case AND -> "and";
+                    case OR -> "or";
+                    case SLL -> "sllv";
+                    case EQ -> "seq";
+                    case NE -> "sne";
+                    case LT -> "slt";
+                    case LE -> "sle";
+                    case GT -> "sgt";
+                    default -> "sge";
+                };
+                emit(mnemonic + " " + d + ", " + a + ", " + b);
+            }
+        }
+        commit(instr.dst, d);
+    }
+
+    /**
+     * Compara dois reais e retorna o valor do flag de condição que indica
+     * a comparação verdadeira (FNE testa FEQ com o flag falso)
+     */
+    private boolean emitFloatCompare(Op cond, Operand left, Operand right) {
+        String a = useFloat(left, FLOAT_SCRATCH);
+        String b = useFloat(right, FLOAT_SCRATCH2);
+        switch (cond) {
+            case FEQ, FNE -> emit("c.eq.s " + a + ", " + b);
+            case FLT -> emit("c.lt.s " + a + ", " + b);
+            case FLE -> emit("c.le.s " + a + ", " + b);
+            case FGT -> emit("c.lt.s " + b + ", " + a);  // operandos trocados
+            default -> emit("c.le.s " + b + ", " + a);   // FGE, operandos trocados
+        }
+        return cond != Op.FNE;
+    }
+
+    /**
+     * Desvio condicional; o destino que é o próximo bloco não precisa de salto
+     */
+    private void selectBranch(Instr instr, BasicBlock next) {
+        BasicBlock target = instr.target;
+        BasicBlock other = instr.other;
+        if (instr.cond.name().startsWith("F")) {
+            boolean flag = emitFloatCompare(instr.cond, instr.a, instr.b);
+            if (target == next) {
+                emit((flag ? "bc1f " : "bc1t ") + other.label);
+            } else {
+                emit((flag ? "bc1t " : "bc1f ") + target.label);
+                if (other != next) {
+                    emit("j " + other.label);
+                }
+            }
+            return;
+        }
+
+        Op cond = instr.cond;
+        Operand left = instr.a;
+        Operand right = instr.b;
+        if (left instanceof Const && !(right instanceof Const)) {
+            cond = cond.swapped();
+            left = instr.b;
+            right = instr.a;
+        }
+        if (target == next) {
+            cond = cond.negated();
+            target = other;
+            other = next;
+        }
+        String a = useInt(left, SCRATCH);
+        String b = right instanceof Const c && c.intValue() != 0 && isImmediate(c.intValue())
+                   ? Integer.toString(c.intValue()) : useInt(right, SCRATCH2);
+        String mnemonic = switch (cond) {
+            case EQ -> "beq";
+            case NE -> "bne";
+            case LT -> "blt";
+            case LE -> "ble";
+            case GT -> "bgt";
+            default -> "bge";
+        };
+        emit(mnemonic + " " + a + ", " + b + ", " + target.label);
+        if (other != next) {
+            emit("j " + other.label);
+        }
+    }
+}
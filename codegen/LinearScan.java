@@ -0,0 +1,215 @@
+package codegen;
+
+import ir.BasicBlock;
+import ir.Instr;
+import ir.IrRoutine;
+import ir.Liveness;
+import ir.Op;
+import ir.Operand;
+import ir.Temp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Alocação de registradores por varredura linear (Poletto e Sarkar) sobre
+ * os registradores virtuais de uma rotina. Cada temporário vive em um
+ * intervalo contínuo da ordem de layout das instruções; os que atravessam
+ * uma chamada só recebem registradores preservados pela rotina chamada
+ * ($s, $f20-$f29). Sem registrador livre, vai para a memória o intervalo
+ * que termina mais tarde.
+ */
+final class LinearScan {
+
+    static final String[] INT_CALLER_SAVED = {"$t0", "$t1", "$t2", "$t3", "$t4", "$t5", "$t6", "$t7"};
+    static final String[] INT_CALLEE_SAVED = {"$s0", "$s1", "$s2", "$s3", "$s4", "$s5", "$s6", "$s7"};
+    static final String[] FLOAT_CALLER_SAVED = {"$f2", "$f3", "$f4", "$f5", "$f6", "$f7", "$f8", "$f9",
+                                                "$f10", "$f11", "$f16", "$f17", "$f18", "$f19"};
+    static final String[] FLOAT_CALLEE_SAVED = {"$f20", "$f21", "$f22", "$f23", "$f24", "$f25", "$f26",
+                                                "$f27", "$f28", "$f29"};
+
+    // Por id de temporário: registrador, ou null se foi para a memória
+    private final String[] registers;
+    // Por id de temporário: slot de spill, ou -1
+    private final int[] spillSlots;
+    private int spillCount = 0;
+
+    // Registradores preservados usados, na ordem em que foram alocados
+    private final Set<String> calleeSavedUsed = new LinkedHashSet<>();
+
+    private final int[] start;
+    private final int[] end;
+    private final boolean[] real;
+    private final List<Integer> calls = new ArrayList<>();
+
+    LinearScan(IrRoutine routine) {
+        int temps = routine.tempCount();
+        registers = new String[temps];
+        spillSlots = new int[temps];
+        Arrays.fill(spillSlots, -1);
+        start = new int[temps];
+        end = new int[temps];
+        real = new boolean[temps];
+        Arrays.fill(start, Integer.MAX_VALUE);
+        Arrays.fill(end, -1);
+
+        buildIntervals(routine);
+        allocate(false, INT_CALLER_SAVED, INT_CALLEE_SAVED);
+        allocate(true, FLOAT_CALLER_SAVED, FLOAT_CALLEE_SAVED);
+    }
+
+    /**
+     * Registrador do temporário, ou null se ele vive na memória
+     */
+    String register(Temp temp) {
+        return registers[temp.id];
+    }
+
+    int spillSlot(Temp temp) {
+        return spillSlots[temp.id];
+    }
+
+    int spillCount() {
+        return spillCount;
+    }
+
+    Set<String> calleeSavedUsed() {
+        return calleeSavedUsed;
+    }
+
+    // ==================== Intervalos ====================
+
+    /**
+     * Intervalo de cada temporário: da primeira definição (ou entrada de
+     * bloco em que está vivo) até o último uso (ou saída de bloco em que
+     * está vivo), numerando as instruções na ordem de layout
+     */
+    private void buildIntervals(IrRoutine routine) {
+        Liveness liveness = new Liveness(routine);
+        int position = 0;
+        for (BasicBlock block : routine.blocks) {
+            int from = position;
+            int to = position + block.instrs.size() - 1;
+            BitSet in = liveness.liveIn(block);
+            for (int id = in.nextSetBit(0); id >= 0; id = in.nextSetBit(id + 1)) {
+                extend(id, from);
+            }
+            for (Instr instr : block.instrs) {
+                for (Operand operand : instr.uses()) {
+                    if (operand instanceof Temp temp) {
+                        extend(temp.id, position);
+                        real[temp.id] = temp.isReal();
+                    }
+                }
+                if (instr.dst != null) {
+                    extend(instr.dst.id, position);
+                    real[instr.dst.id] = instr.dst.isReal();
+                }
+                if (instr.op == Op.CALL) {
+                    calls.add(position);
+                }
+                position++;
+            }
+            BitSet out = liveness.liveOut(block);
+            for (int id = out.nextSetBit(0); id >= 0; id = out.nextSetBit(id + 1)) {
+                extend(id, to);
+            }
+        }
+    }
+
+    private void extend(int id, int position) {
+        start[id] = Math.min(start[id], position);
+        end[id] = Math.max(end[id], position);
+    }
+
+    /**
+     * Vivo antes e depois de alguma chamada (argumentos e resultado da
+     * própria chamada não contam)
+     */
+    private boolean crossesCall(int id) {
+        for (int call : calls) {
+            if (start[id] < call && call < end[id]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ==================== Alocação ====================
+
+    private void allocate(boolean isReal, String[] callerSaved, String[] calleeSaved) {
+        List<Integer> intervals = new ArrayList<>();
+        for (int id = 0; id < registers.length; id++) {
+            if (end[id] >= 0 && real[id] == isReal) {
+                intervals.add(id);
+            }
+        }
+        intervals.sort(Comparator.comparingInt((Integer id) -> start[id]).thenComparingInt(id -> id));
+
+        List<String> freeCaller = new ArrayList<>(Arrays.asList(callerSaved));
+        List<String> freeCallee = new ArrayList<>(Arrays.asList(calleeSaved));
+        Set<String> calleeSet = Set.of(calleeSaved);
+        List<Integer> active = new ArrayList<>();
+
+        for (int id : intervals) {
+            // Libera os intervalos que já terminaram
+            for (int i = active.size() - 1; i >= 0; i--) {
+                int other = active.get(i);
+                if (end[other] < start[id]) {
+                    active.remove(i);
+                    String register = registers[other];
+                    (calleeSet.contains(register) ? freeCallee : freeCaller).add(register);
+                }
+            }
+            freeCaller.sort(Comparator.comparingInt(r -> indexOf(callerSaved, r)));
+            freeCallee.sort(Comparator.comparingInt(r -> indexOf(calleeSaved, r)));
+
+            boolean crossing = crossesCall(id);
+            String register = null;
+            if (!crossing && !freeCaller.isEmpty()) {
+                register = freeCaller.remove(0);
+            } else if (!freeCallee.isEmpty()) {
+                register = freeCallee.remove(0);
+            }
+
+            if (register == null) {
+                // Rouba o registrador do intervalo ativo que termina mais tarde, se servir
+                int victim = -1;
+                for (int other : active) {
+                    if ((!crossing || calleeSet.contains(registers[other])) &&
+                        (victim < 0 || end[other] > end[victim])) {
+                        victim = other;
+                    }
+                }
+                if (victim >= 0 && end[victim] > end[id]) {
+                    register = registers[victim];
+                    registers[victim] = null;
+                    spillSlots[victim] = spillCount++;
+                    active.remove(Integer.valueOf(victim));
+                } else {
+                    spillSlots[id] = spillCount++;
+                    continue;
+                }
+            }
+
+            registers[id] = register;
+            active.add(id);
+            if (calleeSet.contains(register)) {
+                calleeSavedUsed.add(register);
+            }
+        }
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
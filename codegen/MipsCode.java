@@ -0,0 +1,48 @@
+package codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seção .text em construção: as linhas emitidas pelos backends viram
+ * instruções na hora, para que o otimizador peephole trabalhe sobre a
+ * lista e não sobre o texto.
+ */
+final class MipsCode {
+
+    private final List<MipsInstr> instructions = new ArrayList<>();
+
+    /**
+     * Acrescenta uma ou mais linhas de assembly, separadas por '\n'
+     */
+    MipsCode append(String lines) {
+        int start = 0;
+        int end;
+        while ((end = lines.indexOf('\n', start)) >= 0) {
+            instructions.add(MipsInstr.parse(lines.substring(start, end)));
+            start = end + 1;
+        }
+        if (start < lines.length()) {
+            instructions.add(MipsInstr.parse(lines.substring(start)));
+        }
+        return this;
+    }
+
+    MipsCode append(MipsCode other) {
+        instructions.addAll(other.instructions);
+        return this;
+    }
+
+    List<MipsInstr> instructions() {
+        return instructions;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(instructions.size() * 16);
+        for (MipsInstr instr : instructions) {
+            text.append(instr).append('\n');
+        }
+        return text.toString();
+    }
+}
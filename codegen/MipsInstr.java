@@ -0,0 +1,287 @@
+package codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Linha do código MIPS gerado: instrução (opcode e operandos), label ou
+ * outra linha (diretiva, comentário, linha em branco), mantida como texto.
+ * É a unidade sobre a qual trabalha o otimizador peephole.
+ */
+public final class MipsInstr {
+
+    private static final String[] NO_OPERANDS = new String[0];
+
+    // Registradores de argumento, lidos por uma chamada
+    private static final List<String> ARGUMENT_REGISTERS = List.of("$a0", "$a1", "$a2", "$a3", "$f12", "$f14");
+
+    // Registradores que a rotina chamada pode alterar (convenção MIPS)
+    private static final List<String> CALLER_SAVED = callerSaved();
+
+    private static List<String> callerSaved() {
+        List<String> registers = new ArrayList<>(List.of("$ra", "$v0", "$v1", "$a0", "$a1", "$a2", "$a3",
+                                                         "hi", "lo", "$fcc"));
+        for (int i = 0; i <= 9; i++) {
+            registers.add("$t" + i);
+        }
+        for (int i = 0; i <= 19; i++) {
+            registers.add("$f" + i);
+        }
+        return List.copyOf(registers);
+    }
+
+    // Label (sem ':') ou null
+    public final String label;
+    // Opcode da instrução, ou null para labels e outras linhas
+    public final String opcode;
+    public final String[] operands;
+    // Texto de diretivas, comentários e linhas em branco
+    private final String text;
+
+    private MipsInstr(String label, String opcode, String[] operands, String text) {
+        this.label = label;
+        this.opcode = opcode;
+        this.operands = operands;
+        this.text = text;
+    }
+
+    public static MipsInstr of(String opcode, String... operands) {
+        return new MipsInstr(null, opcode, operands, null);
+    }
+
+    public static MipsInstr label(String label) {
+        return new MipsInstr(label, null, NO_OPERANDS, null);
+    }
+
+    /**
+     * Interpreta uma linha de assembly como gerada pelos backends
+     */
+    public static MipsInstr parse(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith(".") || trimmed.startsWith("#")) {
+            return new MipsInstr(null, null, NO_OPERANDS, trimmed);
+        }
+        if (trimmed.endsWith(":") && trimmed.indexOf(' ') < 0) {
+            return label(trimmed.substring(0, trimmed.length() - 1));
+        }
+        int space = trimmed.indexOf(' ');
+        if (space < 0) {
+            return of(trimmed);
+        }
+        String[] operands = trimmed.substring(space + 1).split(",");
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = operands[i].trim();
+        }
+        return of(trimmed.substring(0, space), operands);
+    }
+
+    // ==================== Consultas ====================
+
+    public boolean isInstruction() {
+        return opcode != null;
+    }
+
+    public boolean isLabel() {
+        return label != null;
+    }
+
+    public boolean is(String op) {
+        return op.equals(opcode);
+    }
+
+    public String operand(int i) {
+        return operands[i];
+    }
+
+    /**
+     * Desvio condicional (o alvo é o último operando)
+     */
+    public boolean isConditionalBranch() {
+        return opcode != null && opcode.startsWith("b") && !opcode.equals("break");
+    }
+
+    /**
+     * Transfere o controle incondicionalmente: o que vem depois até o
+     * próximo label é inalcançável
+     */
+    public boolean isUnconditionalJump() {
+        return is("j") || is("b") || is("jr");
+    }
+
+    /**
+     * Fim de bloco básico para as análises locais: desvios, chamadas e retornos
+     */
+    public boolean endsBlock() {
+        return isConditionalBranch() || is("j") || is("jr") || is("jal") || is("jalr");
+    }
+
+    /**
+     * Alvo de um desvio, ou null
+     */
+    public String target() {
+        if (is("j") || is("jal") || isConditionalBranch()) {
+            return operands[operands.length - 1];
+        }
+        return null;
+    }
+
+    /**
+     * Registradores escritos pela instrução. $fcc é o flag de condição do
+     * coprocessador 1; hi/lo, os registradores de div e mult.
+     */
+    public List<String> defs() {
+        List<String> defs = new ArrayList<>(2);
+        if (opcode == null || isStore() || isConditionalBranch() || is("j") || is("jr")) {
+            return defs;
+        }
+        switch (opcode) {
+            case "syscall" -> {
+                defs.add("$v0");
+                defs.add("$f0");
+            }
+            case "jal", "jalr" -> defs.addAll(CALLER_SAVED);
+            case "mtc1" -> defs.add(operands[1]);
+            case "div", "divu", "mult", "multu" -> {
+                if (operands.length == 2) {
+                    defs.add("hi");
+                    defs.add("lo");
+                } else {
+                    defs.add(operands[0]);
+                }
+            }
+            default -> {
+                if (opcode.startsWith("c.")) {
+                    defs.add("$fcc");
+                } else if (operands.length > 0 && isRegister(operands[0])) {
+                    defs.add(operands[0]);
+                }
+            }
+        }
+        return defs;
+    }
+
+    /**
+     * Registradores lidos pela instrução, incluindo bases de endereços
+     */
+    public List<String> uses() {
+        List<String> uses = new ArrayList<>(3);
+        if (opcode == null) {
+            return uses;
+        }
+        switch (opcode) {
+            case "syscall" -> {
+                uses.add("$v0");
+                uses.add("$a0");
+                uses.add("$a1");
+                uses.add("$f12");
+                return uses;
+            }
+            case "mflo" -> {
+                uses.add("lo");
+                return uses;
+            }
+            case "mfhi" -> {
+                uses.add("hi");
+                return uses;
+            }
+            case "bc1t", "bc1f" -> {
+                uses.add("$fcc");
+                return uses;
+            }
+            case "jal" -> {
+                uses.addAll(ARGUMENT_REGISTERS);
+                return uses;
+            }
+            case "jalr" -> uses.addAll(ARGUMENT_REGISTERS);
+            case "movt", "movf" -> {
+                uses.add("$fcc");
+                uses.add(operands[0]);
+            }
+            default -> { }
+        }
+        boolean firstIsUse = firstOperandIsUse();
+        for (int i = 0; i < operands.length; i++) {
+            String operand = operands[i];
+            if (i == 0 && !firstIsUse) {
+                continue;
+            }
+            if (isRegister(operand)) {
+                uses.add(operand);
+            } else {
+                String base = baseRegister(operand);
+                if (base != null) {
+                    uses.add(base);
+                }
+            }
+        }
+        return uses;
+    }
+
+    /**
+     * Escrita em operands[0] não conta como uso, exceto em stores, desvios
+     * e instruções que não escrevem o primeiro operando
+     */
+    private boolean firstOperandIsUse() {
+        return isStore() || isConditionalBranch() || is("jr") || is("jalr") || is("mtc1") ||
+               opcode.startsWith("c.") || (operands.length == 2 && (is("div") || is("divu") ||
+               is("mult") || is("multu")));
+    }
+
+    /**
+     * Cópia da instrução lendo 'to' no lugar de 'from', ou null se a
+     * instrução tem usos implícitos (syscall, chamadas, hi/lo, flags)
+     */
+    public MipsInstr replaceUse(String from, String to) {
+        if (opcode == null || is("syscall") || is("jal") || is("jalr") || is("mflo") || is("mfhi") ||
+            is("movt") || is("movf") || is("bc1t") || is("bc1f")) {
+            return null;
+        }
+        boolean firstIsUse = firstOperandIsUse();
+        String[] replaced = operands.clone();
+        for (int i = firstIsUse ? 0 : 1; i < replaced.length; i++) {
+            if (replaced[i].equals(from)) {
+                replaced[i] = to;
+            } else if (from.equals(baseRegister(replaced[i]))) {
+                replaced[i] = replaced[i].substring(0, replaced[i].indexOf('(') + 1) + to + ")";
+            }
+        }
+        return of(opcode, replaced);
+    }
+
+    public boolean isStore() {
+        return is("sw") || is("swc1") || is("sb") || is("sh");
+    }
+
+    public boolean isLoad() {
+        return is("lw") || is("lwc1") || is("lb") || is("lbu") || is("lh") || is("lhu");
+    }
+
+    public static boolean isRegister(String operand) {
+        return operand.startsWith("$");
+    }
+
+    /**
+     * Registrador base de um operando de memória "off($r)", ou null
+     */
+    public static String baseRegister(String operand) {
+        int open = operand.indexOf('(');
+        if (open < 0 || !operand.endsWith(")")) {
+            return null;
+        }
+        return operand.substring(open + 1, operand.length() - 1);
+    }
+
+    @Override
+    public String toString() {
+        if (label != null) {
+            return label + ":";
+        }
+        if (opcode == null) {
+            return text;
+        }
+        if (operands.length == 0) {
+            return opcode;
+        }
+        return opcode + " " + String.join(", ", operands);
+    }
+}
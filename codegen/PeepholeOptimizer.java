@@ -0,0 +1,80 @@
+package codegen;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Otimizador peephole sobre a lista de instruções MIPS. Aplica as regras
+ * em cada posição até nenhuma delas alterar o código e contabiliza, por
+ * regra, quantas instruções foram removidas.
+ */
+public class PeepholeOptimizer {
+
+    private final List<PeepholeRule> rules = new ArrayList<>();
+    private final Map<String, Integer> removed = new LinkedHashMap<>();
+
+    /**
+     * Otimizador com o conjunto de regras padrão
+     */
+    public static PeepholeOptimizer standard() {
+        return new PeepholeOptimizer()
+            .addRule(new PeepholeRules.SelfMove())
+            .addRule(new PeepholeRules.PushPop())
+            .addRule(new PeepholeRules.StackAdjust())
+            .addRule(new PeepholeRules.RedundantLoad())
+            .addRule(new PeepholeRules.MoveCoalesce())
+            .addRule(new PeepholeRules.CopyForward())
+            .addRule(new PeepholeRules.UnreachableCode())
+            .addRule(new PeepholeRules.JumpToNext())
+            .addRule(new PeepholeRules.BranchOverJump());
+    }
+
+    public PeepholeOptimizer addRule(PeepholeRule rule) {
+        rules.add(rule);
+        removed.putIfAbsent(rule.name(), 0);
+        return this;
+    }
+
+    /**
+     * Otimiza a lista no lugar
+     */
+    public void optimize(List<MipsInstr> code) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < code.size(); i++) {
+                for (PeepholeRule rule : rules) {
+                    int before = code.size();
+                    if (rule.apply(code, i)) {
+                        removed.merge(rule.name(), before - code.size(), Integer::sum);
+                        changed = true;
+                        if (i >= code.size()) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private int totalRemoved() {
+        int total = 0;
+        for (int count : removed.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Relatório de uma linha por regra
+     */
+    public String report() {
+        StringBuilder text = new StringBuilder("Peephole: " + totalRemoved() + " instructions removed\n");
+        for (Map.Entry<String, Integer> entry : removed.entrySet()) {
+            text.append(String.format("  %-18s %d%n", entry.getKey(), entry.getValue()));
+        }
+        return text.toString();
+    }
+}
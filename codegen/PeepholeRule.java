@@ -0,0 +1,20 @@
+package codegen;
+
+import java.util.List;
+
+/**
+ * Regra do otimizador peephole: examina a janela que começa na posição i
+ * e, se reconhecer o padrão, reescreve a lista no lugar
+ */
+public interface PeepholeRule {
+
+    /**
+     * Nome usado no relatório de instruções removidas
+     */
+    String name();
+
+    /**
+     * Tenta aplicar a regra em code[i..]; retorna true se alterou a lista
+     */
+    boolean apply(List<MipsInstr> code, int i);
+}
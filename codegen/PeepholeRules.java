@@ -0,0 +1,397 @@
+package codegen;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Regras padrão do otimizador peephole. Cada regra olha uma janela curta
+ * de instruções consecutivas (comentários e linhas em branco são ignorados;
+ * um label interrompe a janela) e só reescreve o que é seguro localmente.
+ */
+final class PeepholeRules {
+
+    private PeepholeRules() {
+    }
+
+    // Registradores que nunca são tratados como temporários mortos
+    private static final Set<String> RESERVED = Set.of("$zero", "$at", "$sp", "$fp", "$ra", "$gp", "$k0", "$k1");
+
+    // Desvio com a condição oposta
+    private static final Map<String, String> NEGATED_BRANCH = Map.ofEntries(
+        Map.entry("beq", "bne"), Map.entry("bne", "beq"),
+        Map.entry("blt", "bge"), Map.entry("bge", "blt"),
+        Map.entry("ble", "bgt"), Map.entry("bgt", "ble"),
+        Map.entry("bltu", "bgeu"), Map.entry("bgeu", "bltu"),
+        Map.entry("bleu", "bgtu"), Map.entry("bgtu", "bleu"),
+        Map.entry("beqz", "bnez"), Map.entry("bnez", "beqz"),
+        Map.entry("bltz", "bgez"), Map.entry("bgez", "bltz"),
+        Map.entry("blez", "bgtz"), Map.entry("bgtz", "blez"),
+        Map.entry("bc1t", "bc1f"), Map.entry("bc1f", "bc1t"));
+
+    // ==================== Janela ====================
+
+    /**
+     * Próxima instrução ou label depois de i, ou -1
+     */
+    static int next(List<MipsInstr> code, int i) {
+        for (int k = i + 1; k < code.size(); k++) {
+            MipsInstr instr = code.get(k);
+            if (instr.isInstruction() || instr.isLabel()) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Próxima instrução depois de i, sem label no caminho, ou -1
+     */
+    static int nextInstruction(List<MipsInstr> code, int i) {
+        int k = next(code, i);
+        return k >= 0 && code.get(k).isInstruction() ? k : -1;
+    }
+
+    /**
+     * O label aparece entre i e a próxima instrução
+     */
+    static boolean labelFollows(List<MipsInstr> code, int i, String label) {
+        for (int k = next(code, i); k >= 0 && code.get(k).isLabel(); k = next(code, k)) {
+            if (code.get(k).label.equals(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * O valor de reg não é lido depois de i: é sobrescrito antes de qualquer
+     * leitura, sem sair do bloco básico
+     */
+    static boolean isDeadAfter(List<MipsInstr> code, int i, String reg) {
+        for (int k = next(code, i); k >= 0; k = next(code, k)) {
+            MipsInstr instr = code.get(k);
+            if (instr.isLabel() || instr.uses().contains(reg)) {
+                return false;
+            }
+            if (instr.defs().contains(reg)) {
+                return true;
+            }
+            if (instr.endsBlock()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isFloatRegister(String reg) {
+        return reg.startsWith("$f");
+    }
+
+    private static MipsInstr copy(String dst, String src) {
+        return MipsInstr.of(isFloatRegister(dst) ? "mov.s" : "move", dst, src);
+    }
+
+    /**
+     * Ajuste "addu/subu $sp, $sp, n": n com sinal, ou null
+     */
+    private static Integer stackAdjustment(MipsInstr instr) {
+        boolean add = instr.is("addu") || instr.is("addiu") || instr.is("addi");
+        if ((!add && !instr.is("subu")) || instr.operands.length != 3 ||
+            !instr.operand(0).equals("$sp") || !instr.operand(1).equals("$sp")) {
+            return null;
+        }
+        try {
+            int amount = Integer.parseInt(instr.operand(2));
+            return add ? amount : -amount;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ==================== Regras ====================
+
+    /**
+     * move r, r e somas de zero a um registrador
+     */
+    static final class SelfMove implements PeepholeRule {
+        public String name() {
+            return "self-move";
+        }
+
+        public boolean apply(List<MipsInstr> code, int i) {
+            MipsInstr instr = code.get(i);
+            if (!instr.isInstruction() || instr.operands.length < 2 ||
+                !instr.operand(0).equals(instr.operand(1))) {
+                return false;
+            }
+            boolean useless = (instr.is("move") || instr.is("mov.s")) && instr.operands.length == 2 ||
+                              (instr.is("addu") || instr.is("addiu") || instr.is("addi") || instr.is("subu")) &&
+                              instr.operands.length == 3 &&
+                              (instr.operand(2).equals("0") || instr.operand(2).equals("$zero"));
+            if (useless) {
+                code.remove(i);
+            }
+            return useless;
+        }
+    }
+
+    /**
+     * Empilhar e desempilhar em seguida é só uma cópia:
+     * subu $sp,$sp,4; sw r,0($sp); lw d,0($sp); addu $sp,$sp,4  =>  move d, r
+     */
+    static final class PushPop implements PeepholeRule {
+        public String name() {
+            return "push-pop";
+        }
+
+        public boolean apply(List<MipsInstr> code, int i) {
+            Integer push = stackAdjustment(code.get(i));
+            if (push == null || push != -4) {
+                return false;
+            }
+            int store = nextInstruction(code, i);
+            int load = store < 0 ? -1 : nextInstruction(code, store);
+            int pop = load < 0 ? -1 : nextInstruction(code, load);
+            if (pop < 0) {
+                return false;
+            }
+            MipsInstr s = code.get(store);
+            MipsInstr l = code.get(load);
+            Integer adjust = stackAdjustment(code.get(pop));
+            boolean integer = s.is("sw") && l.is("lw");
+            boolean real = s.is("swc1") && l.is("lwc1");
+            if (!(integer || real) || adjust == null || adjust != 4 ||
+                !s.operand(1).equals("0($sp)") || !l.operand(1).equals("0($sp)")) {
+                return false;
+            }
+            String value = s.operand(0);
+            String dst = l.operand(0);
+            code.remove(pop);
+            code.remove(load);
+            code.remove(store);
+            if (dst.equals(value)) {
+                code.remove(i);
+            } else {
+                code.set(i, copy(dst, value));
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Ajustes consecutivos do $sp viram um só (ou nenhum)
+     */
+    static final class StackAdjust implements PeepholeRule {
+        public String name() {
+            return "stack-adjust";
+        }
+
+        public boolean apply(List<MipsInstr> code, int i) {
+            Integer first = stackAdjustment(code.get(i));
+            int j = nextInstruction(code, i);
+            if (first == null || j < 0) {
+                return false;
+            }
+            Integer second = stackAdjustment(code.get(j));
+            if (second == null) {
+                return false;
+            }
+            int total = first + second;
+            code.remove(j);
+            if (total == 0) {
+                code.remove(i);
+            } else {
+                code.set(i, MipsInstr.of(total > 0 ? "addu" : "subu", "$sp", "$sp", Integer.toString(Math.abs(total))));
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Acessos repetidos ao mesmo endereço: load depois de store ou de load
+     * vira cópia, e store do valor recém-carregado é removido
+     */
+    static final class RedundantLoad implements PeepholeRule {
+        public String name() {
+            return "redundant-load";
+        }
+
+        public boolean apply(List<MipsInstr> code, int i) {
+            MipsInstr first = code.get(i);
+            if (!first.isInstruction() || first.operands.length != 2) {
+                return false;
+            }
+            boolean real = first.is("swc1") || first.is("lwc1");
+            if (!real && !first.is("sw") && !first.is("lw")) {
+                return false;
+            }
+            int j = nextInstruction(code, i);
+            if (j < 0) {
+                return false;
+            }
+            MipsInstr second = code.get(j);
+            String address = first.operand(1);
+            if (second.operands.length != 2 || !second.operand(1).equals(address) ||
+                address.contains("(" + first.operand(0) + ")") && first.isLoad()) {
+                return false;
+            }
+            String value = first.operand(0);
+            if (second.is(real ? "lwc1" : "lw")) {
+                // O load não pode ter escrito a base do próprio endereço
+                String dst = second.operand(0);
+                if (dst.equals(value)) {
+                    code.remove(j);
+                } else {
+                    code.set(j, copy(dst, value));
+                }
+                return true;
+            }
+            if (first.isLoad() && second.is(real ? "swc1" : "sw") && second.operand(0).equals(value)) {
+                code.remove(j);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Resultado calculado num temporário só para ser copiado:
+     * li r, k; move d, r  =>  li d, k  (se r não for mais lido)
+     */
+    static final class MoveCoalesce implements PeepholeRule {
+        public String name() {
+            return "move-coalesce";
+        }
+
+        public boolean apply(List<MipsInstr> code, int i) {
+            MipsInstr producer = code.get(i);
+            if (!producer.isInstruction() || producer.operands.length == 0 ||
+                producer.is("movt") || producer.is("movf")) {
+                return false;
+            }
+            List<String> defs = producer.defs();
+            String reg = producer.operand(0);
+            if (defs.size() != 1 || !defs.get(0).equals(reg) || RESERVED.contains(reg)) {
+                return false;
+            }
+            int j = nextInstruction(code, i);
+            if (j < 0) {
+                return false;
+            }
+            MipsInstr copy = code.get(j);
+            if (!(copy.is("move") || copy.is("mov.s")) || copy.operands.length != 2 ||
+                !copy.operand(1).equals(reg) || RESERVED.contains(copy.operand(0)) ||
+                !isDeadAfter(code, j, reg)) {
+                return false;
+            }
+            String[] operands = producer.operands.clone();
+            operands[0] = copy.operand(0);
+            code.set(i, MipsInstr.of(producer.opcode, operands));
+            code.remove(j);
+            return true;
+        }
+    }
+
+    /**
+     * Cópia lida só pela instrução seguinte: ela passa a ler a origem
+     * move d, s; add r, d, x  =>  add r, s, x  (se d não for mais lido)
+     */
+    static final class CopyForward implements PeepholeRule {
+        public String name() {
+            return "copy-forward";
+        }
+
+        public boolean apply(List<MipsInstr> code, int i) {
+            MipsInstr copy = code.get(i);
+            if (!(copy.is("move") || copy.is("mov.s")) || copy.operands.length != 2) {
+                return false;
+            }
+            String dst = copy.operand(0);
+            String src = copy.operand(1);
+            if (dst.equals(src) || RESERVED.contains(dst)) {
+                return false;
+            }
+            int j = nextInstruction(code, i);
+            if (j < 0) {
+                return false;
+            }
+            MipsInstr user = code.get(j);
+            MipsInstr rewritten = user.uses().contains(dst) ? user.replaceUse(dst, src) : null;
+            if (rewritten == null || rewritten.uses().contains(dst) ||
+                !(user.defs().contains(dst) || isDeadAfter(code, j, dst))) {
+                return false;
+            }
+            code.set(j, rewritten);
+            code.remove(i);
+            return true;
+        }
+    }
+
+    /**
+     * Instruções entre um salto incondicional e o próximo label
+     */
+    static final class UnreachableCode implements PeepholeRule {
+        public String name() {
+            return "unreachable";
+        }
+
+        public boolean apply(List<MipsInstr> code, int i) {
+            if (!code.get(i).isUnconditionalJump()) {
+                return false;
+            }
+            int j = nextInstruction(code, i);
+            if (j < 0) {
+                return false;
+            }
+            code.remove(j);
+            return true;
+        }
+    }
+
+    /**
+     * Salto ou desvio para o label que vem logo em seguida
+     */
+    static final class JumpToNext implements PeepholeRule {
+        public String name() {
+            return "jump-next";
+        }
+
+        public boolean apply(List<MipsInstr> code, int i) {
+            MipsInstr instr = code.get(i);
+            if (!(instr.is("j") || instr.is("b") || instr.isConditionalBranch()) ||
+                !labelFollows(code, i, instr.target())) {
+                return false;
+            }
+            code.remove(i);
+            return true;
+        }
+    }
+
+    /**
+     * Desvio condicional sobre um salto:
+     * beq a, b, L1; j L2; L1:  =>  bne a, b, L2; L1:
+     */
+    static final class BranchOverJump implements PeepholeRule {
+        public String name() {
+            return "branch-over-jump";
+        }
+
+        public boolean apply(List<MipsInstr> code, int i) {
+            MipsInstr branch = code.get(i);
+            String negated = branch.isConditionalBranch() ? NEGATED_BRANCH.get(branch.opcode) : null;
+            if (negated == null) {
+                return false;
+            }
+            int j = nextInstruction(code, i);
+            if (j < 0 || !code.get(j).is("j") || !labelFollows(code, j, branch.target())) {
+                return false;
+            }
+            String[] operands = branch.operands.clone();
+            operands[operands.length - 1] = code.get(j).target();
+            code.set(i, MipsInstr.of(negated, operands));
+            code.remove(j);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package codegen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Conjunto de registradores MIPS disponíveis para temporários de expressão.
+ * Cada registrador está livre ou alocado; a alocação devolve sempre o
+ * primeiro livre, o que mantém o código gerado determinístico.
+ */
+class RegisterPool {
+
+    private final String[] names;
+    private final boolean[] allocated;
+    private int freeCount;
+
+    RegisterPool(String... names) {
+        this.names = names;
+        this.allocated = new boolean[names.length];
+        this.freeCount = names.length;
+    }
+
+    /**
+     * Aloca um registrador livre
+     */
+    String allocate() {
+        for (int i = 0; i < names.length; i++) {
+            if (!allocated[i]) {
+                allocated[i] = true;
+                freeCount--;
+                return names[i];
+            }
+        }
+        throw new RuntimeException("Expression too complex: no free registers");
+    }
+
+    /**
+     * Marca como alocado um registrador específico (restauração após chamadas)
+     */
+    void reserve(String name) {
+        int i = indexOf(name);
+        if (!allocated[i]) {
+            allocated[i] = true;
+            freeCount--;
+        }
+    }
+
+    void free(String name) {
+        int i = indexOf(name);
+        if (allocated[i]) {
+            allocated[i] = false;
+            freeCount++;
+        }
+    }
+
+    boolean contains(String name) {
+        for (String n : names) {
+            if (n.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int freeCount() {
+        return freeCount;
+    }
+
+    /**
+     * Registradores alocados, na ordem do conjunto
+     */
+    List<String> allocatedRegisters() {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            if (allocated[i]) {
+                result.add(names[i]);
+            }
+        }
+        return result;
+    }
+
+    void reset() {
+        Arrays.fill(allocated, false);
+        freeCount = names.length;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown register " + name);
+    }
+}
@@ -0,0 +1,322 @@
+package codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redução de força de multiplicações, divisões e restos por constantes na
+ * lista de instruções MIPS, antes do peephole. Os dois backends carregam a
+ * constante com li num registrador que morre na operação; esse registrador
+ * passa a ser o temporário da sequência que substitui mul/div:
+ *
+ *     x * 2^k         sll
+ *     x * (2^m ± 1)   sll + addu/subu (vezes 2^q: mais um sll)
+ *     x div 2^k       sra/srl/addu/sra (arredonda para zero, como div)
+ *     x mod 2^k       mesma correção + srl/sll/subu (sinal do dividendo)
+ *     x div c         mult pelo número mágico + mfhi (Hacker's Delight 10-1)
+ *     x mod c         quociente mágico, mul e subu
+ *
+ * Divisores negativos usam |c| e negam o quociente; o resto não muda.
+ */
+public final class StrengthReduction {
+
+    private int multiplications = 0;
+    private int divisions = 0;
+    private int remainders = 0;
+
+    /**
+     * Reescreve a lista no lugar
+     */
+    public void reduce(List<MipsInstr> code) {
+        for (int i = 0; i < code.size(); i++) {
+            MipsInstr instr = code.get(i);
+            if (instr.is("mul") && instr.operands.length == 3) {
+                i = reduceMultiply(code, i);
+            } else if (instr.is("div") && instr.operands.length == 2) {
+                i = reduceDivide(code, i);
+            }
+        }
+    }
+
+    public String report() {
+        return String.format("Strength reduction: %d mul, %d div, %d mod rewritten%n",
+                             multiplications, divisions, remainders);
+    }
+
+    // ==================== Multiplicação ====================
+
+    private int reduceMultiply(List<MipsInstr> code, int i) {
+        MipsInstr mul = code.get(i);
+        String dst = mul.operand(0);
+        for (int side = 2; side >= 1; side--) {
+            String constReg = mul.operand(side);
+            String source = mul.operand(3 - side);
+            int def = constantDefinition(code, i, constReg);
+            if (def < 0 || source.equals(constReg) ||
+                (!dst.equals(constReg) && !PeepholeRules.isDeadAfter(code, i, constReg))) {
+                continue;
+            }
+            List<MipsInstr> sequence = multiplySequence(dst, source, constReg, constantValue(code.get(def)));
+            if (sequence != null) {
+                multiplications++;
+                return replace(code, def, i, i, sequence);
+            }
+        }
+        return i;
+    }
+
+    /**
+     * dst = source * c usando temp, ou null se não houver sequência curta
+     */
+    static List<MipsInstr> multiplySequence(String dst, String source, String temp, int c) {
+        List<MipsInstr> sequence = new ArrayList<>();
+        if (c == Integer.MIN_VALUE) {
+            return null;
+        }
+        int magnitude = Math.abs(c);
+        int shift = Integer.numberOfTrailingZeros(magnitude);
+        int odd = magnitude >>> shift;
+
+        if (magnitude == 0) {
+            sequence.add(MipsInstr.of("move", dst, "$zero"));
+            return sequence;
+        }
+        if (odd == 1) {
+            sequence.add(shift == 0 ? MipsInstr.of("move", dst, source)
+                                    : MipsInstr.of("sll", dst, source, Integer.toString(shift)));
+        } else if (Integer.bitCount(odd - 1) == 1) {
+            // odd = 2^m + 1
+            sequence.add(MipsInstr.of("sll", temp, source, Integer.toString(Integer.numberOfTrailingZeros(odd - 1))));
+            sequence.add(MipsInstr.of("addu", dst, temp, source));
+            addShift(sequence, dst, shift);
+        } else if (Integer.bitCount(odd + 1) == 1 && odd + 1 > 0) {
+            // odd = 2^m - 1
+            sequence.add(MipsInstr.of("sll", temp, source, Integer.toString(Integer.numberOfTrailingZeros(odd + 1))));
+            sequence.add(MipsInstr.of("subu", dst, temp, source));
+            addShift(sequence, dst, shift);
+        } else {
+            return null;
+        }
+        if (c < 0) {
+            sequence.add(MipsInstr.of("subu", dst, "$zero", dst));
+        }
+        return sequence;
+    }
+
+    private static void addShift(List<MipsInstr> sequence, String dst, int shift) {
+        if (shift > 0) {
+            sequence.add(MipsInstr.of("sll", dst, dst, Integer.toString(shift)));
+        }
+    }
+
+    // ==================== Divisão e resto ====================
+
+    private int reduceDivide(List<MipsInstr> code, int i) {
+        MipsInstr div = code.get(i);
+        String source = div.operand(0);
+        String constReg = div.operand(1);
+        int move = PeepholeRules.nextInstruction(code, i);
+        if (move < 0 || !(code.get(move).is("mflo") || code.get(move).is("mfhi"))) {
+            return i;
+        }
+        // HI e LO só podem ser lidos pela instrução seguinte
+        int after = PeepholeRules.nextInstruction(code, move);
+        if (after >= 0 && (code.get(after).is("mflo") || code.get(after).is("mfhi"))) {
+            return i;
+        }
+        String dst = code.get(move).operand(0);
+        int def = constantDefinition(code, i, constReg);
+        if (def < 0 || source.equals(constReg) ||
+            (!dst.equals(constReg) && !PeepholeRules.isDeadAfter(code, move, constReg))) {
+            return i;
+        }
+        int c = constantValue(code.get(def));
+        boolean remainder = code.get(move).is("mfhi");
+        List<MipsInstr> sequence = remainder ? remainderSequence(dst, source, constReg, c)
+                                             : quotientSequence(dst, source, constReg, c);
+        if (sequence == null) {
+            return i;
+        }
+        if (remainder) {
+            remainders++;
+        } else {
+            divisions++;
+        }
+        return replace(code, def, i, move, sequence);
+    }
+
+    /**
+     * dst = source div c (truncado), ou null. temp é diferente de source.
+     */
+    static List<MipsInstr> quotientSequence(String dst, String source, String temp, int c) {
+        if (c == 0 || c == Integer.MIN_VALUE || dst.equals(temp)) {
+            return null;
+        }
+        List<MipsInstr> sequence = new ArrayList<>();
+        int magnitude = Math.abs(c);
+        if (magnitude == 1) {
+            sequence.add(MipsInstr.of("move", dst, source));
+        } else if (Integer.bitCount(magnitude) == 1) {
+            int k = Integer.numberOfTrailingZeros(magnitude);
+            // Negativos somam 2^k - 1 antes do shift para arredondar para zero
+            addBias(sequence, source, temp, k);
+            sequence.add(MipsInstr.of("addu", temp, source, temp));
+            sequence.add(MipsInstr.of("sra", dst, temp, Integer.toString(k)));
+        } else {
+            addMagicQuotient(sequence, dst, source, temp, magnitude);
+            // quociente em temp; dst pode ser o próprio source
+            sequence.add(MipsInstr.of("srl", dst, source, "31"));
+            sequence.add(MipsInstr.of("addu", dst, dst, temp));
+        }
+        if (c < 0) {
+            sequence.add(MipsInstr.of("subu", dst, "$zero", dst));
+        }
+        return sequence;
+    }
+
+    /**
+     * dst = source mod c (sinal do dividendo), ou null
+     */
+    static List<MipsInstr> remainderSequence(String dst, String source, String temp, int c) {
+        if (c == 0 || c == Integer.MIN_VALUE) {
+            return null;
+        }
+        List<MipsInstr> sequence = new ArrayList<>();
+        int magnitude = Math.abs(c);
+        if (magnitude == 1) {
+            sequence.add(MipsInstr.of("move", dst, "$zero"));
+        } else if (Integer.bitCount(magnitude) == 1) {
+            int k = Integer.numberOfTrailingZeros(magnitude);
+            // temp = (source + bias) com os k bits baixos zerados; resto = source - temp
+            addBias(sequence, source, temp, k);
+            sequence.add(MipsInstr.of("addu", temp, source, temp));
+            sequence.add(MipsInstr.of("srl", temp, temp, Integer.toString(k)));
+            sequence.add(MipsInstr.of("sll", temp, temp, Integer.toString(k)));
+            sequence.add(MipsInstr.of("subu", dst, source, temp));
+        } else if (!dst.equals(source) && !dst.equals(temp)) {
+            // Precisa de source intacto até o fim: dst serve de segundo temporário
+            addMagicQuotient(sequence, dst, source, temp, magnitude);
+            sequence.add(MipsInstr.of("srl", dst, source, "31"));
+            sequence.add(MipsInstr.of("addu", temp, temp, dst));
+            sequence.add(MipsInstr.of("li", dst, Integer.toString(magnitude)));
+            sequence.add(MipsInstr.of("mul", temp, temp, dst));
+            sequence.add(MipsInstr.of("subu", dst, source, temp));
+        } else {
+            return null;
+        }
+        return sequence;
+    }
+
+    /**
+     * temp = 2^k - 1 se source < 0, senão 0
+     */
+    private static void addBias(List<MipsInstr> sequence, String source, String temp, int k) {
+        if (k == 1) {
+            sequence.add(MipsInstr.of("srl", temp, source, "31"));
+        } else {
+            sequence.add(MipsInstr.of("sra", temp, source, "31"));
+            sequence.add(MipsInstr.of("srl", temp, temp, Integer.toString(32 - k)));
+        }
+    }
+
+    /**
+     * temp = (source * M) >> (32 + s), ainda sem a correção de negativos
+     */
+    private static void addMagicQuotient(List<MipsInstr> sequence, String dst, String source, String temp,
+                                         int divisor) {
+        int[] magic = magic(divisor);
+        sequence.add(MipsInstr.of("li", temp, Integer.toString(magic[0])));
+        sequence.add(MipsInstr.of("mult", source, temp));
+        sequence.add(MipsInstr.of("mfhi", temp));
+        if (magic[0] < 0) {
+            sequence.add(MipsInstr.of("addu", temp, temp, source));
+        }
+        if (magic[1] > 0) {
+            sequence.add(MipsInstr.of("sra", temp, temp, Integer.toString(magic[1])));
+        }
+    }
+
+    /**
+     * Número mágico e shift para divisão com sinal por d >= 2
+     * (Hacker's Delight, figura 10-1)
+     */
+    static int[] magic(int d) {
+        final long two31 = 0x80000000L;
+        long ad = d;
+        long anc = two31 - 1 - two31 % ad;
+        int p = 31;
+        long q1 = two31 / anc;
+        long r1 = two31 - q1 * anc;
+        long q2 = two31 / ad;
+        long r2 = two31 - q2 * ad;
+        long delta;
+        do {
+            p++;
+            q1 = 2 * q1;
+            r1 = 2 * r1;
+            if (r1 >= anc) {
+                q1++;
+                r1 -= anc;
+            }
+            q2 = 2 * q2;
+            r2 = 2 * r2;
+            if (r2 >= ad) {
+                q2++;
+                r2 -= ad;
+            }
+            delta = ad - r2;
+        } while (q1 < delta || (q1 == delta && r1 == 0));
+        return new int[] { (int) (q2 + 1), p - 32 };
+    }
+
+    // ==================== Janela ====================
+
+    /**
+     * Índice do "li reg, c" que dá o valor de reg na posição i, sem labels
+     * nem outros acessos a reg no caminho, ou -1
+     */
+    private static int constantDefinition(List<MipsInstr> code, int i, String reg) {
+        for (int k = i - 1; k >= 0; k--) {
+            MipsInstr instr = code.get(k);
+            if (instr.isLabel() || (instr.isInstruction() && instr.endsBlock())) {
+                return -1;
+            }
+            if (!instr.isInstruction()) {
+                continue;
+            }
+            if (instr.defs().contains(reg)) {
+                return instr.is("li") && instr.operands.length == 2 && parses(instr.operand(1)) ? k : -1;
+            }
+            if (instr.uses().contains(reg)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean parses(String text) {
+        try {
+            Integer.decode(text);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static int constantValue(MipsInstr li) {
+        return Integer.decode(li.operand(1));
+    }
+
+    /**
+     * Remove o li em def e troca code[from..to] pela sequência; retorna o
+     * índice da última instrução inserida
+     */
+    private static int replace(List<MipsInstr> code, int def, int from, int to, List<MipsInstr> sequence) {
+        for (int k = to; k >= from; k--) {
+            code.remove(k);
+        }
+        code.addAll(from, sequence);
+        code.remove(def);
+        return from - 1 + sequence.size() - 1;
+    }
+}
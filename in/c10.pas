@@ -0,0 +1,32 @@
+program c10;
+var
+  total: integer;
+
+function countDown(n: integer): integer;
+begin
+  if n = 0 then
+    countDown := 0
+  else
+    countDown := 1 + countDown(n - 1)
+end;
+
+procedure step;
+begin
+  total := total + 1
+end;
+
+{ Sem parâmetros nem locais, mas chama outras rotinas: precisa salvar $ra }
+procedure twice;
+begin
+  step;
+  step;
+  total := total + countDown(3)
+end;
+
+begin
+  writeln('=== Teste de Rotinas sem Frame ===');
+  total := 0;
+  twice;
+  twice;
+  writeln('total = ', total);
+end.
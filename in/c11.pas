@@ -0,0 +1,23 @@
+program c11;
+var
+  g: integer;
+  arr: array[1..3] of integer;
+
+{ Altera a variável usada no índice do lado esquerdo }
+function bump: integer;
+begin
+  g := g + 1;
+  bump := 7
+end;
+
+begin
+  writeln('=== Teste de Ordem de Avaliação na Atribuição ===');
+  arr[1] := 0;
+  arr[2] := 0;
+  arr[3] := 0;
+  g := 1;
+  arr[g] := bump;
+  writeln('arr[1] = ', arr[1], ', arr[2] = ', arr[2]);
+  arr[g] := bump + arr[g];
+  writeln('arr[2] = ', arr[2], ', arr[3] = ', arr[3]);
+end.
@@ -0,0 +1,2141 @@
+package interpreter;
+
+import ast.AST;
+import ast.NodeKind;
+import entries.ArrayEntry;
+import interpreter.Trace.Category;
+import typing.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compila a AST (já resolvida pelo Resolver) em uma árvore de nós executáveis.
+ * Cada nó da AST é convertido uma única vez em um objeto especializado pelo
+ * tipo estático calculado pelo SemanticChecker (soma inteira, comparação real,
+ * leitura de variável inteira...), de modo que a execução de um laço não precise
+ * mais despachar por NodeKind nem reinspecionar os filhos a cada iteração.
+ *
+ * Os nós tipados avaliam por evalInt/evalReal/evalBool, sem boxing; eval()
+ * (com boxing) fica para saída, trace e os caminhos genéricos.
+ */
+public class ClosureCompiler {
+
+    /**
+     * Nó executável de expressão. As versões tipadas padrão convertem o
+     * resultado de eval(); os nós especializados as sobrescrevem.
+     */
+    abstract static class Expr {
+        abstract Object eval();
+
+        int evalInt() {
+            return Values.toInt(eval());
+        }
+
+        float evalReal() {
+            return Values.toFloat(eval());
+        }
+
+        boolean evalBool() {
+            return Values.toBoolean(eval());
+        }
+    }
+
+    /** Expressão de tipo integer */
+    abstract static class IntExpr extends Expr {
+        @Override abstract int evalInt();
+        @Override Object eval() { return evalInt(); }
+        @Override float evalReal() { return evalInt(); }
+    }
+
+    /** Expressão de tipo real */
+    abstract static class RealExpr extends Expr {
+        @Override abstract float evalReal();
+        @Override Object eval() { return evalReal(); }
+        @Override int evalInt() { return (int) evalReal(); }
+    }
+
+    /** Expressão de tipo boolean (evalInt retorna 0/1) */
+    abstract static class BoolExpr extends Expr {
+        @Override abstract boolean evalBool();
+        @Override Object eval() { return evalBool(); }
+        @Override int evalInt() { return evalBool() ? 1 : 0; }
+    }
+
+    /** Expressão de tipo char (evalInt retorna o código do caractere) */
+    abstract static class CharExpr extends Expr {
+        @Override abstract int evalInt();
+        @Override Object eval() { return (char) evalInt(); }
+        @Override float evalReal() { return evalInt(); }
+    }
+
+    /**
+     * Nó executável de statement
+     */
+    abstract static class Stmt {
+        abstract void exec();
+    }
+
+    /**
+     * Código de uma rotina: o corpo é preenchido depois de criado o objeto,
+     * para que chamadas recursivas possam referenciá-lo durante a compilação.
+     * Os frames liberados ao fim de cada chamada ficam em uma pilha para
+     * reuso, de modo que chamadas (inclusive recursivas) não alocam memória
+     * depois que a profundidade máxima de recursão foi atingida uma vez.
+     */
+    static final class Routine {
+        final FrameLayout layout;
+        final int[] paramSlots;
+        final boolean isFunction;
+        Stmt body;
+
+        private Frame[] pool = new Frame[4];
+        private int pooled = 0;
+
+        Routine(FrameLayout layout) {
+            this.layout = layout;
+            this.paramSlots = layout.getParamSlots().stream().mapToInt(Integer::intValue).toArray();
+            this.isFunction = layout.getDeclaration().kind == NodeKind.FUNC_DECL_NODE;
+        }
+
+        Frame acquireFrame() {
+            return pooled > 0 ? pool[--pooled] : new Frame(layout);
+        }
+
+        void releaseFrame(Frame frame) {
+            if (pooled == pool.length) {
+                pool = Arrays.copyOf(pool, pooled * 2);
+            }
+            pool[pooled++] = frame;
+        }
+    }
+
+    private final RuntimeState state;
+    private final Resolver resolver;
+
+    // Rotinas já compiladas, indexadas pelo índice no Resolver
+    private final Map<Integer, Routine> routines = new HashMap<>();
+
+    // Layouts das rotinas sendo compiladas, indexados pela profundidade
+    private final List<FrameLayout> compilingLayouts = new ArrayList<>();
+
+    public ClosureCompiler(RuntimeState state, Resolver resolver) {
+        this.state = state;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Compila o programa principal
+     */
+    public Stmt compileProgram(AST programNode) {
+        compilingLayouts.clear();
+        compilingLayouts.add(resolver.getRoutine(0));
+        if (programNode.getChildCount() == 0) {
+            return NOP;
+        }
+        return compileBlock(programNode.getChild(0));
+    }
+
+    // ==================== Blocos e declarações ====================
+
+    private Stmt compileBlock(AST blockNode) {
+        if (blockNode.kind != NodeKind.BLOCK_NODE) {
+            throw new RuntimeException("Expected BLOCK_NODE");
+        }
+
+        List<Stmt> stmts = new ArrayList<>();
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+
+            switch (child.kind) {
+                case CONST_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST constDecl = child.getChild(j);
+                        if (constDecl.kind == NodeKind.CONST_DECL_NODE && constDecl.getChildCount() > 0) {
+                            stmts.add(new ConstInit(state, constDecl, compileExpr(constDecl.getChild(0))));
+                        }
+                    }
+                }
+                case VAR_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST varList = child.getChild(j);
+                        for (int k = 0; k < varList.getChildCount(); k++) {
+                            AST varDecl = varList.getChild(k);
+                            if (varDecl.kind == NodeKind.VAR_DECL_NODE) {
+                                stmts.add(compileVarDeclaration(varDecl));
+                            }
+                        }
+                    }
+                }
+                case COMPOUND_STMT_NODE -> stmts.add(compileStatement(child));
+                case PROC_DECL_NODE, FUNC_DECL_NODE -> {
+                    // Subrotinas são compiladas a partir das chamadas
+                }
+                default -> stmts.add(traceMessage("Skipping unsupported block child: " + child.kind));
+            }
+        }
+        return sequence(stmts);
+    }
+
+    private Stmt compileVarDeclaration(AST varDeclNode) {
+        FrameLayout layout = layoutAt(varDeclNode.depth);
+        ArrayEntry arrayEntry = layout.getSlotArray(varDeclNode.slot);
+        if (arrayEntry != null) {
+            return new ArrayInit(state, varDeclNode, arrayEntry);
+        }
+        return new VarInit(state, varDeclNode, Values.defaultValue(varDeclNode.type));
+    }
+
+    /**
+     * Layout do frame visível em uma profundidade durante a compilação
+     */
+    private FrameLayout layoutAt(int depth) {
+        return compilingLayouts.get(depth);
+    }
+
+    private Routine compileRoutine(int index) {
+        Routine routine = routines.get(index);
+        if (routine != null) {
+            return routine;
+        }
+
+        routine = new Routine(resolver.getRoutine(index));
+        routines.put(index, routine);
+
+        // Salva a pilha de layouts (a rotina pode ser chamada de outra profundidade)
+        int depth = routine.layout.getDepth();
+        List<FrameLayout> saved = new ArrayList<>(compilingLayouts);
+        while (compilingLayouts.size() > depth) {
+            compilingLayouts.remove(compilingLayouts.size() - 1);
+        }
+        compilingLayouts.add(routine.layout);
+        try {
+            AST body = routine.layout.getBody();
+            routine.body = body != null ? compileBlock(body) : NOP;
+        } finally {
+            compilingLayouts.clear();
+            compilingLayouts.addAll(saved);
+        }
+        return routine;
+    }
+
+    // ==================== Statements ====================
+
+    private Stmt compileStatement(AST stmtNode) {
+        return switch (stmtNode.kind) {
+            case ASSIGN_NODE -> compileAssignment(stmtNode);
+            case PROC_CALL_NODE -> compileProcedureCall(stmtNode);
+            case COMPOUND_STMT_NODE -> {
+                if (stmtNode.getChildCount() == 0) {
+                    yield NOP;
+                }
+                AST stmtList = stmtNode.getChild(0);
+                List<Stmt> stmts = new ArrayList<>();
+                for (int i = 0; i < stmtList.getChildCount(); i++) {
+                    stmts.add(compileStatement(stmtList.getChild(i)));
+                }
+                yield sequence(stmts);
+            }
+            case IF_NODE -> {
+                if (stmtNode.getChildCount() < 2) {
+                    throw new RuntimeException("Invalid if statement");
+                }
+                Stmt elseStmt = stmtNode.getChildCount() > 2 ? compileStatement(stmtNode.getChild(2)) : NOP;
+                yield new If(compileExpr(stmtNode.getChild(0)), compileStatement(stmtNode.getChild(1)), elseStmt);
+            }
+            case WHILE_NODE -> {
+                if (stmtNode.getChildCount() < 2) {
+                    throw new RuntimeException("Invalid while statement");
+                }
+                yield new While(state, compileExpr(stmtNode.getChild(0)), compileStatement(stmtNode.getChild(1)));
+            }
+            case RETURN_NODE -> {
+                // Valor de retorno vai para o slot de resultado da função atual
+                FrameLayout layout = layoutAt(compilingLayouts.size() - 1);
+                if (layout.getResultSlot() < 0) {
+                    throw new RuntimeException("Return statement outside of function");
+                }
+                if (stmtNode.getChildCount() == 0) {
+                    yield NOP;
+                }
+                yield compileStore(layout, layout.getResultSlot(), compileExpr(stmtNode.getChild(0)));
+            }
+            case EMPTY_STMT_NODE -> NOP;
+            default -> traceMessage("Skipping unsupported statement: " + stmtNode.kind);
+        };
+    }
+
+    private Stmt compileAssignment(AST assignNode) {
+        if (assignNode.getChildCount() < 2) {
+            throw new RuntimeException("Invalid assignment node");
+        }
+
+        return compileTargetStore(assignNode.getChild(0), compileExpr(assignNode.getChild(1)));
+    }
+
+    /**
+     * Escrita de um valor em variável ou elemento de array (atribuição e read)
+     */
+    private Stmt compileTargetStore(AST varNode, Expr value) {
+        switch (varNode.kind) {
+            case VAR_USE_NODE -> {
+                if (varNode.slot < 0) {
+                    throw new RuntimeException("Variable '" + varNode.stringData + "' not declared");
+                }
+                return compileStore(layoutAt(varNode.depth), varNode.slot, value);
+            }
+            case ARRAY_ACCESS_NODE -> {
+                if (varNode.getChildCount() < 1) {
+                    throw new RuntimeException("Array access without index");
+                }
+                return compileArrayStore(varNode, compileExpr(varNode.getChild(0)), value);
+            }
+            default -> throw new RuntimeException("Invalid assignment target: " + varNode.kind);
+        }
+    }
+
+    /**
+     * Escrita em variável escolhida pelo tipo declarado do slot
+     */
+    private Stmt compileStore(FrameLayout layout, int slot, Expr value) {
+        int depth = layout.getDepth();
+        String name = layout.getSlotName(slot);
+        if (layout.isReference(slot)) {
+            return switch (layout.getSlotType(slot)) {
+                case INTEGER -> new IntRefStore(state, depth, slot, name, value);
+                case REAL -> new RealRefStore(state, depth, slot, name, value);
+                case BOOLEAN -> new BoolRefStore(state, depth, slot, name, value);
+                case CHAR -> new CharRefStore(state, depth, slot, name, value);
+                default -> new RefRefStore(state, depth, slot, name, value);
+            };
+        }
+        return switch (layout.getSlotType(slot)) {
+            case INTEGER -> new IntStore(state, depth, slot, name, value);
+            case REAL -> new RealStore(state, depth, slot, name, value);
+            case BOOLEAN -> new BoolStore(state, depth, slot, name, value);
+            case CHAR -> new CharStore(state, depth, slot, name, value);
+            default -> new RefStore(state, depth, slot, name, value);
+        };
+    }
+
+    /**
+     * Leitura de variável escolhida pelo tipo declarado do slot
+     */
+    private Expr compileLoad(AST varNode) {
+        int depth = varNode.depth;
+        int slot = varNode.slot;
+        FrameLayout layout = layoutAt(depth);
+        if (layout.isReference(slot)) {
+            return switch (layout.getSlotType(slot)) {
+                case INTEGER -> new IntRefLoad(state, depth, slot);
+                case REAL -> new RealRefLoad(state, depth, slot);
+                case BOOLEAN -> new BoolRefLoad(state, depth, slot);
+                case CHAR -> new CharRefLoad(state, depth, slot);
+                default -> new RefRefLoad(state, depth, slot, varNode.stringData);
+            };
+        }
+        return switch (layout.getSlotType(slot)) {
+            case INTEGER -> new IntLoad(state, depth, slot);
+            case REAL -> new RealLoad(state, depth, slot);
+            case BOOLEAN -> new BoolLoad(state, depth, slot);
+            case CHAR -> new CharLoad(state, depth, slot);
+            default -> new RefLoad(state, depth, slot, varNode.stringData);
+        };
+    }
+
+    private Stmt compileProcedureCall(AST procCallNode) {
+        String procName = procCallNode.stringData.toLowerCase();
+
+        return switch (procName) {
+            case "writeln" -> new Write(state, compileArgs(procCallNode), true);
+            case "write" -> new Write(state, compileArgs(procCallNode), false);
+            case "readln" -> compileRead(procCallNode, true);
+            case "read" -> compileRead(procCallNode, false);
+            default -> {
+                if (procCallNode.slot < 0) {
+                    throw new RuntimeException("Procedure '" + procName + "' not found");
+                }
+                yield new CallStmt(compileCall(procCallNode));
+            }
+        };
+    }
+
+    /**
+     * read/readln: cada argumento recebe um valor lido conforme seu tipo,
+     * pelo mesmo nó de escrita de uma atribuição
+     */
+    private Stmt compileRead(AST procCallNode, boolean line) {
+        AST args = procCallNode.getChildCount() > 0 ? procCallNode.getChild(0) : null;
+        int count = args != null ? args.getChildCount() : 0;
+        Stmt[] stores = new Stmt[count];
+        for (int i = 0; i < count; i++) {
+            AST target = args.getChild(i);
+            Expr value = switch (readTargetType(target)) {
+                case INTEGER -> new IntInput(state);
+                case REAL -> new RealInput(state);
+                case CHAR -> new CharInput(state);
+                default -> throw new RuntimeException("Cannot read a value of type " + readTargetType(target) +
+                                                      " into '" + target.stringData + "'");
+            };
+            stores[i] = compileTargetStore(target, value);
+        }
+        return new Read(state, stores, line);
+    }
+
+    private Type readTargetType(AST target) {
+        if (target.kind == NodeKind.VAR_USE_NODE && target.slot >= 0) {
+            FrameLayout layout = layoutAt(target.depth);
+            if (layout.getSlotKind(target.slot) == FrameLayout.SlotKind.CONST ||
+                layout.getSlotArray(target.slot) != null) {
+                throw new RuntimeException("Cannot read into '" + target.stringData + "'");
+            }
+            return layout.getSlotType(target.slot);
+        } else if (target.kind == NodeKind.ARRAY_ACCESS_NODE && target.slot >= 0) {
+            return arrayEntry(target).getElementType();
+        }
+        throw new RuntimeException("Argument of read must be a variable");
+    }
+
+    private Expr[] compileArgs(AST callNode) {
+        return callNode.getChildCount() > 0 ? compileExprList(callNode.getChild(0)) : new Expr[0];
+    }
+
+    // ==================== Expressões ====================
+
+    private Expr[] compileExprList(AST exprList) {
+        Expr[] exprs = new Expr[exprList.getChildCount()];
+        for (int i = 0; i < exprs.length; i++) {
+            exprs[i] = compileExpr(exprList.getChild(i));
+        }
+        return exprs;
+    }
+
+    private Expr compileExpr(AST exprNode) {
+        switch (exprNode.kind) {
+            // Valores constantes
+            case INT_VAL_NODE -> {
+                return new IntConst(exprNode.intData);
+            }
+            case REAL_VAL_NODE -> {
+                return new RealConst(exprNode.floatData);
+            }
+            case BOOL_VAL_NODE -> {
+                return new BoolConst(exprNode.intData == 1);
+            }
+            case CHAR_VAL_NODE -> {
+                return new CharConst(charLiteral(exprNode.stringData));
+            }
+            case STR_VAL_NODE -> {
+                return new RefConst(exprNode.stringData != null ? exprNode.stringData : "");
+            }
+
+            // Uso de variável
+            case VAR_USE_NODE -> {
+                if (exprNode.depth == Resolver.CALL_DEPTH) {
+                    // Função sem argumentos usada como valor
+                    return compileCall(exprNode);
+                }
+                if (exprNode.slot < 0) {
+                    throw new RuntimeException("Variable '" + exprNode.stringData + "' not initialized");
+                }
+                return compileLoad(exprNode);
+            }
+
+            // Acesso a array
+            case ARRAY_ACCESS_NODE -> {
+                if (exprNode.getChildCount() < 1) {
+                    throw new RuntimeException("Array access without index");
+                }
+                return compileArrayLoad(exprNode, compileExpr(exprNode.getChild(0)));
+            }
+
+            // Operações aritméticas e lógicas
+            case PLUS_NODE, MINUS_NODE, TIMES_NODE, DIVIDE_NODE, DIV_NODE, MOD_NODE -> {
+                return compileArithmetic(exprNode);
+            }
+            case AND_NODE -> {
+                requireOperands(exprNode, 2, "Logical operation requires two operands");
+                return new And(compileExpr(exprNode.getChild(0)), compileExpr(exprNode.getChild(1)));
+            }
+            case OR_NODE -> {
+                requireOperands(exprNode, 2, "Logical operation requires two operands");
+                return new Or(compileExpr(exprNode.getChild(0)), compileExpr(exprNode.getChild(1)));
+            }
+            case NOT_NODE -> {
+                requireOperands(exprNode, 1, "NOT operation requires one operand");
+                return new Not(compileExpr(exprNode.getChild(0)));
+            }
+
+            // Operações de comparação
+            case EQ_NODE, NEQ_NODE, LT_NODE, GT_NODE, LE_NODE, GE_NODE -> {
+                return compileComparison(exprNode);
+            }
+
+            // Conversões de tipo
+            case I2R_NODE -> {
+                requireOperands(exprNode, 1, "I2R conversion requires one operand");
+                AST operand = exprNode.getChild(0);
+                if (operand.type == Type.INTEGER) {
+                    return new IntToReal(compileExpr(operand));
+                }
+                return new ToReal(compileExpr(operand));
+            }
+
+            // Expressão parentizada: não gera nó próprio
+            case PAREN_EXPR_NODE -> {
+                requireOperands(exprNode, 1, "Parenthesized expression requires one operand");
+                return compileExpr(exprNode.getChild(0));
+            }
+
+            // Chamada de função
+            case FUNC_CALL_NODE -> {
+                if (exprNode.slot >= 0) {
+                    return compileCall(exprNode);
+                }
+                String funcName = exprNode.stringData.toLowerCase();
+                AST args = exprNode.getChild(0);
+                switch (funcName) {
+                    case "abs" -> {
+                        if (args == null || args.getChildCount() == 0) {
+                            throw new RuntimeException("Function 'abs' requires one argument");
+                        }
+                        AST arg = args.getChild(0);
+                        if (arg.type == Type.INTEGER) {
+                            return new IntAbs(compileExpr(arg));
+                        }
+                        return new RealAbs(compileExpr(arg));
+                    }
+                    case "sqrt" -> {
+                        if (args == null || args.getChildCount() == 0) {
+                            throw new RuntimeException("Function 'sqrt' requires one argument");
+                        }
+                        return new Sqrt(compileExpr(args.getChild(0)));
+                    }
+                    default -> throw new RuntimeException("Function '" + funcName + "' not found");
+                }
+            }
+
+            default -> throw new RuntimeException("Unsupported expression node: " + exprNode.kind);
+        }
+    }
+
+    private Expr compileArithmetic(AST opNode) {
+        requireOperands(opNode, 2, "Arithmetic operation requires two operands");
+        AST leftNode = opNode.getChild(0);
+        AST rightNode = opNode.getChild(1);
+        Expr left = compileExpr(leftNode);
+        Expr right = compileExpr(rightNode);
+
+        boolean ints = leftNode.type == Type.INTEGER && rightNode.type == Type.INTEGER;
+        boolean reals = leftNode.type == Type.REAL && rightNode.type == Type.REAL;
+
+        if (ints) {
+            switch (opNode.kind) {
+                case PLUS_NODE -> { return new IntAdd(left, right); }
+                case MINUS_NODE -> { return new IntSub(left, right); }
+                case TIMES_NODE -> { return new IntMul(left, right); }
+                case DIV_NODE -> { return new IntDiv(left, right); }
+                case MOD_NODE -> { return new IntMod(left, right); }
+                default -> { }
+            }
+        } else if (reals) {
+            switch (opNode.kind) {
+                case PLUS_NODE -> { return new RealAdd(left, right); }
+                case MINUS_NODE -> { return new RealSub(left, right); }
+                case TIMES_NODE -> { return new RealMul(left, right); }
+                case DIVIDE_NODE -> { return new RealDivide(left, right); }
+                default -> { }
+            }
+        }
+        // Tipos estáticos inesperados: conversões em tempo de execução
+        return new GenericArithmetic(opNode.kind, left, right);
+    }
+
+    private Expr compileComparison(AST opNode) {
+        requireOperands(opNode, 2, "Comparison operation requires two operands");
+        AST leftNode = opNode.getChild(0);
+        AST rightNode = opNode.getChild(1);
+        Expr left = compileExpr(leftNode);
+        Expr right = compileExpr(rightNode);
+
+        // Inteiros, chars e booleanos comparam pelo valor inteiro (código do char, 0/1)
+        if (leftNode.type == rightNode.type &&
+            (leftNode.type == Type.INTEGER || leftNode.type == Type.CHAR || leftNode.type == Type.BOOLEAN)) {
+            return switch (opNode.kind) {
+                case EQ_NODE -> new IntEq(left, right);
+                case NEQ_NODE -> new IntNe(left, right);
+                case LT_NODE -> new IntLt(left, right);
+                case GT_NODE -> new IntGt(left, right);
+                case LE_NODE -> new IntLe(left, right);
+                default -> new IntGe(left, right);
+            };
+        }
+        if (leftNode.type == Type.REAL && rightNode.type == Type.REAL) {
+            return switch (opNode.kind) {
+                case EQ_NODE -> new RealEq(left, right);
+                case NEQ_NODE -> new RealNe(left, right);
+                case LT_NODE -> new RealLt(left, right);
+                case GT_NODE -> new RealGt(left, right);
+                case LE_NODE -> new RealLe(left, right);
+                default -> new RealGe(left, right);
+            };
+        }
+        return new GenericCompare(opNode.kind, left, right);
+    }
+
+    /**
+     * Compila chamada de rotina do usuário (procedimento ou função)
+     */
+    private Call compileCall(AST callNode) {
+        Routine routine = compileRoutine(callNode.slot);
+        AST argsNode = callNode.kind == NodeKind.VAR_USE_NODE ? null : callNode.getChild(0);
+        int argCount = argsNode != null ? argsNode.getChildCount() : 0;
+        if (argCount != routine.paramSlots.length) {
+            throw new RuntimeException("Wrong number of arguments for " + callNode.stringData.toLowerCase());
+        }
+
+        // Argumentos são compilados no escopo de quem chama
+        Expr[] args = new Expr[argCount];
+        RefArg[] refArgs = new RefArg[argCount];
+        for (int i = 0; i < argCount; i++) {
+            AST argNode = argsNode.getChild(i);
+            if (routine.layout.isReference(routine.paramSlots[i])) {
+                refArgs[i] = compileRefArg(argNode);
+                continue;
+            }
+            Expr arg = compileExpr(argNode);
+            // O checker não insere I2R em argumentos: converte aqui
+            if (routine.layout.getSlotType(routine.paramSlots[i]) == Type.REAL && argNode.type == Type.INTEGER) {
+                arg = new IntToReal(arg);
+            }
+            args[i] = arg;
+        }
+        return new Call(state, routine, args, refArgs);
+    }
+
+    /**
+     * Argumento de parâmetro VAR: liga o parâmetro à variável ou ao elemento
+     * de array passado. Outras expressões são passadas em uma célula própria.
+     */
+    private RefArg compileRefArg(AST argNode) {
+        if (argNode.kind == NodeKind.VAR_USE_NODE && argNode.depth >= 0) {
+            FrameLayout layout = layoutAt(argNode.depth);
+            if (layout.isReference(argNode.slot)) {
+                return new ForwardRefArg(state, argNode.depth, argNode.slot);
+            }
+            if (layout.getSlotArray(argNode.slot) == null) {
+                return new SlotRefArg(state, argNode.depth, argNode.slot, layout.getSlotType(argNode.slot));
+            }
+        } else if (argNode.kind == NodeKind.ARRAY_ACCESS_NODE && argNode.getChildCount() > 0) {
+            return new ElementRefArg(new ArrayRef(state, argNode, arrayEntry(argNode)),
+                                     compileExpr(argNode.getChild(0)));
+        }
+        return new ValueRefArg(compileExpr(argNode), argNode.type);
+    }
+
+    /**
+     * Leitura de elemento escolhida pelo tipo do elemento; o nó já guarda o
+     * endereço do array e seus limites
+     */
+    private Expr compileArrayLoad(AST arrayNode, Expr index) {
+        ArrayEntry arrayEntry = arrayEntry(arrayNode);
+        ArrayRef array = new ArrayRef(state, arrayNode, arrayEntry);
+        return switch (arrayEntry.getElementType()) {
+            case INTEGER -> new IntArrayLoad(array, index);
+            case REAL -> new RealArrayLoad(array, index);
+            case BOOLEAN -> new BoolArrayLoad(array, index);
+            case CHAR -> new CharArrayLoad(array, index);
+            default -> new RefArrayLoad(array, index);
+        };
+    }
+
+    /**
+     * Escrita de elemento escolhida pelo tipo do elemento
+     */
+    private Stmt compileArrayStore(AST arrayNode, Expr index, Expr value) {
+        ArrayEntry arrayEntry = arrayEntry(arrayNode);
+        ArrayRef array = new ArrayRef(state, arrayNode, arrayEntry);
+        return switch (arrayEntry.getElementType()) {
+            case INTEGER -> new IntArrayStore(state, array, index, value);
+            case REAL -> new RealArrayStore(state, array, index, value);
+            case BOOLEAN -> new BoolArrayStore(state, array, index, value);
+            case CHAR -> new CharArrayStore(state, array, index, value);
+            default -> new RefArrayStore(state, array, index, value);
+        };
+    }
+
+    private ArrayEntry arrayEntry(AST arrayNode) {
+        ArrayEntry arrayEntry = arrayNode.slot < 0 ? null : layoutAt(arrayNode.depth).getSlotArray(arrayNode.slot);
+        if (arrayEntry == null) {
+            throw new RuntimeException("Array '" + arrayNode.stringData + "' not found");
+        }
+        return arrayEntry;
+    }
+
+    /**
+     * Mensagem de trace fixa; some da árvore compilada se o trace estiver desligado
+     */
+    private Stmt traceMessage(String message) {
+        return state.trace.on(Category.RUN) ? new TraceMessage(state, message) : NOP;
+    }
+
+    private static void requireOperands(AST node, int count, String message) {
+        if (node.getChildCount() < count) {
+            throw new RuntimeException(message);
+        }
+    }
+
+    private static char charLiteral(String charStr) {
+        if (charStr != null && charStr.length() >= 3) {
+            // Remove aspas simples se estiverem presentes
+            if (charStr.startsWith("'") && charStr.endsWith("'")) {
+                charStr = charStr.substring(1, charStr.length() - 1);
+            }
+            return charStr.length() > 0 ? charStr.charAt(0) : '\0';
+        }
+        return '\0';
+    }
+
+    private static Stmt sequence(List<Stmt> stmts) {
+        stmts.removeIf(s -> s == NOP);
+        return switch (stmts.size()) {
+            case 0 -> NOP;
+            case 1 -> stmts.get(0);
+            default -> new Seq(stmts.toArray(new Stmt[0]));
+        };
+    }
+
+    // ==================== Nós de statement ====================
+
+    static final Stmt NOP = new Stmt() {
+        @Override
+        void exec() {
+        }
+    };
+
+    static final class Seq extends Stmt {
+        private final Stmt[] stmts;
+
+        Seq(Stmt[] stmts) {
+            this.stmts = stmts;
+        }
+
+        @Override
+        void exec() {
+            for (Stmt stmt : stmts) {
+                stmt.exec();
+            }
+        }
+    }
+
+    static final class TraceMessage extends Stmt {
+        private final RuntimeState state;
+        private final String message;
+
+        TraceMessage(RuntimeState state, String message) {
+            this.state = state;
+            this.message = message;
+        }
+
+        @Override
+        void exec() {
+            state.traceLine(message);
+        }
+    }
+
+    static final class ConstInit extends Stmt {
+        private final RuntimeState state;
+        private final int depth;
+        private final int slot;
+        private final String name;
+        private final Expr value;
+        private final boolean traced;
+
+        ConstInit(RuntimeState state, AST constDeclNode, Expr value) {
+            this.state = state;
+            this.traced = state.trace.on(Category.DECL);
+            this.depth = constDeclNode.depth;
+            this.slot = constDeclNode.slot;
+            this.name = constDeclNode.stringData;
+            this.value = value;
+        }
+
+        @Override
+        void exec() {
+            Object v = value.eval();
+            state.display[depth].set(slot, v);
+            if (traced) {
+                state.traceLine("Constant " + name + " = " + v);
+            }
+        }
+    }
+
+    static final class VarInit extends Stmt {
+        private final RuntimeState state;
+        private final int depth;
+        private final int slot;
+        private final String name;
+        private final Object defaultValue;
+        private final boolean traced;
+
+        VarInit(RuntimeState state, AST varDeclNode, Object defaultValue) {
+            this.state = state;
+            this.traced = state.trace.on(Category.DECL);
+            this.depth = varDeclNode.depth;
+            this.slot = varDeclNode.slot;
+            this.name = varDeclNode.stringData;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        void exec() {
+            state.display[depth].set(slot, defaultValue);
+            if (traced) {
+                state.traceLine("Variable " + name + " declared and initialized to " + defaultValue);
+            }
+        }
+    }
+
+    static final class ArrayInit extends Stmt {
+        private final RuntimeState state;
+        private final int depth;
+        private final int slot;
+        private final String name;
+        private final ArrayEntry arrayEntry;
+        private final boolean traced;
+
+        ArrayInit(RuntimeState state, AST varDeclNode, ArrayEntry arrayEntry) {
+            this.state = state;
+            this.traced = state.trace.on(Category.DECL);
+            this.depth = varDeclNode.depth;
+            this.slot = varDeclNode.slot;
+            this.name = varDeclNode.stringData;
+            this.arrayEntry = arrayEntry;
+        }
+
+        @Override
+        void exec() {
+            // Frames reaproveitados já trazem o array da ativação anterior
+            Frame frame = state.display[depth];
+            Object values = frame.refs[slot];
+            if (values == null) {
+                frame.refs[slot] = newArray(arrayEntry);
+            } else {
+                clearArray(values, arrayEntry);
+            }
+            if (traced) {
+                state.traceLine("Array " + name + "[" + arrayEntry.getStartIndex() + ".." +
+                                 arrayEntry.getEndIndex() + "] of " + arrayEntry.getElementType() + " created");
+            }
+        }
+    }
+
+    /**
+     * Base das escritas em variável: endereço resolvido e dados para o trace
+     */
+    abstract static class Store extends Stmt {
+        final RuntimeState state;
+        final Frame[] display;
+        final int depth;
+        final int slot;
+        final String name;
+        final Expr value;
+        final boolean traced;
+
+        Store(RuntimeState state, int depth, int slot, String name, Expr value) {
+            this.state = state;
+            this.traced = state.trace.on(Category.ASSIGN);
+            this.display = state.display;
+            this.depth = depth;
+            this.slot = slot;
+            this.name = name;
+            this.value = value;
+        }
+
+        void trace(Object v) {
+            state.traceLine("Assignment: " + name + " := " + v);
+        }
+    }
+
+    static final class IntStore extends Store {
+        IntStore(RuntimeState state, int depth, int slot, String name, Expr value) {
+            super(state, depth, slot, name, value);
+        }
+
+        @Override
+        void exec() {
+            int v = value.evalInt();
+            display[depth].ints[slot] = v;
+            if (traced) {
+                trace(v);
+            }
+        }
+    }
+
+    static final class RealStore extends Store {
+        RealStore(RuntimeState state, int depth, int slot, String name, Expr value) {
+            super(state, depth, slot, name, value);
+        }
+
+        @Override
+        void exec() {
+            float v = value.evalReal();
+            display[depth].reals[slot] = v;
+            if (traced) {
+                trace(v);
+            }
+        }
+    }
+
+    static final class BoolStore extends Store {
+        BoolStore(RuntimeState state, int depth, int slot, String name, Expr value) {
+            super(state, depth, slot, name, value);
+        }
+
+        @Override
+        void exec() {
+            boolean v = value.evalBool();
+            display[depth].ints[slot] = v ? 1 : 0;
+            if (traced) {
+                trace(v);
+            }
+        }
+    }
+
+    static final class CharStore extends Store {
+        CharStore(RuntimeState state, int depth, int slot, String name, Expr value) {
+            super(state, depth, slot, name, value);
+        }
+
+        @Override
+        void exec() {
+            int v = value.evalInt();
+            display[depth].ints[slot] = v;
+            if (traced) {
+                trace((char) v);
+            }
+        }
+    }
+
+    static final class RefStore extends Store {
+        RefStore(RuntimeState state, int depth, int slot, String name, Expr value) {
+            super(state, depth, slot, name, value);
+        }
+
+        @Override
+        void exec() {
+            Object v = value.eval();
+            display[depth].refs[slot] = v;
+            if (traced) {
+                trace(v);
+            }
+        }
+    }
+
+    /**
+     * Base das escritas em elemento de array
+     */
+    abstract static class ArrayElementStore extends Stmt {
+        final RuntimeState state;
+        final ArrayRef array;
+        final Expr index;
+        final Expr value;
+        final boolean traced;
+
+        ArrayElementStore(RuntimeState state, ArrayRef array, Expr index, Expr value) {
+            this.state = state;
+            this.traced = state.trace.on(Category.ASSIGN);
+            this.array = array;
+            this.index = index;
+            this.value = value;
+        }
+
+        void trace(int i, Object v) {
+            state.traceLine("Array assignment: " + array.name + "[" + i + "] := " + v);
+        }
+    }
+
+    static final class IntArrayStore extends ArrayElementStore {
+        IntArrayStore(RuntimeState state, ArrayRef array, Expr index, Expr value) {
+            super(state, array, index, value);
+        }
+
+        @Override
+        void exec() {
+            int v = value.evalInt();
+            int i = index.evalInt();
+            ((int[]) array.values(i))[i - array.startIndex] = v;
+            if (traced) {
+                trace(i, v);
+            }
+        }
+    }
+
+    static final class RealArrayStore extends ArrayElementStore {
+        RealArrayStore(RuntimeState state, ArrayRef array, Expr index, Expr value) {
+            super(state, array, index, value);
+        }
+
+        @Override
+        void exec() {
+            float v = value.evalReal();
+            int i = index.evalInt();
+            ((float[]) array.values(i))[i - array.startIndex] = v;
+            if (traced) {
+                trace(i, v);
+            }
+        }
+    }
+
+    static final class BoolArrayStore extends ArrayElementStore {
+        BoolArrayStore(RuntimeState state, ArrayRef array, Expr index, Expr value) {
+            super(state, array, index, value);
+        }
+
+        @Override
+        void exec() {
+            boolean v = value.evalBool();
+            int i = index.evalInt();
+            ((byte[]) array.values(i))[i - array.startIndex] = (byte) (v ? 1 : 0);
+            if (traced) {
+                trace(i, v);
+            }
+        }
+    }
+
+    static final class CharArrayStore extends ArrayElementStore {
+        CharArrayStore(RuntimeState state, ArrayRef array, Expr index, Expr value) {
+            super(state, array, index, value);
+        }
+
+        @Override
+        void exec() {
+            char v = (char) value.evalInt();
+            int i = index.evalInt();
+            ((char[]) array.values(i))[i - array.startIndex] = v;
+            if (traced) {
+                trace(i, v);
+            }
+        }
+    }
+
+    static final class RefArrayStore extends ArrayElementStore {
+        RefArrayStore(RuntimeState state, ArrayRef array, Expr index, Expr value) {
+            super(state, array, index, value);
+        }
+
+        @Override
+        void exec() {
+            Object v = value.eval();
+            int i = index.evalInt();
+            ((Object[]) array.values(i))[i - array.startIndex] = v;
+            if (traced) {
+                trace(i, v);
+            }
+        }
+    }
+
+    static final class If extends Stmt {
+        private final Expr cond;
+        private final Stmt thenStmt;
+        private final Stmt elseStmt;
+
+        If(Expr cond, Stmt thenStmt, Stmt elseStmt) {
+            this.cond = cond;
+            this.thenStmt = thenStmt;
+            this.elseStmt = elseStmt;
+        }
+
+        @Override
+        void exec() {
+            if (cond.evalBool()) {
+                thenStmt.exec();
+            } else {
+                elseStmt.exec();
+            }
+        }
+    }
+
+    static final class While extends Stmt {
+        private final Fuel fuel;
+        private final Expr cond;
+        private final Stmt body;
+
+        While(RuntimeState state, Expr cond, Stmt body) {
+            this.fuel = state.fuel;
+            this.cond = cond;
+            this.body = body;
+        }
+
+        @Override
+        void exec() {
+            while (cond.evalBool()) {
+                fuel.burn();
+                body.exec();
+            }
+        }
+    }
+
+    /**
+     * write/writeln: cada argumento é escrito direto no buffer de saída pela
+     * versão tipada de eval, escolhida na compilação conforme o tipo do nó.
+     * Com trace durante a execução, todos os argumentos são avaliados antes da
+     * escrita, para que as linhas de trace de funções chamadas nos argumentos
+     * não partam a linha do programa.
+     */
+    static final class Write extends Stmt {
+        private static final byte GENERIC = 0, INT = 1, REAL = 2, BOOL = 3, CHAR = 4;
+
+        private final Output out;
+        private final Expr[] args;
+        private final byte[] kinds;
+        private final boolean newline;
+        private final boolean evaluateFirst;
+
+        Write(RuntimeState state, Expr[] args, boolean newline) {
+            this.out = state.out;
+            this.args = args;
+            this.newline = newline;
+            this.evaluateFirst = state.trace.printsDuringExecution();
+            this.kinds = new byte[args.length];
+            for (int i = 0; i < args.length; i++) {
+                Expr arg = args[i];
+                kinds[i] = arg instanceof IntExpr ? INT : arg instanceof RealExpr ? REAL :
+                           arg instanceof BoolExpr ? BOOL : arg instanceof CharExpr ? CHAR : GENERIC;
+            }
+        }
+
+        @Override
+        void exec() {
+            if (evaluateFirst) {
+                execEvaluatingFirst();
+                return;
+            }
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    out.printChar(' ');
+                }
+                Expr arg = args[i];
+                switch (kinds[i]) {
+                    case INT -> out.printInt(arg.evalInt());
+                    case REAL -> out.printReal(arg.evalReal());
+                    case BOOL -> out.printBool(arg.evalBool());
+                    case CHAR -> out.printChar((char) arg.evalInt());
+                    default -> out.print(Values.format(arg.eval()));
+                }
+            }
+            if (newline) {
+                out.printChar('\n');
+            }
+        }
+
+        private void execEvaluatingFirst() {
+            Object[] values = new Object[args.length];
+            for (int i = 0; i < args.length; i++) {
+                values[i] = args[i].eval();
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.printChar(' ');
+                }
+                out.print(Values.format(values[i]));
+            }
+            if (newline) {
+                out.printChar('\n');
+            }
+        }
+    }
+
+    /**
+     * read/readln: executa as escritas dos valores lidos; readln descarta
+     * em seguida o restante da linha
+     */
+    static final class Read extends Stmt {
+        private final Input input;
+        private final Stmt[] stores;
+        private final boolean line;
+
+        Read(RuntimeState state, Stmt[] stores, boolean line) {
+            this.input = state.input;
+            this.stores = stores;
+            this.line = line;
+        }
+
+        @Override
+        void exec() {
+            for (Stmt store : stores) {
+                store.exec();
+            }
+            if (line) {
+                input.skipLine();
+            }
+        }
+    }
+
+    // Trace de leitura: prompt antes e valor lido depois (categoria IO)
+    private static void promptInput(RuntimeState state) {
+        state.out.print("[INPUT] Enter value: ");
+    }
+
+    private static void traceInput(RuntimeState state, Object value) {
+        state.traceLine("Read value: " + value);
+    }
+
+    static final class IntInput extends IntExpr {
+        private final RuntimeState state;
+        private final boolean traced;
+
+        IntInput(RuntimeState state) {
+            this.state = state;
+            this.traced = state.trace.on(Category.IO);
+        }
+
+        @Override
+        int evalInt() {
+            if (traced) {
+                promptInput(state);
+            }
+            int v = state.input.readInt();
+            if (traced) {
+                traceInput(state, v);
+            }
+            return v;
+        }
+    }
+
+    static final class RealInput extends RealExpr {
+        private final RuntimeState state;
+        private final boolean traced;
+
+        RealInput(RuntimeState state) {
+            this.state = state;
+            this.traced = state.trace.on(Category.IO);
+        }
+
+        @Override
+        float evalReal() {
+            if (traced) {
+                promptInput(state);
+            }
+            float v = state.input.readReal();
+            if (traced) {
+                traceInput(state, Values.format(v));
+            }
+            return v;
+        }
+    }
+
+    static final class CharInput extends CharExpr {
+        private final RuntimeState state;
+        private final boolean traced;
+
+        CharInput(RuntimeState state) {
+            this.state = state;
+            this.traced = state.trace.on(Category.IO);
+        }
+
+        @Override
+        int evalInt() {
+            if (traced) {
+                promptInput(state);
+            }
+            char v = state.input.readChar();
+            if (traced) {
+                traceInput(state, v);
+            }
+            return v;
+        }
+    }
+
+    static final class CallStmt extends Stmt {
+        private final Call call;
+
+        CallStmt(Call call) {
+            this.call = call;
+        }
+
+        @Override
+        void exec() {
+            call.run();
+        }
+    }
+
+    // ==================== Nós de expressão ====================
+
+    static final class IntConst extends IntExpr {
+        private final int value;
+        IntConst(int value) { this.value = value; }
+        @Override int evalInt() { return value; }
+    }
+
+    static final class RealConst extends RealExpr {
+        private final float value;
+        RealConst(float value) { this.value = value; }
+        @Override float evalReal() { return value; }
+    }
+
+    static final class BoolConst extends BoolExpr {
+        private final boolean value;
+        BoolConst(boolean value) { this.value = value; }
+        @Override boolean evalBool() { return value; }
+    }
+
+    static final class CharConst extends CharExpr {
+        private final char value;
+        CharConst(char value) { this.value = value; }
+        @Override int evalInt() { return value; }
+    }
+
+    static final class RefConst extends Expr {
+        private final Object value;
+        RefConst(Object value) { this.value = value; }
+        @Override Object eval() { return value; }
+    }
+
+    static final class IntLoad extends IntExpr {
+        private final Frame[] display;
+        private final int depth, slot;
+        IntLoad(RuntimeState state, int depth, int slot) { this.display = state.display; this.depth = depth; this.slot = slot; }
+        @Override int evalInt() { return display[depth].ints[slot]; }
+    }
+
+    static final class RealLoad extends RealExpr {
+        private final Frame[] display;
+        private final int depth, slot;
+        RealLoad(RuntimeState state, int depth, int slot) { this.display = state.display; this.depth = depth; this.slot = slot; }
+        @Override float evalReal() { return display[depth].reals[slot]; }
+    }
+
+    static final class BoolLoad extends BoolExpr {
+        private final Frame[] display;
+        private final int depth, slot;
+        BoolLoad(RuntimeState state, int depth, int slot) { this.display = state.display; this.depth = depth; this.slot = slot; }
+        @Override boolean evalBool() { return display[depth].ints[slot] != 0; }
+    }
+
+    static final class CharLoad extends CharExpr {
+        private final Frame[] display;
+        private final int depth, slot;
+        CharLoad(RuntimeState state, int depth, int slot) { this.display = state.display; this.depth = depth; this.slot = slot; }
+        @Override int evalInt() { return display[depth].ints[slot]; }
+    }
+
+    static final class RefLoad extends Expr {
+        private final Frame[] display;
+        private final int depth, slot;
+        private final String name;
+
+        RefLoad(RuntimeState state, int depth, int slot, String name) {
+            this.display = state.display;
+            this.depth = depth;
+            this.slot = slot;
+            this.name = name;
+        }
+
+        @Override
+        Object eval() {
+            Object value = display[depth].refs[slot];
+            if (value == null) {
+                throw new RuntimeException("Variable '" + name + "' not initialized");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Endereço (depth, slot) e limites de um array, resolvidos na compilação.
+     * O armazenamento é primitivo conforme o tipo do elemento: int[], float[],
+     * byte[] (boolean 0/1), char[] ou Object[] para strings.
+     */
+    static final class ArrayRef {
+        private final Frame[] display;
+        private final int depth;
+        private final int slot;
+        final String name;
+        final int startIndex;
+        final int endIndex;
+
+        ArrayRef(RuntimeState state, AST arrayNode, ArrayEntry arrayEntry) {
+            this.display = state.display;
+            this.depth = arrayNode.depth;
+            this.slot = arrayNode.slot;
+            this.name = arrayNode.stringData;
+            this.startIndex = arrayEntry.getStartIndex();
+            this.endIndex = arrayEntry.getEndIndex();
+        }
+
+        /**
+         * Verifica os limites e retorna o armazenamento do array
+         */
+        Object values(int index) {
+            if (index < startIndex || index > endIndex) {
+                throw new RuntimeException("Array index " + index + " out of bounds [" +
+                                           startIndex + ".." + endIndex + "]");
+            }
+            Object values = display[depth].refs[slot];
+            if (values == null) {
+                throw new RuntimeException("Array values not initialized for " + name);
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Cria o armazenamento de um array com os valores padrão do tipo do elemento
+     */
+    static Object newArray(ArrayEntry arrayEntry) {
+        int size = arrayEntry.getArraySize();
+        return switch (arrayEntry.getElementType()) {
+            case INTEGER -> new int[size];
+            case REAL -> new float[size];
+            case BOOLEAN -> new byte[size];
+            case CHAR -> new char[size];
+            default -> {
+                Object[] values = new Object[size];
+                Arrays.fill(values, Values.defaultValue(arrayEntry.getElementType()));
+                yield values;
+            }
+        };
+    }
+
+    /**
+     * Restaura os valores padrão de um array criado por newArray
+     */
+    static void clearArray(Object values, ArrayEntry arrayEntry) {
+        if (values instanceof int[] ints) {
+            Arrays.fill(ints, 0);
+        } else if (values instanceof float[] reals) {
+            Arrays.fill(reals, 0.0f);
+        } else if (values instanceof byte[] bools) {
+            Arrays.fill(bools, (byte) 0);
+        } else if (values instanceof char[] chars) {
+            Arrays.fill(chars, '\0');
+        } else {
+            Arrays.fill((Object[]) values, Values.defaultValue(arrayEntry.getElementType()));
+        }
+    }
+
+    static final class IntArrayLoad extends IntExpr {
+        private final ArrayRef array;
+        private final Expr index;
+        IntArrayLoad(ArrayRef array, Expr index) { this.array = array; this.index = index; }
+        @Override int evalInt() {
+            int i = index.evalInt();
+            return ((int[]) array.values(i))[i - array.startIndex];
+        }
+    }
+
+    static final class RealArrayLoad extends RealExpr {
+        private final ArrayRef array;
+        private final Expr index;
+        RealArrayLoad(ArrayRef array, Expr index) { this.array = array; this.index = index; }
+        @Override float evalReal() {
+            int i = index.evalInt();
+            return ((float[]) array.values(i))[i - array.startIndex];
+        }
+    }
+
+    static final class BoolArrayLoad extends BoolExpr {
+        private final ArrayRef array;
+        private final Expr index;
+        BoolArrayLoad(ArrayRef array, Expr index) { this.array = array; this.index = index; }
+        @Override boolean evalBool() {
+            int i = index.evalInt();
+            return ((byte[]) array.values(i))[i - array.startIndex] != 0;
+        }
+    }
+
+    static final class CharArrayLoad extends CharExpr {
+        private final ArrayRef array;
+        private final Expr index;
+        CharArrayLoad(ArrayRef array, Expr index) { this.array = array; this.index = index; }
+        @Override int evalInt() {
+            int i = index.evalInt();
+            return ((char[]) array.values(i))[i - array.startIndex];
+        }
+    }
+
+    static final class RefArrayLoad extends Expr {
+        private final ArrayRef array;
+        private final Expr index;
+        RefArrayLoad(ArrayRef array, Expr index) { this.array = array; this.index = index; }
+        @Override Object eval() {
+            int i = index.evalInt();
+            return ((Object[]) array.values(i))[i - array.startIndex];
+        }
+    }
+
+    /**
+     * Chamada de rotina do usuário: cria o frame, associa os argumentos
+     * (avaliados no escopo de quem chama) e executa o corpo. O resultado
+     * de uma função é lido do slot de resultado pela versão tipada de eval.
+     */
+    static final class Call extends Expr {
+        private final RuntimeState state;
+        private final Routine routine;
+        private final Expr[] args;
+        private final RefArg[] refArgs;
+        private final Type[] paramTypes;
+        private final int resultSlot;
+        private final Type resultType;
+        private final boolean traced;
+
+        Call(RuntimeState state, Routine routine, Expr[] args, RefArg[] refArgs) {
+            this.state = state;
+            this.traced = state.trace.on(Category.CALL);
+            this.routine = routine;
+            this.args = args;
+            this.refArgs = refArgs;
+            this.paramTypes = new Type[args.length];
+            for (int i = 0; i < args.length; i++) {
+                paramTypes[i] = routine.layout.getSlotType(routine.paramSlots[i]);
+            }
+            this.resultSlot = routine.layout.getResultSlot();
+            this.resultType = resultSlot >= 0 ? routine.layout.getSlotType(resultSlot) : null;
+        }
+
+        /**
+         * Executa a rotina e retorna o frame já desempilhado (para ler o
+         * resultado); quem chama o devolve ao pool com releaseFrame
+         */
+        Frame invoke() {
+            FrameLayout layout = routine.layout;
+            if (traced) {
+                state.traceLine((routine.isFunction ? "Executing function: " : "Executing procedure: ")
+                                 + layout.getName().toLowerCase());
+            }
+
+            state.fuel.burn();
+            if (state.callDepth == Fuel.MAX_CALL_DEPTH) {
+                throw Fuel.stackOverflow();
+            }
+            Frame frame = routine.acquireFrame();
+            int[] paramSlots = routine.paramSlots;
+            for (int i = 0; i < args.length; i++) {
+                int slot = paramSlots[i];
+                if (refArgs[i] != null) {
+                    refArgs[i].bind(frame, slot);
+                } else {
+                    switch (paramTypes[i]) {
+                        case INTEGER, CHAR -> frame.ints[slot] = args[i].evalInt();
+                        case BOOLEAN -> frame.ints[slot] = args[i].evalBool() ? 1 : 0;
+                        case REAL -> frame.reals[slot] = args[i].evalReal();
+                        default -> frame.refs[slot] = args[i].eval();
+                    }
+                }
+                if (traced) {
+                    state.traceLine("Parameter " + layout.getSlotName(slot) + " = " + frame.get(slot));
+                }
+            }
+            if (resultSlot >= 0) {
+                frame.ints[resultSlot] = 0;
+                frame.reals[resultSlot] = 0.0f;
+                frame.refs[resultSlot] = resultType == Type.STRING ? "" : null;
+            }
+
+            Frame[] display = state.display;
+            int depth = layout.getDepth();
+            Frame savedFrame = display[depth];
+            display[depth] = frame;
+            state.callDepth++;
+            try {
+                routine.body.exec();
+            } finally {
+                state.callDepth--;
+                display[depth] = savedFrame;
+            }
+            return frame;
+        }
+
+        /**
+         * Executa como procedimento, descartando o resultado
+         */
+        void run() {
+            routine.releaseFrame(invoke());
+        }
+
+        @Override
+        Object eval() {
+            Frame frame = invoke();
+            Object result = frame.get(resultSlot);
+            routine.releaseFrame(frame);
+            return result;
+        }
+
+        @Override
+        int evalInt() {
+            Frame frame = invoke();
+            int result = resultType == Type.REAL ? (int) frame.reals[resultSlot] : frame.ints[resultSlot];
+            routine.releaseFrame(frame);
+            return result;
+        }
+
+        @Override
+        float evalReal() {
+            Frame frame = invoke();
+            float result = resultType == Type.REAL ? frame.reals[resultSlot] : frame.ints[resultSlot];
+            routine.releaseFrame(frame);
+            return result;
+        }
+
+        @Override
+        boolean evalBool() {
+            Frame frame = invoke();
+            boolean result = frame.ints[resultSlot] != 0;
+            routine.releaseFrame(frame);
+            return result;
+        }
+    }
+
+    // Parâmetros VAR: o slot guarda em 'refs' o array que contém a variável
+    // (ints/reals/refs do frame dono, ou o próprio array Pascal) e em 'ints'
+    // o índice dentro dele. Variáveis e elementos são acessados sem boxing.
+
+    /**
+     * Liga um parâmetro VAR ao argumento, no frame do chamado
+     */
+    abstract static class RefArg {
+        abstract void bind(Frame frame, int slot);
+    }
+
+    static final class SlotRefArg extends RefArg {
+        private final Frame[] display;
+        private final int depth;
+        private final int slot;
+        private final Type type;
+
+        SlotRefArg(RuntimeState state, int depth, int slot, Type type) {
+            this.display = state.display;
+            this.depth = depth;
+            this.slot = slot;
+            this.type = type;
+        }
+
+        @Override
+        void bind(Frame frame, int paramSlot) {
+            Frame owner = display[depth];
+            frame.refs[paramSlot] = switch (type) {
+                case INTEGER, BOOLEAN, CHAR -> owner.ints;
+                case REAL -> owner.reals;
+                default -> owner.refs;
+            };
+            frame.ints[paramSlot] = slot;
+        }
+    }
+
+    /**
+     * Repassa um parâmetro VAR recebido pelo chamador
+     */
+    static final class ForwardRefArg extends RefArg {
+        private final Frame[] display;
+        private final int depth;
+        private final int slot;
+
+        ForwardRefArg(RuntimeState state, int depth, int slot) {
+            this.display = state.display;
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        void bind(Frame frame, int paramSlot) {
+            Frame owner = display[depth];
+            frame.refs[paramSlot] = owner.refs[slot];
+            frame.ints[paramSlot] = owner.ints[slot];
+        }
+    }
+
+    static final class ElementRefArg extends RefArg {
+        private final ArrayRef array;
+        private final Expr index;
+
+        ElementRefArg(ArrayRef array, Expr index) {
+            this.array = array;
+            this.index = index;
+        }
+
+        @Override
+        void bind(Frame frame, int paramSlot) {
+            int i = index.evalInt();
+            frame.refs[paramSlot] = array.values(i);
+            frame.ints[paramSlot] = i - array.startIndex;
+        }
+    }
+
+    /**
+     * Argumento que não é variável: o valor vai para uma célula nova
+     */
+    static final class ValueRefArg extends RefArg {
+        private final Expr value;
+        private final Type type;
+
+        ValueRefArg(Expr value, Type type) {
+            this.value = value;
+            this.type = type;
+        }
+
+        @Override
+        void bind(Frame frame, int paramSlot) {
+            frame.refs[paramSlot] = switch (type) {
+                case INTEGER, CHAR -> new int[] { value.evalInt() };
+                case BOOLEAN -> new int[] { value.evalBool() ? 1 : 0 };
+                case REAL -> new float[] { value.evalReal() };
+                default -> new Object[] { value.eval() };
+            };
+            frame.ints[paramSlot] = 0;
+        }
+    }
+
+    static final class IntRefLoad extends IntExpr {
+        private final Frame[] display;
+        private final int depth, slot;
+        IntRefLoad(RuntimeState state, int depth, int slot) { this.display = state.display; this.depth = depth; this.slot = slot; }
+        @Override int evalInt() {
+            Frame frame = display[depth];
+            return ((int[]) frame.refs[slot])[frame.ints[slot]];
+        }
+    }
+
+    static final class RealRefLoad extends RealExpr {
+        private final Frame[] display;
+        private final int depth, slot;
+        RealRefLoad(RuntimeState state, int depth, int slot) { this.display = state.display; this.depth = depth; this.slot = slot; }
+        @Override float evalReal() {
+            Frame frame = display[depth];
+            return ((float[]) frame.refs[slot])[frame.ints[slot]];
+        }
+    }
+
+    static final class BoolRefLoad extends BoolExpr {
+        private final Frame[] display;
+        private final int depth, slot;
+        BoolRefLoad(RuntimeState state, int depth, int slot) { this.display = state.display; this.depth = depth; this.slot = slot; }
+        @Override boolean evalBool() {
+            Frame frame = display[depth];
+            return Frame.loadBool(frame.refs[slot], frame.ints[slot]);
+        }
+    }
+
+    static final class CharRefLoad extends CharExpr {
+        private final Frame[] display;
+        private final int depth, slot;
+        CharRefLoad(RuntimeState state, int depth, int slot) { this.display = state.display; this.depth = depth; this.slot = slot; }
+        @Override int evalInt() {
+            Frame frame = display[depth];
+            return Frame.loadChar(frame.refs[slot], frame.ints[slot]);
+        }
+    }
+
+    static final class RefRefLoad extends Expr {
+        private final Frame[] display;
+        private final int depth, slot;
+        private final String name;
+
+        RefRefLoad(RuntimeState state, int depth, int slot, String name) {
+            this.display = state.display;
+            this.depth = depth;
+            this.slot = slot;
+            this.name = name;
+        }
+
+        @Override
+        Object eval() {
+            Frame frame = display[depth];
+            Object value = ((Object[]) frame.refs[slot])[frame.ints[slot]];
+            if (value == null) {
+                throw new RuntimeException("Variable '" + name + "' not initialized");
+            }
+            return value;
+        }
+    }
+
+    static final class IntRefStore extends Store {
+        IntRefStore(RuntimeState state, int depth, int slot, String name, Expr value) {
+            super(state, depth, slot, name, value);
+        }
+
+        @Override
+        void exec() {
+            int v = value.evalInt();
+            Frame frame = display[depth];
+            ((int[]) frame.refs[slot])[frame.ints[slot]] = v;
+            if (traced) {
+                trace(v);
+            }
+        }
+    }
+
+    static final class RealRefStore extends Store {
+        RealRefStore(RuntimeState state, int depth, int slot, String name, Expr value) {
+            super(state, depth, slot, name, value);
+        }
+
+        @Override
+        void exec() {
+            float v = value.evalReal();
+            Frame frame = display[depth];
+            ((float[]) frame.refs[slot])[frame.ints[slot]] = v;
+            if (traced) {
+                trace(v);
+            }
+        }
+    }
+
+    static final class BoolRefStore extends Store {
+        BoolRefStore(RuntimeState state, int depth, int slot, String name, Expr value) {
+            super(state, depth, slot, name, value);
+        }
+
+        @Override
+        void exec() {
+            boolean v = value.evalBool();
+            Frame frame = display[depth];
+            Object target = frame.refs[slot];
+            if (target instanceof byte[] bools) {
+                bools[frame.ints[slot]] = (byte) (v ? 1 : 0);
+            } else {
+                ((int[]) target)[frame.ints[slot]] = v ? 1 : 0;
+            }
+            if (traced) {
+                trace(v);
+            }
+        }
+    }
+
+    static final class CharRefStore extends Store {
+        CharRefStore(RuntimeState state, int depth, int slot, String name, Expr value) {
+            super(state, depth, slot, name, value);
+        }
+
+        @Override
+        void exec() {
+            char v = (char) value.evalInt();
+            Frame frame = display[depth];
+            Object target = frame.refs[slot];
+            if (target instanceof char[] chars) {
+                chars[frame.ints[slot]] = v;
+            } else {
+                ((int[]) target)[frame.ints[slot]] = v;
+            }
+            if (traced) {
+                trace(v);
+            }
+        }
+    }
+
+    static final class RefRefStore extends Store {
+        RefRefStore(RuntimeState state, int depth, int slot, String name, Expr value) {
+            super(state, depth, slot, name, value);
+        }
+
+        @Override
+        void exec() {
+            Object v = value.eval();
+            Frame frame = display[depth];
+            ((Object[]) frame.refs[slot])[frame.ints[slot]] = v;
+            if (traced) {
+                trace(v);
+            }
+        }
+    }
+
+    // Aritmética inteira
+
+    static final class IntAdd extends IntExpr {
+        private final Expr left, right;
+        IntAdd(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override int evalInt() { return left.evalInt() + right.evalInt(); }
+    }
+
+    static final class IntSub extends IntExpr {
+        private final Expr left, right;
+        IntSub(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override int evalInt() { return left.evalInt() - right.evalInt(); }
+    }
+
+    static final class IntMul extends IntExpr {
+        private final Expr left, right;
+        IntMul(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override int evalInt() { return left.evalInt() * right.evalInt(); }
+    }
+
+    static final class IntDiv extends IntExpr {
+        private final Expr left, right;
+        IntDiv(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override int evalInt() {
+            int a = left.evalInt();
+            int b = right.evalInt();
+            if (b == 0) {
+                throw new RuntimeException("Integer division by zero");
+            }
+            return a / b;
+        }
+    }
+
+    static final class IntMod extends IntExpr {
+        private final Expr left, right;
+        IntMod(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override int evalInt() {
+            int a = left.evalInt();
+            int b = right.evalInt();
+            if (b == 0) {
+                throw new RuntimeException("Modulo by zero");
+            }
+            return a % b;
+        }
+    }
+
+    // Aritmética real
+
+    static final class RealAdd extends RealExpr {
+        private final Expr left, right;
+        RealAdd(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override float evalReal() { return left.evalReal() + right.evalReal(); }
+    }
+
+    static final class RealSub extends RealExpr {
+        private final Expr left, right;
+        RealSub(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override float evalReal() { return left.evalReal() - right.evalReal(); }
+    }
+
+    static final class RealMul extends RealExpr {
+        private final Expr left, right;
+        RealMul(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override float evalReal() { return left.evalReal() * right.evalReal(); }
+    }
+
+    static final class RealDivide extends RealExpr {
+        private final Expr left, right;
+        RealDivide(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override float evalReal() {
+            float a = left.evalReal();
+            float b = right.evalReal();
+            if (Math.abs(b) < 1e-10) {
+                throw new RuntimeException("Division by zero");
+            }
+            return a / b;
+        }
+    }
+
+    /**
+     * Aritmética com conversão em tempo de execução, usada quando os tipos
+     * estáticos dos operandos não permitem especializar o nó
+     */
+    static final class GenericArithmetic extends Expr {
+        private final NodeKind op;
+        private final Expr left, right;
+
+        GenericArithmetic(NodeKind op, Expr left, Expr right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object eval() {
+            Object a = left.eval();
+            Object b = right.eval();
+            boolean ints = a instanceof Integer && b instanceof Integer;
+            switch (op) {
+                case PLUS_NODE -> { return ints ? (Integer) a + (Integer) b : Values.toFloat(a) + Values.toFloat(b); }
+                case MINUS_NODE -> { return ints ? (Integer) a - (Integer) b : Values.toFloat(a) - Values.toFloat(b); }
+                case TIMES_NODE -> { return ints ? (Integer) a * (Integer) b : Values.toFloat(a) * Values.toFloat(b); }
+                case DIVIDE_NODE -> {
+                    float fb = Values.toFloat(b);
+                    if (Math.abs(fb) < 1e-10) {
+                        throw new RuntimeException("Division by zero");
+                    }
+                    return Values.toFloat(a) / fb;
+                }
+                case DIV_NODE -> {
+                    int ib = Values.toInt(b);
+                    if (ib == 0) {
+                        throw new RuntimeException("Integer division by zero");
+                    }
+                    return Values.toInt(a) / ib;
+                }
+                default -> {
+                    int ib = Values.toInt(b);
+                    if (ib == 0) {
+                        throw new RuntimeException("Modulo by zero");
+                    }
+                    return Values.toInt(a) % ib;
+                }
+            }
+        }
+    }
+
+    // Comparações inteiras (exatas, sem passar por float)
+
+    static final class IntEq extends BoolExpr {
+        private final Expr left, right;
+        IntEq(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return left.evalInt() == right.evalInt(); }
+    }
+
+    static final class IntNe extends BoolExpr {
+        private final Expr left, right;
+        IntNe(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return left.evalInt() != right.evalInt(); }
+    }
+
+    static final class IntLt extends BoolExpr {
+        private final Expr left, right;
+        IntLt(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return left.evalInt() < right.evalInt(); }
+    }
+
+    static final class IntGt extends BoolExpr {
+        private final Expr left, right;
+        IntGt(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return left.evalInt() > right.evalInt(); }
+    }
+
+    static final class IntLe extends BoolExpr {
+        private final Expr left, right;
+        IntLe(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return left.evalInt() <= right.evalInt(); }
+    }
+
+    static final class IntGe extends BoolExpr {
+        private final Expr left, right;
+        IntGe(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return left.evalInt() >= right.evalInt(); }
+    }
+
+    // Comparações reais (mesma semântica de Float.compare usada em Values.compare)
+
+    static final class RealEq extends BoolExpr {
+        private final Expr left, right;
+        RealEq(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return Float.compare(left.evalReal(), right.evalReal()) == 0; }
+    }
+
+    static final class RealNe extends BoolExpr {
+        private final Expr left, right;
+        RealNe(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return Float.compare(left.evalReal(), right.evalReal()) != 0; }
+    }
+
+    static final class RealLt extends BoolExpr {
+        private final Expr left, right;
+        RealLt(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return Float.compare(left.evalReal(), right.evalReal()) < 0; }
+    }
+
+    static final class RealGt extends BoolExpr {
+        private final Expr left, right;
+        RealGt(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return Float.compare(left.evalReal(), right.evalReal()) > 0; }
+    }
+
+    static final class RealLe extends BoolExpr {
+        private final Expr left, right;
+        RealLe(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return Float.compare(left.evalReal(), right.evalReal()) <= 0; }
+    }
+
+    static final class RealGe extends BoolExpr {
+        private final Expr left, right;
+        RealGe(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() { return Float.compare(left.evalReal(), right.evalReal()) >= 0; }
+    }
+
+    /**
+     * Comparação de strings (e fallback para tipos inesperados)
+     */
+    static final class GenericCompare extends BoolExpr {
+        private final NodeKind op;
+        private final Expr left, right;
+
+        GenericCompare(NodeKind op, Expr left, Expr right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evalBool() {
+            int c = Values.compare(left.eval(), right.eval());
+            return switch (op) {
+                case EQ_NODE -> c == 0;
+                case NEQ_NODE -> c != 0;
+                case LT_NODE -> c < 0;
+                case GT_NODE -> c > 0;
+                case LE_NODE -> c <= 0;
+                default -> c >= 0;
+            };
+        }
+    }
+
+    // Lógica (os dois operandos são sempre avaliados)
+
+    static final class And extends BoolExpr {
+        private final Expr left, right;
+        And(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() {
+            boolean a = left.evalBool();
+            boolean b = right.evalBool();
+            return a && b;
+        }
+    }
+
+    static final class Or extends BoolExpr {
+        private final Expr left, right;
+        Or(Expr left, Expr right) { this.left = left; this.right = right; }
+        @Override boolean evalBool() {
+            boolean a = left.evalBool();
+            boolean b = right.evalBool();
+            return a || b;
+        }
+    }
+
+    static final class Not extends BoolExpr {
+        private final Expr operand;
+        Not(Expr operand) { this.operand = operand; }
+        @Override boolean evalBool() { return !operand.evalBool(); }
+    }
+
+    // Conversões
+
+    static final class IntToReal extends RealExpr {
+        private final Expr operand;
+        IntToReal(Expr operand) { this.operand = operand; }
+        @Override float evalReal() { return operand.evalInt(); }
+    }
+
+    static final class ToReal extends RealExpr {
+        private final Expr operand;
+        ToReal(Expr operand) { this.operand = operand; }
+        @Override float evalReal() { return operand.evalReal(); }
+    }
+
+    // Funções built-in
+
+    static final class IntAbs extends IntExpr {
+        private final Expr operand;
+        IntAbs(Expr operand) { this.operand = operand; }
+        @Override int evalInt() { return Math.abs(operand.evalInt()); }
+    }
+
+    static final class RealAbs extends RealExpr {
+        private final Expr operand;
+        RealAbs(Expr operand) { this.operand = operand; }
+        @Override float evalReal() { return Math.abs(operand.evalReal()); }
+    }
+
+    static final class Sqrt extends RealExpr {
+        private final Expr operand;
+        Sqrt(Expr operand) { this.operand = operand; }
+        @Override float evalReal() {
+            float f = operand.evalReal();
+            if (f < 0) {
+                throw new RuntimeException("Square root of negative number");
+            }
+            return (float) Math.sqrt(f);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package interpreter;
+
+import typing.Type;
+
+/**
+ * Frame de execução indexado: os valores das variáveis ficam em arrays,
+ * acessados diretamente pelo slot resolvido, sem busca por nome.
+ * Inteiros, booleanos (0/1) e chars ficam sem boxing em 'ints', reais em
+ * 'reals' e strings e arrays em 'refs'; cada slot usa apenas um deles,
+ * conforme o tipo declarado.
+ *
+ * Um parâmetro VAR guarda em 'refs' o array que contém a variável
+ * referenciada e em 'ints' o índice dentro dele.
+ */
+public class Frame {
+    private final FrameLayout layout;
+    final int[] ints;
+    final float[] reals;
+    final Object[] refs;
+
+    public Frame(FrameLayout layout) {
+        this.layout = layout;
+        int slots = layout.getSlotCount();
+        this.ints = new int[slots];
+        this.reals = new float[slots];
+        this.refs = new Object[slots];
+    }
+
+    public FrameLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Retorna o valor do slot com boxing, conforme o tipo declarado
+     */
+    public Object get(int slot) {
+        if (layout.isReference(slot)) {
+            return getReferenced(slot);
+        }
+        return switch (storageType(slot)) {
+            case INTEGER -> ints[slot];
+            case BOOLEAN -> ints[slot] != 0;
+            case CHAR -> (char) ints[slot];
+            case REAL -> reals[slot];
+            default -> refs[slot];
+        };
+    }
+
+    /**
+     * Define o valor do slot a partir de um valor com boxing
+     */
+    public void set(int slot, Object value) {
+        switch (storageType(slot)) {
+            case INTEGER -> ints[slot] = Values.toInt(value);
+            case BOOLEAN -> ints[slot] = Values.toBoolean(value) ? 1 : 0;
+            case CHAR -> ints[slot] = value instanceof Character c ? c : Values.toInt(value);
+            case REAL -> reals[slot] = Values.toFloat(value);
+            default -> refs[slot] = value;
+        }
+    }
+
+    private Object getReferenced(int slot) {
+        Object target = refs[slot];
+        int index = ints[slot];
+        return switch (layout.getSlotType(slot)) {
+            case INTEGER -> ((int[]) target)[index];
+            case BOOLEAN -> loadBool(target, index);
+            case CHAR -> (char) loadChar(target, index);
+            case REAL -> ((float[]) target)[index];
+            default -> ((Object[]) target)[index];
+        };
+    }
+
+    // Booleanos e chars referenciados estão em 'ints' de um frame ou em um array byte[]/char[]
+    static boolean loadBool(Object target, int index) {
+        return target instanceof byte[] bools ? bools[index] != 0 : ((int[]) target)[index] != 0;
+    }
+
+    static int loadChar(Object target, int index) {
+        return target instanceof char[] chars ? chars[index] : ((int[]) target)[index];
+    }
+
+    // Arrays são guardados em 'refs' independentemente do tipo do elemento
+    private Type storageType(int slot) {
+        return layout.getSlotArray(slot) != null ? Type.ARRAY : layout.getSlotType(slot);
+    }
+}
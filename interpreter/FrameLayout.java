@@ -0,0 +1,89 @@
+package interpreter;
+
+import ast.AST;
+import ast.NodeKind;
+import entries.ArrayEntry;
+import typing.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout do frame de uma rotina (ou do programa principal).
+ * Cada variável, constante e parâmetro declarado recebe um slot fixo,
+ * calculado uma única vez pelo Resolver.
+ */
+public class FrameLayout {
+
+    // Categoria de cada slot (REF_PARAM = parâmetro VAR, passado por referência)
+    public enum SlotKind { VAR, CONST, PARAM, REF_PARAM, RESULT }
+
+    private final String name;
+    private final int depth;
+    private final AST declaration;
+    private final List<String> slotNames = new ArrayList<>();
+    private final List<Type> slotTypes = new ArrayList<>();
+    private final List<SlotKind> slotKinds = new ArrayList<>();
+    private final List<ArrayEntry> slotArrays = new ArrayList<>();
+    private final List<Integer> paramSlots = new ArrayList<>();
+    private int resultSlot = -1;
+
+    public FrameLayout(String name, int depth, AST declaration) {
+        this.name = name;
+        this.depth = depth;
+        this.declaration = declaration;
+    }
+
+    /**
+     * Reserva um novo slot e retorna seu índice
+     */
+    int addSlot(String slotName, Type type, SlotKind kind, ArrayEntry array) {
+        int slot = slotNames.size();
+        slotNames.add(slotName);
+        slotTypes.add(type);
+        slotKinds.add(kind);
+        slotArrays.add(array);
+        if (kind == SlotKind.PARAM || kind == SlotKind.REF_PARAM) {
+            paramSlots.add(slot);
+        } else if (kind == SlotKind.RESULT) {
+            resultSlot = slot;
+        }
+        return slot;
+    }
+
+    public String getName() { return name; }
+
+    public int getDepth() { return depth; }
+
+    // PROGRAM_NODE, PROC_DECL_NODE ou FUNC_DECL_NODE
+    public AST getDeclaration() { return declaration; }
+
+    public int getSlotCount() { return slotNames.size(); }
+
+    public String getSlotName(int slot) { return slotNames.get(slot); }
+
+    public Type getSlotType(int slot) { return slotTypes.get(slot); }
+
+    public SlotKind getSlotKind(int slot) { return slotKinds.get(slot); }
+
+    // Verdadeiro se o slot guarda uma referência (parâmetro VAR)
+    public boolean isReference(int slot) { return slotKinds.get(slot) == SlotKind.REF_PARAM; }
+
+    // Informações do array guardado no slot, ou null para escalares
+    public ArrayEntry getSlotArray(int slot) { return slotArrays.get(slot); }
+
+    public List<Integer> getParamSlots() { return paramSlots; }
+
+    public int getResultSlot() { return resultSlot; }
+
+    /**
+     * Retorna o bloco (BLOCK_NODE) com o corpo da rotina
+     */
+    public AST getBody() {
+        for (int i = declaration.getChildCount() - 1; i >= 0; i--) {
+            if (declaration.getChild(i).kind == NodeKind.BLOCK_NODE) {
+                return declaration.getChild(i);
+            }
+        }
+        return null;
+    }
+}
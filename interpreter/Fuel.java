@@ -0,0 +1,73 @@
+package interpreter;
+
+/**
+ * Orçamento de execução de um programa: número máximo de passos e,
+ * opcionalmente, um prazo em tempo de relógio. Um passo é consumido a cada
+ * iteração de laço e a cada chamada de rotina (início de bloco básico que
+ * pode se repetir), de modo que o custo da verificação fica fora do código
+ * em linha reta. O relógio só é consultado a cada CLOCK_INTERVAL passos.
+ */
+public final class Fuel {
+
+    public static final long DEFAULT_STEPS = 100_000_000L;
+
+    // Chamadas aninhadas permitidas; recursão sem fim falha aqui em vez de
+    // esgotar a pilha Java ou o heap
+    public static final int MAX_CALL_DEPTH = 1_000_000;
+
+    private static final long CLOCK_MASK = (1 << 12) - 1; // consulta o relógio a cada 4096 passos
+
+    private final long steps;
+    private final long timeoutMillis;
+    private final long deadline;    // em System.nanoTime(); sem prazo se timeoutMillis == 0
+    private long remaining;
+
+    /**
+     * @param steps         passos permitidos (Long.MAX_VALUE = sem limite)
+     * @param timeoutMillis prazo em milissegundos a partir de agora (0 = sem prazo)
+     */
+    public Fuel(long steps, long timeoutMillis) {
+        if (steps <= 0) {
+            throw new IllegalArgumentException("Step budget must be positive");
+        }
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Time limit must not be negative");
+        }
+        this.steps = steps;
+        this.timeoutMillis = timeoutMillis;
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        this.remaining = steps;
+    }
+
+    /**
+     * Orçamento padrão: DEFAULT_STEPS passos, sem prazo
+     */
+    public static Fuel standard() {
+        return new Fuel(DEFAULT_STEPS, 0);
+    }
+
+    /**
+     * Consome um passo; falha quando o orçamento ou o prazo se esgota
+     */
+    public void burn() {
+        if ((--remaining & CLOCK_MASK) == 0) {
+            check();
+        }
+    }
+
+    /**
+     * Erro de chamadas aninhadas além de MAX_CALL_DEPTH
+     */
+    public static RuntimeException stackOverflow() {
+        return new RuntimeException("Stack overflow: more than " + MAX_CALL_DEPTH + " nested calls");
+    }
+
+    private void check() {
+        if (remaining <= 0) {
+            throw new RuntimeException("Execution step budget exhausted (" + steps + " steps)");
+        }
+        if (timeoutMillis > 0 && System.nanoTime() - deadline > 0) {
+            throw new RuntimeException("Execution time limit exceeded (" + timeoutMillis + " ms)");
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package interpreter;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Entrada padrão dos programas executados, lida em blocos de bytes e
+ * interpretada sem Scanner nem expressões regulares. read/readln consomem
+ * um valor por variável, conforme o tipo: inteiros e reais pulam os espaços
+ * e quebras de linha anteriores; chars consomem o próximo caractere, sendo
+ * o fim de linha lido como espaço, como em Pascal.
+ *
+ * A saída pendente do programa é enviada antes de cada leitura do stream,
+ * isto é, só quando a entrada pode bloquear esperando o usuário.
+ */
+public final class Input {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int EOF = -1;
+
+    private final InputStream source;
+    private final Output output;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    // Reaproveitado para montar o texto de reais antes da conversão
+    private final StringBuilder token = new StringBuilder(32);
+
+    /**
+     * @param output saída enviada antes de cada leitura do stream (ou null)
+     */
+    public Input(InputStream source, Output output) {
+        this.source = source;
+        this.output = output;
+    }
+
+    /**
+     * Entrada a partir de System.in, com a saída dada
+     */
+    public static Input console(Output output) {
+        return new Input(System.in, output);
+    }
+
+    /**
+     * Lê um inteiro com sinal opcional
+     */
+    public int readInt() {
+        int c = skipWhitespace();
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            position++;
+            c = peek();
+        }
+        if (!isDigit(c)) {
+            throw invalid("integer", c);
+        }
+        long value = 0;
+        while (isDigit(c)) {
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new RuntimeException("Integer input out of range");
+            }
+            position++;
+            c = peek();
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new RuntimeException("Integer input out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Lê um real: sinal, dígitos, parte fracionária e expoente opcionais
+     */
+    public float readReal() {
+        int c = skipWhitespace();
+        token.setLength(0);
+        if (c == '-' || c == '+') {
+            c = take(c);
+        }
+        int digits = 0;
+        while (isDigit(c)) {
+            c = take(c);
+            digits++;
+        }
+        if (c == '.') {
+            c = take(c);
+            while (isDigit(c)) {
+                c = take(c);
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            throw invalid("real", c);
+        }
+        if (c == 'e' || c == 'E') {
+            c = take(c);
+            if (c == '-' || c == '+') {
+                c = take(c);
+            }
+            if (!isDigit(c)) {
+                throw invalid("real", c);
+            }
+            while (isDigit(c)) {
+                c = take(c);
+            }
+        }
+        return Float.parseFloat(token.toString());
+    }
+
+    /**
+     * Lê o próximo caractere; o fim de linha é lido como espaço
+     */
+    public char readChar() {
+        int c = next();
+        if (c == EOF) {
+            throw new RuntimeException("Unexpected end of input");
+        }
+        if (c == '\r' && peek() == '\n') {
+            position++;
+            return ' ';
+        }
+        return c == '\n' ? ' ' : (char) c;
+    }
+
+    /**
+     * Descarta o restante da linha atual, incluindo a quebra de linha
+     */
+    public void skipLine() {
+        int c;
+        do {
+            c = next();
+        } while (c != '\n' && c != EOF);
+    }
+
+    // Acrescenta c ao token e retorna o caractere seguinte
+    private int take(int c) {
+        token.append((char) c);
+        position++;
+        return peek();
+    }
+
+    private int skipWhitespace() {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            position++;
+            c = peek();
+        }
+        return c;
+    }
+
+    private int peek() {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private int next() {
+        int c = peek();
+        if (c != EOF) {
+            position++;
+        }
+        return c;
+    }
+
+    private boolean fill() {
+        if (output != null) {
+            output.flush();
+        }
+        try {
+            int n = source.read(buffer, 0, buffer.length);
+            if (n <= 0) {
+                return false;
+            }
+            position = 0;
+            limit = n;
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading input: " + e.getMessage());
+        }
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static RuntimeException invalid(String type, int c) {
+        return new RuntimeException(c == EOF ? "Unexpected end of input" :
+                                    "Invalid " + type + " input at '" + (char) c + "'");
+    }
+}
@@ -2,41 +2,34 @@ package interpreter;
 
 import ast.AST;
 import ast.NodeKind;
-import typing.Type;
 import entries.*;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Scanner;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Interpretador completo para Pascal ISO 7185
  * Suporta variáveis, constantes, arrays, expressões, controle de fluxo,
- * procedimentos built-in e modo debug
+ * procedimentos built-in e trace configurável
  */
 public class Interpreter {
     
-    // Configuração de debug
-    private static boolean DEBUG_MODE = true;
+    // Pilha da thread de execução: cada chamada Pascal aninha várias
+    // chamadas Java nos nós compilados, e a pilha padrão acaba perto de
+    // 1000 níveis de recursão; esta comporta Fuel.MAX_CALL_DEPTH
+    private static final long STACK_SIZE = 1L << 30;
     
-    // Memória para armazenar valores das variáveis
-    private Map<String, Object> memory = new HashMap<>();
+    // Trace de execução (nível e categorias)
+    private Trace trace;
     
-    // Scanner para entrada do usuário (para read/readln)
-    private Scanner scanner = new Scanner(System.in);
+    // Saída do programa; enviada ao terminal ao final e antes de cada leitura
+    private final Output out = Output.console();
     
-    // Entries - mapeamento de nome para entries
-    private Map<String, Entry> entries = new HashMap<>();
+    // Entrada do usuário (para read/readln)
+    private final Input input = Input.console(out);
     
-        // Mapeamento de arrays para seus valores
-    private Map<String, Object[]> arrayValues = new HashMap<>();
+    // Estado de execução (display de frames, entrada, trace)
+    private RuntimeState state;
     
-    // Mapeamento de nomes de funções/procedimentos para suas ASTs
-    private Map<String, AST> subroutines = new HashMap<>();
-    
-    // Stack de contextos de execução
-    private List<FunctionContext> callStack = new ArrayList<>();
+    // Orçamento de execução (passos e prazo)
+    private Fuel fuel;
     
     /**
      * Construtor
@@ -46,1077 +39,144 @@ public class Interpreter {
     }
     
     /**
-     * Construtor com modo debug
+     * Construtor com modo debug (trace completo ou desligado)
      */
     public Interpreter(boolean debugMode) {
-        DEBUG_MODE = debugMode;
+        this(debugMode ? Trace.full() : Trace.off());
     }
     
     /**
-     * Define o modo debug
+     * Construtor com trace configurado
      */
-    public static void setDebugMode(boolean debug) {
-        DEBUG_MODE = debug;
+    public Interpreter(Trace trace) {
+        this.trace = trace;
     }
     
     /**
-     * Imprime mensagem de debug apenas se o modo debug estiver ativo
+     * Define o trace
      */
-    private void debugPrint(String message) {
-        if (DEBUG_MODE) {
-            System.out.println("[INTERPRETER] " + message);
-        }
-    }
-    
-    /**
-     * Interpreta o programa a partir da AST
-     */
-    public void interpret(AST programNode) {
-        if (programNode.kind != NodeKind.PROGRAM_NODE) {
-            throw new RuntimeException("Root node must be a PROGRAM_NODE");
-        }
-        
-        debugPrint("Starting execution...");
-        
-        // O programa tem um filho: o BLOCK_NODE
-        if (programNode.getChildCount() > 0) {
-            AST blockNode = programNode.getChild(0);
-            executeBlock(blockNode);
-        }
-        
-        debugPrint("Execution finished.");
-        
-        if (DEBUG_MODE) {
-            printMemoryState();
-        }
+    public void setTrace(Trace trace) {
+        this.trace = trace;
     }
     
     /**
-     * Executa um bloco (pode conter declarações e statements)
+     * Define o orçamento de execução da próxima chamada a interpret()
+     * (padrão: Fuel.standard())
      */
-    private void executeBlock(AST blockNode) {
-        if (blockNode.kind != NodeKind.BLOCK_NODE) {
-            throw new RuntimeException("Expected BLOCK_NODE");
-        }
-        
-        // Processa todos os filhos do bloco
-        for (int i = 0; i < blockNode.getChildCount(); i++) {
-            AST child = blockNode.getChild(i);
-            
-            switch (child.kind) {
-                case CONST_SECTION_NODE -> executeConstSection(child);
-                case VAR_SECTION_NODE -> executeVarSection(child);
-                case COMPOUND_STMT_NODE -> executeCompoundStatement(child);
-                case PROC_DECL_NODE, FUNC_DECL_NODE -> {
-                    // Armazena a declaração da subrotina
-                    String name = child.stringData.toLowerCase();
-                    subroutines.put(name, child);
-                    debugPrint("Stored subroutine declaration: " + name);
-                }
-                default -> {
-                    debugPrint("Skipping unsupported block child: " + child.kind);
-                }
-            }
-        }
-    }
-    
-    /**
-     * Executa seção de constantes
-     */
-    private void executeConstSection(AST constSectionNode) {
-        for (int i = 0; i < constSectionNode.getChildCount(); i++) {
-            AST constDecl = constSectionNode.getChild(i);
-            executeConstDeclaration(constDecl);
-        }
-    }
-    
-    /**
-     * Executa declaração de constante
-     */
-    private void executeConstDeclaration(AST constDeclNode) {
-        if (constDeclNode.kind != NodeKind.CONST_DECL_NODE) {
-            return;
-        }
-        
-        String constName = constDeclNode.stringData;
-        
-        // O valor da constante está no primeiro filho
-        if (constDeclNode.getChildCount() > 0) {
-            Object value = evaluateExpression(constDeclNode.getChild(0));
-            memory.put(constName, value);
-            debugPrint("Constant " + constName + " = " + value);
-        }
-    }
-    
-    /**
-     * Executa seção de variáveis
-     */
-    private void executeVarSection(AST varSectionNode) {
-        for (int i = 0; i < varSectionNode.getChildCount(); i++) {
-            AST varList = varSectionNode.getChild(i);
-            executeVarList(varList);
-        }
+    public void setFuel(Fuel fuel) {
+        this.fuel = fuel;
     }
     
     /**
-     * Executa lista de variáveis
+     * Imprime mensagem de trace se a categoria estiver ligada
      */
-    private void executeVarList(AST varListNode) {
-        for (int i = 0; i < varListNode.getChildCount(); i++) {
-            AST varDecl = varListNode.getChild(i);
-            executeVarDeclaration(varDecl);
+    private void tracePrint(Trace.Category category, String message) {
+        if (trace.on(category)) {
+            trace.print(out, message);
         }
     }
     
     /**
-     * Executa declaração de variável
+     * Executa o programa numa thread com pilha de STACK_SIZE bytes; a pilha
+     * esgotada vira erro de execução, como o orçamento esgotado
      */
-    private void executeVarDeclaration(AST varDeclNode) {
-        if (varDeclNode.kind != NodeKind.VAR_DECL_NODE) {
-            return;
-        }
-        
-        String varName = varDeclNode.stringData;
-        Type varType = varDeclNode.type;
-        
-        if (varType == Type.ARRAY) {
-            // Criar o array baseado nas informações da AST
-            ArrayEntry arrayEntry = createArrayFromAST(varDeclNode);
-            entries.put(varName, arrayEntry);
-            
-            // Criar e inicializar array de valores
-            int size = arrayEntry.getArraySize();
-            Object[] values = new Object[size];
-            Object defaultValue = getDefaultValue(arrayEntry.getElementType());
-            for (int i = 0; i < size; i++) {
-                values[i] = defaultValue;
-            }
-            arrayValues.put(varName, values);
-            
-            debugPrint("Array " + varName + "[" + arrayEntry.getStartIndex() + 
-                      ".." + arrayEntry.getEndIndex() + "] of " + arrayEntry.getElementType() + " created");
-        } else {
-            Object defaultValue = getDefaultValue(varType);
-            memory.put(varName, defaultValue);
-            VarEntry varEntry = new VarEntry(varName, 0, varType);
-            entries.put(varName, varEntry);
-            debugPrint("Variable " + varName + " declared and initialized to " + defaultValue);
-        }
-    }
-    
-    /**
-     * Cria um ArrayEntry baseado na informação da AST
-     */
-    private ArrayEntry createArrayFromAST(AST varDeclNode) {
-        // Valores padrão (fallback)
-        int startIndex = 1;
-        int endIndex = 10;
-        Type elementType = Type.INTEGER;
-        
-        debugPrint("Creating array from AST node: " + varDeclNode.stringData);
-        debugPrint("Array declaration has " + varDeclNode.getChildCount() + " children");
-        
-        // Analisar a estrutura da AST para extrair informações do array
-        if (varDeclNode.getChildCount() > 0) {
-            // Procurar por informações de range e tipo do elemento
-            for (int i = 0; i < varDeclNode.getChildCount(); i++) {
-                AST child = varDeclNode.getChild(i);
-                debugPrint("  Child " + i + ": " + child.kind + 
-                          (child.stringData != null ? " (" + child.stringData + ")" : "") +
-                          (child.type != null ? " [" + child.type + "]" : ""));
-                
-                // Verificar se o child contém informações de range
-                ArrayBounds bounds = extractArrayBounds(child);
-                if (bounds != null) {
-                    startIndex = bounds.start;
-                    endIndex = bounds.end;
-                    debugPrint("  Found array bounds: [" + startIndex + ".." + endIndex + "]");
-                }
-                
-                // Verificar se o child contém informações do tipo do elemento
-                Type childElementType = extractElementType(child);
-                if (childElementType != null && childElementType != Type.ARRAY) {
-                    elementType = childElementType;
-                    debugPrint("  Found element type: " + elementType);
-                }
-            }
-        }
-        
-        return new ArrayEntry(varDeclNode.stringData, 0, elementType, startIndex, endIndex);
-    }
-    
-    /**
-     * Classe auxiliar para armazenar bounds do array
-     */
-    private static class ArrayBounds {
-        final int start;
-        final int end;
-        
-        ArrayBounds(int start, int end) {
-            this.start = start;
-            this.end = end;
-        }
-    }
-    
-    /**
-     * Extrai os bounds do array de um nó da AST
-     */
-    private ArrayBounds extractArrayBounds(AST node) {
-        // Procurar por padrões que indiquem range (ex: 1..5, 0..9, etc.)
-        if (node.kind == NodeKind.RANGE_NODE && node.getChildCount() >= 2) {
+    private static void execute(ClosureCompiler.Stmt program) {
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
             try {
-                Object startObj = evaluateExpression(node.getChild(0));
-                Object endObj = evaluateExpression(node.getChild(1));
-                int start = convertToInt(startObj);
-                int end = convertToInt(endObj);
-                return new ArrayBounds(start, end);
-            } catch (Exception e) {
-                debugPrint("Error extracting range bounds: " + e.getMessage());
-            }
-        }
-        
-        // Verificar se há nós filhos que possam conter informações de bounds
-        for (int i = 0; i < node.getChildCount(); i++) {
-            ArrayBounds childBounds = extractArrayBounds(node.getChild(i));
-            if (childBounds != null) {
-                return childBounds;
-            }
-        }
-        
-        // Tentar extrair de informações textuais se disponível
-        if (node.stringData != null) {
-            ArrayBounds textBounds = parseArrayBoundsFromText(node.stringData);
-            if (textBounds != null) {
-                return textBounds;
-            }
-        }
-        
-        return null;
-    }
-    
-    /**
-     * Tenta extrair bounds do array de uma string (ex: "1..5", "[1..10]")
-     */
-    private ArrayBounds parseArrayBoundsFromText(String text) {
-        if (text == null) return null;
-        
-        // Padrões como "1..5" ou "[1..5]"
-        String pattern = text.replaceAll("[\\[\\]\\s]", "");
-        if (pattern.contains("..")) {
+                program.exec();
+            } catch (StackOverflowError e) {
+                failure[0] = Fuel.stackOverflow();
+            } catch (RuntimeException | Error e) {
+                failure[0] = e;
+            }
+        }, "interpreter", STACK_SIZE);
+        thread.start();
+        boolean interrupted = false;
+        while (true) {
             try {
-                String[] parts = pattern.split("\\.\\.");
-                if (parts.length == 2) {
-                    int start = Integer.parseInt(parts[0].trim());
-                    int end = Integer.parseInt(parts[1].trim());
-                    return new ArrayBounds(start, end);
-                }
-            } catch (NumberFormatException e) {
-                debugPrint("Could not parse array bounds from: " + text);
-            }
-        }
-        
-        return null;
-    }
-    
-    /**
-     * Extrai o tipo do elemento de um nó da AST
-     */
-    private Type extractElementType(AST node) {
-        if (node.type != null && node.type != Type.ARRAY) {
-            return node.type;
-        }
-        
-        // Verificar se há informações de tipo nos filhos
-        for (int i = 0; i < node.getChildCount(); i++) {
-            Type childType = extractElementType(node.getChild(i));
-            if (childType != null && childType != Type.ARRAY) {
-                return childType;
-            }
-        }
-        
-        // Tentar inferir do nome do tipo se disponível
-        if (node.stringData != null) {
-            switch (node.stringData.toLowerCase()) {
-                case "integer", "int" -> { return Type.INTEGER; }
-                case "real", "float" -> { return Type.REAL; }
-                case "boolean", "bool" -> { return Type.BOOLEAN; }
-                case "char", "character" -> { return Type.CHAR; }
-                case "string" -> { return Type.STRING; }
-            }
-        }
-        
-        return null;
-    }
-    
-    /**
-     * Retorna valor padrão para um tipo
-     */
-    private Object getDefaultValue(Type type) {
-        return switch (type) {
-            case INTEGER -> 0;
-            case REAL -> 0.0f;
-            case BOOLEAN -> false;
-            case CHAR -> '\0';
-            case STRING -> "";
-            default -> null;
-        };
-    }
-    
-    /**
-     * Executa statement composto
-     */
-    private void executeCompoundStatement(AST compoundNode) {
-        if (compoundNode.kind != NodeKind.COMPOUND_STMT_NODE) {
-            throw new RuntimeException("Expected COMPOUND_STMT_NODE");
-        }
-        
-        // O compound statement tem um filho que é um BLOCK_NODE contendo a lista de statements
-        if (compoundNode.getChildCount() > 0) {
-            AST stmtList = compoundNode.getChild(0);
-            executeStatementList(stmtList);
-        }
-    }
-    
-    /**
-     * Executa lista de statements
-     */
-    private void executeStatementList(AST stmtListNode) {
-        for (int i = 0; i < stmtListNode.getChildCount(); i++) {
-            AST stmt = stmtListNode.getChild(i);
-            executeStatement(stmt);
-        }
-    }
-    
-    /**
-     * Executa um statement individual
-     */
-    private void executeStatement(AST stmtNode) {
-        switch (stmtNode.kind) {
-            case ASSIGN_NODE -> executeAssignment(stmtNode);
-            case PROC_CALL_NODE -> executeProcedureCall(stmtNode);
-            case COMPOUND_STMT_NODE -> executeCompoundStatement(stmtNode);
-            case IF_NODE -> executeIfStatement(stmtNode);
-            case WHILE_NODE -> executeWhileStatement(stmtNode);
-            case RETURN_NODE -> {
-                if (callStack.isEmpty()) {
-                    throw new RuntimeException("Return statement outside of function");
-                }
-
-                FunctionContext currentContext = callStack.get(callStack.size() - 1);
-                
-                // Se houver uma expressão de retorno, avalia e armazena
-                if (stmtNode.getChildCount() > 0) {
-                    Object returnValue = evaluateExpression(stmtNode.getChild(0));
-                    currentContext.setReturnValue(returnValue);
-                }
-            }
-            case EMPTY_STMT_NODE -> {
-                // Não faz nada para statement vazio
-            }
-            default -> {
-                debugPrint("Skipping unsupported statement: " + stmtNode.kind);
-            }
-        }
-    }
-    
-    /**
-     * Executa assignment
-     */
-    private void executeAssignment(AST assignNode) {
-        if (assignNode.kind != NodeKind.ASSIGN_NODE || assignNode.getChildCount() < 2) {
-            throw new RuntimeException("Invalid assignment node");
-        }
-        
-        // Primeiro filho: variável de destino
-        AST varNode = assignNode.getChild(0);
-        
-        // Segundo filho: expressão a ser avaliada
-        AST exprNode = assignNode.getChild(1);
-        
-        // Avalia a expressão
-        Object value = evaluateExpression(exprNode);
-        
-        // Executa a atribuição baseado no tipo da variável
-        executeVariableAssignment(varNode, value);
-    }
-    
-    /**
-     * Define elemento de array
-     */
-    private void setArrayElement(String arrayName, ArrayEntry arrayEntry, int index, Object value) {
-        if (!arrayEntry.isValidIndex(index)) {
-            throw new RuntimeException("Array index " + index + " out of bounds [" + 
-                                     arrayEntry.getStartIndex() + ".." + arrayEntry.getEndIndex() + "]");
-        }
-        
-        Object[] values = arrayValues.get(arrayName);
-        if (values == null) {
-            throw new RuntimeException("Array values not initialized for " + arrayName);
-        }
-        
-        values[index - arrayEntry.getStartIndex()] = value;
-    }
-    
-    /**
-     * Obtém elemento de array
-     */
-    private Object getArrayElement(String arrayName, ArrayEntry arrayEntry, int index) {
-        if (!arrayEntry.isValidIndex(index)) {
-            throw new RuntimeException("Array index " + index + " out of bounds [" + 
-                                     arrayEntry.getStartIndex() + ".." + arrayEntry.getEndIndex() + "]");
-        }
-        
-        Object[] values = arrayValues.get(arrayName);
-        if (values == null) {
-            throw new RuntimeException("Array values not initialized for " + arrayName);
-        }
-        
-        return values[index - arrayEntry.getStartIndex()];
-    }
-    
-    /**
-     * Executa atribuição a uma variável (simples ou array)
-     */
-    private void executeVariableAssignment(AST varNode, Object value) {
-        switch (varNode.kind) {
-            case VAR_USE_NODE -> {
-                String varName = varNode.stringData;
-                setVariableValue(varName, value);
-                debugPrint("Assignment: " + varName + " := " + value);
-            }
-            case ARRAY_ACCESS_NODE -> {
-                String arrayName = varNode.stringData;
-                if (varNode.getChildCount() < 1) {
-                    throw new RuntimeException("Array access without index");
-                }
-                
-                Object indexObj = evaluateExpression(varNode.getChild(0));
-                int index = convertToInt(indexObj);
-                
-                Entry entry = entries.get(arrayName);
-                if (!(entry instanceof ArrayEntry)) {
-                    throw new RuntimeException("Array '" + arrayName + "' not found");
-                }
-                
-                ArrayEntry arrayEntry = (ArrayEntry) entry;
-                setArrayElement(arrayName, arrayEntry, index, value);
-                debugPrint("Array assignment: " + arrayName + "[" + index + "] := " + value);
-            }
-            default -> throw new RuntimeException("Invalid assignment target: " + varNode.kind);
-        }
-    }
-    
-    /**
-     * Executa chamada de procedimento
-     */
-    private void executeProcedureCall(AST procCallNode) {
-        String procName = procCallNode.stringData.toLowerCase();
-        
-        // Suporte para procedimentos built-in
-        switch (procName) {
-            case "writeln" -> {
-                List<Object> values = new ArrayList<>();
-                if (procCallNode.getChildCount() > 0) {
-                    AST exprList = procCallNode.getChild(0);
-                    for (int i = 0; i < exprList.getChildCount(); i++) {
-                        Object value = evaluateExpression(exprList.getChild(i));
-                        values.add(value);
-                    }
-                }
-                
-                // Imprime os valores
-                for (int i = 0; i < values.size(); i++) {
-                    System.out.print(formatOutputValue(values.get(i)));
-                    if (i < values.size() - 1) {
-                        System.out.print(" ");
-                    }
-                }
-                System.out.println(); // Nova linha no final
-            }
-            case "write" -> {
-                if (procCallNode.getChildCount() > 0) {
-                    AST exprList = procCallNode.getChild(0);
-                    for (int i = 0; i < exprList.getChildCount(); i++) {
-                        Object value = evaluateExpression(exprList.getChild(i));
-                        System.out.print(formatOutputValue(value));
-                        if (i < exprList.getChildCount() - 1) {
-                            System.out.print(" ");
-                        }
-                    }
-                }
-            }
-            case "readln" -> {
-                if (DEBUG_MODE) {
-                    System.out.print("[INPUT] Enter value: ");
-                }
-                String input = scanner.nextLine();
-                debugPrint("Read value: " + input);
-            }
-            case "read" -> {
-                if (DEBUG_MODE) {
-                    System.out.print("[INPUT] Enter value: ");
-                }
-                String input = scanner.next();
-                debugPrint("Read value: " + input);
-            }
-            default -> {
-                // Procura a declaração do procedimento
-                AST procDecl = subroutines.get(procName);
-                if (procDecl == null) {
-                    throw new RuntimeException("Procedure '" + procName + "' not found");
-                }
-
-                debugPrint("Executing procedure: " + procName);
-                
-                // Cria um novo contexto para a execução
-                FuncEntry entry = (FuncEntry) entries.get(procName);
-                FunctionContext context = new FunctionContext(procName, procDecl, entry);
-                callStack.add(context);
-
-                try {
-                    // Processa os argumentos se houver
-                    if (procCallNode.getChildCount() > 0 && procDecl.getChildCount() > 0) {
-                        AST paramListNode = null;
-                        // Procura o nó de lista de parâmetros (primeiro filho)
-                        for (int i = 0; i < procDecl.getChildCount(); i++) {
-                            if (procDecl.getChild(i).kind == NodeKind.PARAM_LIST_NODE) {
-                                paramListNode = procDecl.getChild(i);
-                                break;
-                            }
-                        }
-                        if (paramListNode != null) {
-                            processArguments(procCallNode.getChild(0), paramListNode, context);
-                        }
-                    }
-
-                    // Executa o corpo do procedimento (último filho é o compound statement)
-                    AST bodyNode = procDecl.getChild(procDecl.getChildCount() - 1);
-                    if (bodyNode != null) {
-                        if (bodyNode.kind == NodeKind.BLOCK_NODE) {
-                            executeBlock(bodyNode);
-                        } else {
-                            executeStatement(bodyNode);
-                        }
-                    }
-                } finally {
-                    // Remove o contexto da stack ao finalizar
-                    callStack.remove(callStack.size() - 1);
-                }
-            }
-        }
-    }
-    
-    /**
-     * Processa os argumentos de uma chamada de função/procedimento
-     */
-    private void processArguments(AST argsNode, AST paramsNode, FunctionContext context) {
-        if (argsNode.getChildCount() != paramsNode.getChildCount()) {
-            throw new RuntimeException("Wrong number of arguments for " + context.getName());
-        }
-
-        for (int i = 0; i < argsNode.getChildCount(); i++) {
-            AST argNode = argsNode.getChild(i);
-            AST paramNode = paramsNode.getChild(i);
-            
-            String paramName = paramNode.stringData.toLowerCase();
-            Object argValue = evaluateExpression(argNode);
-            
-            // Armazena o valor do argumento na memória local do contexto
-            context.getLocalMemory().put(paramName, argValue);
-            debugPrint("Parameter " + paramName + " = " + argValue);
-        }
-    }
-
-    /**
-     * Obtém o valor de uma variável do escopo atual
-     */
-    private Object getVariableValue(String name) {
-        // Primeiro procura no contexto atual (se houver)
-        if (!callStack.isEmpty()) {
-            FunctionContext currentContext = callStack.get(callStack.size() - 1);
-            if (currentContext.getLocalMemory().containsKey(name)) {
-                return currentContext.getLocalMemory().get(name);
-            }
-        }
-        
-        // Se não encontrou no contexto atual, procura na memória global
-        if (!memory.containsKey(name)) {
-            throw new RuntimeException("Variable '" + name + "' not initialized");
-        }
-        return memory.get(name);
-    }
-
-    /**
-     * Define o valor de uma variável no escopo apropriado
-     */
-    private void setVariableValue(String name, Object value) {
-        // Primeiro tenta definir no contexto atual (se houver)
-        if (!callStack.isEmpty()) {
-            FunctionContext currentContext = callStack.get(callStack.size() - 1);
-            if (currentContext.getLocalMemory().containsKey(name)) {
-                currentContext.getLocalMemory().put(name, value);
-                return;
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
             }
         }
-        
-        // Se não encontrou no contexto atual, define na memória global
-        memory.put(name, value);
-    }
-
-    /**
-     * Formata valor para saída
-     */
-    private String formatOutputValue(Object value) {
-        if (value instanceof Float) {
-            Float f = (Float) value;
-            // Remove zeros desnecessários
-            if (f == f.intValue()) {
-                return String.valueOf(f.intValue());
-            } else {
-                return String.format("%.6f", f).replaceAll("0+$", "").replaceAll("\\.$", "");
-            }
-        } else if (value instanceof Character) {
-            return String.valueOf(value);
-        } else if (value instanceof String) {
-            String s = (String) value;
-            // Remove aspas se estiverem presentes
-            if (s.length() >= 2 && s.startsWith("'") && s.endsWith("'")) {
-                return s.substring(1, s.length() - 1);
-            }
-            return s;
-        } else if (value instanceof Boolean) {
-            return ((Boolean) value) ? "true" : "false";
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
-        return String.valueOf(value);
-    }
-    
-    /**
-     * Executa statement IF
-     */
-    private void executeIfStatement(AST ifNode) {
-        if (ifNode.getChildCount() < 2) {
-            throw new RuntimeException("Invalid if statement");
+        if (failure[0] instanceof RuntimeException e) {
+            throw e;
         }
-        
-        // Primeiro filho: condição
-        AST conditionNode = ifNode.getChild(0);
-        Object conditionValue = evaluateExpression(conditionNode);
-        
-        boolean condition = convertToBoolean(conditionValue);
-        
-        if (condition) {
-            // Segundo filho: statement THEN
-            executeStatement(ifNode.getChild(1));
-        } else if (ifNode.getChildCount() > 2) {
-            // Terceiro filho: statement ELSE (se existir)
-            executeStatement(ifNode.getChild(2));
+        if (failure[0] instanceof Error e) {
+            throw e;
         }
     }
     
     /**
-     * Executa statement WHILE
+     * Interpreta o programa a partir da AST
      */
-    private void executeWhileStatement(AST whileNode) {
-        if (whileNode.getChildCount() < 2) {
-            throw new RuntimeException("Invalid while statement");
+    public void interpret(AST programNode) {
+        if (programNode.kind != NodeKind.PROGRAM_NODE) {
+            throw new RuntimeException("Root node must be a PROGRAM_NODE");
         }
         
-        int iterations = 0;
-        final int MAX_ITERATIONS = 100000; // Previne loops infinitos
+        tracePrint(Trace.Category.RUN, "Starting execution...");
         
-        while (true) {
-            if (++iterations > MAX_ITERATIONS) {
-                throw new RuntimeException("While loop exceeded maximum iterations (" + MAX_ITERATIONS + ")");
-            }
-            
-            // Primeiro filho: condição
-            AST conditionNode = whileNode.getChild(0);
-            Object conditionValue = evaluateExpression(conditionNode);
-            
-            boolean condition = convertToBoolean(conditionValue);
-            
-            if (!condition) {
-                break;
-            }
-            
-            // Segundo filho: corpo do loop
-            executeStatement(whileNode.getChild(1));
-        }
-    }
-    
-    /**
-     * Avalia uma expressão e retorna seu valor
-     */
-    private Object evaluateExpression(AST exprNode) {
-        switch (exprNode.kind) {
-            // Valores constantes
-            case INT_VAL_NODE -> {
-                return exprNode.intData;
-            }
-            case REAL_VAL_NODE -> {
-                return exprNode.floatData;
-            }
-            case BOOL_VAL_NODE -> {
-                return exprNode.intData == 1;
-            }
-            case CHAR_VAL_NODE -> {
-                String charStr = exprNode.stringData;
-                if (charStr != null && charStr.length() >= 3) {
-                    // Remove aspas simples se estiverem presentes
-                    if (charStr.startsWith("'") && charStr.endsWith("'")) {
-                        charStr = charStr.substring(1, charStr.length() - 1);
-                    }
-                    return charStr.length() > 0 ? charStr.charAt(0) : '\0';
-                }
-                return '\0';
-            }
-            case STR_VAL_NODE -> {
-                return exprNode.stringData != null ? exprNode.stringData : "";
-            }
-            
-            // Uso de variável
-            case VAR_USE_NODE -> {
-                String varName = exprNode.stringData.toLowerCase();
-                return getVariableValue(varName);
-            }
-            
-            // Acesso a array
-            case ARRAY_ACCESS_NODE -> {
-                String arrayName = exprNode.stringData;
-                if (exprNode.getChildCount() < 1) {
-                    throw new RuntimeException("Array access without index");
-                }
-                
-                Object indexObj = evaluateExpression(exprNode.getChild(0));
-                int index = convertToInt(indexObj);
-                
-                Entry entry = entries.get(arrayName);
-                if (!(entry instanceof ArrayEntry)) {
-                    throw new RuntimeException("Array '" + arrayName + "' not found");
-                }
-                
-                ArrayEntry arrayEntry = (ArrayEntry) entry;
-                return getArrayElement(arrayName, arrayEntry, index);
-            }
-            
-            // Operações aritméticas
-            case PLUS_NODE -> {
-                return evaluateArithmeticOperation(exprNode, (a, b) -> {
-                    if (a instanceof Integer && b instanceof Integer) {
-                        return (Integer) a + (Integer) b;
-                    } else {
-                        return convertToFloat(a) + convertToFloat(b);
-                    }
-                });
-            }
-            case MINUS_NODE -> {
-                return evaluateArithmeticOperation(exprNode, (a, b) -> {
-                    if (a instanceof Integer && b instanceof Integer) {
-                        return (Integer) a - (Integer) b;
-                    } else {
-                        return convertToFloat(a) - convertToFloat(b);
-                    }
-                });
-            }
-            case TIMES_NODE -> {
-                return evaluateArithmeticOperation(exprNode, (a, b) -> {
-                    if (a instanceof Integer && b instanceof Integer) {
-                        return (Integer) a * (Integer) b;
-                    } else {
-                        return convertToFloat(a) * convertToFloat(b);
-                    }
-                });
-            }
-            case DIVIDE_NODE -> {
-                return evaluateArithmeticOperation(exprNode, (a, b) -> {
-                    float fb = convertToFloat(b);
-                    if (Math.abs(fb) < 1e-10) {
-                        throw new RuntimeException("Division by zero");
-                    }
-                    return convertToFloat(a) / fb;
-                });
-            }
-            case DIV_NODE -> {
-                return evaluateArithmeticOperation(exprNode, (a, b) -> {
-                    int ib = convertToInt(b);
-                    if (ib == 0) {
-                        throw new RuntimeException("Integer division by zero");
-                    }
-                    return convertToInt(a) / ib;
-                });
-            }
-            case MOD_NODE -> {
-                return evaluateArithmeticOperation(exprNode, (a, b) -> {
-                    int ib = convertToInt(b);
-                    if (ib == 0) {
-                        throw new RuntimeException("Modulo by zero");
-                    }
-                    return convertToInt(a) % ib;
-                });
-            }
-            
-            // Operações lógicas
-            case AND_NODE -> {
-                return evaluateLogicalOperation(exprNode, (a, b) -> a && b);
-            }
-            case OR_NODE -> {
-                return evaluateLogicalOperation(exprNode, (a, b) -> a || b);
-            }
-            case NOT_NODE -> {
-                if (exprNode.getChildCount() < 1) {
-                    throw new RuntimeException("NOT operation requires one operand");
-                }
-                Object operand = evaluateExpression(exprNode.getChild(0));
-                return !convertToBoolean(operand);
-            }
-            
-            // Operações de comparação
-            case EQ_NODE -> {
-                return evaluateComparisonOperation(exprNode, (a, b) -> compareValues(a, b) == 0);
-            }
-            case NEQ_NODE -> {
-                return evaluateComparisonOperation(exprNode, (a, b) -> compareValues(a, b) != 0);
-            }
-            case LT_NODE -> {
-                return evaluateComparisonOperation(exprNode, (a, b) -> compareValues(a, b) < 0);
-            }
-            case GT_NODE -> {
-                return evaluateComparisonOperation(exprNode, (a, b) -> compareValues(a, b) > 0);
-            }
-            case LE_NODE -> {
-                return evaluateComparisonOperation(exprNode, (a, b) -> compareValues(a, b) <= 0);
-            }
-            case GE_NODE -> {
-                return evaluateComparisonOperation(exprNode, (a, b) -> compareValues(a, b) >= 0);
-            }
-            
-            // Conversões de tipo
-            case I2R_NODE -> {
-                if (exprNode.getChildCount() < 1) {
-                    throw new RuntimeException("I2R conversion requires one operand");
-                }
-                Object operand = evaluateExpression(exprNode.getChild(0));
-                return convertToFloat(operand);
-            }
-            
-            // Expressão parentizada
-            case PAREN_EXPR_NODE -> {
-                if (exprNode.getChildCount() < 1) {
-                    throw new RuntimeException("Parenthesized expression requires one operand");
-                }
-                return evaluateExpression(exprNode.getChild(0));
-            }
+        try {
+            // Resolve todas as variáveis em slots antes de executar
+            Resolver resolver = new Resolver();
+            FrameLayout programLayout = resolver.resolve(programNode);
+            state = new RuntimeState(resolver.getMaxDepth(), input, out, fuel != null ? fuel : Fuel.standard(), trace);
+            state.display[0] = new Frame(programLayout);
             
-            // Chamada de função
-            case FUNC_CALL_NODE -> {
-                String funcName = exprNode.stringData.toLowerCase();
-                
-                // Funções built-in básicas
-                switch (funcName) {
-                    case "abs" -> {
-                        if (exprNode.getChildCount() > 0 && exprNode.getChild(0).getChildCount() > 0) {
-                            Object arg = evaluateExpression(exprNode.getChild(0).getChild(0));
-                            if (arg instanceof Integer) {
-                                return Math.abs((Integer) arg);
-                            } else {
-                                return Math.abs(convertToFloat(arg));
-                            }
-                        }
-                        throw new RuntimeException("Function 'abs' requires one argument");
-                    }
-                    case "sqrt" -> {
-                        if (exprNode.getChildCount() > 0 && exprNode.getChild(0).getChildCount() > 0) {
-                            Object arg = evaluateExpression(exprNode.getChild(0).getChild(0));
-                            float f = convertToFloat(arg);
-                            if (f < 0) {
-                                throw new RuntimeException("Square root of negative number");
-                            }
-                            return (float) Math.sqrt(f);
-                        }
-                        throw new RuntimeException("Function 'sqrt' requires one argument");
-                    }
-                    default -> {
-                        debugPrint("Skipping user-defined function call: " + funcName);
-                        return 0; // Valor padrão
-                    }
-                }
-            }
+            // Compila a AST em nós executáveis uma única vez e executa
+            ClosureCompiler compiler = new ClosureCompiler(state, resolver);
+            ClosureCompiler.Stmt program = compiler.compileProgram(programNode);
+            execute(program);
             
-            default -> throw new RuntimeException("Unsupported expression node: " + exprNode.kind);
-        }
-    }
-    
-    /**
-     * Interface funcional para operações aritméticas
-     */
-    @FunctionalInterface
-    private interface ArithmeticOperation {
-        Object apply(Object a, Object b);
-    }
-    
-    /**
-     * Interface funcional para operações lógicas
-     */
-    @FunctionalInterface
-    private interface LogicalOperation {
-        boolean apply(boolean a, boolean b);
-    }
-    
-    /**
-     * Interface funcional para operações de comparação
-     */
-    @FunctionalInterface
-    private interface ComparisonOperation {
-        boolean apply(Object a, Object b);
-    }
-    
-    /**
-     * Avalia operação aritmética binária
-     */
-    private Object evaluateArithmeticOperation(AST opNode, ArithmeticOperation operation) {
-        if (opNode.getChildCount() < 2) {
-            throw new RuntimeException("Arithmetic operation requires two operands");
-        }
-        
-        Object left = evaluateExpression(opNode.getChild(0));
-        Object right = evaluateExpression(opNode.getChild(1));
-        
-        return operation.apply(left, right);
-    }
-    
-    /**
-     * Avalia operação lógica binária
-     */
-    private boolean evaluateLogicalOperation(AST opNode, LogicalOperation operation) {
-        if (opNode.getChildCount() < 2) {
-            throw new RuntimeException("Logical operation requires two operands");
+            tracePrint(Trace.Category.RUN, "Execution finished.");
+        } finally {
+            out.flush();
         }
         
-        Object left = evaluateExpression(opNode.getChild(0));
-        Object right = evaluateExpression(opNode.getChild(1));
-        
-        return operation.apply(convertToBoolean(left), convertToBoolean(right));
-    }
-    
-    /**
-     * Avalia operação de comparação binária
-     */
-    private boolean evaluateComparisonOperation(AST opNode, ComparisonOperation operation) {
-        if (opNode.getChildCount() < 2) {
-            throw new RuntimeException("Comparison operation requires two operands");
-        }
-        
-        Object left = evaluateExpression(opNode.getChild(0));
-        Object right = evaluateExpression(opNode.getChild(1));
-        
-        return operation.apply(left, right);
-    }
-    
-    /**
-     * Compara dois valores numericamente
-     */
-    private int compareValues(Object a, Object b) {
-        if (a instanceof Number && b instanceof Number) {
-            float fa = convertToFloat(a);
-            float fb = convertToFloat(b);
-            return Float.compare(fa, fb);
-        } else if (a instanceof Character && b instanceof Character) {
-            return Character.compare((Character) a, (Character) b);
-        } else if (a instanceof String && b instanceof String) {
-            return ((String) a).compareTo((String) b);
-        } else if (a instanceof Boolean && b instanceof Boolean) {
-            return Boolean.compare((Boolean) a, (Boolean) b);
-        }
-        
-        // Para outros tipos, converte para string e compara
-        String sa = String.valueOf(a);
-        String sb = String.valueOf(b);
-        return sa.compareTo(sb);
-    }
-    
-    /**
-     * Converte valor para int
-     */
-    private int convertToInt(Object value) {
-        if (value instanceof Integer) {
-            return (Integer) value;
-        } else if (value instanceof Float) {
-            return ((Float) value).intValue();
-        } else if (value instanceof Boolean) {
-            return (Boolean) value ? 1 : 0;
-        } else if (value instanceof Character) {
-            return (int) ((Character) value);
-        }
-        throw new RuntimeException("Cannot convert " + value.getClass().getSimpleName() + " to integer");
-    }
-    
-    /**
-     * Converte valor para float
-     */
-    private float convertToFloat(Object value) {
-        if (value instanceof Float) {
-            return (Float) value;
-        } else if (value instanceof Integer) {
-            return ((Integer) value).floatValue();
-        } else if (value instanceof Character) {
-            return (float) ((Character) value);
-        }
-        throw new RuntimeException("Cannot convert " + value.getClass().getSimpleName() + " to float");
-    }
-    
-    /**
-     * Converte valor para boolean
-     */
-    private boolean convertToBoolean(Object value) {
-        if (value instanceof Boolean) {
-            return (Boolean) value;
-        } else if (value instanceof Integer) {
-            return (Integer) value != 0;
-        } else if (value instanceof Float) {
-            return Math.abs((Float) value) > 1e-10;
+        if (trace.on(Trace.Category.MEMORY)) {
+            printMemoryState();
         }
-        throw new RuntimeException("Cannot convert " + value.getClass().getSimpleName() + " to boolean");
     }
     
     /**
      * Imprime o estado atual da memória
      */
     private void printMemoryState() {
+        Frame globals = state.getGlobals();
+        FrameLayout layout = globals.getLayout();
+        
         System.out.println("\n[INTERPRETER] Memory state:");
-        if (memory.isEmpty() && entries.isEmpty()) {
+        if (layout.getSlotCount() == 0) {
             System.out.println("  (empty)");
         } else {
-            // Imprimir variáveis simples
-            for (Map.Entry<String, Object> entry : memory.entrySet()) {
-                System.out.println("  " + entry.getKey() + " = " + entry.getValue() + 
-                                 " (" + entry.getValue().getClass().getSimpleName() + ")");
+            // Imprimir variáveis simples e constantes
+            for (int slot = 0; slot < layout.getSlotCount(); slot++) {
+                Object value = globals.get(slot);
+                if (layout.getSlotArray(slot) == null && value != null) {
+                    System.out.println("  " + layout.getSlotName(slot) + " = " + value + 
+                                     " (" + value.getClass().getSimpleName() + ")");
+                }
             }
             
             // Imprimir arrays e constantes
             System.out.println("\n[INTERPRETER] Arrays and Constants:");
-            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
-                Entry e = entry.getValue();
-                if (e instanceof ArrayEntry) {
-                    ArrayEntry arrayEntry = (ArrayEntry) e;
-                    Object[] values = arrayValues.get(entry.getKey());
-                    System.out.println("  " + entry.getKey() + "[" + arrayEntry.getStartIndex() + 
+            for (int slot = 0; slot < layout.getSlotCount(); slot++) {
+                ArrayEntry arrayEntry = layout.getSlotArray(slot);
+                if (arrayEntry != null) {
+                    System.out.println("  " + layout.getSlotName(slot) + "[" + arrayEntry.getStartIndex() + 
                                      ".." + arrayEntry.getEndIndex() + "] of " + arrayEntry.getElementType() + 
-                                     " = " + (values != null ? java.util.Arrays.toString(values) : "null"));
-                } else if (e instanceof ConstEntry) {
-                    ConstEntry constEntry = (ConstEntry) e;
-                    System.out.println("  const " + entry.getKey() + " = " + constEntry.getValue() + 
-                                     " (" + constEntry.getEntryType() + ")");
+                                     " = " + Values.arrayToString(globals.get(slot)));
+                } else if (layout.getSlotKind(slot) == FrameLayout.SlotKind.CONST) {
+                    System.out.println("  const " + layout.getSlotName(slot) + " = " + globals.get(slot) + 
+                                     " (" + layout.getSlotType(slot) + ")");
                 }
             }
         }
     }
-    
-    /**
-     * Cleanup resources
-     */
-    public void cleanup() {
-        if (scanner != null) {
-            scanner.close();
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package interpreter;
+
+import java.io.PrintStream;
+
+/**
+ * Saída padrão bufferizada dos programas executados. Os valores são
+ * formatados direto no buffer, sem Strings intermediárias, e o buffer só é
+ * enviado ao stream quando enche, antes de uma leitura da entrada e ao final
+ * da execução, trocando uma chamada de sistema por valor impresso por uma
+ * a cada bloco.
+ */
+public final class Output {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final PrintStream target;
+    private final int capacity;
+    private final StringBuilder buffer;
+
+    public Output(PrintStream target, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Output capacity must be positive");
+        }
+        this.target = target;
+        this.capacity = capacity;
+        this.buffer = new StringBuilder(capacity + 256);
+    }
+
+    /**
+     * Saída para System.out com o buffer padrão
+     */
+    public static Output console() {
+        return new Output(System.out, DEFAULT_CAPACITY);
+    }
+
+    public void print(String s) {
+        buffer.append(s);
+        checkCapacity();
+    }
+
+    public void printInt(int value) {
+        buffer.append(value);
+        checkCapacity();
+    }
+
+    public void printReal(float value) {
+        Values.appendReal(buffer, value);
+        checkCapacity();
+    }
+
+    public void printBool(boolean value) {
+        buffer.append(value ? "true" : "false");
+        checkCapacity();
+    }
+
+    public void printChar(char value) {
+        buffer.append(value);
+        checkCapacity();
+    }
+
+    public void println(String s) {
+        buffer.append(s).append('\n');
+        checkCapacity();
+    }
+
+    /**
+     * Envia o conteúdo do buffer ao stream
+     */
+    public void flush() {
+        if (buffer.length() > 0) {
+            target.append(buffer);
+            buffer.setLength(0);
+        }
+        target.flush();
+    }
+
+    private void checkCapacity() {
+        if (buffer.length() >= capacity) {
+            flush();
+        }
+    }
+}
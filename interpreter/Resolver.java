@@ -0,0 +1,293 @@
+package interpreter;
+
+import ast.AST;
+import ast.NodeKind;
+import entries.ArrayEntry;
+import typing.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Passo de resolução executado uma única vez antes da interpretação.
+ * Atribui a cada variável, constante e parâmetro declarado um endereço
+ * (profundidade léxica, slot no frame) e anota os nós da AST que os usam,
+ * de modo que a execução acesse a memória por índice, sem buscas por nome.
+ */
+public class Resolver {
+
+    // Profundidade marcada em um VAR_USE_NODE que é, na verdade, uma chamada
+    // de função sem argumentos (nesse caso 'slot' guarda o índice da rotina)
+    public static final int CALL_DEPTH = -2;
+
+    // Símbolo visível em um escopo: endereço de dado e/ou rotina associada
+    private static class Symbol {
+        final int depth;
+        final int slot;
+        final int routine;
+
+        Symbol(int depth, int slot, int routine) {
+            this.depth = depth;
+            this.slot = slot;
+            this.routine = routine;
+        }
+    }
+
+    // Rotinas resolvidas; o índice 0 é o programa principal
+    private final List<FrameLayout> routines = new ArrayList<>();
+
+    // Pilha de escopos (nomes normalizados em minúsculas)
+    private final List<Map<String, Symbol>> scopes = new ArrayList<>();
+
+    private int maxDepth = 0;
+
+    /**
+     * Resolve o programa inteiro e retorna o layout do frame global
+     */
+    public FrameLayout resolve(AST programNode) {
+        if (programNode.kind != NodeKind.PROGRAM_NODE) {
+            throw new RuntimeException("Root node must be a PROGRAM_NODE");
+        }
+
+        FrameLayout programLayout = new FrameLayout(programNode.stringData, 0, programNode);
+        routines.add(programLayout);
+
+        openScope();
+        if (programNode.getChildCount() > 0) {
+            resolveBlock(programNode.getChild(0), programLayout);
+        }
+        closeScope();
+
+        return programLayout;
+    }
+
+    /**
+     * Retorna a rotina de índice dado (ver AST.slot nos nós de chamada)
+     */
+    public FrameLayout getRoutine(int index) {
+        return routines.get(index);
+    }
+
+    public List<FrameLayout> getRoutines() {
+        return routines;
+    }
+
+    /**
+     * Maior profundidade léxica encontrada (tamanho do display - 1)
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    private void openScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    private void closeScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private void declare(String name, Symbol symbol) {
+        scopes.get(scopes.size() - 1).put(name.toLowerCase(), symbol);
+    }
+
+    private Symbol lookup(String name) {
+        String key = name.toLowerCase();
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Symbol symbol = scopes.get(i).get(key);
+            if (symbol != null) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolve um bloco: declarações primeiro, depois o corpo
+     */
+    private void resolveBlock(AST blockNode, FrameLayout layout) {
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+
+            switch (child.kind) {
+                case CONST_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        resolveConstDeclaration(child.getChild(j), layout);
+                    }
+                }
+                case VAR_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST varList = child.getChild(j);
+                        for (int k = 0; k < varList.getChildCount(); k++) {
+                            resolveVarDeclaration(varList.getChild(k), layout);
+                        }
+                    }
+                }
+                case PROC_DECL_NODE, FUNC_DECL_NODE -> {
+                    // Declara antes de resolver o corpo para permitir recursão
+                    FrameLayout routine = new FrameLayout(child.stringData, layout.getDepth() + 1, child);
+                    routines.add(routine);
+                    declare(child.stringData, new Symbol(-1, -1, routines.size() - 1));
+                    resolveRoutine(routine, routines.size() - 1);
+                }
+                default -> resolveNode(child);
+            }
+        }
+    }
+
+    private void resolveConstDeclaration(AST constDeclNode, FrameLayout layout) {
+        if (constDeclNode.kind != NodeKind.CONST_DECL_NODE) {
+            return;
+        }
+        // O valor pode referenciar constantes anteriores
+        for (int i = 0; i < constDeclNode.getChildCount(); i++) {
+            resolveNode(constDeclNode.getChild(i));
+        }
+        int slot = layout.addSlot(constDeclNode.stringData, constDeclNode.type, FrameLayout.SlotKind.CONST, null);
+        annotate(constDeclNode, layout.getDepth(), slot);
+        declare(constDeclNode.stringData, new Symbol(layout.getDepth(), slot, -1));
+    }
+
+    private void resolveVarDeclaration(AST varDeclNode, FrameLayout layout) {
+        if (varDeclNode.kind != NodeKind.VAR_DECL_NODE) {
+            return;
+        }
+        ArrayEntry array = null;
+        if (varDeclNode.type == Type.ARRAY) {
+            array = createArrayEntry(varDeclNode);
+        }
+        int slot = layout.addSlot(varDeclNode.stringData, varDeclNode.type, FrameLayout.SlotKind.VAR, array);
+        annotate(varDeclNode, layout.getDepth(), slot);
+        declare(varDeclNode.stringData, new Symbol(layout.getDepth(), slot, -1));
+    }
+
+    /**
+     * Extrai limites e tipo do elemento de um VAR_DECL_NODE de array.
+     * Estrutura: VAR_DECL_NODE -> ARRAY_TYPE_NODE -> (RANGE_NODE, tipo do elemento)
+     */
+    private ArrayEntry createArrayEntry(AST varDeclNode) {
+        int startIndex = 1;
+        int endIndex = 10;
+        Type elementType = Type.INTEGER;
+
+        if (varDeclNode.getChildCount() > 0 && varDeclNode.getChild(0).kind == NodeKind.ARRAY_TYPE_NODE) {
+            AST arrayTypeNode = varDeclNode.getChild(0);
+            AST rangeNode = arrayTypeNode.getChild(0);
+            if (rangeNode != null && rangeNode.kind == NodeKind.RANGE_NODE && rangeNode.getChildCount() == 2) {
+                startIndex = rangeNode.getChild(0).intData;
+                endIndex = rangeNode.getChild(1).intData;
+            }
+            AST elementNode = arrayTypeNode.getChild(1);
+            if (elementNode != null && elementNode.type != Type.ARRAY && elementNode.type != Type.NO_TYPE) {
+                elementType = elementNode.type;
+            }
+        }
+
+        return new ArrayEntry(varDeclNode.stringData, 0, elementType, startIndex, endIndex);
+    }
+
+    private void resolveRoutine(FrameLayout layout, int routineIndex) {
+        AST declNode = layout.getDeclaration();
+        maxDepth = Math.max(maxDepth, layout.getDepth());
+
+        openScope();
+
+        // Dentro de uma função, o nome dela é a variável de resultado
+        if (declNode.kind == NodeKind.FUNC_DECL_NODE) {
+            int slot = layout.addSlot(declNode.stringData, declNode.type, FrameLayout.SlotKind.RESULT, null);
+            declare(declNode.stringData, new Symbol(layout.getDepth(), slot, routineIndex));
+        }
+
+        for (int i = 0; i < declNode.getChildCount(); i++) {
+            AST child = declNode.getChild(i);
+            if (child.kind == NodeKind.PARAM_LIST_NODE) {
+                resolveParameters(child, layout);
+            } else if (child.kind == NodeKind.BLOCK_NODE) {
+                resolveBlock(child, layout);
+            }
+        }
+
+        closeScope();
+    }
+
+    /**
+     * Parâmetros: PARAM_LIST_NODE -> PARAM_LIST_NODE (seção) -> PARAM_NODE
+     */
+    private void resolveParameters(AST paramListNode, FrameLayout layout) {
+        for (int i = 0; i < paramListNode.getChildCount(); i++) {
+            AST child = paramListNode.getChild(i);
+            if (child.kind == NodeKind.PARAM_LIST_NODE) {
+                resolveParameters(child, layout);
+            } else if (child.kind == NodeKind.PARAM_NODE) {
+                FrameLayout.SlotKind kind = child.intData == 1 ? FrameLayout.SlotKind.REF_PARAM : FrameLayout.SlotKind.PARAM;
+                int slot = layout.addSlot(child.stringData, child.type, kind, null);
+                annotate(child, layout.getDepth(), slot);
+                declare(child.stringData, new Symbol(layout.getDepth(), slot, -1));
+            }
+        }
+    }
+
+    /**
+     * Resolve statements e expressões, anotando os usos de variáveis e as chamadas
+     */
+    private void resolveNode(AST node) {
+        switch (node.kind) {
+            case VAR_USE_NODE -> {
+                Symbol symbol = lookup(node.stringData);
+                if (symbol != null) {
+                    if (symbol.routine >= 0) {
+                        // Nome de função em expressão: chamada sem argumentos
+                        annotate(node, CALL_DEPTH, symbol.routine);
+                    } else {
+                        annotate(node, symbol.depth, symbol.slot);
+                    }
+                }
+            }
+            case ASSIGN_NODE -> {
+                AST target = node.getChild(0);
+                if (target != null && target.kind == NodeKind.VAR_USE_NODE) {
+                    // Atribuição ao nome da função grava no slot de resultado
+                    Symbol symbol = lookup(target.stringData);
+                    if (symbol != null && symbol.slot >= 0) {
+                        annotate(target, symbol.depth, symbol.slot);
+                    }
+                } else if (target != null) {
+                    resolveNode(target);
+                }
+                for (int i = 1; i < node.getChildCount(); i++) {
+                    resolveNode(node.getChild(i));
+                }
+            }
+            case ARRAY_ACCESS_NODE -> {
+                Symbol symbol = lookup(node.stringData);
+                if (symbol != null && symbol.slot >= 0) {
+                    annotate(node, symbol.depth, symbol.slot);
+                }
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    resolveNode(node.getChild(i));
+                }
+            }
+            case FUNC_CALL_NODE, PROC_CALL_NODE -> {
+                // Built-ins não estão nos escopos e permanecem sem resolução
+                Symbol symbol = lookup(node.stringData);
+                if (symbol != null && symbol.routine >= 0) {
+                    annotate(node, -1, symbol.routine);
+                }
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    resolveNode(node.getChild(i));
+                }
+            }
+            default -> {
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    resolveNode(node.getChild(i));
+                }
+            }
+        }
+    }
+
+    private void annotate(AST node, int depth, int slot) {
+        node.depth = depth;
+        node.slot = slot;
+    }
+}
@@ -0,0 +1,44 @@
+package interpreter;
+
+/**
+ * Estado de execução compartilhado pelos nós compilados:
+ * display de frames, entrada e saída padrão, orçamento de execução e trace.
+ */
+public class RuntimeState {
+
+    // Display: frame ativo em cada profundidade léxica (0 = global)
+    final Frame[] display;
+
+    // Entrada do usuário (para read/readln)
+    final Input input;
+
+    // Saída bufferizada de write/writeln e das mensagens de trace
+    final Output out;
+
+    // Passos e prazo restantes; consumido por laços e chamadas
+    final Fuel fuel;
+
+    final Trace trace;
+
+    // Chamadas de rotina em andamento, limitadas a Fuel.MAX_CALL_DEPTH
+    int callDepth;
+
+    public RuntimeState(int maxDepth, Input input, Output out, Fuel fuel, Trace trace) {
+        this.display = new Frame[maxDepth + 1];
+        this.input = input;
+        this.out = out;
+        this.fuel = fuel;
+        this.trace = trace;
+    }
+
+    /**
+     * Escreve uma linha de trace na mesma saída do programa, preservando a ordem
+     */
+    void traceLine(String message) {
+        trace.print(out, message);
+    }
+
+    public Frame getGlobals() {
+        return display[0];
+    }
+}
@@ -0,0 +1,104 @@
+package interpreter;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Trace de execução do interpretador, com nível e categorias.
+ * Os nós compilados consultam on(categoria) uma única vez, ao serem criados,
+ * e guardam o resultado em um campo final; com a categoria desligada a
+ * execução não monta strings nem faz boxing para o trace.
+ */
+public final class Trace {
+
+    public enum Level { OFF, INFO, DEBUG }
+
+    public enum Category {
+        RUN(Level.INFO),      // início e fim da execução, statements ignorados
+        MEMORY(Level.INFO),   // estado da memória global ao final
+        DECL(Level.DEBUG),    // inicialização de constantes, variáveis e arrays
+        ASSIGN(Level.DEBUG),  // atribuições a variáveis e elementos de array
+        CALL(Level.DEBUG),    // entrada em rotinas e valores dos parâmetros
+        IO(Level.DEBUG);      // prompt e valores lidos por read/readln
+
+        final Level level;
+
+        Category(Level level) {
+            this.level = level;
+        }
+    }
+
+    private static final String PREFIX = "[INTERPRETER] ";
+
+    private final boolean[] enabled = new boolean[Category.values().length];
+
+    /**
+     * Liga as categorias do conjunto dado (todas, se null) cujo nível não
+     * passa do nível pedido
+     */
+    public Trace(Level level, Set<Category> categories) {
+        for (Category category : Category.values()) {
+            enabled[category.ordinal()] = level != Level.OFF && category.level.compareTo(level) <= 0 &&
+                                          (categories == null || categories.contains(category));
+        }
+    }
+
+    public static Trace off() {
+        return new Trace(Level.OFF, null);
+    }
+
+    public static Trace full() {
+        return new Trace(Level.DEBUG, null);
+    }
+
+    /**
+     * Interpreta a opção de linha de comando: nível[:categoria,...],
+     * por exemplo "off", "info" ou "debug:assign,call"
+     */
+    public static Trace parse(String spec) {
+        String[] parts = spec.split(":", 2);
+        Level level;
+        try {
+            level = Level.valueOf(parts[0].toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown trace level '" + parts[0] + "'");
+        }
+        if (parts.length == 1) {
+            return new Trace(level, null);
+        }
+        Set<Category> categories = EnumSet.noneOf(Category.class);
+        for (String name : parts[1].split(",")) {
+            try {
+                categories.add(Category.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown trace category '" + name.trim() + "'");
+            }
+        }
+        return new Trace(level, categories);
+    }
+
+    public boolean on(Category category) {
+        return enabled[category.ordinal()];
+    }
+
+    /**
+     * Indica se alguma mensagem pode ser impressa durante a execução (todas
+     * as categorias exceto MEMORY, impressa só ao final)
+     */
+    public boolean printsDuringExecution() {
+        for (Category category : Category.values()) {
+            if (category != Category.MEMORY && on(category)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Escreve uma linha de trace; quem chama já verificou on(categoria)
+     */
+    public void print(Output out, String message) {
+        out.println(PREFIX + message);
+    }
+}
@@ -0,0 +1,184 @@
+package interpreter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import typing.Type;
+
+/**
+ * Conversões, comparações e formatação dos valores em tempo de execução,
+ * compartilhadas pelos motores de execução do interpretador.
+ */
+public final class Values {
+
+    // Acima disto |f| * 10^6 + 0.5 não é mais exato em double
+    private static final double EXACT_SCALED_LIMIT = 0x1p52;
+
+    private Values() {
+    }
+
+    /**
+     * Converte valor para int
+     */
+    public static int toInt(Object value) {
+        if (value instanceof Integer) {
+            return (Integer) value;
+        } else if (value instanceof Float) {
+            return ((Float) value).intValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else if (value instanceof Character) {
+            return (int) ((Character) value);
+        }
+        throw new RuntimeException("Cannot convert " + value.getClass().getSimpleName() + " to integer");
+    }
+
+    /**
+     * Converte valor para float
+     */
+    public static float toFloat(Object value) {
+        if (value instanceof Float) {
+            return (Float) value;
+        } else if (value instanceof Integer) {
+            return ((Integer) value).floatValue();
+        } else if (value instanceof Character) {
+            return (float) ((Character) value);
+        }
+        throw new RuntimeException("Cannot convert " + value.getClass().getSimpleName() + " to float");
+    }
+
+    /**
+     * Converte valor para boolean
+     */
+    public static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Integer) {
+            return (Integer) value != 0;
+        } else if (value instanceof Float) {
+            return Math.abs((Float) value) > 1e-10;
+        }
+        throw new RuntimeException("Cannot convert " + value.getClass().getSimpleName() + " to boolean");
+    }
+
+    /**
+     * Compara dois valores numericamente
+     */
+    public static int compare(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            float fa = toFloat(a);
+            float fb = toFloat(b);
+            return Float.compare(fa, fb);
+        } else if (a instanceof Character && b instanceof Character) {
+            return Character.compare((Character) a, (Character) b);
+        } else if (a instanceof String && b instanceof String) {
+            return ((String) a).compareTo((String) b);
+        } else if (a instanceof Boolean && b instanceof Boolean) {
+            return Boolean.compare((Boolean) a, (Boolean) b);
+        }
+        
+        // Para outros tipos, converte para string e compara
+        String sa = String.valueOf(a);
+        String sb = String.valueOf(b);
+        return sa.compareTo(sb);
+    }
+
+    /**
+     * Formata valor para saída
+     */
+    public static String format(Object value) {
+        if (value instanceof Float) {
+            return appendReal(new StringBuilder(16), (Float) value).toString();
+        } else if (value instanceof Character) {
+            return String.valueOf(value);
+        } else if (value instanceof String) {
+            String s = (String) value;
+            // Remove aspas se estiverem presentes
+            if (s.length() >= 2 && s.startsWith("'") && s.endsWith("'")) {
+                return s.substring(1, s.length() - 1);
+            }
+            return s;
+        } else if (value instanceof Boolean) {
+            return ((Boolean) value) ? "true" : "false";
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Acrescenta um real no formato de saída: inteiro se não tiver parte
+     * fracionária, senão até 6 casas decimais (arredondamento half-up) sem
+     * zeros à direita. Mesmo resultado de "%.6f" sem os zeros finais, mas
+     * sem Formatter nem expressões regulares.
+     */
+    public static StringBuilder appendReal(StringBuilder sb, float f) {
+        if (f == (int) f) {
+            return sb.append((int) f);
+        }
+        // Um float tem 24 bits de mantissa: o produto por 10^6 é exato em double
+        double scaled = Math.abs((double) f) * 1e6;
+        if (!(scaled < EXACT_SCALED_LIMIT)) {
+            return appendLargeReal(sb, f);
+        }
+        long rounded = (long) (scaled + 0.5);
+        if (f < 0) {
+            sb.append('-');
+        }
+        sb.append(rounded / 1_000_000);
+        int fraction = (int) (rounded % 1_000_000);
+        if (fraction != 0) {
+            sb.append('.');
+            for (int digit = 100_000; fraction != 0; digit /= 10) {
+                sb.append((char) ('0' + fraction / digit));
+                fraction %= digit;
+            }
+        }
+        return sb;
+    }
+
+    // NaN, infinitos e magnitudes acima de ~4.5e9 (raros na prática)
+    private static StringBuilder appendLargeReal(StringBuilder sb, float f) {
+        if (Float.isNaN(f)) {
+            return sb.append("NaN");
+        } else if (Float.isInfinite(f)) {
+            return sb.append(f > 0 ? "Infinity" : "-Infinity");
+        }
+        return sb.append(new BigDecimal(Double.toString(f)).setScale(6, RoundingMode.HALF_UP)
+                                                           .stripTrailingZeros().toPlainString());
+    }
+
+    /**
+     * Representação de um array do interpretador ([a, b, ...]); arrays de
+     * boolean são guardados como byte[] 0/1
+     */
+    public static String arrayToString(Object values) {
+        if (values instanceof int[] ints) {
+            return java.util.Arrays.toString(ints);
+        } else if (values instanceof float[] reals) {
+            return java.util.Arrays.toString(reals);
+        } else if (values instanceof char[] chars) {
+            return java.util.Arrays.toString(chars);
+        } else if (values instanceof byte[] bools) {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < bools.length; i++) {
+                sb.append(i > 0 ? ", " : "").append(bools[i] != 0);
+            }
+            return sb.append(']').toString();
+        } else if (values instanceof Object[] refs) {
+            return java.util.Arrays.toString(refs);
+        }
+        return "null";
+    }
+
+    /**
+     * Retorna valor padrão para um tipo
+     */
+    public static Object defaultValue(Type type) {
+        return switch (type) {
+            case INTEGER -> 0;
+            case REAL -> 0.0f;
+            case BOOLEAN -> false;
+            case CHAR -> '\0';
+            case STRING -> "";
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bloco básico: sequência de instruções sem desvios internos, terminada por
+ * exatamente um terminador (JUMP, CBR, RET ou HALT). Predecessores e
+ * sucessores são recalculados por IrRoutine.computeEdges().
+ */
+public final class BasicBlock {
+
+    public final String label;
+    public final List<Instr> instrs = new ArrayList<>();
+    public final List<BasicBlock> predecessors = new ArrayList<>();
+    public final List<BasicBlock> successors = new ArrayList<>();
+
+    // Índice na ordem de layout da rotina (atualizado por computeEdges)
+    public int index;
+
+    BasicBlock(String label) {
+        this.label = label;
+    }
+
+    public void add(Instr instr) {
+        instrs.add(instr);
+    }
+
+    public Instr terminator() {
+        return instrs.get(instrs.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
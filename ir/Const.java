@@ -0,0 +1,62 @@
+package ir;
+
+/**
+ * Constante inteira ou real; reais são guardados pelos bits do float,
+ * de modo que constantes iguais são iguais bit a bit
+ */
+public final class Const extends Operand {
+
+    public static final Const ZERO = new Const(0, false);
+    public static final Const ONE = new Const(1, false);
+
+    public final int bits;
+    private final boolean real;
+
+    private Const(int bits, boolean real) {
+        this.bits = bits;
+        this.real = real;
+    }
+
+    public static Const of(int value) {
+        return value == 0 ? ZERO : value == 1 ? ONE : new Const(value, false);
+    }
+
+    public static Const of(float value) {
+        return new Const(Float.floatToRawIntBits(value), true);
+    }
+
+    /**
+     * Zero do tipo dado (0 ou 0.0)
+     */
+    public static Const zero(boolean real) {
+        return real ? new Const(0, true) : ZERO;
+    }
+
+    @Override
+    public boolean isReal() {
+        return real;
+    }
+
+    public int intValue() {
+        return bits;
+    }
+
+    public float floatValue() {
+        return Float.intBitsToFloat(bits);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Const c && c.bits == bits && c.real == real;
+    }
+
+    @Override
+    public int hashCode() {
+        return real ? ~bits : bits;
+    }
+
+    @Override
+    public String toString() {
+        return real ? Float.toString(floatValue()) : Integer.toString(bits);
+    }
+}
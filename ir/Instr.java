@@ -0,0 +1,262 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instrução de três endereços. Os campos usados dependem da operação
+ * (ver Op); os demais ficam nulos. Instruções são mutáveis para que os
+ * passes de otimização possam reescrever operandos no lugar.
+ */
+public final class Instr {
+
+    public Op op;
+    public Temp dst;
+    public Operand a;
+    public Operand b;
+
+    // LOADW/STOREW: deslocamento em bytes; PARAM: índice do parâmetro
+    public int offset;
+
+    // LOAD, STORE e ADDR
+    public Variable var;
+
+    // CALL
+    public IrRoutine callee;
+    public Operand[] args;
+
+    // CBR: comparação testada; JUMP/CBR: destinos (other = falso)
+    public Op cond;
+    public BasicBlock target;
+    public BasicBlock other;
+
+    // PRINT_STR: label da string em .data
+    public String text;
+
+    private Instr(Op op) {
+        this.op = op;
+    }
+
+    // ==================== Construção ====================
+
+    public static Instr move(Temp dst, Operand a) {
+        Instr instr = new Instr(Op.MOVE);
+        instr.dst = dst;
+        instr.a = a;
+        return instr;
+    }
+
+    /**
+     * Operação de um ou dois operandos (b é null nas unárias)
+     */
+    public static Instr compute(Op op, Temp dst, Operand a, Operand b) {
+        Instr instr = new Instr(op);
+        instr.dst = dst;
+        instr.a = a;
+        instr.b = b;
+        return instr;
+    }
+
+    public static Instr load(Temp dst, Variable var) {
+        Instr instr = new Instr(Op.LOAD);
+        instr.dst = dst;
+        instr.var = var;
+        return instr;
+    }
+
+    public static Instr store(Variable var, Operand value) {
+        Instr instr = new Instr(Op.STORE);
+        instr.var = var;
+        instr.a = value;
+        return instr;
+    }
+
+    public static Instr address(Temp dst, Variable var) {
+        Instr instr = new Instr(Op.ADDR);
+        instr.dst = dst;
+        instr.var = var;
+        return instr;
+    }
+
+    public static Instr loadWord(Temp dst, Operand address, int offset) {
+        Instr instr = new Instr(Op.LOADW);
+        instr.dst = dst;
+        instr.a = address;
+        instr.offset = offset;
+        return instr;
+    }
+
+    public static Instr storeWord(Operand address, int offset, Operand value) {
+        Instr instr = new Instr(Op.STOREW);
+        instr.a = address;
+        instr.offset = offset;
+        instr.b = value;
+        return instr;
+    }
+
+    public static Instr param(Temp dst, int index) {
+        Instr instr = new Instr(Op.PARAM);
+        instr.dst = dst;
+        instr.offset = index;
+        return instr;
+    }
+
+    /**
+     * Chamada de rotina; dst é null para procedimentos
+     */
+    public static Instr call(Temp dst, IrRoutine callee, Operand[] args) {
+        Instr instr = new Instr(Op.CALL);
+        instr.dst = dst;
+        instr.callee = callee;
+        instr.args = args;
+        return instr;
+    }
+
+    /**
+     * READ_INT, READ_REAL ou READ_CHAR
+     */
+    public static Instr read(Op op, Temp dst) {
+        Instr instr = new Instr(op);
+        instr.dst = dst;
+        return instr;
+    }
+
+    /**
+     * PRINT_INT, PRINT_REAL ou PRINT_NL (sem operando)
+     */
+    public static Instr print(Op op, Operand value) {
+        Instr instr = new Instr(op);
+        instr.a = value;
+        return instr;
+    }
+
+    public static Instr printString(String label) {
+        Instr instr = new Instr(Op.PRINT_STR);
+        instr.text = label;
+        return instr;
+    }
+
+    public static Instr jump(BasicBlock target) {
+        Instr instr = new Instr(Op.JUMP);
+        instr.target = target;
+        return instr;
+    }
+
+    /**
+     * Desvio condicional: vai para target se (a cond b), senão para other
+     */
+    public static Instr branch(Op cond, Operand a, Operand b, BasicBlock target, BasicBlock other) {
+        if (!cond.isComparison()) {
+            throw new IllegalArgumentException(cond + " is not a comparison");
+        }
+        Instr instr = new Instr(Op.CBR);
+        instr.cond = cond;
+        instr.a = a;
+        instr.b = b;
+        instr.target = target;
+        instr.other = other;
+        return instr;
+    }
+
+    /**
+     * Retorno da rotina; value é null em procedimentos
+     */
+    public static Instr ret(Operand value) {
+        Instr instr = new Instr(Op.RET);
+        instr.a = value;
+        return instr;
+    }
+
+    public static Instr halt() {
+        return new Instr(Op.HALT);
+    }
+
+    // ==================== Consultas ====================
+
+    /**
+     * Operandos lidos pela instrução, na ordem
+     */
+    public List<Operand> uses() {
+        List<Operand> uses = new ArrayList<>(2);
+        if (a != null) {
+            uses.add(a);
+        }
+        if (b != null) {
+            uses.add(b);
+        }
+        if (args != null) {
+            for (Operand arg : args) {
+                uses.add(arg);
+            }
+        }
+        return uses;
+    }
+
+    /**
+     * Substitui todos os usos de um operando
+     */
+    public void replaceUse(Operand from, Operand to) {
+        if (a == from) {
+            a = to;
+        }
+        if (b == from) {
+            b = to;
+        }
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] == from) {
+                    args[i] = to;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sucessores de um terminador, na ordem (alvo verdadeiro primeiro)
+     */
+    public List<BasicBlock> successors() {
+        List<BasicBlock> successors = new ArrayList<>(2);
+        if (target != null) {
+            successors.add(target);
+        }
+        if (other != null && other != target) {
+            successors.add(other);
+        }
+        return successors;
+    }
+
+    @Override
+    public String toString() {
+        String prefix = dst != null ? dst + " = " : "";
+        return switch (op) {
+            case MOVE -> prefix + a;
+            case LOAD -> prefix + "load " + var;
+            case STORE -> "store " + var + ", " + a;
+            case ADDR -> prefix + "addr " + var;
+            case LOADW -> prefix + "loadw " + a + (offset != 0 ? ", " + offset : "");
+            case STOREW -> "storew " + a + (offset != 0 ? ", " + offset : "") + ", " + b;
+            case PARAM -> prefix + "param " + offset;
+            case CALL -> {
+                StringBuilder text = new StringBuilder(prefix).append("call ").append(callee.name).append('(');
+                for (int i = 0; i < args.length; i++) {
+                    text.append(i > 0 ? ", " : "").append(args[i]);
+                }
+                yield text.append(')').toString();
+            }
+            case PRINT_STR -> "print_str " + text;
+            case JUMP -> "jump " + target.label;
+            case CBR -> "if " + a + " " + cond.name().toLowerCase() + " " + b +
+                        " goto " + target.label + " else " + other.label;
+            default -> {
+                StringBuilder text = new StringBuilder(prefix).append(op.name().toLowerCase());
+                if (a != null) {
+                    text.append(' ').append(a);
+                }
+                if (b != null) {
+                    text.append(", ").append(b);
+                }
+                yield text.toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,916 @@
+package ir;
+
+import ast.AST;
+import ast.NodeKind;
+import ast.RangeAnalysis;
+import entries.ArrayEntry;
+import interpreter.FrameLayout;
+import interpreter.Resolver;
+import tables.StrTable;
+import typing.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Traduz a AST verificada para código de três endereços.
+ * Usa o Resolver do interpretador para os endereços (profundidade, slot).
+ * Variáveis escalares, constantes, parâmetros e resultados de função viram
+ * registradores virtuais quando só a própria rotina os acessa e o endereço
+ * deles não é passado a parâmetros VAR; os demais, e todos os arrays, ficam
+ * na memória (Variable), nas globais ou no frame da rotina dona.
+ */
+public class IrBuilder {
+
+    private final Resolver resolver = new Resolver();
+    private final StrTable strTable;
+    private IrProgram program;
+
+    // Por rotina do Resolver (o índice 0 é o programa principal)
+    private IrRoutine[] routines;
+    private int[][] chains;            // cadeia léxica: rotina visível em cada profundidade
+    private boolean[][] inMemory;      // slot fica na memória
+    private boolean[][] nonLocal;      // slot acessado por rotinas aninhadas
+    private Temp[][] slotTemps;        // slots promovidos a registradores
+    private Variable[][] slotVariables;
+
+    // Rotina e bloco em construção
+    private int current;
+    private IrRoutine routine;
+    private BasicBlock block;
+
+    private int hiddenCount = 0;
+
+    // Verificação de limites (null = desativada): os acessos não provados
+    // seguros desviam para um bloco de erro por rotina
+    private RangeAnalysis boundsCheck;
+    private BasicBlock boundsError;
+    private String boundsMessage;
+
+    // Endereço de um elemento de array: base + offset (em bytes)
+    private record Address(Operand base, int offset) {}
+
+    public IrBuilder(StrTable strTable) {
+        this.strTable = strTable;
+    }
+
+    /**
+     * Verifica os índices dos acessos a arrays que a análise não provou
+     * seguros (null para desativar)
+     */
+    public void setBoundsCheck(RangeAnalysis ranges) {
+        this.boundsCheck = ranges;
+    }
+
+    /**
+     * Traduz o programa inteiro
+     */
+    public IrProgram build(AST programNode) {
+        resolver.resolve(programNode);
+        List<FrameLayout> layouts = resolver.getRoutines();
+        int count = layouts.size();
+        program = new IrProgram();
+        boundsMessage = null;
+        if (strTable != null) {
+            for (String s : strTable) {
+                program.strings.add(s);
+            }
+        }
+
+        routines = new IrRoutine[count];
+        chains = new int[count][];
+        inMemory = new boolean[count][];
+        nonLocal = new boolean[count][];
+        slotTemps = new Temp[count][];
+        slotVariables = new Variable[count][];
+
+        computeChains(layouts);
+        createRoutines(layouts);
+        for (int r = 0; r < count; r++) {
+            inMemory[r] = new boolean[layouts.get(r).getSlotCount()];
+            nonLocal[r] = new boolean[layouts.get(r).getSlotCount()];
+            slotTemps[r] = new Temp[layouts.get(r).getSlotCount()];
+            slotVariables[r] = new Variable[layouts.get(r).getSlotCount()];
+        }
+        for (int r = 0; r < count; r++) {
+            AST body = r == 0 ? programNode.getChild(0) : layouts.get(r).getBody();
+            if (body != null) {
+                scan(r, body);
+            }
+        }
+        for (int r = 0; r < count; r++) {
+            createVariables(r);
+        }
+
+        for (int r = 0; r < count; r++) {
+            lowerRoutine(r, r == 0 ? programNode.getChild(0) : layouts.get(r).getBody());
+            program.routines.add(routines[r]);
+        }
+        return program;
+    }
+
+    // ==================== Rotinas e variáveis ====================
+
+    /**
+     * Cadeia léxica de cada rotina, a partir das declarações aninhadas
+     */
+    private void computeChains(List<FrameLayout> layouts) {
+        Map<AST, Integer> byDeclaration = new IdentityHashMap<>();
+        for (int r = 1; r < layouts.size(); r++) {
+            byDeclaration.put(layouts.get(r).getDeclaration(), r);
+        }
+        chains[0] = new int[] {0};
+        // O Resolver registra cada rotina depois da que a declara
+        for (int r = 0; r < layouts.size(); r++) {
+            AST body = r == 0 ? layouts.get(0).getDeclaration().getChild(0) : layouts.get(r).getBody();
+            if (body == null) {
+                continue;
+            }
+            for (int i = 0; i < body.getChildCount(); i++) {
+                Integer nested = byDeclaration.get(body.getChild(i));
+                if (nested != null) {
+                    int depth = layouts.get(nested).getDepth();
+                    int[] chain = new int[depth + 1];
+                    System.arraycopy(chains[r], 0, chain, 0, depth);
+                    chain[depth] = nested;
+                    chains[nested] = chain;
+                }
+            }
+        }
+    }
+
+    private void createRoutines(List<FrameLayout> layouts) {
+        Set<String> used = new HashSet<>();
+        for (int r = 0; r < layouts.size(); r++) {
+            FrameLayout layout = layouts.get(r);
+            List<Integer> params = layout.getParamSlots();
+            boolean[] refParams = new boolean[params.size()];
+            boolean[] realParams = new boolean[params.size()];
+            for (int i = 0; i < params.size(); i++) {
+                refParams[i] = layout.isReference(params.get(i));
+                realParams[i] = layout.getSlotType(params.get(i)) == Type.REAL;
+            }
+            String label = "main";
+            if (r > 0) {
+                // Rotinas aninhadas podem repetir nomes
+                label = "func_" + layout.getName();
+                if (!used.add(label.toLowerCase())) {
+                    label = label + "_" + r;
+                }
+            }
+            boolean isFunction = layout.getResultSlot() >= 0;
+            boolean returnsReal = isFunction && layout.getSlotType(layout.getResultSlot()) == Type.REAL;
+            routines[r] = new IrRoutine(layout.getName(), label, layout.getDepth(), isFunction, returnsReal,
+                                        refParams, realParams);
+        }
+    }
+
+    /**
+     * Marca os slots que precisam ficar na memória: acessados por outra
+     * rotina ou com o endereço passado a um parâmetro VAR
+     */
+    private void scan(int r, AST node) {
+        switch (node.kind) {
+            case PROC_DECL_NODE, FUNC_DECL_NODE -> {
+                // Percorridas separadamente
+            }
+            case VAR_USE_NODE, ARRAY_ACCESS_NODE -> {
+                if (node.depth >= 0 && node.slot >= 0) {
+                    int owner = chains[r][node.depth];
+                    if (owner != r) {
+                        inMemory[owner][node.slot] = true;
+                        nonLocal[owner][node.slot] = true;
+                    }
+                }
+                scanChildren(r, node);
+            }
+            case FUNC_CALL_NODE, PROC_CALL_NODE -> {
+                AST args = node.getChild(0);
+                if (node.slot >= 0 && args != null) {
+                    FrameLayout callee = resolver.getRoutine(node.slot);
+                    List<Integer> params = callee.getParamSlots();
+                    for (int i = 0; i < args.getChildCount() && i < params.size(); i++) {
+                        AST arg = args.getChild(i);
+                        if (callee.isReference(params.get(i)) && arg.kind == NodeKind.VAR_USE_NODE &&
+                            arg.depth >= 0 && arg.slot >= 0) {
+                            int owner = chains[r][arg.depth];
+                            // Parâmetros VAR repassam o endereço que receberam
+                            if (!resolver.getRoutine(owner).isReference(arg.slot)) {
+                                inMemory[owner][arg.slot] = true;
+                            }
+                        }
+                    }
+                }
+                scanChildren(r, node);
+            }
+            default -> scanChildren(r, node);
+        }
+    }
+
+    private void scanChildren(int r, AST node) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            scan(r, node.getChild(i));
+        }
+    }
+
+    private void createVariables(int r) {
+        FrameLayout layout = resolver.getRoutine(r);
+        IrRoutine owner = routines[r];
+        for (int slot = 0; slot < layout.getSlotCount(); slot++) {
+            ArrayEntry array = layout.getSlotArray(slot);
+            if (!inMemory[r][slot] && array == null) {
+                continue;
+            }
+            boolean real = array != null ? array.getElementType() == Type.REAL
+                                         : layout.getSlotType(slot) == Type.REAL && !layout.isReference(slot);
+            Variable variable;
+            if (r == 0) {
+                variable = new Variable(layout.getSlotName(slot), Variable.Storage.GLOBAL, real, array, owner);
+                variable.label = "g_" + layout.getSlotName(slot);
+                program.globals.add(variable);
+            } else {
+                variable = new Variable(layout.getSlotName(slot), Variable.Storage.FRAME, real, array, owner);
+                owner.frameVariables.add(variable);
+                if (nonLocal[r][slot]) {
+                    owner.usesDisplay = true;
+                    program.displayDepth = Math.max(program.displayDepth, owner.depth);
+                }
+            }
+            slotVariables[r][slot] = variable;
+        }
+    }
+
+    /**
+     * Variável oculta para argumentos VAR que não são variáveis
+     */
+    private Variable hiddenVariable(boolean real) {
+        String name = "tmp" + (hiddenCount++);
+        if (routine.isMain()) {
+            Variable variable = new Variable(name, Variable.Storage.GLOBAL, real, null, routine);
+            variable.label = "g_" + name;
+            program.globals.add(variable);
+            return variable;
+        }
+        Variable variable = new Variable(name, Variable.Storage.FRAME, real, null, routine);
+        routine.frameVariables.add(variable);
+        return variable;
+    }
+
+    // ==================== Emissão ====================
+
+    private void emit(Instr instr) {
+        block.add(instr);
+    }
+
+    /**
+     * Acrescenta o bloco ao layout e passa a emitir nele
+     */
+    private void startBlock(BasicBlock next) {
+        routine.blocks.add(next);
+        block = next;
+    }
+
+    private Temp compute(Op op, Operand a, Operand b, boolean real) {
+        Temp dst = routine.newTemp(real);
+        emit(Instr.compute(op, dst, a, b));
+        return dst;
+    }
+
+    /**
+     * dst = value, reaproveitando como destino a instrução que acabou de
+     * calcular value quando ele é um temporário sem outros usos
+     */
+    private void assign(Temp dst, Operand value) {
+        if (value instanceof Temp temp && temp.name == null && !block.instrs.isEmpty()) {
+            Instr last = block.instrs.get(block.instrs.size() - 1);
+            if (last.dst == temp) {
+                last.dst = dst;
+                return;
+            }
+        }
+        emit(Instr.move(dst, value));
+    }
+
+    // ==================== Rotinas ====================
+
+    private void lowerRoutine(int r, AST body) {
+        current = r;
+        routine = routines[r];
+        boundsError = null;
+        FrameLayout layout = resolver.getRoutine(r);
+        startBlock(routine.newBlock());
+
+        // Parâmetros: promovidos recebem o valor direto; os demais são copiados para o frame
+        List<Integer> params = layout.getParamSlots();
+        for (int i = 0; i < params.size(); i++) {
+            int slot = params.get(i);
+            boolean real = routine.realParams[i] && !routine.refParams[i];
+            if (slotVariables[r][slot] == null) {
+                Temp temp = routine.newTemp(real, layout.getSlotName(slot));
+                slotTemps[r][slot] = temp;
+                emit(Instr.param(temp, i));
+            } else {
+                Temp temp = routine.newTemp(real);
+                emit(Instr.param(temp, i));
+                emit(Instr.store(slotVariables[r][slot], temp));
+            }
+        }
+        if (layout.getResultSlot() >= 0) {
+            writeSlot(r, layout.getResultSlot(), Const.zero(routine.returnsReal));
+        }
+
+        if (body != null) {
+            lowerBlock(body);
+        }
+
+        if (routine.isMain()) {
+            emit(Instr.halt());
+        } else if (routine.isFunction) {
+            emit(Instr.ret(readSlot(r, layout.getResultSlot())));
+        } else {
+            emit(Instr.ret(null));
+        }
+        if (boundsError != null) {
+            routine.blocks.add(boundsError);
+        }
+        routine.computeEdges();
+    }
+
+    private void lowerBlock(AST blockNode) {
+        for (int i = 0; i < blockNode.getChildCount(); i++) {
+            AST child = blockNode.getChild(i);
+            switch (child.kind) {
+                case CONST_SECTION_NODE -> {
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST constDecl = child.getChild(j);
+                        if (constDecl.kind == NodeKind.CONST_DECL_NODE && constDecl.getChildCount() > 0) {
+                            writeSlot(current, constDecl.slot, lowerAs(constDecl.getChild(0), constDecl.type));
+                        }
+                    }
+                }
+                case VAR_SECTION_NODE -> {
+                    // Variáveis começam zeradas, como no interpretador; globais em .data já são zero
+                    for (int j = 0; j < child.getChildCount(); j++) {
+                        AST varList = child.getChild(j);
+                        for (int k = 0; k < varList.getChildCount(); k++) {
+                            AST varDecl = varList.getChild(k);
+                            if (varDecl.kind == NodeKind.VAR_DECL_NODE && varDecl.slot >= 0) {
+                                initializeVariable(varDecl);
+                            }
+                        }
+                    }
+                }
+                case COMPOUND_STMT_NODE -> lowerStatement(child);
+                default -> {
+                    // Subrotinas são traduzidas separadamente
+                }
+            }
+        }
+    }
+
+    private void initializeVariable(AST varDecl) {
+        if (varDecl.type == Type.STRING) {
+            throw new RuntimeException("String variables are not supported by the MIPS backend");
+        }
+        Variable variable = slotVariables[current][varDecl.slot];
+        if (variable == null) {
+            writeSlot(current, varDecl.slot, Const.zero(varDecl.type == Type.REAL));
+        } else if (variable.storage == Variable.Storage.FRAME) {
+            if (variable.array != null) {
+                zeroFill(variable);
+            } else {
+                emit(Instr.store(variable, Const.zero(variable.real)));
+            }
+        }
+    }
+
+    /**
+     * Zera um array do frame: palavra a palavra se for pequeno, senão em laço
+     */
+    private void zeroFill(Variable array) {
+        Temp base = routine.newTemp(false);
+        emit(Instr.address(base, array));
+        int words = array.words();
+        if (words <= 8) {
+            for (int i = 0; i < words; i++) {
+                emit(Instr.storeWord(base, 4 * i, Const.ZERO));
+            }
+            return;
+        }
+        Temp end = compute(Op.ADD, base, Const.of(4 * words), false);
+        BasicBlock loop = routine.newBlock();
+        BasicBlock next = routine.newBlock();
+        emit(Instr.jump(loop));
+        startBlock(loop);
+        emit(Instr.storeWord(base, 0, Const.ZERO));
+        emit(Instr.compute(Op.ADD, base, base, Const.of(4)));
+        emit(Instr.branch(Op.LT, base, end, loop, next));
+        startBlock(next);
+    }
+
+    // ==================== Acesso a slots ====================
+
+    private FrameLayout layoutOf(AST node) {
+        return resolver.getRoutine(chains[current][node.depth]);
+    }
+
+    private int ownerOf(AST node) {
+        return chains[current][node.depth];
+    }
+
+    /**
+     * Valor guardado no slot (para parâmetros VAR, o endereço recebido)
+     */
+    private Operand readSlot(int owner, int slot) {
+        Variable variable = slotVariables[owner][slot];
+        if (variable == null) {
+            return slotTemp(owner, slot);
+        }
+        Temp value = routine.newTemp(variable.real);
+        emit(Instr.load(value, variable));
+        return value;
+    }
+
+    private void writeSlot(int owner, int slot, Operand value) {
+        Variable variable = slotVariables[owner][slot];
+        if (variable == null) {
+            assign(slotTemp(owner, slot), value);
+        } else {
+            emit(Instr.store(variable, value));
+        }
+    }
+
+    private Temp slotTemp(int owner, int slot) {
+        Temp temp = slotTemps[owner][slot];
+        if (temp == null) {
+            FrameLayout layout = resolver.getRoutine(owner);
+            boolean real = layout.getSlotType(slot) == Type.REAL && !layout.isReference(slot);
+            temp = routine.newTemp(real, layout.getSlotName(slot));
+            slotTemps[owner][slot] = temp;
+        }
+        return temp;
+    }
+
+    /**
+     * Valor de uma variável escalar, seguindo o endereço dos parâmetros VAR
+     */
+    private Operand loadVariable(AST node) {
+        FrameLayout layout = layoutOf(node);
+        if (layout.getSlotArray(node.slot) != null) {
+            throw new RuntimeException("Array '" + node.stringData + "' used as a value");
+        }
+        Operand value = readSlot(ownerOf(node), node.slot);
+        if (layout.isReference(node.slot)) {
+            Temp target = routine.newTemp(layout.getSlotType(node.slot) == Type.REAL);
+            emit(Instr.loadWord(target, value, 0));
+            return target;
+        }
+        return value;
+    }
+
+    private void storeVariable(AST node, Operand value) {
+        FrameLayout layout = layoutOf(node);
+        if (layout.isReference(node.slot)) {
+            emit(Instr.storeWord(readSlot(ownerOf(node), node.slot), 0, value));
+        } else {
+            writeSlot(ownerOf(node), node.slot, value);
+        }
+    }
+
+    private ArrayEntry arrayOf(AST node) {
+        ArrayEntry array = node.slot < 0 ? null : layoutOf(node).getSlotArray(node.slot);
+        if (array == null) {
+            throw new RuntimeException("Array '" + node.stringData + "' not found");
+        }
+        return array;
+    }
+
+    /**
+     * Endereço de um elemento: base + (índice - início) * 4
+     */
+    private Address elementAddress(AST node) {
+        ArrayEntry array = arrayOf(node);
+        Operand index = lowerAs(node.getChild(0), Type.INTEGER);
+        Temp base = routine.newTemp(false);
+        emit(Instr.address(base, slotVariables[ownerOf(node)][node.slot]));
+        if (index instanceof Const c) {
+            return new Address(base, 4 * (c.intValue() - array.getStartIndex()));
+        }
+        if (boundsCheck != null && !boundsCheck.isSafe(node)) {
+            emitBoundsCheck(index, array);
+        }
+        Temp scaled = compute(Op.SLL, index, Const.of(2), false);
+        return new Address(compute(Op.ADD, base, scaled, false), -4 * array.getStartIndex());
+    }
+
+    /**
+     * Desvia para o bloco de erro se o índice estiver fora de [início, fim]
+     */
+    private void emitBoundsCheck(Operand index, ArrayEntry array) {
+        if (boundsError == null) {
+            if (boundsMessage == null) {
+                boundsMessage = "str_" + program.strings.size();
+                program.strings.add("RUNTIME ERROR: array index out of bounds\n");
+            }
+            boundsError = routine.newBlock();
+            boundsError.add(Instr.printString(boundsMessage));
+            boundsError.add(Instr.halt());
+        }
+        BasicBlock aboveLow = routine.newBlock();
+        BasicBlock inRange = routine.newBlock();
+        emit(Instr.branch(Op.LT, index, Const.of(array.getStartIndex()), boundsError, aboveLow));
+        startBlock(aboveLow);
+        emit(Instr.branch(Op.GT, index, Const.of(array.getEndIndex()), boundsError, inRange));
+        startBlock(inRange);
+    }
+
+    // ==================== Statements ====================
+
+    private void lowerStatement(AST stmtNode) {
+        switch (stmtNode.kind) {
+            case ASSIGN_NODE -> lowerAssignment(stmtNode);
+            case PROC_CALL_NODE -> lowerProcedureCall(stmtNode);
+            case COMPOUND_STMT_NODE -> {
+                if (stmtNode.getChildCount() > 0) {
+                    AST stmtList = stmtNode.getChild(0);
+                    for (int i = 0; i < stmtList.getChildCount(); i++) {
+                        lowerStatement(stmtList.getChild(i));
+                    }
+                }
+            }
+            case IF_NODE -> {
+                BasicBlock thenBlock = routine.newBlock();
+                BasicBlock join = routine.newBlock();
+                BasicBlock elseBlock = stmtNode.getChildCount() > 2 ? routine.newBlock() : join;
+                lowerCondition(stmtNode.getChild(0), thenBlock, elseBlock);
+                startBlock(thenBlock);
+                lowerStatement(stmtNode.getChild(1));
+                emit(Instr.jump(join));
+                if (elseBlock != join) {
+                    startBlock(elseBlock);
+                    lowerStatement(stmtNode.getChild(2));
+                    emit(Instr.jump(join));
+                }
+                startBlock(join);
+            }
+            case WHILE_NODE -> {
+                BasicBlock header = routine.newBlock();
+                BasicBlock body = routine.newBlock();
+                BasicBlock exit = routine.newBlock();
+                emit(Instr.jump(header));
+                startBlock(header);
+                lowerCondition(stmtNode.getChild(0), body, exit);
+                startBlock(body);
+                lowerStatement(stmtNode.getChild(1));
+                emit(Instr.jump(header));
+                startBlock(exit);
+            }
+            default -> {
+                // EMPTY_STMT_NODE e statements sem efeito
+            }
+        }
+    }
+
+    /**
+     * Desvia para ifTrue ou ifFalse sem materializar o booleano: comparações
+     * viram o próprio CBR, and/or viram blocos em curto-circuito e not troca
+     * os destinos
+     */
+    private void lowerCondition(AST condNode, BasicBlock ifTrue, BasicBlock ifFalse) {
+        switch (condNode.kind) {
+            case PAREN_EXPR_NODE -> lowerCondition(condNode.getChild(0), ifTrue, ifFalse);
+            case NOT_NODE -> lowerCondition(condNode.getChild(0), ifFalse, ifTrue);
+            case BOOL_VAL_NODE -> emit(Instr.jump(condNode.intData == 1 ? ifTrue : ifFalse));
+            case AND_NODE, OR_NODE -> {
+                // O interpretador avalia os dois lados: chamadas à direita não podem ser puladas
+                if (containsCall(condNode.getChild(1))) {
+                    emit(Instr.branch(Op.NE, lowerExpr(condNode), Const.ZERO, ifTrue, ifFalse));
+                    return;
+                }
+                BasicBlock rest = routine.newBlock();
+                if (condNode.kind == NodeKind.AND_NODE) {
+                    lowerCondition(condNode.getChild(0), rest, ifFalse);
+                } else {
+                    lowerCondition(condNode.getChild(0), ifTrue, rest);
+                }
+                startBlock(rest);
+                lowerCondition(condNode.getChild(1), ifTrue, ifFalse);
+            }
+            case EQ_NODE, NEQ_NODE, LT_NODE, GT_NODE, LE_NODE, GE_NODE -> {
+                Operand[] operands = lowerComparisonOperands(condNode);
+                emit(Instr.branch(comparisonOp(condNode), operands[0], operands[1], ifTrue, ifFalse));
+            }
+            default -> emit(Instr.branch(Op.NE, lowerExpr(condNode), Const.ZERO, ifTrue, ifFalse));
+        }
+    }
+
+    private static boolean containsCall(AST node) {
+        if (node.kind == NodeKind.FUNC_CALL_NODE ||
+            (node.kind == NodeKind.VAR_USE_NODE && node.depth == Resolver.CALL_DEPTH)) {
+            return true;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (containsCall(node.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void lowerAssignment(AST assignNode) {
+        AST varNode = assignNode.getChild(0);
+        AST exprNode = assignNode.getChild(1);
+
+        if (varNode.slot < 0) {
+            throw new RuntimeException("Variable '" + varNode.stringData + "' not declared");
+        }
+        if (varNode.kind == NodeKind.ARRAY_ACCESS_NODE) {
+            ArrayEntry array = arrayOf(varNode);
+            // Valor antes do endereço, como no interpretador: uma chamada no
+            // lado direito pode alterar as variáveis do índice
+            Operand value = lowerAs(exprNode, array.getElementType());
+            Address address = elementAddress(varNode);
+            emit(Instr.storeWord(address.base(), address.offset(), value));
+        } else {
+            storeVariable(varNode, lowerAs(exprNode, layoutOf(varNode).getSlotType(varNode.slot)));
+        }
+    }
+
+    private void lowerProcedureCall(AST procCallNode) {
+        String procName = procCallNode.stringData.toLowerCase();
+        AST args = procCallNode.getChild(0);
+        int argCount = args != null ? args.getChildCount() : 0;
+
+        switch (procName) {
+            case "writeln", "write" -> {
+                for (int i = 0; i < argCount; i++) {
+                    lowerWriteArgument(args.getChild(i));
+                }
+                if (procName.equals("writeln")) {
+                    emit(Instr.print(Op.PRINT_NL, null));
+                }
+            }
+            case "read", "readln" -> {
+                for (int i = 0; i < argCount; i++) {
+                    lowerReadTarget(args.getChild(i));
+                }
+            }
+            default -> {
+                if (procCallNode.slot < 0) {
+                    throw new RuntimeException("Procedure '" + procName + "' not found");
+                }
+                // Uma função chamada como statement tem o resultado descartado
+                lowerCall(procCallNode);
+            }
+        }
+    }
+
+    /**
+     * Como no gerador MIPS sem otimização: inteiros, booleanos e chars são
+     * impressos como inteiros
+     */
+    private void lowerWriteArgument(AST arg) {
+        if (arg.kind == NodeKind.STR_VAL_NODE) {
+            int index = strTable != null && arg.stringData != null ? strTable.indexOf(arg.stringData) : -1;
+            if (index < 0) {
+                throw new RuntimeException("String " + arg.stringData + " not found in string table");
+            }
+            emit(Instr.printString("str_" + index));
+        } else if (arg.type == Type.STRING) {
+            throw new RuntimeException("String expressions are not supported by the MIPS backend");
+        } else {
+            Operand value = lowerExpr(arg);
+            emit(Instr.print(value.isReal() ? Op.PRINT_REAL : Op.PRINT_INT, value));
+        }
+    }
+
+    private void lowerReadTarget(AST target) {
+        Type type;
+        if (target.kind == NodeKind.VAR_USE_NODE && target.depth >= 0 && target.slot >= 0) {
+            FrameLayout layout = layoutOf(target);
+            if (layout.getSlotKind(target.slot) == FrameLayout.SlotKind.CONST ||
+                layout.getSlotArray(target.slot) != null) {
+                throw new RuntimeException("Cannot read into '" + target.stringData + "'");
+            }
+            type = layout.getSlotType(target.slot);
+        } else if (target.kind == NodeKind.ARRAY_ACCESS_NODE && target.slot >= 0) {
+            type = arrayOf(target).getElementType();
+        } else {
+            throw new RuntimeException("Argument of read must be a variable");
+        }
+        Op op = switch (type) {
+            case INTEGER -> Op.READ_INT;
+            case REAL -> Op.READ_REAL;
+            case CHAR -> Op.READ_CHAR;
+            default -> throw new RuntimeException("Cannot read a value of type " + type +
+                                                  " into '" + target.stringData + "'");
+        };
+        if (target.kind == NodeKind.ARRAY_ACCESS_NODE) {
+            // Endereço calculado antes da leitura
+            Address address = elementAddress(target);
+            Temp value = routine.newTemp(type == Type.REAL);
+            emit(Instr.read(op, value));
+            emit(Instr.storeWord(address.base(), address.offset(), value));
+        } else {
+            Temp value = routine.newTemp(type == Type.REAL);
+            emit(Instr.read(op, value));
+            storeVariable(target, value);
+        }
+    }
+
+    /**
+     * Avalia os argumentos (da esquerda para a direita) e chama a rotina;
+     * retorna o resultado, ou null para procedimentos
+     */
+    private Temp lowerCall(AST callNode) {
+        int index = callNode.slot;
+        FrameLayout layout = resolver.getRoutine(index);
+        IrRoutine callee = routines[index];
+        List<Integer> params = layout.getParamSlots();
+        AST args = callNode.kind == NodeKind.VAR_USE_NODE ? null : callNode.getChild(0);
+        int argCount = args != null ? args.getChildCount() : 0;
+        if (argCount != params.size()) {
+            throw new RuntimeException("Wrong number of arguments for " + callNode.stringData.toLowerCase());
+        }
+        Operand[] values = new Operand[argCount];
+        for (int i = 0; i < argCount; i++) {
+            if (callee.refParams[i]) {
+                values[i] = lowerAddress(args.getChild(i));
+            } else {
+                values[i] = lowerAs(args.getChild(i), layout.getSlotType(params.get(i)));
+            }
+        }
+        Temp result = callee.isFunction ? routine.newTemp(callee.returnsReal) : null;
+        emit(Instr.call(result, callee, values));
+        return result;
+    }
+
+    /**
+     * Endereço de um argumento passado a parâmetro VAR. Um argumento que não
+     * é variável é copiado para uma variável oculta.
+     */
+    private Operand lowerAddress(AST argNode) {
+        if (argNode.kind == NodeKind.VAR_USE_NODE && argNode.depth >= 0 && argNode.slot >= 0) {
+            FrameLayout layout = layoutOf(argNode);
+            if (layout.isReference(argNode.slot)) {
+                // Repassa o endereço recebido
+                return readSlot(ownerOf(argNode), argNode.slot);
+            }
+            if (layout.getSlotArray(argNode.slot) == null) {
+                Temp address = routine.newTemp(false);
+                emit(Instr.address(address, slotVariables[ownerOf(argNode)][argNode.slot]));
+                return address;
+            }
+        } else if (argNode.kind == NodeKind.ARRAY_ACCESS_NODE && argNode.slot >= 0) {
+            Address address = elementAddress(argNode);
+            if (address.offset() == 0) {
+                return address.base();
+            }
+            return compute(Op.ADD, address.base(), Const.of(address.offset()), false);
+        }
+        Operand value = lowerExpr(argNode);
+        Variable hidden = hiddenVariable(value.isReal());
+        emit(Instr.store(hidden, value));
+        Temp address = routine.newTemp(false);
+        emit(Instr.address(address, hidden));
+        return address;
+    }
+
+    // ==================== Expressões ====================
+
+    /**
+     * Traduz a expressão convertendo inteiro para real quando o destino é real
+     */
+    private Operand lowerAs(AST exprNode, Type target) {
+        Operand value = lowerExpr(exprNode);
+        if (target == Type.REAL && !value.isReal()) {
+            return compute(Op.I2F, value, null, true);
+        }
+        return value;
+    }
+
+    private Operand lowerExpr(AST exprNode) {
+        return switch (exprNode.kind) {
+            case INT_VAL_NODE -> Const.of(exprNode.intData);
+            case REAL_VAL_NODE -> Const.of(exprNode.floatData);
+            case BOOL_VAL_NODE -> exprNode.intData == 1 ? Const.ONE : Const.ZERO;
+            case CHAR_VAL_NODE -> Const.of(charLiteral(exprNode.stringData));
+            case STR_VAL_NODE -> throw new RuntimeException("String expressions are not supported by the MIPS backend");
+
+            case VAR_USE_NODE -> {
+                if (exprNode.depth == Resolver.CALL_DEPTH) {
+                    yield lowerCall(exprNode);
+                }
+                if (exprNode.slot < 0) {
+                    throw new RuntimeException("Variable '" + exprNode.stringData + "' not initialized");
+                }
+                yield loadVariable(exprNode);
+            }
+            case ARRAY_ACCESS_NODE -> {
+                boolean real = arrayOf(exprNode).getElementType() == Type.REAL;
+                Address address = elementAddress(exprNode);
+                Temp value = routine.newTemp(real);
+                emit(Instr.loadWord(value, address.base(), address.offset()));
+                yield value;
+            }
+
+            case PLUS_NODE -> lowerArithmetic(exprNode, Op.ADD, Op.FADD);
+            case MINUS_NODE -> lowerArithmetic(exprNode, Op.SUB, Op.FSUB);
+            case TIMES_NODE -> lowerArithmetic(exprNode, Op.MUL, Op.FMUL);
+            case DIVIDE_NODE -> lowerBinary(exprNode, Type.REAL, Op.FDIV, true);
+            case DIV_NODE -> lowerBinary(exprNode, Type.INTEGER, Op.DIV, false);
+            case MOD_NODE -> lowerBinary(exprNode, Type.INTEGER, Op.MOD, false);
+
+            case AND_NODE -> lowerBinary(exprNode, Type.BOOLEAN, Op.AND, false);
+            case OR_NODE -> lowerBinary(exprNode, Type.BOOLEAN, Op.OR, false);
+            case NOT_NODE -> compute(Op.NOT, lowerExpr(exprNode.getChild(0)), null, false);
+
+            case EQ_NODE, NEQ_NODE, LT_NODE, GT_NODE, LE_NODE, GE_NODE -> {
+                Operand[] operands = lowerComparisonOperands(exprNode);
+                yield compute(comparisonOp(exprNode), operands[0], operands[1], false);
+            }
+
+            case I2R_NODE -> lowerAs(exprNode.getChild(0), Type.REAL);
+            case PAREN_EXPR_NODE -> lowerExpr(exprNode.getChild(0));
+
+            case FUNC_CALL_NODE -> {
+                if (exprNode.slot >= 0) {
+                    yield lowerCall(exprNode);
+                }
+                yield lowerBuiltinFunction(exprNode);
+            }
+
+            default -> throw new RuntimeException("Unsupported expression node: " + exprNode.kind.name());
+        };
+    }
+
+    private Operand lowerBuiltinFunction(AST callNode) {
+        String funcName = callNode.stringData.toLowerCase();
+        AST args = callNode.getChild(0);
+        if ((funcName.equals("abs") || funcName.equals("sqrt")) && (args == null || args.getChildCount() == 0)) {
+            throw new RuntimeException("Function '" + funcName + "' requires one argument");
+        }
+        return switch (funcName) {
+            case "abs" -> {
+                Operand value = lowerExpr(args.getChild(0));
+                yield compute(value.isReal() ? Op.FABS : Op.IABS, value, null, value.isReal());
+            }
+            case "sqrt" -> compute(Op.FSQRT, lowerAs(args.getChild(0), Type.REAL), null, true);
+            default -> throw new RuntimeException("Function '" + funcName + "' not found");
+        };
+    }
+
+    private Operand lowerArithmetic(AST opNode, Op intOp, Op realOp) {
+        if (opNode.type == Type.REAL) {
+            return lowerBinary(opNode, Type.REAL, realOp, true);
+        }
+        return lowerBinary(opNode, Type.INTEGER, intOp, false);
+    }
+
+    private Operand lowerBinary(AST opNode, Type operandType, Op op, boolean real) {
+        Operand left = lowerAs(opNode.getChild(0), operandType);
+        Operand right = lowerAs(opNode.getChild(1), operandType);
+        return compute(op, left, right, real);
+    }
+
+    /**
+     * Operandos de uma comparação, convertidos para real se um dos lados for real
+     */
+    private Operand[] lowerComparisonOperands(AST opNode) {
+        Type left = opNode.getChild(0).type;
+        Type right = opNode.getChild(1).type;
+        if (left == Type.STRING || right == Type.STRING) {
+            throw new RuntimeException("String comparisons are not supported by the MIPS backend");
+        }
+        // Inteiros, chars e booleanos comparam como int
+        Type operandType = left == Type.REAL || right == Type.REAL ? Type.REAL : left;
+        return new Operand[] { lowerAs(opNode.getChild(0), operandType), lowerAs(opNode.getChild(1), operandType) };
+    }
+
+    private static Op comparisonOp(AST opNode) {
+        boolean real = opNode.getChild(0).type == Type.REAL || opNode.getChild(1).type == Type.REAL;
+        return switch (opNode.kind) {
+            case EQ_NODE -> real ? Op.FEQ : Op.EQ;
+            case NEQ_NODE -> real ? Op.FNE : Op.NE;
+            case LT_NODE -> real ? Op.FLT : Op.LT;
+            case GT_NODE -> real ? Op.FGT : Op.GT;
+            case LE_NODE -> real ? Op.FLE : Op.LE;
+            default -> real ? Op.FGE : Op.GE;
+        };
+    }
+
+    private static char charLiteral(String charStr) {
+        if (charStr != null && charStr.length() >= 3) {
+            // Remove aspas simples se estiverem presentes
+            if (charStr.startsWith("'") && charStr.endsWith("'")) {
+                charStr = charStr.substring(1, charStr.length() - 1);
+            }
+            return charStr.length() > 0 ? charStr.charAt(0) : '\0';
+        }
+        return '\0';
+    }
+}
@@ -0,0 +1,37 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Programa em código de três endereços: as rotinas (o programa principal
+ * primeiro), as variáveis globais em memória e as strings constantes
+ */
+public final class IrProgram {
+
+    public final List<IrRoutine> routines = new ArrayList<>();
+    public final List<Variable> globals = new ArrayList<>();
+
+    // Conteúdo de cada string constante; o label é str_<índice>
+    public final List<String> strings = new ArrayList<>();
+
+    // Maior profundidade léxica de rotina que usa o display
+    public int displayDepth = -1;
+
+    public IrRoutine main() {
+        return routines.get(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Variable global : globals) {
+            text.append("global ").append(global.name).append(global.array != null ? "[" + global.words() + "]" : "")
+                .append(global.real ? ": real" : "").append('\n');
+        }
+        for (IrRoutine routine : routines) {
+            text.append('\n').append(routine);
+        }
+        return text.toString();
+    }
+}
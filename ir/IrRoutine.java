@@ -0,0 +1,192 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rotina em código de três endereços: o programa principal, um procedimento
+ * ou uma função. Os blocos ficam na ordem de layout, com a entrada primeiro;
+ * as arestas do grafo de fluxo de controle saem dos terminadores.
+ */
+public final class IrRoutine {
+
+    public final String name;
+    public final String label;
+    public final int depth;            // profundidade léxica (0 = programa principal)
+    public final boolean isFunction;
+    public final boolean returnsReal;
+
+    // Por parâmetro: passado por referência (recebe um endereço) e real
+    public final boolean[] refParams;
+    public final boolean[] realParams;
+
+    public final List<BasicBlock> blocks = new ArrayList<>();
+
+    // Variáveis em memória no frame da rotina
+    public final List<Variable> frameVariables = new ArrayList<>();
+
+    // Alguma variável do frame é acessada por rotinas aninhadas: a rotina
+    // registra seu frame no display ao entrar
+    public boolean usesDisplay;
+
+    private int tempCount = 0;
+    private int blockCount = 0;
+
+    public IrRoutine(String name, String label, int depth, boolean isFunction, boolean returnsReal,
+                     boolean[] refParams, boolean[] realParams) {
+        this.name = name;
+        this.label = label;
+        this.depth = depth;
+        this.isFunction = isFunction;
+        this.returnsReal = returnsReal;
+        this.refParams = refParams;
+        this.realParams = realParams;
+    }
+
+    public boolean isMain() {
+        return depth == 0;
+    }
+
+    public Temp newTemp(boolean real) {
+        return new Temp(tempCount++, real, null);
+    }
+
+    /**
+     * Registrador virtual que representa uma variável promovida
+     */
+    public Temp newTemp(boolean real, String name) {
+        return new Temp(tempCount++, real, name);
+    }
+
+    /**
+     * Número de registradores virtuais criados (ids de 0 a tempCount - 1)
+     */
+    public int tempCount() {
+        return tempCount;
+    }
+
+    /**
+     * Cria um bloco vazio, ainda fora do layout
+     */
+    public BasicBlock newBlock() {
+        return new BasicBlock(label + "_L" + (blockCount++));
+    }
+
+    public BasicBlock entry() {
+        return blocks.get(0);
+    }
+
+    /**
+     * Remove os blocos inalcançáveis a partir da entrada e recalcula
+     * predecessores, sucessores e índices de layout
+     */
+    public void computeEdges() {
+        Set<BasicBlock> reachable = new HashSet<>();
+        List<BasicBlock> work = new ArrayList<>();
+        work.add(entry());
+        reachable.add(entry());
+        while (!work.isEmpty()) {
+            BasicBlock block = work.remove(work.size() - 1);
+            for (BasicBlock successor : block.terminator().successors()) {
+                if (reachable.add(successor)) {
+                    work.add(successor);
+                }
+            }
+        }
+        blocks.removeIf(block -> !reachable.contains(block));
+
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            block.index = i;
+            block.predecessors.clear();
+            block.successors.clear();
+        }
+        for (BasicBlock block : blocks) {
+            for (BasicBlock successor : block.terminator().successors()) {
+                block.successors.add(successor);
+                successor.predecessors.add(block);
+            }
+        }
+    }
+
+    /**
+     * Dominadores de cada bloco (por índice de layout), iterados até o
+     * ponto fixo; requer computeEdges()
+     */
+    public BitSet[] dominators() {
+        int count = blocks.size();
+        BitSet[] dominators = new BitSet[count];
+        for (int i = 0; i < count; i++) {
+            dominators[i] = new BitSet();
+            if (i == 0) {
+                dominators[i].set(0);
+            } else {
+                dominators[i].set(0, count);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < count; i++) {
+                BasicBlock block = blocks.get(i);
+                BitSet meet = new BitSet();
+                meet.set(0, count);
+                for (BasicBlock predecessor : block.predecessors) {
+                    meet.and(dominators[predecessor.index]);
+                }
+                meet.set(i);
+                if (!meet.equals(dominators[i])) {
+                    dominators[i] = meet;
+                    changed = true;
+                }
+            }
+        }
+        return dominators;
+    }
+
+    /**
+     * Número de definições de cada registrador virtual (por id)
+     */
+    public int[] definitionCounts() {
+        int[] definitions = new int[tempCount];
+        for (BasicBlock block : blocks) {
+            for (Instr instr : block.instrs) {
+                if (instr.dst != null) {
+                    definitions[instr.dst.id]++;
+                }
+            }
+        }
+        return definitions;
+    }
+
+    /**
+     * Número de instruções da rotina
+     */
+    public int size() {
+        int size = 0;
+        for (BasicBlock block : blocks) {
+            size += block.instrs.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(isMain() ? "program " : isFunction ? "function " : "procedure ").append(name).append(":\n");
+        for (BasicBlock block : blocks) {
+            text.append(block.label).append(':');
+            if (!block.predecessors.isEmpty()) {
+                text.append("    ; preds ").append(block.predecessors);
+            }
+            text.append('\n');
+            for (Instr instr : block.instrs) {
+                text.append("    ").append(instr).append('\n');
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package ir;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Análise de vida dos registradores virtuais de uma rotina: para cada
+ * bloco, os temporários vivos na entrada e na saída. Iterada até o ponto
+ * fixo, percorrendo os blocos de trás para frente.
+ */
+public final class Liveness {
+
+    private final BitSet[] liveIn;
+    private final BitSet[] liveOut;
+
+    public Liveness(IrRoutine routine) {
+        List<BasicBlock> blocks = routine.blocks;
+        int count = blocks.size();
+        liveIn = new BitSet[count];
+        liveOut = new BitSet[count];
+        BitSet[] uses = new BitSet[count];
+        BitSet[] defs = new BitSet[count];
+
+        for (BasicBlock block : blocks) {
+            BitSet use = new BitSet();
+            BitSet def = new BitSet();
+            for (Instr instr : block.instrs) {
+                for (Operand operand : instr.uses()) {
+                    if (operand instanceof Temp temp && !def.get(temp.id)) {
+                        use.set(temp.id);
+                    }
+                }
+                if (instr.dst != null) {
+                    def.set(instr.dst.id);
+                }
+            }
+            uses[block.index] = use;
+            defs[block.index] = def;
+            liveIn[block.index] = new BitSet();
+            liveOut[block.index] = new BitSet();
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = count - 1; i >= 0; i--) {
+                BasicBlock block = blocks.get(i);
+                BitSet out = liveOut[i];
+                for (BasicBlock successor : block.successors) {
+                    out.or(liveIn[successor.index]);
+                }
+                BitSet in = (BitSet) out.clone();
+                in.andNot(defs[i]);
+                in.or(uses[i]);
+                if (!in.equals(liveIn[i])) {
+                    liveIn[i] = in;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    public BitSet liveIn(BasicBlock block) {
+        return liveIn[block.index];
+    }
+
+    public BitSet liveOut(BasicBlock block) {
+        return liveOut[block.index];
+    }
+}
@@ -0,0 +1,185 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Movimentação de código invariante de laço. Os laços são os laços naturais
+ * do grafo de fluxo de controle (arestas de volta para um bloco que as
+ * domina); cada um ganha um pré-cabeçalho, inserido no layout logo antes do
+ * cabeçalho, que recebe as instruções puras cujos operandos não mudam dentro
+ * do laço: endereços de arrays (ADDR) e expressões sobre constantes e
+ * variáveis não escritas no laço.
+ *
+ * O IR não está em SSA: só são movidas instruções cujo destino tem uma única
+ * definição na rotina. Como o laço pode não executar nenhuma vez, nada que
+ * possa falhar é movido (DIV e MOD só com divisor constante não nulo), e
+ * acessos à memória ficam no lugar. Laços internos são tratados primeiro,
+ * de modo que uma expressão pode subir vários níveis.
+ */
+public final class LoopInvariantMotion {
+
+    private int loops = 0;
+    private int hoisted = 0;
+
+    public void run(IrProgram program) {
+        for (IrRoutine routine : program.routines) {
+            run(routine);
+        }
+    }
+
+    public void run(IrRoutine routine) {
+        List<Loop> found = findLoops(routine);
+        if (found.isEmpty()) {
+            return;
+        }
+        int[] definitions = routine.definitionCounts();
+        // Internos primeiro: o corpo de um laço interno é menor que o do externo
+        found.sort((x, y) -> Integer.compare(x.body.size(), y.body.size()));
+        for (Loop loop : found) {
+            BasicBlock preheader = hoist(routine, loop, definitions);
+            if (preheader == null) {
+                continue;
+            }
+            // O pré-cabeçalho pertence aos laços que envolvem este
+            for (Loop outer : found) {
+                if (outer != loop && outer.body.contains(loop.header)) {
+                    outer.body.add(preheader);
+                }
+            }
+        }
+        routine.computeEdges();
+    }
+
+    public String report() {
+        return String.format("Loop-invariant motion: %d instructions hoisted from %d loops%n", hoisted, loops);
+    }
+
+    // ==================== Laços ====================
+
+    /**
+     * Laço natural: o cabeçalho e os blocos que alcançam uma aresta de volta
+     * sem passar por ele
+     */
+    private static final class Loop {
+        final BasicBlock header;
+        final Set<BasicBlock> body = new HashSet<>();
+
+        Loop(BasicBlock header) {
+            this.header = header;
+            body.add(header);
+        }
+    }
+
+    private static List<Loop> findLoops(IrRoutine routine) {
+        BitSet[] dominators = routine.dominators();
+        Map<BasicBlock, Loop> byHeader = new LinkedHashMap<>();
+        for (BasicBlock block : routine.blocks) {
+            for (BasicBlock successor : block.successors) {
+                if (!dominators[block.index].get(successor.index)) {
+                    continue;
+                }
+                Loop loop = byHeader.computeIfAbsent(successor, Loop::new);
+                List<BasicBlock> work = new ArrayList<>();
+                if (loop.body.add(block)) {
+                    work.add(block);
+                }
+                while (!work.isEmpty()) {
+                    BasicBlock member = work.remove(work.size() - 1);
+                    for (BasicBlock predecessor : member.predecessors) {
+                        if (loop.body.add(predecessor)) {
+                            work.add(predecessor);
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(byHeader.values());
+    }
+
+    // ==================== Movimentação ====================
+
+    /**
+     * Move as instruções invariantes do laço para um novo pré-cabeçalho;
+     * retorna o pré-cabeçalho, ou null se nada foi movido
+     */
+    private BasicBlock hoist(IrRoutine routine, Loop loop, int[] definitions) {
+        BitSet definedInLoop = new BitSet();
+        for (BasicBlock block : loop.body) {
+            for (Instr instr : block.instrs) {
+                if (instr.dst != null) {
+                    definedInLoop.set(instr.dst.id);
+                }
+            }
+        }
+
+        // Percorre o corpo na ordem de layout até nenhuma instrução mudar de
+        // lugar; as movidas ficam na ordem em que foram encontradas, depois
+        // das instruções de que dependem
+        List<BasicBlock> body = new ArrayList<>();
+        for (BasicBlock block : routine.blocks) {
+            if (loop.body.contains(block)) {
+                body.add(block);
+            }
+        }
+        List<Instr> invariant = new ArrayList<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : body) {
+                for (int i = 0; i < block.instrs.size(); i++) {
+                    Instr instr = block.instrs.get(i);
+                    if (isHoistable(instr, definedInLoop, definitions)) {
+                        block.instrs.remove(i--);
+                        invariant.add(instr);
+                        definedInLoop.clear(instr.dst.id);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        if (invariant.isEmpty()) {
+            return null;
+        }
+
+        BasicBlock preheader = routine.newBlock();
+        preheader.instrs.addAll(invariant);
+        preheader.add(Instr.jump(loop.header));
+        routine.blocks.add(routine.blocks.indexOf(loop.header), preheader);
+        for (BasicBlock predecessor : new ArrayList<>(loop.header.predecessors)) {
+            if (!loop.body.contains(predecessor)) {
+                Instr terminator = predecessor.terminator();
+                if (terminator.target == loop.header) {
+                    terminator.target = preheader;
+                }
+                if (terminator.other == loop.header) {
+                    terminator.other = preheader;
+                }
+            }
+        }
+        loops++;
+        hoisted += invariant.size();
+        return preheader;
+    }
+
+    private static boolean isHoistable(Instr instr, BitSet definedInLoop, int[] definitions) {
+        if (instr.dst == null || !instr.op.isPure() || instr.op == Op.MOVE || definitions[instr.dst.id] != 1) {
+            return false;
+        }
+        if ((instr.op == Op.DIV || instr.op == Op.MOD) &&
+            !(instr.b instanceof Const divisor && divisor.intValue() != 0)) {
+            return false;
+        }
+        for (Operand operand : instr.uses()) {
+            if (operand instanceof Temp temp && definedInLoop.get(temp.id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package ir;
+
+/**
+ * Operações do código de três endereços. Operações inteiras também servem
+ * para booleanos (0/1) e chars (código do caractere); as de prefixo F operam
+ * sobre reais. As comparações produzem 0 ou 1 e também são usadas como
+ * condição dos desvios CBR.
+ */
+public enum Op {
+    // dst = a
+    MOVE,
+
+    // Inteiros: dst = a op b (NOT e IABS usam só a)
+    ADD, SUB, MUL, DIV, MOD, AND, OR, SLL, NOT, IABS,
+    EQ, NE, LT, LE, GT, GE,
+
+    // Reais: dst = a op b (FABS, FSQRT e I2F usam só a); comparações produzem inteiro
+    FADD, FSUB, FMUL, FDIV, FABS, FSQRT, I2F,
+    FEQ, FNE, FLT, FLE, FGT, FGE,
+
+    // Memória: LOAD dst = var, STORE var = a, ADDR dst = &var,
+    // LOADW dst = *(a + offset), STOREW *(a + offset) = b
+    LOAD, STORE, ADDR, LOADW, STOREW,
+
+    // dst = parâmetro de índice 'offset' da rotina atual
+    PARAM,
+
+    // [dst =] callee(args)
+    CALL,
+
+    // Entrada e saída (syscalls)
+    READ_INT, READ_REAL, READ_CHAR,
+    PRINT_INT, PRINT_REAL, PRINT_STR, PRINT_NL,
+
+    // Terminadores: JUMP target; CBR se (a cond b) target senão other;
+    // RET [a] retorna da rotina; HALT encerra o programa
+    JUMP, CBR, RET, HALT;
+
+    /**
+     * Sem efeitos colaterais: o resultado depende só dos operandos
+     */
+    public boolean isPure() {
+        return switch (this) {
+            case MOVE, ADD, SUB, MUL, DIV, MOD, AND, OR, SLL, NOT, IABS,
+                 EQ, NE, LT, LE, GT, GE,
+                 FADD, FSUB, FMUL, FDIV, FABS, FSQRT, I2F,
+                 FEQ, FNE, FLT, FLE, FGT, FGE, ADDR -> true;
+            default -> false;
+        };
+    }
+
+    public boolean isComparison() {
+        return switch (this) {
+            case EQ, NE, LT, LE, GT, GE, FEQ, FNE, FLT, FLE, FGT, FGE -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Comparação com os operandos trocados (a < b  <=>  b > a)
+     */
+    public Op swapped() {
+        return switch (this) {
+            case LT -> GT;
+            case LE -> GE;
+            case GT -> LT;
+            case GE -> LE;
+            case FLT -> FGT;
+            case FLE -> FGE;
+            case FGT -> FLT;
+            case FGE -> FLE;
+            default -> this;
+        };
+    }
+
+    /**
+     * Comparação inteira negada (not (a < b)  <=>  a >= b). Reais não têm
+     * negação exata por causa de NaN; seus desvios invertem o flag testado.
+     */
+    public Op negated() {
+        return switch (this) {
+            case EQ -> NE;
+            case NE -> EQ;
+            case LT -> GE;
+            case LE -> GT;
+            case GT -> LE;
+            case GE -> LT;
+            default -> throw new IllegalArgumentException(this + " has no exact negation");
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package ir;
+
+/**
+ * Operando de uma instrução: registrador virtual (Temp) ou constante (Const)
+ */
+public abstract class Operand {
+
+    /**
+     * Verdadeiro para valores reais, que vivem nos registradores de ponto flutuante
+     */
+    public abstract boolean isReal();
+}
@@ -0,0 +1,30 @@
+package ir;
+
+/**
+ * Registrador virtual. Cada rotina numera os seus a partir de 0; a seleção
+ * de instruções os mapeia para registradores MIPS ou slots de spill.
+ */
+public final class Temp extends Operand {
+
+    public final int id;
+    private final boolean real;
+
+    // Variável promovida que o registrador representa (só para leitura do IR), ou null
+    public final String name;
+
+    Temp(int id, boolean real, String name) {
+        this.id = id;
+        this.real = real;
+        this.name = name;
+    }
+
+    @Override
+    public boolean isReal() {
+        return real;
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? "%" + name + "." + id : "%t" + id;
+    }
+}
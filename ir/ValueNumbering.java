@@ -0,0 +1,302 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Eliminação de subexpressões comuns por numeração de valores. Cada valor
+ * calculado recebe um número; duas instruções com a mesma operação sobre
+ * os mesmos números calculam o mesmo valor, e a segunda passa a reaproveitar
+ * o registrador da primeira.
+ *
+ * A numeração é local dentro de cada bloco e global ao longo da árvore de
+ * dominadores: a tabela de expressões de um bloco vale nos blocos que ele
+ * domina. Como o IR não está em SSA, só os registradores com uma única
+ * definição têm número válido na rotina inteira; os de várias definições
+ * (variáveis promovidas) ganham número novo no início de cada bloco e a
+ * cada escrita. Loads de variáveis e de elementos de arrays são numerados
+ * por época de memória, que muda em cada store, chamada e bloco; um store
+ * também torna o valor guardado disponível para o load seguinte.
+ */
+public final class ValueNumbering {
+
+    private int eliminated = 0;
+    private int routines = 0;
+
+    // Numeração da rotina atual
+    private int[] definitions;
+    private int[] globalNumbers;
+    private Map<Temp, Integer> localNumbers;
+    private final Map<Const, Integer> constants = new HashMap<>();
+    private Map<Expression, Value> table;
+    private List<Undo> undo;
+    private Map<Temp, Temp> replaced;
+    private int nextNumber;
+    private int epoch;
+
+    public void run(IrProgram program) {
+        for (IrRoutine routine : program.routines) {
+            run(routine);
+        }
+    }
+
+    public void run(IrRoutine routine) {
+        definitions = routine.definitionCounts();
+        globalNumbers = new int[routine.tempCount()];
+        Arrays.fill(globalNumbers, -1);
+        constants.clear();
+        table = new HashMap<>();
+        undo = new ArrayList<>();
+        replaced = new HashMap<>();
+        nextNumber = 0;
+
+        int before = eliminated;
+        List<List<BasicBlock>> children = dominatorTree(routine);
+        visit(routine.entry(), children);
+        if (!replaced.isEmpty()) {
+            for (BasicBlock block : routine.blocks) {
+                for (Instr instr : block.instrs) {
+                    for (Operand use : instr.uses()) {
+                        if (use instanceof Temp temp && replaced.containsKey(temp)) {
+                            instr.replaceUse(temp, resolve(temp));
+                        }
+                    }
+                }
+            }
+        }
+        if (eliminated > before) {
+            routines++;
+        }
+    }
+
+    public String report() {
+        return String.format("Value numbering: %d redundant instructions removed in %d routines%n",
+                             eliminated, routines);
+    }
+
+    // ==================== Árvore de dominadores ====================
+
+    /**
+     * Filhos de cada bloco (por índice de layout) na árvore de dominadores.
+     * O dominador imediato é o dominador estrito com mais dominadores.
+     */
+    private static List<List<BasicBlock>> dominatorTree(IrRoutine routine) {
+        BitSet[] dominators = routine.dominators();
+        List<List<BasicBlock>> children = new ArrayList<>();
+        for (int i = 0; i < routine.blocks.size(); i++) {
+            children.add(new ArrayList<>());
+        }
+        for (int i = 1; i < routine.blocks.size(); i++) {
+            int immediate = -1;
+            for (int d = dominators[i].nextSetBit(0); d >= 0; d = dominators[i].nextSetBit(d + 1)) {
+                if (d != i && (immediate < 0 || dominators[d].cardinality() > dominators[immediate].cardinality())) {
+                    immediate = d;
+                }
+            }
+            children.get(immediate).add(routine.blocks.get(i));
+        }
+        return children;
+    }
+
+    // ==================== Numeração ====================
+
+    /**
+     * Expressão numerada: operação sobre números de valor. epoch só é
+     * usado pelos loads; var por LOAD e ADDR; offset por LOADW.
+     */
+    private record Expression(Op op, int a, int b, int offset, Variable var, int epoch) {
+    }
+
+    /**
+     * Valor disponível: número e operando que o contém
+     */
+    private record Value(int number, Operand holder) {
+    }
+
+    private record Undo(Expression key, Value previous) {
+    }
+
+    private void visit(BasicBlock block, List<List<BasicBlock>> children) {
+        int mark = undo.size();
+        localNumbers = new HashMap<>();
+        epoch = nextNumber++;
+        for (int i = 0; i < block.instrs.size(); i++) {
+            Instr instr = block.instrs.get(i);
+            for (Operand use : instr.uses()) {
+                if (use instanceof Temp temp && replaced.containsKey(temp)) {
+                    instr.replaceUse(temp, resolve(temp));
+                }
+            }
+            if (number(instr)) {
+                block.instrs.remove(i--);
+            }
+        }
+        for (BasicBlock child : children.get(block.index)) {
+            visit(child, children);
+        }
+        // Desfaz as entradas do bloco: só valem nos blocos dominados
+        while (undo.size() > mark) {
+            Undo entry = undo.remove(undo.size() - 1);
+            if (entry.previous() == null) {
+                table.remove(entry.key());
+            } else {
+                table.put(entry.key(), entry.previous());
+            }
+        }
+    }
+
+    /**
+     * Numera a instrução, reescrevendo-a se o valor já estiver disponível;
+     * retorna true se ela deve ser removida
+     */
+    private boolean number(Instr instr) {
+        switch (instr.op) {
+            case STORE -> {
+                epoch = nextNumber++;
+                // O valor guardado fica disponível para o próximo load
+                define(new Expression(Op.LOAD, -1, -1, 0, instr.var, epoch), numberOf(instr.a), instr.a);
+                return false;
+            }
+            case STOREW -> {
+                epoch = nextNumber++;
+                define(new Expression(Op.LOADW, numberOf(instr.a), -1, instr.offset, null, epoch),
+                       numberOf(instr.b), instr.b);
+                return false;
+            }
+            case CALL -> {
+                epoch = nextNumber++;
+                if (instr.dst != null) {
+                    assign(instr.dst, nextNumber++);
+                }
+                return false;
+            }
+            case MOVE -> {
+                assign(instr.dst, numberOf(instr.a));
+                return false;
+            }
+            default -> { }
+        }
+        Expression key = expression(instr);
+        if (key == null) {
+            if (instr.dst != null) {
+                assign(instr.dst, nextNumber++);
+            }
+            return false;
+        }
+
+        Value available = table.get(key);
+        if (available != null && isCurrent(available)) {
+            eliminated++;
+            if (isSingle(instr.dst) && available.holder() instanceof Temp holder && isSingle(holder)) {
+                // Os usos de dst são dominados por esta instrução, e portanto
+                // pela que definiu holder
+                replaced.put(instr.dst, holder);
+                globalNumbers[instr.dst.id] = available.number();
+                return true;
+            }
+            rewriteAsMove(instr, available.holder());
+            assign(instr.dst, available.number());
+            return false;
+        }
+        int number = nextNumber++;
+        assign(instr.dst, number);
+        define(key, number, instr.dst);
+        return false;
+    }
+
+    /**
+     * Chave da instrução, ou null se ela não é numerável
+     */
+    private Expression expression(Instr instr) {
+        switch (instr.op) {
+            case LOAD -> {
+                return new Expression(Op.LOAD, -1, -1, 0, instr.var, epoch);
+            }
+            case LOADW -> {
+                return new Expression(Op.LOADW, numberOf(instr.a), -1, instr.offset, null, epoch);
+            }
+            case ADDR -> {
+                return new Expression(Op.ADDR, -1, -1, 0, instr.var, -1);
+            }
+            default -> { }
+        }
+        if (!instr.op.isPure() || instr.dst == null) {
+            return null;
+        }
+        int a = numberOf(instr.a);
+        int b = instr.b != null ? numberOf(instr.b) : -1;
+        if (isCommutative(instr.op) && a > b) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        return new Expression(instr.op, a, b, 0, null, -1);
+    }
+
+    private static boolean isCommutative(Op op) {
+        return switch (op) {
+            case ADD, MUL, AND, OR, EQ, NE, FADD, FMUL, FEQ, FNE -> true;
+            default -> false;
+        };
+    }
+
+    private void define(Expression key, int number, Operand holder) {
+        undo.add(new Undo(key, table.get(key)));
+        table.put(key, new Value(number, holder));
+    }
+
+    /**
+     * O operando ainda contém o valor (registradores de várias definições
+     * podem ter sido reescritos desde então)
+     */
+    private boolean isCurrent(Value value) {
+        return value.holder() instanceof Const || numberOf(value.holder()) == value.number();
+    }
+
+    private int numberOf(Operand operand) {
+        if (operand instanceof Const constant) {
+            return constants.computeIfAbsent(constant, c -> nextNumber++);
+        }
+        Temp temp = (Temp) operand;
+        if (isSingle(temp)) {
+            if (globalNumbers[temp.id] < 0) {
+                globalNumbers[temp.id] = nextNumber++;
+            }
+            return globalNumbers[temp.id];
+        }
+        // Valor de entrada do bloco: desconhecido
+        return localNumbers.computeIfAbsent(temp, t -> nextNumber++);
+    }
+
+    private void assign(Temp dst, int number) {
+        if (isSingle(dst)) {
+            globalNumbers[dst.id] = number;
+        } else {
+            localNumbers.put(dst, number);
+        }
+    }
+
+    private boolean isSingle(Temp temp) {
+        return definitions[temp.id] == 1;
+    }
+
+    private Temp resolve(Temp temp) {
+        Temp target = replaced.get(temp);
+        while (replaced.containsKey(target)) {
+            target = replaced.get(target);
+        }
+        return target;
+    }
+
+    private static void rewriteAsMove(Instr instr, Operand value) {
+        instr.op = Op.MOVE;
+        instr.a = value;
+        instr.b = null;
+        instr.var = null;
+        instr.offset = 0;
+    }
+}
@@ -0,0 +1,46 @@
+package ir;
+
+import entries.ArrayEntry;
+
+/**
+ * Variável que permanece na memória: arrays, variáveis globais usadas por
+ * sub-rotinas, variáveis cujo endereço é passado a parâmetros VAR e locais
+ * acessadas por rotinas aninhadas. As demais viram registradores virtuais.
+ */
+public final class Variable {
+
+    public enum Storage {
+        GLOBAL,  // seção .data, acessada pelo label
+        FRAME    // frame da rotina dona; de rotinas aninhadas, via display
+    }
+
+    public final String name;
+    public final Storage storage;
+    public final boolean real;         // escalar ou elemento real
+    public final ArrayEntry array;     // limites do array, ou null para escalares
+    public final IrRoutine owner;      // rotina dona (o programa principal para globais)
+
+    // GLOBAL: label em .data; FRAME: offset em relação ao $sp da rotina dona
+    public String label;
+    public int offset;
+
+    public Variable(String name, Storage storage, boolean real, ArrayEntry array, IrRoutine owner) {
+        this.name = name;
+        this.storage = storage;
+        this.real = real;
+        this.array = array;
+        this.owner = owner;
+    }
+
+    /**
+     * Tamanho em palavras de 4 bytes
+     */
+    public int words() {
+        return array != null ? array.getArraySize() : 1;
+    }
+
+    @Override
+    public String toString() {
+        return storage == Storage.GLOBAL ? "@" + name : "@" + owner.name + "." + name;
+    }
+}